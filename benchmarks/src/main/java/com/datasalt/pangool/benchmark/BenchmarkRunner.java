@@ -0,0 +1,44 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. It accepts the usual JMH command line options, but unless told otherwise it
+ * writes the results as JSON to "pangool-benchmarks-[version].json" so that they can be compared between releases:
+ * <p>
+ * java -jar benchmarks/target/benchmarks.jar [regexp] [jmh options]
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+		if(!cmdOptions.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+			if(!cmdOptions.getResult().hasValue()) {
+				String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+				options.result("pangool-benchmarks-" + (version == null ? "dev" : version) + ".json");
+			}
+		}
+		new Runner(options.build()).run();
+	}
+}
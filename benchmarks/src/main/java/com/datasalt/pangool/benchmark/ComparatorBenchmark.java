@@ -0,0 +1,154 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.NullWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datasalt.pangool.io.DatumWrapper;
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.serialization.HadoopSerialization;
+import com.datasalt.pangool.tuplemr.Criteria.Order;
+import com.datasalt.pangool.tuplemr.OrderBy;
+import com.datasalt.pangool.tuplemr.TupleMRConfig;
+import com.datasalt.pangool.tuplemr.TupleMRConfigBuilder;
+import com.datasalt.pangool.tuplemr.TupleMRException;
+import com.datasalt.pangool.tuplemr.mapred.GroupComparator;
+import com.datasalt.pangool.tuplemr.mapred.SortComparator;
+import com.datasalt.pangool.tuplemr.mapred.TupleHashPartitioner;
+import com.datasalt.pangool.tuplemr.serialization.TupleSerialization;
+
+/**
+ * Binary {@link SortComparator} and {@link GroupComparator} comparisons, and {@link TupleHashPartitioner}, for a
+ * single intermediate schema and for two intermediate schemas with a schema order. Results are in operations per
+ * microsecond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparatorBenchmark {
+
+	static final int TUPLES = 1024;
+	static final int PARTITIONS = 64;
+
+	@Param({ "1", "2" })
+	int schemas;
+
+	private SortComparator sortComparator;
+	private GroupComparator groupComparator;
+	private TupleHashPartitioner partitioner;
+	private DatumWrapper<ITuple>[] keys;
+	private byte[][] serialized;
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setup() throws IOException, TupleMRException {
+		Schema schema1 = new Schema("schema1", Fields.parse("id:int, name:string, ts:long, value:double"));
+		Schema schema2 = new Schema("schema2", Fields.parse("id:int, name:string, ts:long, payload:string"));
+
+		TupleMRConfigBuilder builder = new TupleMRConfigBuilder();
+		builder.addIntermediateSchema(schema1);
+		if(schemas > 1) {
+			builder.addIntermediateSchema(schema2);
+		}
+		builder.setGroupByFields("id", "name");
+		OrderBy orderBy = new OrderBy().add("id", Order.ASC).add("name", Order.ASC);
+		if(schemas > 1) {
+			orderBy.addSchemaOrder(Order.ASC);
+			builder.setSpecificOrderBy("schema2", new OrderBy().add("payload", Order.DESC));
+		}
+		builder.setOrderBy(orderBy.add("ts", Order.DESC));
+		Configuration conf = new Configuration();
+		TupleSerialization.enableSerialization(conf);
+		TupleMRConfig.set(builder.buildConf(), conf);
+
+		sortComparator = new SortComparator();
+		sortComparator.setConf(conf);
+		groupComparator = new GroupComparator();
+		groupComparator.setConf(conf);
+		partitioner = new TupleHashPartitioner();
+		partitioner.setConf(conf);
+
+		ITuple[] tuples1 = SchemaShape.NARROW.tuples(schema1, TUPLES, 1);
+		ITuple[] tuples2 = SchemaShape.NARROW.tuples(schema2, TUPLES, 2);
+		HadoopSerialization ser = new HadoopSerialization(conf);
+		keys = new DatumWrapper[TUPLES];
+		serialized = new byte[TUPLES][];
+		DataOutputBuffer out = new DataOutputBuffer();
+		for(int i = 0; i < TUPLES; i++) {
+			keys[i] = new DatumWrapper<ITuple>((schemas > 1 && i % 2 == 1) ? tuples2[i] : tuples1[i]);
+			out.reset();
+			ser.ser(keys[i], out);
+			serialized[i] = new byte[out.getLength()];
+			System.arraycopy(out.getData(), 0, serialized[i], 0, out.getLength());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TUPLES)
+	public int sortCompare() {
+		int result = 0;
+		for(int i = 0; i < TUPLES; i++) {
+			byte[] b1 = serialized[i];
+			byte[] b2 = serialized[(i + 1) % TUPLES];
+			result += sortComparator.compare(b1, 0, b1.length, b2, 0, b2.length);
+		}
+		return result;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TUPLES)
+	public int groupCompare() {
+		int result = 0;
+		for(int i = 0; i < TUPLES; i++) {
+			byte[] b1 = serialized[i];
+			byte[] b2 = serialized[(i + 1) % TUPLES];
+			result += groupComparator.compare(b1, 0, b1.length, b2, 0, b2.length);
+		}
+		return result;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TUPLES)
+	public int partition() {
+		int result = 0;
+		for(int i = 0; i < TUPLES; i++) {
+			result += partitioner.getPartition(keys[i], NullWritable.get(), PARTITIONS);
+		}
+		return result;
+	}
+}
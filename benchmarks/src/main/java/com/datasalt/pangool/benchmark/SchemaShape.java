@@ -0,0 +1,152 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.io.Text;
+
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Schema.Field;
+import com.datasalt.pangool.io.Tuple;
+
+/**
+ * The Schema shapes used across the benchmarks, with a method for filling Tuples with random data.
+ */
+public enum SchemaShape {
+
+	/**
+	 * A few non-nullable primitive fields.
+	 */
+	NARROW {
+		@Override
+		public Schema schema() {
+			return new Schema("narrow", Fields.parse("id:int, name:string, ts:long, value:double"));
+		}
+	},
+	/**
+	 * Many non-nullable fields of all primitive types.
+	 */
+	WIDE {
+		@Override
+		public Schema schema() {
+			StringBuilder fields = new StringBuilder("id:int, name:string");
+			String[] types = new String[] { "int", "long", "float", "double", "boolean", "string" };
+			for(int i = 0; i < 30; i++) {
+				fields.append(", f").append(i).append(":").append(types[i % types.length]);
+			}
+			return new Schema("wide", Fields.parse(fields.toString()));
+		}
+	},
+	/**
+	 * Mostly nullable fields, half of them being null.
+	 */
+	NULLABLE {
+		@Override
+		public Schema schema() {
+			StringBuilder fields = new StringBuilder("id:int, name:string");
+			String[] types = new String[] { "int", "long", "double", "string" };
+			for(int i = 0; i < 20; i++) {
+				fields.append(", f").append(i).append(":").append(types[i % types.length]).append("?");
+			}
+			return new Schema("nullable", Fields.parse(fields.toString()));
+		}
+	},
+	/**
+	 * Primitive fields plus OBJECT fields, which go through Hadoop's serialization.
+	 */
+	OBJECT {
+		@Override
+		public Schema schema() {
+			List<Field> fields = new ArrayList<Field>(Fields.parse("id:int, name:string, ts:long"));
+			fields.add(Field.createObject("obj1", Text.class));
+			fields.add(Field.createObject("obj2", Text.class, true));
+			return new Schema("object", fields);
+		}
+	};
+
+	public abstract Schema schema();
+
+	/**
+	 * Creates the given number of Tuples with random values. "id" and "name" take values from a small domain so that
+	 * comparisons find equal prefixes.
+	 */
+	public ITuple[] tuples(Schema schema, int n, long seed) {
+		Random random = new Random(seed);
+		ITuple[] tuples = new ITuple[n];
+		for(int i = 0; i < n; i++) {
+			tuples[i] = new Tuple(schema);
+			fill(tuples[i], random);
+		}
+		return tuples;
+	}
+
+	static void fill(ITuple tuple, Random random) {
+		List<Field> fields = tuple.getSchema().getFields();
+		for(int i = 0; i < fields.size(); i++) {
+			Field field = fields.get(i);
+			if(field.isNullable() && random.nextBoolean()) {
+				tuple.set(i, null);
+				continue;
+			}
+			if(field.getName().equals("id")) {
+				tuple.set(i, random.nextInt(100));
+				continue;
+			}
+			if(field.getName().equals("name")) {
+				tuple.set(i, "name-" + random.nextInt(10));
+				continue;
+			}
+			switch(field.getType()) {
+			case INT:
+				tuple.set(i, random.nextInt());
+				break;
+			case LONG:
+				tuple.set(i, random.nextLong());
+				break;
+			case FLOAT:
+				tuple.set(i, random.nextFloat());
+				break;
+			case DOUBLE:
+				tuple.set(i, random.nextDouble());
+				break;
+			case BOOLEAN:
+				tuple.set(i, random.nextBoolean());
+				break;
+			case STRING:
+				tuple.set(i, randomString(random, 5 + random.nextInt(20)));
+				break;
+			case OBJECT:
+				tuple.set(i, new Text(randomString(random, 10 + random.nextInt(40))));
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported type " + field.getType());
+			}
+		}
+	}
+
+	static String randomString(Random random, int length) {
+		char[] chars = new char[length];
+		for(int i = 0; i < length; i++) {
+			chars[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(chars);
+	}
+}
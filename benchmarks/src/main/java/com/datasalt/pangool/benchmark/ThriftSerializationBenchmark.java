@@ -0,0 +1,141 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datasalt.pangool.serialization.HadoopSerialization;
+import com.datasalt.pangool.serialization.ThriftComparator;
+import com.datasalt.pangool.serialization.ThriftSerialization;
+import com.datasalt.pangool.thrift.test.A;
+import com.datasalt.pangool.tuplemr.mapred.SerializerComparator;
+
+/**
+ * Serialization and comparison of Thrift objects, as done for OBJECT fields: through {@link HadoopSerialization} with
+ * {@link ThriftSerialization}, and compared either with the default {@link SerializerComparator}, which serializes
+ * both sides, or with a {@link ThriftComparator}. Results are in operations per microsecond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThriftSerializationBenchmark {
+
+	static final int OBJECTS = 1024;
+
+	private HadoopSerialization ser;
+	private SerializerComparator serializerComparator;
+	private ThriftComparator<A> thriftComparator;
+	private A[] objects;
+	private byte[][] serialized;
+	private final DataOutputBuffer out = new DataOutputBuffer();
+	private final DataInputBuffer in = new DataInputBuffer();
+	private A reused = new A();
+
+	@Setup
+	public void setup() throws IOException {
+		Configuration conf = new Configuration();
+		ThriftSerialization.enableThriftSerialization(conf);
+		ser = new HadoopSerialization(conf);
+		serializerComparator = new SerializerComparator();
+		serializerComparator.setConf(conf);
+		thriftComparator = new ThriftComparator<A>(A.class);
+		thriftComparator.setConf(conf);
+
+		objects = new A[OBJECTS];
+		serialized = new byte[OBJECTS][];
+		for(int i = 0; i < OBJECTS; i++) {
+			// Few distinct ids, so comparisons often go past the first field
+			objects[i] = new A("id" + (i % 16), "http://www.example.com/" + i);
+			out.reset();
+			ser.ser(objects[i], out);
+			serialized[i] = new byte[out.getLength()];
+			System.arraycopy(out.getData(), 0, serialized[i], 0, out.getLength());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OBJECTS)
+	public int serialize() throws IOException {
+		int result = 0;
+		for(int i = 0; i < OBJECTS; i++) {
+			out.reset();
+			ser.ser(objects[i], out);
+			result += out.getLength();
+		}
+		return result;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OBJECTS)
+	public A deserialize() throws IOException {
+		for(int i = 0; i < OBJECTS; i++) {
+			in.reset(serialized[i], serialized[i].length);
+			reused = ser.deser(reused, in);
+		}
+		return reused;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OBJECTS)
+	public int compareObjectsSerializerComparator() {
+		int result = 0;
+		for(int i = 0; i < OBJECTS; i++) {
+			result += serializerComparator.compare(objects[i], objects[(i + 1) % OBJECTS]);
+		}
+		return result;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OBJECTS)
+	public int compareObjectsThriftComparator() {
+		int result = 0;
+		for(int i = 0; i < OBJECTS; i++) {
+			result += thriftComparator.compare(objects[i], objects[(i + 1) % OBJECTS]);
+		}
+		return result;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OBJECTS)
+	public int compareRawThriftComparator() {
+		int result = 0;
+		for(int i = 0; i < OBJECTS; i++) {
+			byte[] b1 = serialized[i];
+			byte[] b2 = serialized[(i + 1) % OBJECTS];
+			result += thriftComparator.compare(b1, 0, b1.length, b2, 0, b2.length);
+		}
+		return result;
+	}
+}
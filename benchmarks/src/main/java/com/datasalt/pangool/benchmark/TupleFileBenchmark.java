@@ -0,0 +1,132 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.io.TupleFile;
+
+/**
+ * {@link TupleFile} write and read throughput on the local file system, in Tuples per millisecond, for each codec.
+ * The codec parameter is "none" or the name of a {@link CompressionCodec} class. Codecs that need native libraries
+ * (i.e. Snappy) can be benchmarked by passing their class with "-p codec=...".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TupleFileBenchmark {
+
+	static final int TUPLES = 10000;
+
+	@Param({ "none", "org.apache.hadoop.io.compress.DefaultCodec", "org.apache.hadoop.io.compress.BZip2Codec" })
+	String codec;
+
+	@Param({ "NARROW", "WIDE" })
+	SchemaShape shape;
+
+	private Configuration conf;
+	private FileSystem fs;
+	private File folder;
+	private Schema schema;
+	private ITuple[] tuples;
+	private ITuple target;
+	private CompressionCodec compressionCodec;
+	private CompressionType compressionType;
+	private Path readFile;
+	private Path writeFile;
+
+	@Setup
+	public void setup() throws IOException, ClassNotFoundException {
+		conf = new Configuration();
+		fs = FileSystem.getLocal(conf);
+		folder = File.createTempFile(TupleFileBenchmark.class.getSimpleName(), "");
+		folder.delete();
+		folder.mkdirs();
+		schema = shape.schema();
+		tuples = shape.tuples(schema, TUPLES, 1);
+		target = new Tuple(schema);
+		if(codec.equals("none")) {
+			compressionType = CompressionType.NONE;
+			compressionCodec = new DefaultCodec();
+		} else {
+			compressionType = CompressionType.BLOCK;
+			compressionCodec = (CompressionCodec) ReflectionUtils.newInstance(conf.getClassByName(codec), conf);
+		}
+		readFile = new Path(folder.getAbsolutePath(), "read.tuples");
+		writeFile = new Path(folder.getAbsolutePath(), "write.tuples");
+		write(readFile);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		fs.delete(new Path(folder.getAbsolutePath()), true);
+	}
+
+	private long write(Path file) throws IOException {
+		TupleFile.Writer writer = new TupleFile.Writer(fs, conf, file, schema, compressionType, compressionCodec, null);
+		for(ITuple tuple : tuples) {
+			writer.append(tuple);
+		}
+		long length = writer.getLength();
+		writer.close();
+		return length;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TUPLES)
+	public long write() throws IOException {
+		return write(writeFile);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TUPLES)
+	public ITuple read() throws IOException {
+		TupleFile.Reader reader = new TupleFile.Reader(fs, conf, readFile);
+		while(reader.next(target)) {
+		}
+		reader.close();
+		return target;
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.serialization.HadoopSerialization;
+import com.datasalt.pangool.tuplemr.serialization.SimpleTupleDeserializer;
+import com.datasalt.pangool.tuplemr.serialization.SimpleTupleSerializer;
+
+/**
+ * {@link SimpleTupleSerializer} and {@link SimpleTupleDeserializer} throughput for each {@link SchemaShape}, in
+ * Tuples per microsecond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TupleSerializationBenchmark {
+
+	static final int TUPLES = 1024;
+
+	@Param({ "NARROW", "WIDE", "NULLABLE", "OBJECT" })
+	SchemaShape shape;
+
+	private ITuple[] tuples;
+	private ITuple target;
+	private DataOutputBuffer out;
+	private SimpleTupleSerializer serializer;
+	private DataInputBuffer in;
+	private SimpleTupleDeserializer deserializer;
+	private byte[] serialized;
+	private int serializedLength;
+
+	@Setup
+	public void setup() throws IOException {
+		Configuration conf = new Configuration();
+		HadoopSerialization ser = new HadoopSerialization(conf);
+		Schema schema = shape.schema();
+		tuples = shape.tuples(schema, TUPLES, 1);
+		target = new Tuple(schema);
+
+		out = new DataOutputBuffer();
+		serializer = new SimpleTupleSerializer(schema, ser, conf);
+		serializer.open(out);
+		serialize();
+		serializedLength = out.getLength();
+		serialized = Arrays.copyOf(out.getData(), serializedLength);
+
+		in = new DataInputBuffer();
+		deserializer = new SimpleTupleDeserializer(schema, ser, conf);
+		deserializer.open(in);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TUPLES)
+	public int serialize() throws IOException {
+		out.reset();
+		for(ITuple tuple : tuples) {
+			serializer.serialize(tuple);
+		}
+		return out.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TUPLES)
+	public ITuple deserialize() throws IOException {
+		in.reset(serialized, serializedLength);
+		for(int i = 0; i < TUPLES; i++) {
+			deserializer.deserialize(target);
+		}
+		return target;
+	}
+}
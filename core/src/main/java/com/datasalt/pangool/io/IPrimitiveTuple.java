@@ -0,0 +1,42 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+/**
+ * A {@link ITuple} with non-boxing accessors for INT, LONG, FLOAT, DOUBLE and BOOLEAN fields. Getters throw a
+ * NullPointerException if the field is null, so nullable fields must be checked first with {@link #isNull(int)}.
+ * <p>
+ * {@link Tuple}, {@link ViewTuple} and {@link PrimitiveTuple} implement it. Pangool's serialization, comparators,
+ * partitioner and {@link TupleBatch} use these accessors when the Tuples they are given implement this interface, and
+ * fall back to {@link ITuple#get(int)} and {@link ITuple#set(int, Object)} otherwise, through a
+ * {@link PrimitiveTupleAdapter}.
+ */
+public interface IPrimitiveTuple extends ITuple {
+
+	public boolean isNull(int pos);
+
+	public int getIntValue(int pos);
+	public long getLongValue(int pos);
+	public float getFloatValue(int pos);
+	public double getDoubleValue(int pos);
+	public boolean getBooleanValue(int pos);
+
+	public void setInt(int pos, int value);
+	public void setLong(int pos, long value);
+	public void setFloat(int pos, float value);
+	public void setDouble(int pos, double value);
+	public void setBoolean(int pos, boolean value);
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fixed size bit map used for serializing which nullable fields of a Tuple are null. Unlike {@link BitField}, the size
+ * is not part of the serialization: it is given by the number of nullable fields of the {@link Schema} (see
+ * {@link Schema#getNullableFieldsIdxArray()}), so the bit map always takes (size + 7) / 8 bytes and no continuation
+ * bits are needed.
+ * <br/>
+ * <strong>Internal in memory representation:</strong> bits are kept in an array of longs, bit i being the bit
+ * (i % 64) of the word (i / 64). Checking a bit is a single mask operation.
+ * <br/>
+ * <strong>Serialization:</strong> byte j contains the bits from 8 * j to 8 * j + 7, the less significant bit of the
+ * byte being the smaller position. That is, the words in little-endian order truncated to the needed bytes.
+ */
+public class NullBitmap {
+
+	private long[] words = new long[0];
+	private int size = 0;
+	private byte[] buffer = new byte[0];
+
+	public NullBitmap() {
+	}
+
+	public NullBitmap(int size) {
+		setSize(size);
+	}
+
+	/**
+	 * Sets the number of bits of the bit map, clearing all of them.
+	 */
+	public void setSize(int size) {
+		int numWords = (size + 63) >>> 6;
+		if(words.length < numWords) {
+			words = new long[numWords];
+			buffer = new byte[numWords << 3];
+		}
+		this.size = size;
+		clear();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Number of bytes used by the serialization of a bit map of the given size.
+	 */
+	public static int serializedSize(int size) {
+		return (size + 7) >>> 3;
+	}
+
+	public void set(int bit) {
+		words[bit >>> 6] |= 1L << bit;
+	}
+
+	public void unset(int bit) {
+		words[bit >>> 6] &= ~(1L << bit);
+	}
+
+	public boolean isSet(int bit) {
+		return (words[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Returns the position of the first bit set at or after the given one, or -1 if there is none.
+	 */
+	public int nextSetBit(int from) {
+		if(from >= size) {
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = words[w] & (-1L << from);
+		int numWords = (size + 63) >>> 6;
+		while(true) {
+			if(word != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if(++w == numWords) {
+				return -1;
+			}
+			word = words[w];
+		}
+	}
+
+	/**
+	 * Unsets all bits.
+	 */
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	/**
+	 * Writes {@link #serializedSize(int)} bytes.
+	 */
+	public void ser(DataOutput out) throws IOException {
+		int bytes = serializedSize(size);
+		for(int i = 0; i < bytes; i++) {
+			buffer[i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+		}
+		out.write(buffer, 0, bytes);
+	}
+
+	/**
+	 * Reads a bit map of the current size. Returns the number of bytes consumed.
+	 */
+	public int deser(DataInput in) throws IOException {
+		int bytes = serializedSize(size);
+		in.readFully(buffer, 0, bytes);
+		return deser(buffer, 0);
+	}
+
+	/**
+	 * Reads a bit map of the current size from a byte array. Returns the number of bytes consumed.
+	 */
+	public int deser(byte[] bytes, int start) {
+		int numBytes = serializedSize(size);
+		clear();
+		for(int i = 0; i < numBytes; i++) {
+			words[i >>> 3] |= (bytes[start + i] & 0xFFL) << ((i & 7) << 3);
+		}
+		return numBytes;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size);
+		for(int i = 0; i < size; i++) {
+			sb.append(isSet(i) ? '1' : '0');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,342 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+import java.io.Serializable;
+
+import org.apache.hadoop.io.Text;
+
+import com.datasalt.pangool.io.Schema.Field.Type;
+
+/**
+ * An {@link ITuple} that keeps INT, LONG, FLOAT, DOUBLE and BOOLEAN fields unboxed. Values set or read with the
+ * primitive accessors ({@link #setInt(int, int)}, {@link #getLongValue(int)}...) don't allocate any object. The
+ * generic {@link #get(int)} still works for every field, boxing primitive values on each call.
+ * <p>
+ * Unlike {@link Tuple}, values must match the type of the field: setting a Long to an INT field throws a
+ * {@link ClassCastException}. This is the Tuple used by the intermediate deserialization of Tuple MapReduce jobs.
+ */
+@SuppressWarnings("serial")
+public class PrimitiveTuple implements IPrimitiveTuple, Serializable {
+
+	private final Schema schema;
+	private final Type[] types;
+	// INT, LONG and BOOLEAN values as longs, FLOAT and DOUBLE values as their raw bits
+	private final long[] primitives;
+	// Values of the rest of the fields
+	private final Object[] objects;
+	// Only for primitive fields
+	private final boolean[] nulls;
+
+	public PrimitiveTuple(Schema schema) {
+		this.schema = schema;
+		int size = schema.getFields().size();
+		this.types = new Type[size];
+		for(int i = 0; i < size; i++) {
+			types[i] = schema.getField(i).getType();
+		}
+		this.primitives = new long[size];
+		this.objects = new Object[size];
+		this.nulls = new boolean[size];
+		clear();
+	}
+
+	private static boolean isPrimitive(Type type) {
+		switch(type) {
+		case INT:
+		case LONG:
+		case FLOAT:
+		case DOUBLE:
+		case BOOLEAN:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public void clear() {
+		for(int i = 0; i < types.length; i++) {
+			objects[i] = null;
+			nulls[i] = true;
+		}
+	}
+
+	@Override
+	public Object get(int pos) {
+		if(!isPrimitive(types[pos])) {
+			return objects[pos];
+		}
+		if(nulls[pos]) {
+			return null;
+		}
+		long bits = primitives[pos];
+		switch(types[pos]) {
+		case INT:
+			return (int) bits;
+		case LONG:
+			return bits;
+		case FLOAT:
+			return Float.intBitsToFloat((int) bits);
+		case DOUBLE:
+			return Double.longBitsToDouble(bits);
+		default:
+			return bits != 0;
+		}
+	}
+
+	@Override
+	public void set(int pos, Object object) {
+		Type type = types[pos];
+		if(!isPrimitive(type)) {
+			objects[pos] = object;
+			return;
+		}
+		if(object == null) {
+			nulls[pos] = true;
+			return;
+		}
+		switch(type) {
+		case INT:
+			setInt(pos, (Integer) object);
+			break;
+		case LONG:
+			setLong(pos, (Long) object);
+			break;
+		case FLOAT:
+			setFloat(pos, (Float) object);
+			break;
+		case DOUBLE:
+			setDouble(pos, (Double) object);
+			break;
+		default:
+			setBoolean(pos, (Boolean) object);
+		}
+	}
+
+	@Override
+	public Object get(String field) {
+		return get(pos(field));
+	}
+
+	@Override
+	public void set(String field, Object object) {
+		set(pos(field), object);
+	}
+
+	private int pos(String field) {
+		Integer pos = schema.getFieldPos(field);
+		if(pos == null) {
+			throw new IllegalArgumentException("Field '" + field + "' not present in schema " + schema);
+		}
+		return pos;
+	}
+
+	@Override
+	public boolean isNull(int pos) {
+		return isPrimitive(types[pos]) ? nulls[pos] : objects[pos] == null;
+	}
+
+	private long bits(int pos, Type type) {
+		if(types[pos] != type) {
+			throw new ClassCastException("Field '" + schema.getField(pos).getName() + "' is " + types[pos]
+			    + ", not " + type);
+		}
+		if(nulls[pos]) {
+			throw new NullPointerException("Field '" + schema.getField(pos).getName() + "' is null");
+		}
+		return primitives[pos];
+	}
+
+	private void setBits(int pos, Type type, long bits) {
+		if(types[pos] != type) {
+			throw new ClassCastException("Field '" + schema.getField(pos).getName() + "' is " + types[pos]
+			    + ", not " + type);
+		}
+		primitives[pos] = bits;
+		nulls[pos] = false;
+	}
+
+	@Override
+	public int getIntValue(int pos) {
+		return (int) bits(pos, Type.INT);
+	}
+
+	@Override
+	public long getLongValue(int pos) {
+		return bits(pos, Type.LONG);
+	}
+
+	@Override
+	public float getFloatValue(int pos) {
+		return Float.intBitsToFloat((int) bits(pos, Type.FLOAT));
+	}
+
+	@Override
+	public double getDoubleValue(int pos) {
+		return Double.longBitsToDouble(bits(pos, Type.DOUBLE));
+	}
+
+	@Override
+	public boolean getBooleanValue(int pos) {
+		return bits(pos, Type.BOOLEAN) != 0;
+	}
+
+	@Override
+	public void setInt(int pos, int value) {
+		setBits(pos, Type.INT, value);
+	}
+
+	@Override
+	public void setLong(int pos, long value) {
+		setBits(pos, Type.LONG, value);
+	}
+
+	@Override
+	public void setFloat(int pos, float value) {
+		setBits(pos, Type.FLOAT, Float.floatToRawIntBits(value));
+	}
+
+	@Override
+	public void setDouble(int pos, double value) {
+		setBits(pos, Type.DOUBLE, Double.doubleToRawLongBits(value));
+	}
+
+	@Override
+	public void setBoolean(int pos, boolean value) {
+		setBits(pos, Type.BOOLEAN, value ? 1 : 0);
+	}
+
+	@Override
+	public Integer getInteger(int pos) {
+		return (Integer) get(pos);
+	}
+
+	@Override
+	public Integer getInteger(String field) {
+		return (Integer) get(field);
+	}
+
+	@Override
+	public Long getLong(int pos) {
+		return (Long) get(pos);
+	}
+
+	@Override
+	public Long getLong(String field) {
+		return (Long) get(field);
+	}
+
+	@Override
+	public Float getFloat(int pos) {
+		return (Float) get(pos);
+	}
+
+	@Override
+	public Float getFloat(String field) {
+		return (Float) get(field);
+	}
+
+	@Override
+	public Double getDouble(int pos) {
+		return (Double) get(pos);
+	}
+
+	@Override
+	public Double getDouble(String field) {
+		return (Double) get(field);
+	}
+
+	@Override
+	public Boolean getBoolean(int pos) {
+		return (Boolean) get(pos);
+	}
+
+	@Override
+	public Boolean getBoolean(String field) {
+		return (Boolean) get(field);
+	}
+
+	@Override
+	public String getString(int pos) {
+		Object obj = get(pos);
+		return obj == null ? null : obj.toString();
+	}
+
+	@Override
+	public String getString(String field) {
+		Object obj = get(field);
+		return obj == null ? null : obj.toString();
+	}
+
+	/**
+	 * Same semantics as {@link Tuple#equals(Object)}. Primitive fields are compared without boxing when the other
+	 * Tuple is a PrimitiveTuple too.
+	 */
+	@Override
+	public boolean equals(Object that) {
+		if(!(that instanceof ITuple)) {
+			return false;
+		}
+		ITuple other = (ITuple) that;
+		if(!schema.equals(other.getSchema())) {
+			return false;
+		}
+		for(int i = 0; i < types.length; i++) {
+			if(other instanceof PrimitiveTuple && isPrimitive(types[i])) {
+				PrimitiveTuple p = (PrimitiveTuple) other;
+				if(nulls[i] != p.nulls[i] || (!nulls[i] && primitives[i] != p.primitives[i])) {
+					return false;
+				}
+				continue;
+			}
+			Object o1 = get(i);
+			Object o2 = other.get(i);
+			if(o1 == null) {
+				if(o2 != null) {
+					return false;
+				}
+			} else {
+				if(o1 instanceof Text) {
+					o1 = o1.toString();
+				}
+				if(o2 instanceof Text) {
+					o2 = o2.toString();
+				}
+				if(!o1.equals(o2)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		assert false : "hashCode not designed";
+		return 42; // same as Tuple
+	}
+
+	@Override
+	public String toString() {
+		return Tuple.toString(this);
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+/**
+ * Gives the accessors of {@link IPrimitiveTuple} to any {@link ITuple}, boxing and unboxing the values through
+ * {@link ITuple#get(int)} and {@link ITuple#set(int, Object)}. A Tuple that already implements IPrimitiveTuple is
+ * returned as is by {@link #adapt(ITuple)}, so the adapter costs nothing for Pangool's own Tuples:
+ * 
+ * <pre>
+ * IPrimitiveTuple primitive = adapter.adapt(tuple);
+ * int count = primitive.getIntValue(0);
+ * </pre>
+ * 
+ * The adapter is reused by every call to adapt(), so it can only wrap one Tuple at a time.
+ */
+public class PrimitiveTupleAdapter implements IPrimitiveTuple {
+
+	private ITuple tuple;
+
+	/**
+	 * The given Tuple if it implements {@link IPrimitiveTuple}, or this adapter wrapping it otherwise.
+	 */
+	public IPrimitiveTuple adapt(ITuple tuple) {
+		if(tuple instanceof IPrimitiveTuple) {
+			return (IPrimitiveTuple) tuple;
+		}
+		this.tuple = tuple;
+		return this;
+	}
+
+	@Override
+	public Schema getSchema() {
+		return tuple.getSchema();
+	}
+
+	@Override
+	public void clear() {
+		tuple.clear();
+	}
+
+	@Override
+	public Object get(int pos) {
+		return tuple.get(pos);
+	}
+
+	@Override
+	public Object get(String field) {
+		return tuple.get(field);
+	}
+
+	@Override
+	public Integer getInteger(int pos) {
+		return tuple.getInteger(pos);
+	}
+
+	@Override
+	public Integer getInteger(String field) {
+		return tuple.getInteger(field);
+	}
+
+	@Override
+	public Long getLong(int pos) {
+		return tuple.getLong(pos);
+	}
+
+	@Override
+	public Long getLong(String field) {
+		return tuple.getLong(field);
+	}
+
+	@Override
+	public Float getFloat(int pos) {
+		return tuple.getFloat(pos);
+	}
+
+	@Override
+	public Float getFloat(String field) {
+		return tuple.getFloat(field);
+	}
+
+	@Override
+	public Double getDouble(int pos) {
+		return tuple.getDouble(pos);
+	}
+
+	@Override
+	public Double getDouble(String field) {
+		return tuple.getDouble(field);
+	}
+
+	@Override
+	public Boolean getBoolean(int pos) {
+		return tuple.getBoolean(pos);
+	}
+
+	@Override
+	public Boolean getBoolean(String field) {
+		return tuple.getBoolean(field);
+	}
+
+	@Override
+	public String getString(int pos) {
+		return tuple.getString(pos);
+	}
+
+	@Override
+	public String getString(String field) {
+		return tuple.getString(field);
+	}
+
+	@Override
+	public void set(int pos, Object object) {
+		tuple.set(pos, object);
+	}
+
+	@Override
+	public void set(String field, Object object) {
+		tuple.set(field, object);
+	}
+
+	@Override
+	public boolean isNull(int pos) {
+		return tuple.get(pos) == null;
+	}
+
+	@Override
+	public int getIntValue(int pos) {
+		return (Integer) tuple.get(pos);
+	}
+
+	@Override
+	public long getLongValue(int pos) {
+		return (Long) tuple.get(pos);
+	}
+
+	@Override
+	public float getFloatValue(int pos) {
+		return (Float) tuple.get(pos);
+	}
+
+	@Override
+	public double getDoubleValue(int pos) {
+		return (Double) tuple.get(pos);
+	}
+
+	@Override
+	public boolean getBooleanValue(int pos) {
+		return (Boolean) tuple.get(pos);
+	}
+
+	@Override
+	public void setInt(int pos, int value) {
+		tuple.set(pos, value);
+	}
+
+	@Override
+	public void setLong(int pos, long value) {
+		tuple.set(pos, value);
+	}
+
+	@Override
+	public void setFloat(int pos, float value) {
+		tuple.set(pos, value);
+	}
+
+	@Override
+	public void setDouble(int pos, double value) {
+		tuple.set(pos, value);
+	}
+
+	@Override
+	public void setBoolean(int pos, boolean value) {
+		tuple.set(pos, value);
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(tuple);
+	}
+}
@@ -649,6 +649,7 @@ public class Schema implements Serializable {
 
 	private final Map<String, Integer> indexByFieldName;
 	private final List<Integer> nullableFields;
+	private final int[] nullableFieldsIdx;
 	// It is true that for a given i, indexByNullablePosition[nullableFields.get(i)] == i
 	private final int[] nullablePositionByIndex;
 
@@ -677,6 +678,10 @@ public class Schema implements Serializable {
 		}
 		this.indexByFieldName = Collections.unmodifiableMap(indexByFieldName);
 		this.nullableFields = Collections.unmodifiableList(nullableFields);
+		this.nullableFieldsIdx = new int[nullableFields.size()];
+		for(int i = 0; i < nullableFieldsIdx.length; i++) {
+			nullableFieldsIdx[i] = nullableFields.get(i);
+		}
 	}
 
 	public List<Field> getFields() {
@@ -711,6 +716,14 @@ public class Schema implements Serializable {
 		return nullableFields;
 	}
 
+	/**
+	 * Same as {@link #getNullableFieldsIdx()} but without boxing, for the serialization hot paths. The returned array
+	 * must not be modified.
+	 */
+	public int[] getNullableFieldsIdxArray() {
+		return nullableFieldsIdx;
+	}
+
 	/**
 	 * @return true if this schema contains at least one field that is nullable. False otherwise.
 	 */
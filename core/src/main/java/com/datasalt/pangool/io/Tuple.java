@@ -28,7 +28,7 @@ import java.util.Map;
  * This is the basic implementation of {@link ITuple}.
  */
 @SuppressWarnings("serial")
-public class Tuple implements ITuple, Serializable, Cloneable {
+public class Tuple implements IPrimitiveTuple, Serializable, Cloneable {
 
   private Object[] array;
   private Schema schema;
@@ -262,51 +262,57 @@ public class Tuple implements ITuple, Serializable, Cloneable {
         continue;
       }
 
-      if (customClonators != null && customClonators.containsKey(field.getName())) {
-        // There is a custom clonator
-        newTuple.set(i, customClonators.get(field.getName()).giveMeACopy(value));
-        continue;
-      }
-
-      switch (field.getType()) {
-        case BYTES:
-          if (value instanceof ByteBuffer) {
-            newTuple.set(i, cloneByteBuffer((ByteBuffer) value));
-          } else if (value instanceof byte[]) {
-            newTuple.set(i, Arrays.copyOf((byte[]) value, ((byte[]) value).length));
-          } else {
-            throw new IllegalArgumentException("Field " + field.getName() + " of type " + field.getType()
-                + " cannot contains values of class " + value.getClass().getCanonicalName());
-          }
-          break;
-        case OBJECT:
-          if (value instanceof ITuple) {
-            throw new IDontKnowHowToCopyThisStuff("Tuples inside tuples requires a custom FieldClonator" +
-                "to perform the copy. Please, provide a custom FieldClonator for field " + field.getName()
-                + ". It usually is as simple as create one that calls the deepCopy method for the " +
-                "inner tuple");
-          } else {
-            throw new IDontKnowHowToCopyThisStuff("I don't know how to copy the field " + field.getName()
-                + " with type " + value.getClass().getCanonicalName() + ". Please, provide a custom " +
-                "FieldClonator for this field in order to be able to perform deep copies");
-          }
-        case STRING:
-          if (value instanceof String) {
-            newTuple.set(i, tuple.get(i));
-          } else if (value instanceof Utf8 || value instanceof Text) {
-            newTuple.set(i, new Utf8(value.toString()));
-          } else {
-            throw new IllegalArgumentException("Field " + field.getName() + " of type " + field.getType()
-                + " cannot contains values of class " + value.getClass().getCanonicalName());
-          }
-          break;
-        default:
-          newTuple.set(i, tuple.get(i));
-      }
+      FieldClonator clonator = (customClonators == null) ? null : customClonators.get(field.getName());
+      newTuple.set(i, copyValue(field, value, clonator));
     }
     return newTuple;
   }
 
+  /**
+   * Copy of a non null value of the given field, following the rules of {@link #deepCopy(ITuple, java.util.Map)}.
+   * The clonator may be null.
+   */
+  static Object copyValue(Field field, Object value, FieldClonator clonator) {
+    if (clonator != null) {
+      // There is a custom clonator
+      return clonator.giveMeACopy(value);
+    }
+
+    switch (field.getType()) {
+      case BYTES:
+        if (value instanceof ByteBuffer) {
+          return cloneByteBuffer((ByteBuffer) value);
+        } else if (value instanceof byte[]) {
+          return Arrays.copyOf((byte[]) value, ((byte[]) value).length);
+        } else {
+          throw new IllegalArgumentException("Field " + field.getName() + " of type " + field.getType()
+              + " cannot contains values of class " + value.getClass().getCanonicalName());
+        }
+      case OBJECT:
+        if (value instanceof ITuple) {
+          throw new IDontKnowHowToCopyThisStuff("Tuples inside tuples requires a custom FieldClonator" +
+              "to perform the copy. Please, provide a custom FieldClonator for field " + field.getName()
+              + ". It usually is as simple as create one that calls the deepCopy method for the " +
+              "inner tuple");
+        } else {
+          throw new IDontKnowHowToCopyThisStuff("I don't know how to copy the field " + field.getName()
+              + " with type " + value.getClass().getCanonicalName() + ". Please, provide a custom " +
+              "FieldClonator for this field in order to be able to perform deep copies");
+        }
+      case STRING:
+        if (value instanceof String) {
+          return value;
+        } else if (value instanceof Utf8 || value instanceof Text) {
+          return new Utf8(value.toString());
+        } else {
+          throw new IllegalArgumentException("Field " + field.getName() + " of type " + field.getType()
+              + " cannot contains values of class " + value.getClass().getCanonicalName());
+        }
+      default:
+        return value;
+    }
+  }
+
   /**
    * Thrown by {@link #deepCopy(ITuple, java.util.Map)} in the case of field
    * of a type that Pangool doesn't know how to copy it. In this case,
@@ -388,4 +394,59 @@ public class Tuple implements ITuple, Serializable, Cloneable {
 		Object obj = get(field);
 		return obj == null ? null : obj.toString();
 	}
+
+	@Override
+	public boolean isNull(int pos) {
+		return array[pos] == null;
+	}
+
+	@Override
+	public int getIntValue(int pos) {
+		return (Integer) array[pos];
+	}
+
+	@Override
+	public long getLongValue(int pos) {
+		return (Long) array[pos];
+	}
+
+	@Override
+	public float getFloatValue(int pos) {
+		return (Float) array[pos];
+	}
+
+	@Override
+	public double getDoubleValue(int pos) {
+		return (Double) array[pos];
+	}
+
+	@Override
+	public boolean getBooleanValue(int pos) {
+		return (Boolean) array[pos];
+	}
+
+	@Override
+	public void setInt(int pos, int value) {
+		array[pos] = value;
+	}
+
+	@Override
+	public void setLong(int pos, long value) {
+		array[pos] = value;
+	}
+
+	@Override
+	public void setFloat(int pos, float value) {
+		array[pos] = value;
+	}
+
+	@Override
+	public void setDouble(int pos, double value) {
+		array[pos] = value;
+	}
+
+	@Override
+	public void setBoolean(int pos, boolean value) {
+		array[pos] = value;
+	}
 }
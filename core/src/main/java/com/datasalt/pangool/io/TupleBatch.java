@@ -0,0 +1,349 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.datasalt.pangool.io.Schema.Field;
+import com.datasalt.pangool.io.Schema.Field.Type;
+
+/**
+ * A column oriented batch of Tuples of the same {@link Schema}. INT, LONG, FLOAT, DOUBLE and BOOLEAN fields are kept
+ * in primitive arrays, one per field, that can be processed with plain loops:
+ *
+ * <pre>
+ * double[] prices = batch.getDoubleColumn(&quot;price&quot;);
+ * for(int i = 0; i &lt; batch.size(); i++) {
+ * 	total += prices[i];
+ * }
+ * </pre>
+ *
+ * The rest of the fields are kept in Object arrays. Columns are as long as the capacity of the batch, only the first
+ * {@link #size()} positions are valid.
+ * <p>
+ * {@link #add(ITuple)} copies the values of the given Tuple, so the batch can be filled with Tuples that are reused,
+ * like the ones given to reducers. Non primitive values are copied following the rules of
+ * {@link Tuple#deepCopy(ITuple, Map)}: OBJECT fields need a {@link FieldClonator}. Batches can also be filled
+ * directly through the column arrays and {@link #setSize(int)}, for example in a mapper that emits them with
+ * {@link com.datasalt.pangool.tuplemr.TupleMapper.Collector#write(TupleBatch)}.
+ */
+public class TupleBatch {
+
+	public final static int DEFAULT_CAPACITY = 1024;
+
+	private final Schema schema;
+	private final Type[] types;
+	private final int capacity;
+	// int[], long[], float[], double[], boolean[] or Object[] per field
+	private final Object[] columns;
+	// Only for nullable fields
+	private final boolean[][] nulls;
+	private final FieldClonator[] clonators;
+	private int size = 0;
+	private PrimitiveTuple row;
+	// For Tuples that don't implement IPrimitiveTuple
+	private final PrimitiveTupleAdapter adapter = new PrimitiveTupleAdapter();
+
+	public TupleBatch(Schema schema) {
+		this(schema, DEFAULT_CAPACITY, null);
+	}
+
+	/**
+	 * The custom clonators, indexed by field name, may be null.
+	 */
+	public TupleBatch(Schema schema, int capacity, Map<String, FieldClonator> customClonators) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Invalid batch capacity: " + capacity);
+		}
+		this.schema = schema;
+		this.capacity = capacity;
+		int numFields = schema.getFields().size();
+		this.types = new Type[numFields];
+		this.columns = new Object[numFields];
+		this.nulls = new boolean[numFields][];
+		this.clonators = new FieldClonator[numFields];
+		for(int i = 0; i < numFields; i++) {
+			Field field = schema.getField(i);
+			types[i] = field.getType();
+			switch(types[i]) {
+			case INT:
+				columns[i] = new int[capacity];
+				break;
+			case LONG:
+				columns[i] = new long[capacity];
+				break;
+			case FLOAT:
+				columns[i] = new float[capacity];
+				break;
+			case DOUBLE:
+				columns[i] = new double[capacity];
+				break;
+			case BOOLEAN:
+				columns[i] = new boolean[capacity];
+				break;
+			default:
+				columns[i] = new Object[capacity];
+			}
+			if(field.isNullable()) {
+				nulls[i] = new boolean[capacity];
+			}
+			if(customClonators != null) {
+				clonators[i] = customClonators.get(field.getName());
+			}
+		}
+	}
+
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * The number of Tuples in the batch.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sets the number of Tuples in the batch, when filled directly through the column arrays.
+	 */
+	public void setSize(int size) {
+		if(size < 0 || size > capacity) {
+			throw new IllegalArgumentException("Invalid size " + size + " for a batch of capacity " + capacity);
+		}
+		this.size = size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public boolean isFull() {
+		return size == capacity;
+	}
+
+	/**
+	 * Empties the batch. References to the non primitive values are released.
+	 */
+	public void clear() {
+		for(int i = 0; i < columns.length; i++) {
+			if(columns[i] instanceof Object[]) {
+				Arrays.fill((Object[]) columns[i], 0, size, null);
+			}
+			if(nulls[i] != null) {
+				Arrays.fill(nulls[i], 0, size, false);
+			}
+		}
+		size = 0;
+	}
+
+	/**
+	 * Appends a copy of the values of the given Tuple, which must have the Schema of the batch.
+	 */
+	public void add(ITuple from) {
+		if(size == capacity) {
+			throw new IllegalStateException("Batch is full: " + capacity + " Tuples");
+		}
+		IPrimitiveTuple tuple = adapter.adapt(from);
+		for(int i = 0; i < types.length; i++) {
+			if(tuple.isNull(i)) {
+				if(nulls[i] == null) {
+					throw new IllegalArgumentException("Field '" + schema.getField(i).getName()
+					    + "' is not nullable, but the Tuple has a null value: " + tuple);
+				}
+				nulls[i][size] = true;
+				continue;
+			} else if(nulls[i] != null) {
+				nulls[i][size] = false;
+			}
+			switch(types[i]) {
+			case INT:
+				((int[]) columns[i])[size] = tuple.getIntValue(i);
+				break;
+			case LONG:
+				((long[]) columns[i])[size] = tuple.getLongValue(i);
+				break;
+			case FLOAT:
+				((float[]) columns[i])[size] = tuple.getFloatValue(i);
+				break;
+			case DOUBLE:
+				((double[]) columns[i])[size] = tuple.getDoubleValue(i);
+				break;
+			case BOOLEAN:
+				((boolean[]) columns[i])[size] = tuple.getBooleanValue(i);
+				break;
+			default:
+				((Object[]) columns[i])[size] = Tuple.copyValue(schema.getField(i), tuple.get(i), clonators[i]);
+			}
+		}
+		size++;
+	}
+
+	private Object column(int pos, Type type) {
+		if(types[pos] != type) {
+			throw new ClassCastException("Field '" + schema.getField(pos).getName() + "' is " + types[pos] + ", not "
+			    + type);
+		}
+		return columns[pos];
+	}
+
+	private int pos(String field) {
+		Integer pos = schema.getFieldPos(field);
+		if(pos == null) {
+			throw new IllegalArgumentException("Field '" + field + "' not present in schema " + schema);
+		}
+		return pos;
+	}
+
+	public int[] getIntColumn(int pos) {
+		return (int[]) column(pos, Type.INT);
+	}
+
+	public int[] getIntColumn(String field) {
+		return getIntColumn(pos(field));
+	}
+
+	public long[] getLongColumn(int pos) {
+		return (long[]) column(pos, Type.LONG);
+	}
+
+	public long[] getLongColumn(String field) {
+		return getLongColumn(pos(field));
+	}
+
+	public float[] getFloatColumn(int pos) {
+		return (float[]) column(pos, Type.FLOAT);
+	}
+
+	public float[] getFloatColumn(String field) {
+		return getFloatColumn(pos(field));
+	}
+
+	public double[] getDoubleColumn(int pos) {
+		return (double[]) column(pos, Type.DOUBLE);
+	}
+
+	public double[] getDoubleColumn(String field) {
+		return getDoubleColumn(pos(field));
+	}
+
+	public boolean[] getBooleanColumn(int pos) {
+		return (boolean[]) column(pos, Type.BOOLEAN);
+	}
+
+	public boolean[] getBooleanColumn(String field) {
+		return getBooleanColumn(pos(field));
+	}
+
+	/**
+	 * The column of a STRING, BYTES, ENUM or OBJECT field.
+	 */
+	public Object[] getObjectColumn(int pos) {
+		if(!(columns[pos] instanceof Object[])) {
+			throw new ClassCastException("Field '" + schema.getField(pos).getName() + "' is " + types[pos]
+			    + ", use the primitive column");
+		}
+		return (Object[]) columns[pos];
+	}
+
+	public Object[] getObjectColumn(String field) {
+		return getObjectColumn(pos(field));
+	}
+
+	/**
+	 * The null flags of a nullable field, or null if the field is not nullable.
+	 */
+	public boolean[] getNullsColumn(int pos) {
+		return nulls[pos];
+	}
+
+	public boolean isNull(int row, int pos) {
+		return nulls[pos] != null && nulls[pos][row];
+	}
+
+	/**
+	 * Generic access to a value, boxing primitive ones.
+	 */
+	public Object get(int row, int pos) {
+		if(isNull(row, pos)) {
+			return null;
+		}
+		Object column = columns[pos];
+		switch(types[pos]) {
+		case INT:
+			return ((int[]) column)[row];
+		case LONG:
+			return ((long[]) column)[row];
+		case FLOAT:
+			return ((float[]) column)[row];
+		case DOUBLE:
+			return ((double[]) column)[row];
+		case BOOLEAN:
+			return ((boolean[]) column)[row];
+		default:
+			return ((Object[]) column)[row];
+		}
+	}
+
+	/**
+	 * Sets the values of the given row into the Tuple, without boxing primitive ones.
+	 */
+	public void get(int row, ITuple to) {
+		IPrimitiveTuple tuple = adapter.adapt(to);
+		for(int i = 0; i < types.length; i++) {
+			if(isNull(row, i)) {
+				tuple.set(i, null);
+				continue;
+			}
+			Object column = columns[i];
+			switch(types[i]) {
+			case INT:
+				tuple.setInt(i, ((int[]) column)[row]);
+				break;
+			case LONG:
+				tuple.setLong(i, ((long[]) column)[row]);
+				break;
+			case FLOAT:
+				tuple.setFloat(i, ((float[]) column)[row]);
+				break;
+			case DOUBLE:
+				tuple.setDouble(i, ((double[]) column)[row]);
+				break;
+			case BOOLEAN:
+				tuple.setBoolean(i, ((boolean[]) column)[row]);
+				break;
+			default:
+				tuple.set(i, ((Object[]) column)[row]);
+			}
+		}
+	}
+
+	/**
+	 * A Tuple with the values of the given row. The same instance is returned by every call, so it is only valid until
+	 * the next one.
+	 */
+	public IPrimitiveTuple getRow(int row) {
+		if(row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row " + row + " of a batch of size " + size);
+		}
+		if(this.row == null) {
+			this.row = new PrimitiveTuple(schema);
+		}
+		get(row, this.row);
+		return this.row;
+	}
+}
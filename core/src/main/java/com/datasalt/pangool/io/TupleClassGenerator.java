@@ -0,0 +1,288 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+
+import com.datasalt.pangool.io.Schema.Field;
+
+/**
+ * Generates the Java source of a typed {@link ITuple} for a {@link Schema}. The generated class extends
+ * {@link PrimitiveTuple} and adds a constant with the position of each field and named getters and setters that go
+ * straight to that position: no field name lookups and no boxing of INT, LONG, FLOAT, DOUBLE and BOOLEAN values. For
+ * a field "userId" of type LONG it generates:
+ *
+ * <pre>
+ * public static final int POS_USER_ID = 0;
+ * public long getUserId()
+ * public void setUserId(long value)
+ * </pre>
+ *
+ * Nullable fields also get isXNull() and setXNull() methods. STRING fields get a String getter and a getXText() one
+ * that doesn't convert the deserialized {@link Utf8}. Schemas with fields that would give the same names, like
+ * "user_id" and "userId", are rejected with an {@link IllegalArgumentException}. As generated classes are regular
+ * {@link ITuple}s they can be emitted by mappers, read from {@link TupleFile}s with
+ * {@link TupleFile.Reader#next(ITuple)} and serialized by the standard Tuple serialization, which already accesses
+ * fields by position through the primitive accessors.
+ * <p>
+ * It can be run from the build, for example with the exec-maven-plugin in the generate-sources phase:
+ *
+ * <pre>
+ * TupleClassGenerator &lt;schema json file&gt; &lt;fully qualified class name&gt; &lt;source folder&gt;
+ * </pre>
+ */
+public class TupleClassGenerator {
+
+	// Names that can't be used for generated methods because PrimitiveTuple already has them with no parameters
+	private final static Set<String> RESERVED_METHODS = new HashSet<String>();
+
+	static {
+		for(Method method : PrimitiveTuple.class.getMethods()) {
+			if(method.getParameterTypes().length == 0) {
+				RESERVED_METHODS.add(method.getName());
+			}
+		}
+	}
+
+	/**
+	 * Returns the source of a typed Tuple class for the given Schema. The package name may be null.
+	 * 
+	 * @throws IllegalArgumentException
+	 *           if two fields would generate the same constant or accessors.
+	 */
+	public static String generate(Schema schema, String packageName, String className) {
+		checkNames(schema);
+		StringBuilder sb = new StringBuilder();
+		if(packageName != null && !packageName.isEmpty()) {
+			sb.append("package ").append(packageName).append(";\n\n");
+		}
+		sb.append("/**\n");
+		sb.append(" * Typed Tuple for the Pangool schema \"").append(schema.getName()).append("\".\n");
+		sb.append(" * Generated by ").append(TupleClassGenerator.class.getName()).append(": don't edit.\n");
+		sb.append(" */\n");
+		sb.append("@SuppressWarnings(\"serial\")\n");
+		sb.append("public class ").append(className).append(" extends ").append(PrimitiveTuple.class.getName())
+		    .append(" {\n\n");
+		sb.append("\tpublic static final ").append(Schema.class.getName()).append(" SCHEMA = ")
+		    .append(Schema.class.getName()).append(".parse(").append(literal(schema.toString(false))).append(");\n\n");
+
+		for(int i = 0; i < schema.getFields().size(); i++) {
+			sb.append("\tpublic static final int ").append(posConstant(schema.getField(i))).append(" = ").append(i)
+			    .append(";\n");
+		}
+		sb.append("\n\tpublic ").append(className).append("() {\n\t\tsuper(SCHEMA);\n\t}\n");
+
+		for(Field field : schema.getFields()) {
+			appendAccessors(sb, field);
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private static void appendAccessors(StringBuilder sb, Field field) {
+		String pos = posConstant(field);
+		String name = methodSuffix(field);
+		switch(field.getType()) {
+		case INT:
+			appendPrimitive(sb, "int", "Int", name, pos);
+			break;
+		case LONG:
+			appendPrimitive(sb, "long", "Long", name, pos);
+			break;
+		case FLOAT:
+			appendPrimitive(sb, "float", "Float", name, pos);
+			break;
+		case DOUBLE:
+			appendPrimitive(sb, "double", "Double", name, pos);
+			break;
+		case BOOLEAN:
+			appendPrimitive(sb, "boolean", "Boolean", name, pos);
+			break;
+		case STRING:
+			appendGetter(sb, "String", name, "getString(" + pos + ")");
+			sb.append("\n\t/** The value as it is stored, without converting the deserialized Utf8. */\n");
+			appendGetter(sb, "org.apache.hadoop.io.Text", name + "Text", "get(" + pos
+			    + ") instanceof org.apache.hadoop.io.Text ? (org.apache.hadoop.io.Text) get(" + pos + ") : (get(" + pos
+			    + ") == null ? null : new " + Utf8.class.getName() + "(get(" + pos + ").toString()))");
+			appendSetter(sb, "String", name, pos);
+			appendSetter(sb, "org.apache.hadoop.io.Text", name, pos);
+			break;
+		case BYTES:
+			appendGetter(sb, "java.nio.ByteBuffer", name, "get(" + pos
+			    + ") instanceof byte[] ? java.nio.ByteBuffer.wrap((byte[]) get(" + pos + ")) : (java.nio.ByteBuffer) get("
+			    + pos + ")");
+			appendSetter(sb, "java.nio.ByteBuffer", name, pos);
+			appendSetter(sb, "byte[]", name, pos);
+			break;
+		default:
+			// ENUM and OBJECT
+			String type = className(field.getObjectClass());
+			appendGetter(sb, type, name, "(" + type + ") get(" + pos + ")");
+			appendSetter(sb, type, name, pos);
+		}
+		if(field.isNullable()) {
+			sb.append("\n\tpublic boolean is").append(name).append("Null() {\n\t\treturn isNull(").append(pos)
+			    .append(");\n\t}\n");
+			sb.append("\n\tpublic void set").append(name).append("Null() {\n\t\tset(").append(pos)
+			    .append(", null);\n\t}\n");
+		}
+	}
+
+	private static void appendPrimitive(StringBuilder sb, String type, String accessor, String name, String pos) {
+		appendGetter(sb, type, name, "get" + accessor + "Value(" + pos + ")");
+		sb.append("\n\tpublic void set").append(name).append("(").append(type).append(" value) {\n\t\tset")
+		    .append(accessor).append("(").append(pos).append(", value);\n\t}\n");
+	}
+
+	private static void appendGetter(StringBuilder sb, String type, String name, String expression) {
+		String prefix = type.equals("boolean") ? "is" : "get";
+		sb.append("\n\tpublic ").append(type).append(" ").append(prefix).append(name).append("() {\n\t\treturn ")
+		    .append(expression).append(";\n\t}\n");
+	}
+
+	private static void appendSetter(StringBuilder sb, String type, String name, String pos) {
+		sb.append("\n\tpublic void set").append(name).append("(").append(type).append(" value) {\n\t\tset(")
+		    .append(pos).append(", value);\n\t}\n");
+	}
+
+	/**
+	 * Fails if two fields map to the same position constant or accessor names.
+	 */
+	static void checkNames(Schema schema) {
+		Map<String, Field> constants = new HashMap<String, Field>();
+		Map<String, Field> accessors = new HashMap<String, Field>();
+		for(Field field : schema.getFields()) {
+			checkName(constants, posConstant(field), field);
+			String name = methodSuffix(field);
+			checkName(accessors, name, field);
+			if(field.getType() == Field.Type.STRING) {
+				checkName(accessors, name + "Text", field);
+			}
+			if(field.isNullable()) {
+				checkName(accessors, name + "Null", field);
+			}
+		}
+	}
+
+	private static void checkName(Map<String, Field> names, String name, Field field) {
+		Field previous = names.put(name, field);
+		if(previous != null && previous != field) {
+			throw new IllegalArgumentException("Fields '" + previous.getName() + "' and '" + field.getName()
+			    + "' can't be both in a generated Tuple: they both map to '" + name + "'");
+		}
+	}
+
+	/**
+	 * "userId" gives "POS_USER_ID".
+	 */
+	static String posConstant(Field field) {
+		String name = identifier(field.getName());
+		StringBuilder sb = new StringBuilder("POS_");
+		for(int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if(Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(name.charAt(i - 1))
+			    && name.charAt(i - 1) != '_') {
+				sb.append('_');
+			}
+			sb.append(Character.toUpperCase(c));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * "userId" gives "UserId", used as getUserId(). Names that would collide with the methods of
+	 * {@link PrimitiveTuple}, like "schema" and getSchema(), get a "Field" suffix.
+	 */
+	static String methodSuffix(Field field) {
+		String name = identifier(field.getName());
+		String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		if(RESERVED_METHODS.contains("get" + suffix) || RESERVED_METHODS.contains("is" + suffix)) {
+			suffix += "Field";
+		}
+		return suffix;
+	}
+
+	private static String identifier(String name) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			sb.append((i == 0 ? Character.isJavaIdentifierStart(c) : Character.isJavaIdentifierPart(c)) ? c : '_');
+		}
+		return sb.toString();
+	}
+
+	private static String className(Class<?> clazz) {
+		return clazz.getCanonicalName() != null ? clazz.getCanonicalName() : clazz.getName().replace('$', '.');
+	}
+
+	private static String literal(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if(c < ' ') {
+				// Unicode escapes of line terminators would break the literal
+				sb.append(String.format("\\%03o", (int) c));
+			} else if(c > '~') {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Writes the source of the class to the right sub-folder of the given source folder.
+	 */
+	public static File generate(Schema schema, String fullClassName, File sourceFolder) throws IOException {
+		int dot = fullClassName.lastIndexOf('.');
+		String packageName = dot < 0 ? null : fullClassName.substring(0, dot);
+		String className = fullClassName.substring(dot + 1);
+		File file = new File(sourceFolder, fullClassName.replace('.', File.separatorChar) + ".java");
+		file.getParentFile().mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(generate(schema, packageName, className));
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 3) {
+			System.err.println("Usage: " + TupleClassGenerator.class.getName()
+			    + " <schema json file> <fully qualified class name> <source folder>");
+			System.exit(-1);
+		}
+		Schema schema = Schema.parse(FileUtils.readFileToString(new File(args[0]), "UTF-8"));
+		File file = generate(schema, args[1], new File(args[2]));
+		System.out.println("Generated " + file);
+	}
+}
@@ -45,6 +45,36 @@ import java.io.IOException;
  */
 public class TupleFile {
 
+  /**
+   * Metadata key with the format version of the Tuples of the file. Files without it have been written with
+   * {@link SimpleTupleSerializer#FORMAT_VERSION_1}.
+   */
+  public static final Text FORMAT_VERSION_KEY = new Text("pangool.format.version");
+
+  /**
+   * Configuration key with the format version of the TupleFiles written with that Configuration. See
+   * {@link #setFormatVersion(Configuration, int)}.
+   */
+  public static final String CONF_FORMAT_VERSION = "pangool.tuplefile.format.version";
+
+  /**
+   * Sets the format version of the TupleFiles written with the given Configuration:
+   * {@link SimpleTupleSerializer#FORMAT_VERSION_1} (the default) or {@link SimpleTupleSerializer#FORMAT_VERSION_2}.
+   * Version 2 files are smaller and faster to read and write when the Schema has nullable fields, but Pangool 0.70 and
+   * earlier read them wrong without failing, so only use it when every reader is newer.
+   */
+  public static void setFormatVersion(Configuration conf, int formatVersion) {
+    if (formatVersion != SimpleTupleSerializer.FORMAT_VERSION_1
+        && formatVersion != SimpleTupleSerializer.FORMAT_VERSION_2) {
+      throw new IllegalArgumentException("Unknown TupleFile format version: " + formatVersion);
+    }
+    conf.setInt(CONF_FORMAT_VERSION, formatVersion);
+  }
+
+  public static int getFormatVersion(Configuration conf) {
+    return conf.getInt(CONF_FORMAT_VERSION, SimpleTupleSerializer.FORMAT_VERSION_1);
+  }
+
   /**
    * Class for writing files containing {@link ITuple}. Typical usage would be:
    * <br/>
@@ -57,6 +87,9 @@ public class TupleFile {
    *   }
    *   close();
    * </code>
+   * <br/>
+   * Files are written with {@link SimpleTupleSerializer#FORMAT_VERSION_1}, readable by any Pangool version, unless
+   * another one is set with {@link TupleFile#setFormatVersion(Configuration, int)}.
    */
   public static class Writer implements java.io.Closeable {
 
@@ -95,7 +128,7 @@ public class TupleFile {
                   int bufferSize, short replication, long blockSize,
                   Progressable progress, SequenceFile.Metadata metadata)
         throws IOException {
-      fillMetadata(metadata, schema);
+      fillMetadata(metadata, schema, conf);
       innerWriter = new SequenceFile.Writer(fs, conf, name, UNUSED, UNUSED, bufferSize, replication,
           blockSize, progress, metadata);
       init(conf, schema);
@@ -121,7 +154,7 @@ public class TupleFile {
                  short replication, long blockSize,
                  SequenceFile.CompressionType compressionType, CompressionCodec codec,
                  Progressable progress, SequenceFile.Metadata metadata) throws IOException {
-      fillMetadata(metadata, schema);
+      fillMetadata(metadata, schema, conf);
       innerWriter = SequenceFile.createWriter(fs, conf, name, UNUSED, UNUSED, bufferSize, replication,
           blockSize, compressionType, codec, progress, metadata);
       init(conf, schema);
@@ -139,7 +172,7 @@ public class TupleFile {
     public Writer(Configuration conf, FSDataOutputStream out,
                  Schema schema, SequenceFile.CompressionType compressionType,
                  CompressionCodec codec, SequenceFile.Metadata metadata) throws IOException {
-      fillMetadata(metadata, schema);
+      fillMetadata(metadata, schema, conf);
       innerWriter = SequenceFile.createWriter(conf, out, UNUSED, UNUSED, compressionType, codec,
           metadata);
       init(conf, schema);
@@ -177,14 +210,14 @@ public class TupleFile {
                  Schema schema,
                  SequenceFile.CompressionType compressionType, CompressionCodec codec,
                  Progressable progress, SequenceFile.Metadata metadata) throws IOException {
-      fillMetadata(metadata, schema);
+      fillMetadata(metadata, schema, conf);
       innerWriter = SequenceFile.createWriter(fs, conf, name, UNUSED, UNUSED, compressionType, codec, progress,metadata);
       init(conf, schema);
     }
 
     private void init(Configuration conf, Schema schema) throws IOException {
       HadoopSerialization hadoopSer = new HadoopSerialization(conf);
-      this.ser = new SimpleTupleSerializer(schema, hadoopSer, conf);
+      this.ser = new SimpleTupleSerializer(schema, hadoopSer, conf, getFormatVersion(conf));
       this.outputBuffer = new DataOutputBuffer();
       ser.open(outputBuffer);
     }
@@ -209,8 +242,14 @@ public class TupleFile {
     /* public void syncFs() throws IOException {
       innerWriter.syncFs();
     } */
-    private static SequenceFile.Metadata fillMetadata(SequenceFile.Metadata metadata, Schema schema) {
+    private static SequenceFile.Metadata fillMetadata(SequenceFile.Metadata metadata, Schema schema,
+        Configuration conf) {
       metadata.set(new Text("schema"), new Text(schema.toString()));
+      int formatVersion = getFormatVersion(conf);
+      // Version 1 files stay the same as the ones written by older versions
+      if (formatVersion != SimpleTupleSerializer.FORMAT_VERSION_1) {
+        metadata.set(FORMAT_VERSION_KEY, new Text(String.valueOf(formatVersion)));
+      }
       return metadata;
     }
 
@@ -278,6 +317,7 @@ public class TupleFile {
 
     private SequenceFile.Reader innerReader;
     private Schema schema;
+    private int formatVersion;
     private Path file;
 
     private SimpleTupleDeserializer deser;
@@ -295,10 +335,10 @@ public class TupleFile {
 
       HadoopSerialization ser = new HadoopSerialization(conf);
       if(targetSchema != null) {
-        this.deser = new SimpleTupleDeserializer(schema, targetSchema, ser, conf);
+        this.deser = new SimpleTupleDeserializer(schema, targetSchema, ser, conf, formatVersion);
         this.tuple = new Tuple(targetSchema);
       } else {
-        this.deser = new SimpleTupleDeserializer(schema, ser, conf);      	
+        this.deser = new SimpleTupleDeserializer(schema, schema, ser, conf, formatVersion);
         this.tuple = new Tuple(schema);
       }
 
@@ -313,6 +353,13 @@ public class TupleFile {
     	this(fs, null, conf, file);
     }
 
+    /**
+     * The format version the file was written with.
+     */
+    public int getFormatVersion() {
+      return formatVersion;
+    }
+
     private void loadSchema() throws IOException {
       SequenceFile.Metadata meta = innerReader.getMetadata();
       Text schemaText = meta.get(new Text("schema"));
@@ -326,6 +373,18 @@ public class TupleFile {
       } catch (Schema.SchemaParseException e) {
         throw new IOException("Invalid Schema found in file: " + file + ". Schema: " + schemaText.toString());
       }
+
+      Text versionText = meta.get(FORMAT_VERSION_KEY);
+      try {
+        formatVersion = (versionText == null) ? SimpleTupleSerializer.FORMAT_VERSION_1 : Integer
+            .parseInt(versionText.toString());
+        if (formatVersion > SimpleTupleSerializer.FORMAT_VERSION_2) {
+          throw new IOException("TupleFile [" + file + "] has format version " + formatVersion
+              + ", which is newer than the ones supported by this version of Pangool");
+        }
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid format version found in file: " + file + ". Version: " + versionText);
+      }
     }
 
     /**
@@ -21,9 +21,10 @@ package com.datasalt.pangool.io;
  * 
  * Useful for creating views over {@link ITuple} for some particular fields.
  */
-public class ViewTuple implements ITuple {
+public class ViewTuple implements IPrimitiveTuple {
 
 	private ITuple contained;
+	private final PrimitiveTupleAdapter adapter = new PrimitiveTupleAdapter();
 	private Schema schema;
 	private int[] indexTranslation;
 
@@ -158,4 +159,72 @@ public class ViewTuple implements ITuple {
 		Object obj = get(field);
 		return obj == null ? null : obj.toString();
 	}
+
+	private int containedPos(int pos) {
+		if(indexTranslation != null) {
+			return indexTranslation[pos];
+		}
+		String fieldName = schema.getField(pos).getName();
+		Integer containedPos = contained.getSchema().getFieldPos(fieldName);
+		if(containedPos == null) {
+			throw new IllegalArgumentException("Field '" + fieldName + "' not present in schema:"
+			    + contained.getSchema());
+		}
+		return containedPos;
+	}
+
+	@Override
+	public boolean isNull(int pos) {
+		return adapter.adapt(contained).isNull(containedPos(pos));
+	}
+
+	@Override
+	public int getIntValue(int pos) {
+		return adapter.adapt(contained).getIntValue(containedPos(pos));
+	}
+
+	@Override
+	public long getLongValue(int pos) {
+		return adapter.adapt(contained).getLongValue(containedPos(pos));
+	}
+
+	@Override
+	public float getFloatValue(int pos) {
+		return adapter.adapt(contained).getFloatValue(containedPos(pos));
+	}
+
+	@Override
+	public double getDoubleValue(int pos) {
+		return adapter.adapt(contained).getDoubleValue(containedPos(pos));
+	}
+
+	@Override
+	public boolean getBooleanValue(int pos) {
+		return adapter.adapt(contained).getBooleanValue(containedPos(pos));
+	}
+
+	@Override
+	public void setInt(int pos, int value) {
+		fail();
+	}
+
+	@Override
+	public void setLong(int pos, long value) {
+		fail();
+	}
+
+	@Override
+	public void setFloat(int pos, float value) {
+		fail();
+	}
+
+	@Override
+	public void setDouble(int pos, double value) {
+		fail();
+	}
+
+	@Override
+	public void setBoolean(int pos, boolean value) {
+		fail();
+	}
 }
@@ -0,0 +1,296 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.pig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.pig.Expression;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.LoadMetadata;
+import org.apache.pig.LoadPushDown;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.ResourceSchema.ResourceFieldSchema;
+import org.apache.pig.ResourceStatistics;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigSplit;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.UDFContext;
+
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Schema.Field;
+import com.datasalt.pangool.io.Schema.Field.Type;
+import com.datasalt.pangool.io.TupleFile;
+import com.datasalt.pangool.tuplemr.mapred.lib.input.TupleInputFormat;
+
+/**
+ * A Pig's LoadFunc for reading {@link TupleFile}s, like the ones written by {@link PangoolStoreFunc} or by Pangool
+ * jobs. The Pig schema is taken from the header of the first file of the location. The type correspondence is:
+ * <ul>
+ *   <li>INT - int</li>
+ *   <li>LONG - long</li>
+ *   <li>FLOAT - float</li>
+ *   <li>DOUBLE - double</li>
+ *   <li>STRING - chararray</li>
+ *   <li>BOOLEAN - boolean</li>
+ *   <li>ENUM - chararray, the name of the enum constant</li>
+ *   <li>BYTES - bytearray</li>
+ *   <li>OBJECT - chararray, using toString()</li>
+ * </ul>
+ * Projections are pushed down: when Pig only needs some of the fields, the files are read with a target Schema that
+ * only contains them (see {@link TupleInputFormat#TupleInputFormat(Schema)}), so the rest are skipped instead of
+ * deserialized.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class PangoolLoadFunc extends LoadFunc implements LoadMetadata, LoadPushDown {
+
+	private final static String SCHEMA_PROPERTY = "pangool.load.schema";
+	private final static String LOCATION_PROPERTY = "pangool.load.location";
+	private final static String PROJECTED_SCHEMA_PROPERTY = "pangool.load.projected.schema";
+
+	private final TupleFactory tupleFactory = TupleFactory.getInstance();
+	private String signature;
+	private RecordReader reader;
+	private Type[] types;
+	private Configuration conf;
+
+	@Override
+	public void setUDFContextSignature(String signature) {
+		this.signature = signature;
+	}
+
+	private Properties getProperties() {
+		return UDFContext.getUDFContext().getUDFProperties(getClass(), new String[] { signature });
+	}
+
+	/**
+	 * The Schema the files are read with: the projected one, if any.
+	 */
+	private Schema getReadSchema() {
+		String schema = getProperties().getProperty(PROJECTED_SCHEMA_PROPERTY);
+		return (schema == null) ? null : Schema.parse(schema);
+	}
+
+	@Override
+	public void setLocation(String location, Job job) throws IOException {
+		FileInputFormat.setInputPaths(job, location);
+		// For resolving the Schema in pushProjection()
+		getProperties().setProperty(LOCATION_PROPERTY, location);
+		conf = job.getConfiguration();
+	}
+
+	@Override
+	public InputFormat getInputFormat() throws IOException {
+		return new TupleInputFormat(getReadSchema());
+	}
+
+	@Override
+	public void prepareToRead(RecordReader reader, PigSplit split) throws IOException {
+		this.reader = reader;
+		this.types = null;
+	}
+
+	@Override
+	public Tuple getNext() throws IOException {
+		try {
+			if(!reader.nextKeyValue()) {
+				return null;
+			}
+			ITuple tuple = (ITuple) reader.getCurrentKey();
+			if(types == null) {
+				List<Field> fields = tuple.getSchema().getFields();
+				types = new Type[fields.size()];
+				for(int i = 0; i < types.length; i++) {
+					types[i] = fields.get(i).getType();
+				}
+			}
+			Tuple pigTuple = tupleFactory.newTuple(types.length);
+			for(int i = 0; i < types.length; i++) {
+				pigTuple.set(i, toPig(types[i], tuple.get(i)));
+			}
+			return pigTuple;
+		} catch(InterruptedException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static Object toPig(Type type, Object value) {
+		if(value == null) {
+			return null;
+		}
+		switch(type) {
+		case STRING:
+		case OBJECT:
+			return value.toString();
+		case ENUM:
+			return ((Enum) value).name();
+		case BYTES:
+			if(value instanceof byte[]) {
+				return new DataByteArray((byte[]) value);
+			}
+			ByteBuffer buffer = (ByteBuffer) value;
+			return new DataByteArray(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.arrayOffset()
+			    + buffer.limit());
+		default:
+			return value;
+		}
+	}
+
+	// --- LoadMetadata --- //
+
+	@Override
+	public ResourceSchema getSchema(String location, Job job) throws IOException {
+		Schema schema = getPangoolSchema(location, job.getConfiguration());
+		List<Field> fields = schema.getFields();
+		ResourceFieldSchema[] pigFields = new ResourceFieldSchema[fields.size()];
+		for(int i = 0; i < pigFields.length; i++) {
+			pigFields[i] = new ResourceFieldSchema();
+			pigFields[i].setName(fields.get(i).getName());
+			pigFields[i].setType(toPigType(fields.get(i).getType()));
+		}
+		ResourceSchema pigSchema = new ResourceSchema();
+		pigSchema.setFields(pigFields);
+		return pigSchema;
+	}
+
+	private static byte toPigType(Type type) {
+		switch(type) {
+		case INT:
+			return DataType.INTEGER;
+		case LONG:
+			return DataType.LONG;
+		case FLOAT:
+			return DataType.FLOAT;
+		case DOUBLE:
+			return DataType.DOUBLE;
+		case BOOLEAN:
+			return DataType.BOOLEAN;
+		case BYTES:
+			return DataType.BYTEARRAY;
+		default:
+			return DataType.CHARARRAY;
+		}
+	}
+
+	/**
+	 * Reads the Schema from the first TupleFile of the location, and keeps it for the projection.
+	 */
+	private Schema getPangoolSchema(String location, Configuration conf) throws IOException {
+		String cached = getProperties().getProperty(SCHEMA_PROPERTY);
+		if(cached != null) {
+			return Schema.parse(cached);
+		}
+		// The location may be in another file system than the default one
+		Path locationPath = new Path(location);
+		FileSystem fs = locationPath.getFileSystem(conf);
+		Path file = findFile(fs, locationPath);
+		if(file == null) {
+			throw new IOException("No TupleFile found in " + location);
+		}
+		TupleFile.Reader reader = new TupleFile.Reader(fs, conf, file);
+		Schema schema;
+		try {
+			schema = reader.getSchema();
+		} finally {
+			reader.close();
+		}
+		getProperties().setProperty(SCHEMA_PROPERTY, schema.toString());
+		return schema;
+	}
+
+	private static Path findFile(FileSystem fs, Path location) throws IOException {
+		FileStatus[] statuses = fs.globStatus(location);
+		if(statuses == null) {
+			return null;
+		}
+		for(FileStatus status : statuses) {
+			String name = status.getPath().getName();
+			if(name.startsWith("_") || name.startsWith(".")) {
+				continue;
+			}
+			if(!status.isDir()) {
+				return status.getPath();
+			}
+			Path file = findFile(fs, new Path(status.getPath(), "*"));
+			if(file != null) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public ResourceStatistics getStatistics(String location, Job job) throws IOException {
+		return null;
+	}
+
+	@Override
+	public String[] getPartitionKeys(String location, Job job) throws IOException {
+		return null;
+	}
+
+	@Override
+	public void setPartitionFilter(Expression partitionFilter) throws IOException {
+	}
+
+	// --- LoadPushDown --- //
+
+	@Override
+	public List<OperatorSet> getFeatures() {
+		return Arrays.asList(OperatorSet.PROJECTION);
+	}
+
+	@Override
+	public RequiredFieldResponse pushProjection(RequiredFieldList requiredFieldList) throws FrontendException {
+		if(requiredFieldList == null || requiredFieldList.getFields() == null) {
+			return new RequiredFieldResponse(false);
+		}
+		String location = getProperties().getProperty(LOCATION_PROPERTY);
+		if(getProperties().getProperty(SCHEMA_PROPERTY) == null && location == null) {
+			// Neither getSchema() nor setLocation() have been called, so there is no Schema to project
+			return new RequiredFieldResponse(false);
+		}
+		Schema schema;
+		try {
+			schema = getPangoolSchema(location, (conf == null) ? new Configuration() : conf);
+		} catch(IOException e) {
+			throw new FrontendException("Can't read the Schema of " + location, e);
+		}
+		List<Field> fields = new ArrayList<Field>();
+		for(RequiredField requiredField : requiredFieldList.getFields()) {
+			Field field = schema.getField(requiredField.getIndex());
+			fields.add(Field.cloneField(field, field.getName()));
+		}
+		getProperties().setProperty(PROJECTED_SCHEMA_PROPERTY, new Schema(schema.getName(), fields).toString());
+		return new RequiredFieldResponse(true);
+	}
+}
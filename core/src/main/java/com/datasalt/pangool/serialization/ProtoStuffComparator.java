@@ -0,0 +1,78 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.serialization;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparator;
+
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.ProtobufIOUtil;
+import com.dyuproject.protostuff.Schema;
+
+/**
+ * A {@link RawComparator} for Protostuff objects serialized with {@link ProtoStuffSerialization}. The raw comparison
+ * is a plain byte comparison, without deserializing anything. {@link #compare(Schema, Schema)} serializes both objects
+ * as {@link ProtoStuffSerialization} does, using the buffer of the current thread, so both comparisons give the same
+ * order.
+ * <p>
+ * The order is the order of the serialized bytes: it groups equal objects together, as needed for a group by, but it
+ * is not a meaningful order of the values.
+ */
+@SuppressWarnings({ "serial", "rawtypes", "unchecked" })
+public class ProtoStuffComparator<T extends Schema> implements RawComparator<T>, Serializable {
+
+	private transient DataOutputBuffer buf1;
+	private transient DataOutputBuffer buf2;
+
+	@Override
+	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+		return WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2);
+	}
+
+	@Override
+	public int compare(T o1, T o2) {
+		if(o1 == null) {
+			return (o2 == null) ? 0 : -1;
+		} else if(o2 == null) {
+			return 1;
+		}
+		if(buf1 == null) {
+			buf1 = new DataOutputBuffer();
+			buf2 = new DataOutputBuffer();
+		}
+		try {
+			write(o1, buf1);
+			write(o2, buf2);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		return compare(buf1.getData(), 0, buf1.getLength(), buf2.getData(), 0, buf2.getLength());
+	}
+
+	private static void write(Schema t, DataOutputBuffer buf) throws IOException {
+		buf.reset();
+		LinkedBuffer buff = ProtoStuffSerialization.getThreadBuffer();
+		try {
+			ProtobufIOUtil.writeDelimitedTo(buf, t, t, buff);
+		} finally {
+			buff.clear();
+		}
+	}
+}
@@ -32,6 +32,27 @@ import com.dyuproject.protostuff.Schema;
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public class ProtoStuffSerialization implements Serialization<Schema> {
 
+	/**
+	 * Initial size of the per thread buffers. A buffer grows while writing or reading a bigger message, and is trimmed
+	 * back to its first chunk of this size by {@link LinkedBuffer#clear()} afterwards, so the memory kept by each thread
+	 * is bounded.
+	 */
+	public final static int BUFFER_SIZE = 512;
+
+	private final static ThreadLocal<LinkedBuffer> threadLocalBuffer = new ThreadLocal<LinkedBuffer>() {
+		@Override
+		protected LinkedBuffer initialValue() {
+			return LinkedBuffer.allocate(BUFFER_SIZE);
+		}
+	};
+
+	/**
+	 * The buffer of the current thread. It must be cleared after being used.
+	 */
+	static LinkedBuffer getThreadBuffer() {
+		return threadLocalBuffer.get();
+	}
+
 	public static class ProtoStuffDeserializer<T extends Schema> implements Deserializer<T> {
 
 		private InputStream in;
@@ -41,16 +62,6 @@ public class ProtoStuffSerialization implements Serialization<Schema> {
 			this.tClass = tClass;
 		}
 
-		private static ThreadLocal<LinkedBuffer> 
-		threadLocalBuffer = new ThreadLocal<LinkedBuffer>() {
-			private LinkedBuffer buffer = LinkedBuffer.allocate(512);
-
-			@Override
-			public LinkedBuffer get() {
-				return buffer;
-			}
-		};
-
 		@Override
 		public void open(InputStream in) throws IOException {
 			this.in = in;
@@ -59,9 +70,12 @@ public class ProtoStuffSerialization implements Serialization<Schema> {
 		@Override
 		public T deserialize(T t) throws IOException {
 			t = (t == null) ? newInstance() : t;
-			LinkedBuffer buff = threadLocalBuffer.get();
-			ProtobufIOUtil.mergeDelimitedFrom(in, t, t, buff);
-			buff.clear();
+			LinkedBuffer buff = getThreadBuffer();
+			try {
+				ProtobufIOUtil.mergeDelimitedFrom(in, t, t, buff);
+			} finally {
+				buff.clear();
+			}
 			return t;
 		}
 
@@ -78,16 +92,6 @@ public class ProtoStuffSerialization implements Serialization<Schema> {
 	public static class ProtoStuffSerializer<T extends Schema> implements Serializer<T> {
 
 		private OutputStream out;
-		protected static ThreadLocal<LinkedBuffer> 
-		threadLocalBuffer = new ThreadLocal<LinkedBuffer>() {
-
-			protected LinkedBuffer buffer = LinkedBuffer.allocate(512);
-
-			@Override
-			public LinkedBuffer get() {
-				return buffer;
-			}
-		};
 
 		@Override
 		public void open(OutputStream out) throws IOException {
@@ -96,9 +100,12 @@ public class ProtoStuffSerialization implements Serialization<Schema> {
 
 		@Override
 		public void serialize(T t) throws IOException {
-			LinkedBuffer buff = threadLocalBuffer.get();
-			ProtobufIOUtil.writeDelimitedTo(out, t, t, buff);
-			buff.clear();
+			LinkedBuffer buff = getThreadBuffer();
+			try {
+				ProtobufIOUtil.writeDelimitedTo(out, t, t, buff);
+			} finally {
+				buff.clear();
+			}
 		}
 
 		@Override
@@ -0,0 +1,109 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.serialization;
+
+import java.io.Serializable;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+/**
+ * A {@link RawComparator} for Thrift objects serialized with {@link ThriftSerialization}, that sorts them by their
+ * natural order, {@link TBase#compareTo(Object)}. It can be set as the custom comparator of OBJECT fields with Thrift
+ * classes, instead of relying on the binary order of the serialized bytes.
+ * <p>
+ * The Thrift binary protocol is not order preserving, so the raw comparison reads both sides into two instances that
+ * are reused between calls, and the protocols and transports are created only once. This is still much cheaper than
+ * serializing both sides for every comparison.
+ */
+@SuppressWarnings({ "serial", "rawtypes", "unchecked" })
+public class ThriftComparator<T extends TBase> implements RawComparator<T>, Serializable, Configurable {
+
+	private final Class<T> clazz;
+
+	private transient Configuration conf;
+	private transient T instance1;
+	private transient T instance2;
+	private transient TMemoryInputTransport transport1;
+	private transient TMemoryInputTransport transport2;
+	private transient TBinaryProtocol protocol1;
+	private transient TBinaryProtocol protocol2;
+
+	public ThriftComparator(Class<T> clazz) {
+		if(clazz == null) {
+			throw new IllegalArgumentException("Thrift class can't be null");
+		}
+		this.clazz = clazz;
+	}
+
+	public Class<T> getThriftClass() {
+		return clazz;
+	}
+
+	@Override
+	public int compare(T o1, T o2) {
+		if(o1 == null) {
+			return (o2 == null) ? 0 : -1;
+		} else if(o2 == null) {
+			return 1;
+		}
+		return o1.compareTo(o2);
+	}
+
+	@Override
+	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+		if(instance1 == null) {
+			init();
+		}
+		try {
+			transport1.reset(b1, s1, l1);
+			instance1.clear();
+			instance1.read(protocol1);
+			transport2.reset(b2, s2, l2);
+			instance2.clear();
+			instance2.read(protocol2);
+		} catch(TException e) {
+			throw new RuntimeException(e);
+		}
+		return instance1.compareTo(instance2);
+	}
+
+	private void init() {
+		instance1 = ReflectionUtils.newInstance(clazz, conf);
+		instance2 = ReflectionUtils.newInstance(clazz, conf);
+		transport1 = new TMemoryInputTransport(new byte[0]);
+		transport2 = new TMemoryInputTransport(new byte[0]);
+		protocol1 = new TBinaryProtocol(transport1);
+		protocol2 = new TBinaryProtocol(transport2);
+	}
+
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		init();
+	}
+
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+}
@@ -45,13 +45,27 @@ public class ThriftSerialization implements Serialization<TBase> {
     return TBase.class.isAssignableFrom(c);
   }
 
+  /**
+   * A {@link TIOStreamTransport} whose streams can be replaced, so the transport and its protocol are created once
+   * per serializer instead of once per stream.
+   */
+  static class ReusableStreamTransport extends TIOStreamTransport {
+
+    void setInputStream(InputStream in) {
+      inputStream_ = in;
+    }
+
+    void setOutputStream(OutputStream out) {
+      outputStream_ = out;
+    }
+  }
+
   public static class TSerializerAdapter implements Serializer<TBase> {
-    private TIOStreamTransport transport;
-    private TProtocol protocol;
+    private final ReusableStreamTransport transport = new ReusableStreamTransport();
+    private final TProtocol protocol = new TBinaryProtocol(transport);
     
     public void open(OutputStream out) {
-      transport = new TIOStreamTransport(out);
-      protocol = new TBinaryProtocol(transport);
+      transport.setOutputStream(out);
     }
 
     public void serialize(TBase t) throws IOException {
@@ -63,9 +77,7 @@ public class ThriftSerialization implements Serialization<TBase> {
     }
     
     public void close() throws IOException {
-      if (transport != null) {
-        transport.close();
-      }
+      transport.close();
     }
   }
 
@@ -75,16 +87,15 @@ public class ThriftSerialization implements Serialization<TBase> {
 
   public static class TDeserializerAdapter implements Deserializer<TBase> {
     private Class<? extends TBase> tClass;
-    private TIOStreamTransport transport;
-    private TProtocol protocol;
+    private final ReusableStreamTransport transport = new ReusableStreamTransport();
+    private final TProtocol protocol = new TBinaryProtocol(transport);
     
     public TDeserializerAdapter(Class<? extends TBase> tClass) {
       this.tClass = tClass;
     }
   
     public void open(InputStream in) {
-      transport = new TIOStreamTransport(in);
-      protocol = new TBinaryProtocol(transport);
+      transport.setInputStream(in);
     }
     
     public TBase deserialize(TBase t) throws IOException {
@@ -105,9 +116,7 @@ public class ThriftSerialization implements Serialization<TBase> {
     }
     
     public void close() throws IOException {
-      if (transport != null) {
-        transport.close();
-      }
+      transport.close();
     }
   }
 
@@ -19,10 +19,16 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,15 +40,35 @@ import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.core.SolrCore;
 
+import com.datasalt.pangool.tuplemr.mapred.lib.output.PangoolMultipleOutputs;
+import com.datasalt.pangool.utils.HadoopUtils;
+
 /**
  * Enables adding batches of documents to an EmbeddedSolrServer.
  * <p>
+ * By default batches are queued in a bounded queue and, when it is full, written by the calling thread. Alternatively
+ * a maximum number of queued documents can be given: callers then block until there is room for their batch, so the
+ * memory used by pending documents is bounded and the reducer thread never indexes inline.
+ * <p>
+ * The batch size can be adapted to the latency of Solr: see {@link #setAdaptiveBatchSize(int, int, long)}. Callers
+ * should cut their batches with {@link #getBatchSize()}.
+ * <p>
+ * Metrics are collected while indexing and published as counters in the {@link #COUNTER_GROUP} group when the writer
+ * is closed: written batches and documents, write time, a histogram of batch latencies, inline writes and waits for
+ * room in the queue. Writers of named outputs publish them through the task context registered by
+ * {@link PangoolMultipleOutputs}. The maximum number of queued documents and the final batch size are not additive,
+ * so they are only logged.
+ * <p>
  * <b>This class has been copied from SOLR-1301 patch although it might be slightly different from it.</b>
  * <p>
  */
 public class BatchWriter {
 	private static final Log LOG = LogFactory.getLog(BatchWriter.class);
 
+	public final static String COUNTER_GROUP = "SolrRecordWriter";
+	/** Upper bounds, in milliseconds, of the batch latency histogram buckets */
+	final static long[] LATENCY_BUCKETS = new long[] { 10, 100, 1000, 10000 };
+
 	final EmbeddedSolrServer solr;
 
 	final List<SolrInputDocument> batchToWrite;
@@ -67,6 +93,31 @@ public class BatchWriter {
 
 	private TaskID taskId = null;
 
+	/** If not null, documents are added to it once written, so they can be reused */
+	private Queue<SolrInputDocument> recycledDocuments = null;
+
+	/** Current batch size, adapted to the latency if {@link #targetLatencyMs} is positive */
+	private volatile int batchSize;
+	private int minBatchSize;
+	private int maxBatchSize;
+	private long targetLatencyMs = 0;
+
+	/** Bounds the queued documents if not null */
+	private final Semaphore queuedDocumentsPermits;
+	private final int maxQueuedDocuments;
+	private final AtomicInteger queuedDocuments = new AtomicInteger(0);
+
+	// Metrics
+	final AtomicLong batchesWritten = new AtomicLong(0);
+	final AtomicLong documentsWritten = new AtomicLong(0);
+	final AtomicLong batchesWriteTime = new AtomicLong(0);
+	final AtomicLong[] latencyHistogram = new AtomicLong[LATENCY_BUCKETS.length + 1];
+	final AtomicLong inlineBatches = new AtomicLong(0);
+	final AtomicLong backpressureWaits = new AtomicLong(0);
+	final AtomicLong backpressureWaitTime = new AtomicLong(0);
+	final AtomicLong maxQueuedDocumentsSeen = new AtomicLong(0);
+	private final Map<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
 	/**
 	 * The number of in progress batches, must be zero before the close can actually start closing
 	 */
@@ -80,18 +131,35 @@ public class BatchWriter {
 	class Batch implements Runnable {
 		List<SolrInputDocument> documents;
 
+		/** Permits of {@link #queuedDocumentsPermits} to release once written */
+		int permits = 0;
+
 		UpdateResponse result;
 
 		public Batch(Collection<SolrInputDocument> batch) {
 			documents = new ArrayList<SolrInputDocument>(batch);
 		}
 
+		/**
+		 * Takes ownership of the given list, without copying it.
+		 */
+		Batch(List<SolrInputDocument> documents) {
+			this.documents = documents;
+		}
+
 		public void run() {
 			try {
 				executingBatches.getAndIncrement();
 				result = runUpdate(documents);
 			} finally {
 				executingBatches.getAndDecrement();
+				queuedDocuments.addAndGet(-documents.size());
+				if(permits > 0) {
+					queuedDocumentsPermits.release(permits);
+				}
+				if(recycledDocuments != null) {
+					recycledDocuments.addAll(documents);
+				}
 			}
 		}
 
@@ -132,15 +200,39 @@ public class BatchWriter {
 		}
 	}
 
+	/**
+	 * Adds the documents to Solr. Overridable for testing.
+	 */
+	protected UpdateResponse add(List<SolrInputDocument> documents) throws SolrServerException, IOException {
+		return solr.add(documents);
+	}
+
 	protected UpdateResponse runUpdate(List<SolrInputDocument> batchToWrite) {
 		try {
-			UpdateResponse result = solr.add(batchToWrite);
-			SolrRecordWriter.incrementCounter(taskId, "SolrRecordWriter", "BatchesWritten", 1);
-			SolrRecordWriter.incrementCounter(taskId, "SolrRecordWriter", "DocumentsWritten", batchToWrite.size());
-			SolrRecordWriter.incrementCounter(taskId, "SolrRecordWriter", "BatchesWriteTime", result.getElapsedTime());
+			UpdateResponse result = add(batchToWrite);
+			long latency = result.getElapsedTime();
+			batchesWritten.incrementAndGet();
+			documentsWritten.addAndGet(batchToWrite.size());
+			batchesWriteTime.addAndGet(latency);
+			int bucket = 0;
+			while(bucket < LATENCY_BUCKETS.length && latency > LATENCY_BUCKETS[bucket]) {
+				bucket++;
+			}
+			latencyHistogram[bucket].incrementAndGet();
+			adaptBatchSize(batchToWrite.size(), latency);
 			return result;
 		} catch(Throwable e) {
-			SolrRecordWriter.incrementCounter(taskId, "SolrRecordWriter", e.getClass().getName(), 1);
+			AtomicLong errorCount = errors.get(e.getClass().getName());
+			if(errorCount == null) {
+				synchronized(errors) {
+					errorCount = errors.get(e.getClass().getName());
+					if(errorCount == null) {
+						errorCount = new AtomicLong(0);
+						errors.put(e.getClass().getName(), errorCount);
+					}
+				}
+			}
+			errorCount.incrementAndGet();
 			if(e instanceof Exception) {
 				setBatchWriteException((Exception) e);
 			} else {
@@ -150,26 +242,137 @@ public class BatchWriter {
 		}
 	}
 
+	/**
+	 * Grows the batch size while batches are written well under the target latency, and shrinks it when they go over.
+	 */
+	private synchronized void adaptBatchSize(int writtenBatchSize, long latency) {
+		if(targetLatencyMs <= 0 || writtenBatchSize < batchSize) {
+			// Fixed size, or a partial batch that says nothing about the current size
+			return;
+		}
+		if(latency > targetLatencyMs) {
+			batchSize = Math.max(minBatchSize, batchSize * 3 / 4);
+		} else if(latency < targetLatencyMs / 2) {
+			batchSize = Math.min(maxBatchSize, Math.max(batchSize + 1, batchSize * 5 / 4));
+		}
+	}
+
 	public BatchWriter(EmbeddedSolrServer solr, int batchSize, TaskID tid, int writerThreads, int queueSize) {
+		this(solr, batchSize, tid, writerThreads, queueSize, 0);
+	}
+
+	/**
+	 * @param maxQueuedDocuments
+	 *          If positive, the maximum number of documents waiting to be written. Callers block when it is reached,
+	 *          instead of writing the batch themselves.
+	 */
+	public BatchWriter(EmbeddedSolrServer solr, int batchSize, TaskID tid, int writerThreads, int queueSize,
+	    int maxQueuedDocuments) {
 		this.solr = solr;
 		this.writerThreads = writerThreads;
 		this.queueSize = queueSize;
+		this.batchSize = batchSize;
+		this.minBatchSize = batchSize;
+		this.maxBatchSize = batchSize;
+		this.maxQueuedDocuments = maxQueuedDocuments;
 		taskId = tid;
+		for(int i = 0; i < latencyHistogram.length; i++) {
+			latencyHistogram[i] = new AtomicLong(0);
+		}
 
 		// we need to obtain the settings before the constructor
-		batchPool = new ThreadPoolExecutor(writerThreads, writerThreads, 5, TimeUnit.SECONDS,
-		    new LinkedBlockingQueue<Runnable>(queueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+		if(maxQueuedDocuments > 0) {
+			// The documents permits bound the queue
+			queuedDocumentsPermits = new Semaphore(maxQueuedDocuments);
+			batchPool = new ThreadPoolExecutor(writerThreads, writerThreads, 5, TimeUnit.SECONDS,
+			    new LinkedBlockingQueue<Runnable>());
+		} else {
+			queuedDocumentsPermits = null;
+			final RejectedExecutionHandler callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+			batchPool = new ThreadPoolExecutor(writerThreads, writerThreads, 5, TimeUnit.SECONDS,
+			    new LinkedBlockingQueue<Runnable>(queueSize), new RejectedExecutionHandler() {
+				    @Override
+				    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+					    inlineBatches.incrementAndGet();
+					    callerRuns.rejectedExecution(r, executor);
+				    }
+			    });
+		}
 		this.batchToWrite = new ArrayList<SolrInputDocument>(batchSize);
 	}
 
+	/**
+	 * Adapts the batch size between the given bounds so that writing a batch takes around the given latency, as
+	 * reported by Solr.
+	 */
+	public synchronized void setAdaptiveBatchSize(int minBatchSize, int maxBatchSize, long targetLatencyMs) {
+		if(minBatchSize < 1 || maxBatchSize < minBatchSize) {
+			throw new IllegalArgumentException("Invalid batch size bounds: " + minBatchSize + ", " + maxBatchSize);
+		}
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.targetLatencyMs = targetLatencyMs;
+		this.batchSize = Math.min(maxBatchSize, Math.max(minBatchSize, batchSize));
+	}
+
+	/**
+	 * The number of documents batches should have.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
 	public void queueBatch(Collection<SolrInputDocument> batch) throws IOException, SolrServerException {
 
 		throwIf();
-		batchPool.execute(new Batch(batch));
+		execute(new Batch(batch));
+	}
+
+	/**
+	 * Queues a batch without copying it: the caller must not modify the list nor the documents afterwards.
+	 */
+	public void queueOwnedBatch(List<SolrInputDocument> batch) throws IOException, SolrServerException {
+		throwIf();
+		execute(new Batch(batch));
+	}
+
+	private void execute(Batch batch) {
+		int size = batch.getDocuments().size();
+		if(queuedDocumentsPermits != null) {
+			// A batch bigger than the limit takes all of it
+			batch.permits = Math.min(size, maxQueuedDocuments);
+			if(!queuedDocumentsPermits.tryAcquire(batch.permits)) {
+				long start = System.currentTimeMillis();
+				queuedDocumentsPermits.acquireUninterruptibly(batch.permits);
+				backpressureWaits.incrementAndGet();
+				backpressureWaitTime.addAndGet(System.currentTimeMillis() - start);
+			}
+		}
+		long queued = queuedDocuments.addAndGet(size);
+		long seen;
+		while(queued > (seen = maxQueuedDocumentsSeen.get()) && !maxQueuedDocumentsSeen.compareAndSet(seen, queued)) {
+		}
+		batchPool.execute(batch);
+	}
+
+	/**
+	 * Sets a thread safe queue where the documents of each batch are added once written, for reusing them.
+	 */
+	public void setRecycledDocuments(Queue<SolrInputDocument> recycledDocuments) {
+		this.recycledDocuments = recycledDocuments;
 	}
 
 	public synchronized void close(TaskAttemptContext context, SolrCore core) throws InterruptedException,
 	    SolrServerException, IOException {
+		close(context, core, true);
+	}
+
+	/**
+	 * Waits for the pending batches and closes the core. If optimize is false the index is just committed, for example
+	 * when it is going to be merged into another one.
+	 */
+	public synchronized void close(TaskAttemptContext context, SolrCore core, boolean optimize)
+	    throws InterruptedException, SolrServerException, IOException {
 
 		context.setStatus("Waiting for batches to complete");
 		batchPool.shutdown();
@@ -179,12 +382,54 @@ public class BatchWriter {
 			    batchPool.getActiveCount()));
 			batchPool.awaitTermination(5, TimeUnit.SECONDS);
 		}
-		context.setStatus("Optimizing Solr");
-		solr.optimize(true, false, 1);
+		if(optimize) {
+			context.setStatus("Optimizing Solr");
+			solr.optimize(true, false, 1);
+		} else {
+			context.setStatus("Committing Solr");
+			solr.commit(true, false);
+		}
+		publishMetrics(context);
 		context.setStatus("Closing Solr");
 		core.close();
 	}
 
+	private void publishMetrics(TaskAttemptContext context) {
+		LOG.info(String.format(
+		    "Wrote %d documents in %d batches in %d ms. %d inline batches, %d waits for the queue in %d ms, up to %d "
+		        + "queued documents, final batch size %d", documentsWritten.get(), batchesWritten.get(),
+		    batchesWriteTime.get(), inlineBatches.get(), backpressureWaits.get(), backpressureWaitTime.get(),
+		    maxQueuedDocumentsSeen.get(), batchSize));
+		// The context of the task for named outputs, which are given a new TaskAttemptContext without counters
+		TaskAttemptContext countersContext = PangoolMultipleOutputs.getTaskInputOutputContext(context);
+		if(countersContext == null) {
+			countersContext = context;
+		}
+		if(HadoopUtils.getCounter(countersContext, COUNTER_GROUP, "BatchesWritten") == null) {
+			LOG.warn("Can't publish the metrics of task " + context.getTaskAttemptID()
+			    + " as counters: its context has no counters");
+			return;
+		}
+		increment(countersContext, "BatchesWritten", batchesWritten.get());
+		increment(countersContext, "DocumentsWritten", documentsWritten.get());
+		increment(countersContext, "BatchesWriteTime", batchesWriteTime.get());
+		for(int i = 0; i < latencyHistogram.length; i++) {
+			String bucket = (i < LATENCY_BUCKETS.length) ? "<= " + LATENCY_BUCKETS[i] + " ms" : "> "
+			    + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1] + " ms";
+			increment(countersContext, "Batches latency " + bucket, latencyHistogram[i].get());
+		}
+		increment(countersContext, "InlineBatches", inlineBatches.get());
+		increment(countersContext, "BackpressureWaits", backpressureWaits.get());
+		increment(countersContext, "BackpressureWaitTime", backpressureWaitTime.get());
+		for(Map.Entry<String, AtomicLong> error : errors.entrySet()) {
+			increment(countersContext, error.getKey(), error.getValue().get());
+		}
+	}
+
+	private static void increment(TaskAttemptContext context, String counterName, long value) {
+		HadoopUtils.getCounter(context, COUNTER_GROUP, counterName).increment(value);
+	}
+
 	/**
 	 * Throw a legal exception if a previous batch write had an exception. The previous state is cleared. Uses
 	 * {@link #batchWriteException} for the state from the last exception.
@@ -19,30 +19,81 @@ import java.io.IOException;
 
 import org.apache.hadoop.io.NullWritable;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
 
 import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.io.Schema.Field;
 import com.datasalt.pangool.io.Schema.Field.Type;
 
 /**
  * This default {@link TupleDocumentConverter} maps a {@link ITuple} to a SolrInputDocument using primitive
  * {@link Field} types.
+ * <p>
+ * Field names and types are checked once per {@link Schema}, not per document. Null values are set as fields without
+ * value, which are not indexed. As a {@link ReusingTupleDocumentConverter}, it overwrites the values of the fields of
+ * recycled documents in place, null ones included, so every document always has one SolrInputField per field of the
+ * Schema.
  */
 @SuppressWarnings("serial")
-public class DefaultTupleDocumentConverter implements TupleDocumentConverter {
+public class DefaultTupleDocumentConverter implements ReusingTupleDocumentConverter {
+
+	private transient Schema schema;
+	private transient String[] names;
+	private transient boolean[] strings;
 
 	public SolrInputDocument convert(ITuple key, NullWritable value) throws IOException {
-		SolrInputDocument document = new SolrInputDocument();
-		for(Field field : key.getSchema().getFields()) {
-			checkFieldType(field);
-			if(field.getType().equals(Type.STRING)) {
+		return convert(key, value, null);
+	}
+
+	public SolrInputDocument convert(ITuple key, NullWritable value, SolrInputDocument reuse) throws IOException {
+		if(key.getSchema() != schema) {
+			compile(key.getSchema());
+		}
+		SolrInputDocument document = reuse;
+		if(document == null) {
+			document = new SolrInputDocument();
+		} else {
+			document.setDocumentBoost(1.0f);
+		}
+		fill(document, key);
+		if(document.size() != names.length) {
+			// Filled before from a different Schema: it has fields that don't belong to this one
+			document.clear();
+			fill(document, key);
+		}
+		return document;
+	}
+
+	private void fill(SolrInputDocument document, ITuple key) {
+		for(int i = 0; i < names.length; i++) {
+			Object fieldValue = key.get(i);
+			if(fieldValue != null && strings[i]) {
 				// deep copy string
-				document.setField(field.getName(), key.get(field.getName()).toString());
-			} else { // primitive type
-				document.setField(field.getName(), key.get(field.getName()));
+				fieldValue = fieldValue.toString();
+			}
+			SolrInputField field = document.getField(names[i]);
+			if(field == null) {
+				document.setField(names[i], fieldValue);
+			} else {
+				field.setValue(fieldValue, 1.0f);
 			}
 		}
-		return document;
+	}
+
+	private void compile(Schema schema) throws IOException {
+		int numFields = schema.getFields().size();
+		String[] names = new String[numFields];
+		boolean[] strings = new boolean[numFields];
+		for(int i = 0; i < numFields; i++) {
+			Field field = schema.getField(i);
+			checkFieldType(field);
+			names[i] = field.getName();
+			strings[i] = field.getType().equals(Type.STRING);
+		}
+		this.names = names;
+		this.strings = strings;
+		this.schema = schema;
 	}
 
 	public void checkFieldType(Field field) throws IOException {
@@ -0,0 +1,38 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.solr;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.solr.common.SolrInputDocument;
+
+import com.datasalt.pangool.io.ITuple;
+
+/**
+ * A {@link TupleDocumentConverter} that can fill a SolrInputDocument that has already been indexed instead of creating
+ * a new one. {@link SolrRecordWriter} recycles the documents of each batch once it has been written, so the garbage
+ * produced by indexing doesn't grow with the number of documents.
+ */
+public interface ReusingTupleDocumentConverter extends TupleDocumentConverter {
+
+	/**
+	 * @param reuse
+	 *          A document previously returned by this converter, that can be overwritten, or null. The returned document
+	 *          must not keep any field of reuse that is not set from the given Tuple.
+	 */
+	public SolrInputDocument convert(ITuple key, NullWritable value, SolrInputDocument reuse) throws IOException;
+}
@@ -21,15 +21,17 @@ import java.io.InputStream;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -55,6 +57,12 @@ import org.apache.hadoop.mapreduce.TaskID;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
 import org.apache.solr.common.SolrInputDocument;
@@ -62,6 +70,7 @@ import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.CoreDescriptor;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.schema.SchemaField;
 
 import com.datasalt.pangool.io.ITuple;
 
@@ -72,12 +81,31 @@ import com.datasalt.pangool.io.ITuple;
  * The incoming written records are converted via the specified document converter, and written to the index in batches.
  * When the job is done, the close copies the index to the destination output file system.
  * <p>
+ * The documents can be spread across several local sub-indexes (shards), each one with its own core and
+ * {@link BatchWriter}, so that indexing is not bound to a single IndexWriter. Documents are routed by the hash of
+ * their unique key, or round robin if the schema has none. At close the shards are merged with
+ * {@link IndexWriter#addIndexes(Directory...)} into a single index, so the output is the same as without shards.
+ * <p>
  * <b>This class has been copied from SOLR-1301 patch although it might be slightly different from it.</b>
  * <p>
  */
 public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 	static final Log LOG = LogFactory.getLog(SolrRecordWriter.class);
 
+	/**
+	 * If positive, the batch size is adapted so that Solr takes around these milliseconds for writing a batch. See
+	 * {@link BatchWriter#setAdaptiveBatchSize(int, int, long)}.
+	 */
+	public final static String CONF_BATCH_TARGET_LATENCY_MS = "pangool.solr.batch.target.latency.ms";
+	/** Minimum adaptive batch size. By default, 1. */
+	public final static String CONF_BATCH_MIN_SIZE = "pangool.solr.batch.min.size";
+	/** Maximum adaptive batch size. By default, ten times the batch size. */
+	public final static String CONF_BATCH_MAX_SIZE = "pangool.solr.batch.max.size";
+	/**
+	 * If positive, the maximum number of documents queued in each {@link BatchWriter}. Writes block when it is reached.
+	 */
+	public final static String CONF_MAX_QUEUED_DOCUMENTS = "pangool.solr.max.queued.documents";
+
 	public final static List<String> allowedConfigDirectories = new ArrayList<String>(Arrays.asList(new String[] {
 	    "conf", "lib" }));
 
@@ -107,8 +135,10 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 	}
 
 	private TupleDocumentConverter converter;
-	private EmbeddedSolrServer solr;
-	private SolrCore core;
+	private ReusingTupleDocumentConverter reusingConverter;
+	/** Already indexed documents, for a {@link ReusingTupleDocumentConverter} */
+	private ConcurrentLinkedQueue<SolrInputDocument> recycledDocuments;
+	private SolrCore[] cores;
 	private FileSystem fs;
 
 	private int batchSize;
@@ -129,7 +159,15 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 	private boolean outputZipFile = false;
 	private Configuration conf;
 	HeartBeater heartBeater = null;
-	private BatchWriter batchWriter = null;
+	private BatchWriter[] batchWriters = null;
+
+	/** Number of local sub-indexes, merged into the final one at close. */
+	private int shards;
+	/** The data directory of each shard, when there is more than one. */
+	private File[] shardDataDirs;
+	private String uniqueKeyField;
+	private int nextShard = 0;
+	private Version luceneVersion;
 
 	private String localSolrHome;
 	private String zipName;
@@ -163,6 +201,20 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 
 	public SolrRecordWriter(int batchSize, boolean outputZipFile, int threadCount, int queueSize, String localSolrHome,
 	    String zipName, TupleDocumentConverter converter, TaskAttemptContext context) {
+		this(batchSize, outputZipFile, threadCount, queueSize, 1, localSolrHome, zipName, converter, context);
+	}
+
+	/**
+	 * @param shards
+	 *          Number of local sub-indexes the documents are written to in parallel, each one with threadCount writer
+	 *          threads.
+	 */
+	public SolrRecordWriter(int batchSize, boolean outputZipFile, int threadCount, int queueSize, int shards,
+	    String localSolrHome, String zipName, TupleDocumentConverter converter, TaskAttemptContext context) {
+		if(shards < 1) {
+			throw new IllegalArgumentException("Invalid number of shards: " + shards);
+		}
+		this.shards = shards;
 		this.localSolrHome = localSolrHome;
 		this.zipName = zipName;
 		conf = context.getConfiguration();
@@ -230,15 +282,52 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 			        "Constructed instance information solr.home %s (%s), instance dir %s, conf dir %s, writing index to temporary directory %s, with permdir %s",
 			        solrHome, solrHome.toUri(), loader.getInstanceDir(), loader.getConfigDir(), dataDir, perm));
 			CoreContainer container = new CoreContainer(loader);
-			CoreDescriptor descr = new CoreDescriptor(container, "core1", solrHome.toString());
-			descr.setDataDir(dataDir);
-			descr.setCoreProperties(props);
-			core = container.create(descr);
-			container.register(core, false);
-			solr = new EmbeddedSolrServer(container, "core1");
-			batchWriter = new BatchWriter(solr, batchSize, context.getTaskAttemptID().getTaskID(), threadCount, queueSize);
+			cores = new SolrCore[shards];
+			batchWriters = new BatchWriter[shards];
+			if(shards > 1) {
+				shardDataDirs = new File[shards];
+			}
+			for(int i = 0; i < shards; i++) {
+				String coreName = "core1";
+				String coreDataDir = dataDir;
+				if(shards > 1) {
+					coreName = "shard" + i;
+					shardDataDirs[i] = new File(new File(local.toString(), "shards"), coreName).getAbsoluteFile();
+					coreDataDir = shardDataDirs[i].toString();
+				}
+				Properties coreProps = new Properties();
+				coreProps.putAll(props);
+				coreProps.setProperty("solr.data.dir", coreDataDir);
+				CoreDescriptor descr = new CoreDescriptor(container, coreName, solrHome.toString());
+				descr.setDataDir(coreDataDir);
+				descr.setCoreProperties(coreProps);
+				cores[i] = container.create(descr);
+				container.register(cores[i], false);
+				EmbeddedSolrServer solr = new EmbeddedSolrServer(container, coreName);
+				batchWriters[i] = new BatchWriter(solr, batchSize, context.getTaskAttemptID().getTaskID(), threadCount,
+				    queueSize, conf.getInt(CONF_MAX_QUEUED_DOCUMENTS, 0));
+				long targetLatency = conf.getLong(CONF_BATCH_TARGET_LATENCY_MS, 0);
+				if(targetLatency > 0) {
+					batchWriters[i].setAdaptiveBatchSize(conf.getInt(CONF_BATCH_MIN_SIZE, 1),
+					    conf.getInt(CONF_BATCH_MAX_SIZE, batchSize * 10), targetLatency);
+				}
+			}
+			SchemaField uniqueKey = cores[0].getSchema().getUniqueKeyField();
+			uniqueKeyField = (uniqueKey == null) ? null : uniqueKey.getName();
+			luceneVersion = cores[0].getSolrConfig().luceneMatchVersion;
+			if(shards > 1) {
+				LOG.info(String.format("Indexing into %d shards, routed by %s", shards,
+				    uniqueKeyField == null ? "round robin" : "the hash of " + uniqueKeyField));
+			}
 
 			this.converter = converter;
+			if(converter instanceof ReusingTupleDocumentConverter) {
+				reusingConverter = (ReusingTupleDocumentConverter) converter;
+				recycledDocuments = new ConcurrentLinkedQueue<SolrInputDocument>();
+				for(BatchWriter batchWriter : batchWriters) {
+					batchWriter.setRecycledDocuments(recycledDocuments);
+				}
+			}
 		} catch(Exception e) {
 			e.printStackTrace();
 			LOG.error(e);
@@ -249,6 +338,11 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 		}
 	}
 
+	/**
+	 * @deprecated Only works for reducers registered with {@link #addReducerContext(Reducer.Context)}. Writers publish
+	 *             their metrics in the {@link BatchWriter#COUNTER_GROUP} group when closed, also for named outputs.
+	 */
+	@Deprecated
 	public static void incrementCounter(TaskID taskId, String groupName, String counterName, long incr) {
 		@SuppressWarnings("rawtypes")
 		Reducer.Context context = contextMap.get(taskId);
@@ -257,6 +351,10 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 		}
 	}
 
+	/**
+	 * @deprecated See {@link #incrementCounter(TaskID, String, String, long)}.
+	 */
+	@Deprecated
 	public static void addReducerContext(@SuppressWarnings("rawtypes") Reducer.Context context) {
 		TaskID taskID = context.getTaskAttemptID().getTaskID();
 		if(contextMap.get(taskID) == null) {
@@ -306,12 +404,42 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 		return solrHome;
 	}
 
-	Collection<SolrInputDocument> batch = new ArrayList<SolrInputDocument>();
+	List<List<SolrInputDocument>> batches = new ArrayList<List<SolrInputDocument>>();
+
+	private List<SolrInputDocument> batch(int shard) {
+		while(batches.size() <= shard) {
+			batches.add(new ArrayList<SolrInputDocument>(batchSize + 1));
+		}
+		return batches.get(shard);
+	}
+
+	/**
+	 * Hands the batch of the given shard over to its {@link BatchWriter} and starts a new one.
+	 */
+	private void queueBatch(int shard) throws IOException, SolrServerException {
+		batchWriters[shard].queueOwnedBatch(batches.get(shard));
+		batches.set(shard, new ArrayList<SolrInputDocument>(batchWriters[shard].getBatchSize() + 1));
+	}
+
+	/**
+	 * The shard a document is written to: the hash of its unique key, or round robin if there is none.
+	 */
+	int shardFor(SolrInputDocument doc) {
+		if(shards == 1) {
+			return 0;
+		}
+		Object key = (uniqueKeyField == null) ? null : doc.getFieldValue(uniqueKeyField);
+		if(key == null) {
+			nextShard = (nextShard + 1) % shards;
+			return nextShard;
+		}
+		return (key.hashCode() & Integer.MAX_VALUE) % shards;
+	}
 
 	/**
-	 * Write a record. This method accumulates records in to a batch, and when {@link #batchSize} items are present
-	 * flushes it to the indexer. The writes can take a substantial amount of time, depending on {@link #batchSize}. If
-	 * there is heavy disk contention the writes may take more than the 600 second default timeout.
+	 * Write a record. This method accumulates records in to a batch, and when {@link BatchWriter#getBatchSize()} items
+	 * are present flushes it to the indexer. The writes can take a substantial amount of time, depending on the batch
+	 * size. If there is heavy disk contention the writes may take more than the 600 second default timeout.
 	 */
 	@Override
 	public void write(ITuple key, NullWritable value) throws IOException {
@@ -321,10 +449,17 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 		heartBeater.needHeartBeat();
 		try {
 			try {
-				batch.add(converter.convert(key, value));
-				if(batch.size() > batchSize) {
-					batchWriter.queueBatch(batch);
-					batch.clear();
+				SolrInputDocument doc;
+				if(reusingConverter != null) {
+					doc = reusingConverter.convert(key, value, recycledDocuments.poll());
+				} else {
+					doc = converter.convert(key, value);
+				}
+				int shard = shardFor(doc);
+				List<SolrInputDocument> batch = batch(shard);
+				batch.add(doc);
+				if(batch.size() > batchWriters[shard].getBatchSize()) {
+					queueBatch(shard);
 				}
 			} catch(SolrServerException e) {
 				throw new IOException(e);
@@ -341,12 +476,21 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 			heartBeater.setProgress(context);
 		}
 		try {
-			if(batch.size() > 0) {
-				batchWriter.queueBatch(batch);
-				batch.clear();
+			for(int i = 0; i < batches.size(); i++) {
+				if(batches.get(i).size() > 0) {
+					queueBatch(i);
+				}
 			}
 			heartBeater.needHeartBeat();
-			batchWriter.close(context, core);
+			if(shards == 1) {
+				batchWriters[0].close(context, cores[0]);
+			} else {
+				// Shards are only committed, the merged index is optimized
+				for(int i = 0; i < shards; i++) {
+					batchWriters[i].close(context, cores[i], false);
+				}
+				mergeShards(context);
+			}
 			if(outputZipFile) {
 				context.setStatus("Writing Zip");
 				packZipFile(); // Written to the perm location
@@ -370,6 +514,40 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 		context.setStatus("Done");
 	}
 
+	/**
+	 * Merges the index of each shard into the final index directory and deletes the shards.
+	 */
+	private void mergeShards(TaskAttemptContext context) throws IOException {
+		context.setStatus("Merging " + shards + " shards");
+		File indexDir = new File(new File(local.toString(), "data"), "index");
+		LOG.info(String.format("Merging %d shards into %s", shards, indexDir));
+		Directory[] shardDirs = new Directory[shards];
+		Directory dir = FSDirectory.open(indexDir);
+		IndexWriter writer = null;
+		try {
+			for(int i = 0; i < shards; i++) {
+				shardDirs[i] = FSDirectory.open(new File(shardDataDirs[i], "index"));
+			}
+			IndexWriterConfig writerConfig = new IndexWriterConfig(luceneVersion, null);
+			writerConfig.setOpenMode(OpenMode.CREATE);
+			writer = new IndexWriter(dir, writerConfig);
+			writer.addIndexes(shardDirs);
+			context.setStatus("Optimizing merged index");
+			writer.forceMerge(1);
+		} finally {
+			if(writer != null) {
+				writer.close();
+			}
+			for(Directory shardDir : shardDirs) {
+				if(shardDir != null) {
+					shardDir.close();
+				}
+			}
+			dir.close();
+		}
+		FileUtils.deleteDirectory(new File(local.toString(), "shards"));
+	}
+
 	private void packZipFile() throws IOException {
 		FSDataOutputStream out = null;
 		ZipOutputStream zos = null;
@@ -381,7 +559,11 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 
 			String name = perm.getName().replaceAll(".zip$", "");
 			LOG.info("adding index directory" + local);
-			zipCount = zipDirectory(conf, zos, name, local.toString(), local);
+			StringBuilder manifest = new StringBuilder();
+			zipCount = zipDirectory(conf, zos, name, local.toString(), local, manifest);
+			if(zipCount > 0) {
+				writeManifest(zos, name, manifest);
+			}
 		} catch(Throwable ohFoo) {
 			LOG.error("packZipFile exception", ohFoo);
 			if(ohFoo instanceof RuntimeException) {
@@ -431,6 +613,19 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 	 */
 	static public int zipDirectory(final Configuration conf, final ZipOutputStream zos, final String baseName,
 	    final String root, final Path itemToZip) throws IOException {
+		return zipDirectory(conf, zos, baseName, root, itemToZip, null);
+	}
+
+	/**
+	 * Like {@link #zipDirectory(Configuration, ZipOutputStream, String, String, Path)}, appending a line with the CRC32,
+	 * the size and the entry name of each file to the given manifest, if not null.
+	 * <p>
+	 * Lucene index files are added as stored (uncompressed) entries: they are already compact, so deflating them costs
+	 * a lot of CPU in the reducer tail for almost no gain. Their CRC32 is computed by a first read of the local file, as
+	 * stored entries need it before their data.
+	 */
+	static public int zipDirectory(final Configuration conf, final ZipOutputStream zos, final String baseName,
+	    final String root, final Path itemToZip, final StringBuilder manifest) throws IOException {
 		LOG.info(String.format("zipDirectory: %s %s %s", baseName, root, itemToZip));
 		LocalFileSystem localFs = FileSystem.getLocal(conf);
 		int count = 0;
@@ -452,7 +647,7 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 				return count;
 			}
 			for(FileStatus status : statai) {
-				count += zipDirectory(conf, zos, baseName, root, status.getPath());
+				count += zipDirectory(conf, zos, baseName, root, status.getPath(), manifest);
 			}
 			LOG.info(String.format("Wrote %d entries for directory %s", count, itemToZip));
 			return count;
@@ -466,23 +661,70 @@ public class SolrRecordWriter extends RecordWriter<ITuple, NullWritable> {
 		}
 
 		// Take empty files in case the place holder is needed
+		final ZipEntry ze = new ZipEntry(inZipPath);
+		ze.setTime(itemStatus.getModificationTime());
+		// Comments confuse looking at the zip file
+		// ze.setComment(itemToZip.toString());
+		long crc = -1;
+		if(isIndexFile(itemToZip) || manifest != null) {
+			crc = crc32(localFs, itemToZip, conf);
+		}
+		if(isIndexFile(itemToZip)) {
+			ze.setMethod(ZipEntry.STORED);
+			ze.setSize(itemStatus.getLen());
+			ze.setCompressedSize(itemStatus.getLen());
+			ze.setCrc(crc);
+		}
 		FSDataInputStream in = null;
 		try {
 			in = localFs.open(itemToZip);
-			final ZipEntry ze = new ZipEntry(inZipPath);
-			ze.setTime(itemStatus.getModificationTime());
-			// Comments confuse looking at the zip file
-			// ze.setComment(itemToZip.toString());
 			zos.putNextEntry(ze);
 
 			IOUtils.copyBytes(in, zos, conf, false);
 			zos.closeEntry();
 			LOG.info(String.format("Wrote %d entries for file %s", count, itemToZip));
-			return 1;
 		} finally {
-			in.close();
+			if(in != null) {
+				in.close();
+			}
 		}
+		if(manifest != null) {
+			manifest.append(String.format("%08x %d %s%n", crc, itemStatus.getLen(), inZipPath));
+		}
+		return 1;
+
+	}
+
+	/**
+	 * The name of the zip entry, inside the base directory, that lists the CRC32, the size and the name of every file of
+	 * the zip, one per line. Entries can be verified against it after copying or unpacking the index.
+	 */
+	public static final String MANIFEST_NAME = "MANIFEST.crc32";
+
+	static void writeManifest(ZipOutputStream zos, String baseName, CharSequence manifest) throws IOException {
+		zos.putNextEntry(new ZipEntry(baseName + Path.SEPARATOR_CHAR + MANIFEST_NAME));
+		zos.write(manifest.toString().getBytes("UTF-8"));
+		zos.closeEntry();
+	}
+
+	/**
+	 * Files inside the Lucene index directory of a core, "index" or "index.&lt;timestamp&gt;".
+	 */
+	static boolean isIndexFile(Path file) {
+		Path parent = file.getParent();
+		return parent != null && (parent.getName().equals("index") || parent.getName().startsWith("index."));
+	}
 
+	static long crc32(FileSystem localFs, Path file, Configuration conf) throws IOException {
+		CheckedInputStream in = new CheckedInputStream(localFs.open(file), new CRC32());
+		try {
+			byte[] buf = new byte[conf.getInt("io.file.buffer.size", 4096)];
+			while(in.read(buf) >= 0) {
+			}
+			return in.getChecksum().getValue();
+		} finally {
+			in.close();
+		}
 	}
 
 	static String relativePathForZipEntry(final String rawPath, final String baseName, final String root) {
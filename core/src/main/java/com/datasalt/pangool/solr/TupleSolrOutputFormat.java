@@ -59,6 +59,8 @@ import com.datasalt.pangool.io.ITuple;
  * <li>batchSize: Number of documents that will go in each indexing batch.</li>
  * <li>threadCount: Number of threads in a pool that will be used for indexing.</li>
  * <li>queueSize: Maximum number of batches that can be pooled in the batch indexing thread pool.</li>
+ * <li>shards: Number of local sub-indexes each task writes to in parallel, merged into its final index at close. See
+ * {@link SolrRecordWriter}.</li>
  * </ul>
  * For a usage example see test class {@link TupleSolrOutputFormatExample}.
  */
@@ -89,6 +91,10 @@ public class TupleSolrOutputFormat extends FileOutputFormat<ITuple, NullWritable
 	 * The SOLR writer queue size
 	 */
 	private int queueSize = defaultSolrWriterQueueSize;
+	/**
+	 * The number of local sub-indexes used by each task
+	 */
+	private int shards = 1;
 
 	/**
 	 * Whether the output should be a ZIP of the index or not
@@ -117,8 +123,8 @@ public class TupleSolrOutputFormat extends FileOutputFormat<ITuple, NullWritable
 	@Override
 	public RecordWriter<ITuple, NullWritable> getRecordWriter(TaskAttemptContext context) throws IOException,
 	    InterruptedException {
-		return new SolrRecordWriter(batchSize, outputZipFile, threadCount, queueSize, localSolrHome, zipName, converter,
-		    context);
+		return new SolrRecordWriter(batchSize, outputZipFile, threadCount, queueSize, shards, localSolrHome, zipName,
+		    converter, context);
 	}
 
 	public TupleSolrOutputFormat(File solrHome, Configuration hadoopConf) throws IOException {
@@ -141,6 +147,15 @@ public class TupleSolrOutputFormat extends FileOutputFormat<ITuple, NullWritable
 		this.queueSize = queueSize;
 	}
 
+	public TupleSolrOutputFormat(File solrHome, Configuration hadoopConf, TupleDocumentConverter converter,
+	    boolean outputZipFile, int batchSize, int threadCount, int queueSize, int shards) throws IOException {
+		this(solrHome, hadoopConf, converter, outputZipFile, batchSize, threadCount, queueSize);
+		if(shards < 1) {
+			throw new IllegalArgumentException("Invalid number of shards: " + shards);
+		}
+		this.shards = shards;
+	}
+
 	private void setupSolrHomeCache(File solrHome, Configuration conf) throws IOException {
 		if(solrHome == null || !(solrHome.exists() && solrHome.isDirectory())) {
 			throw new IOException("Invalid solr.home: " + solrHome);
@@ -0,0 +1,225 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.IOException;
+
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.tuplemr.Criteria.Order;
+
+/**
+ * Base {@link TupleReducer} for reduce-side joins between the intermediate schemas of a job. It relies on the schema
+ * order: with an {@link OrderBy} that adds the schema order right after the group by fields, like
+ *
+ * <pre>
+ * builder.setGroupByFields(&quot;url&quot;);
+ * builder.setOrderBy(new OrderBy().add(&quot;url&quot;, Order.ASC).addSchemaOrder(Order.ASC));
+ * </pre>
+ *
+ * the Tuples of each group arrive schema after schema. All the schemas but the last one to arrive are kept in
+ * {@link TupleGroupBuffer}s, serialized and spilled to disk if they don't fit in memory, and the Tuples of the last
+ * schema are streamed: each one is joined with the buffered Tuples as soon as it arrives. So the schemas with less
+ * Tuples per key, like dimension or mapping tables, should be the first ones in the schema order.
+ * <p>
+ * {@link #join(ITuple, ITuple[], TupleMRContext, Collector)} is called once per combination of Tuples, the cross
+ * product of the Tuples of each schema for the key, with the Tuples indexed by schema id: the order in which the
+ * schemas were added to the job. Schemas without Tuples for the key are null, depending on the {@link JoinType}.
+ * <p>
+ * The number of Tuples of each schema joined per key can be limited, to bound the size of the cross product for skewed
+ * keys. The Tuples over the limit are skipped and counted in the {@link #COUNTER_CAPPED} counter.
+ * <p>
+ * Subclasses overriding {@link #cleanup(TupleMRContext, Collector)} must call super.cleanup().
+ */
+@SuppressWarnings("serial")
+public abstract class JoinTupleReducer<OUTPUT_KEY, OUTPUT_VALUE> extends TupleReducer<OUTPUT_KEY, OUTPUT_VALUE> {
+
+	public final static String COUNTER_GROUP = "Pangool-Join";
+	public final static String COUNTER_CAPPED = "Tuples over the per key limit";
+
+	public static enum JoinType {
+		/**
+		 * Only keys with Tuples of every schema are joined.
+		 */
+		INNER,
+		/**
+		 * Every Tuple of the streamed schema, the last one in the schema order, is joined. Buffered schemas without
+		 * Tuples for the key are null.
+		 */
+		LEFT,
+		/**
+		 * Every Tuple of every schema is joined at least once. Schemas without Tuples for the key are null.
+		 */
+		FULL_OUTER
+	}
+
+	private final JoinType joinType;
+	private final int maxTuplesPerKey;
+
+	// Schema ids in arrival order, and the other way round
+	private transient int[] arrivalOrder;
+	private transient int[] positionBySchemaId;
+	// By arrival position. There is no buffer for the streamed schema.
+	private transient TupleGroupBuffer[] buffers;
+	// By schema id
+	private transient ITuple[] joined;
+	private transient TupleMRConfig tupleMRConfig;
+	private transient Schema lastSchema;
+	private transient int lastSchemaId;
+	private transient long capped;
+
+	public JoinTupleReducer(JoinType joinType) {
+		this(joinType, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxTuplesPerKey
+	 *          Maximum number of Tuples of each schema joined per key.
+	 */
+	public JoinTupleReducer(JoinType joinType, int maxTuplesPerKey) {
+		if(joinType == null) {
+			throw new IllegalArgumentException("Join type can't be null");
+		}
+		if(maxTuplesPerKey <= 0) {
+			throw new IllegalArgumentException("Invalid maximum number of Tuples per key: " + maxTuplesPerKey);
+		}
+		this.joinType = joinType;
+		this.maxTuplesPerKey = maxTuplesPerKey;
+	}
+
+	public JoinType getJoinType() {
+		return joinType;
+	}
+
+	/**
+	 * Called for each joined combination of Tuples.
+	 *
+	 * @param tuples
+	 *          One Tuple per intermediate schema, indexed by schema id. The array and the Tuples are reused between
+	 *          calls.
+	 */
+	public abstract void join(ITuple group, ITuple[] tuples, TupleMRContext context, Collector collector)
+	    throws IOException, InterruptedException, TupleMRException;
+
+	@Override
+	public final void reduce(ITuple group, Iterable<ITuple> tuples, TupleMRContext context, Collector collector)
+	    throws IOException, InterruptedException, TupleMRException {
+		if(buffers == null) {
+			init(context);
+		}
+		int streamPos = arrivalOrder.length - 1;
+		for(int i = 0; i < streamPos; i++) {
+			buffers[i].clear();
+		}
+		int streamed = 0;
+		for(ITuple tuple : tuples) {
+			int pos = positionBySchemaId[schemaId(tuple.getSchema())];
+			if(pos < streamPos) {
+				if(buffers[pos].size() < maxTuplesPerKey) {
+					buffers[pos].add(tuple);
+				} else {
+					capped++;
+				}
+				continue;
+			}
+			if(streamed == 0 && joinType == JoinType.INNER) {
+				for(int i = 0; i < streamPos; i++) {
+					if(buffers[i].size() == 0) {
+						// Nothing to join for this key
+						return;
+					}
+				}
+			}
+			if(streamed++ >= maxTuplesPerKey) {
+				capped++;
+				continue;
+			}
+			joined[arrivalOrder[streamPos]] = tuple;
+			cross(0, group, context, collector);
+		}
+		if(streamed == 0 && joinType == JoinType.FULL_OUTER) {
+			joined[arrivalOrder[streamPos]] = null;
+			cross(0, group, context, collector);
+		}
+	}
+
+	/**
+	 * Joins the buffered Tuples from the given arrival position on with the ones already set in the joined array.
+	 */
+	private void cross(int pos, ITuple group, TupleMRContext context, Collector collector) throws IOException,
+	    InterruptedException, TupleMRException {
+		if(pos == buffers.length) {
+			join(group, joined, context, collector);
+			return;
+		}
+		int schemaId = arrivalOrder[pos];
+		TupleGroupBuffer buffer = buffers[pos];
+		if(buffer.size() == 0) {
+			joined[schemaId] = null;
+			cross(pos + 1, group, context, collector);
+			return;
+		}
+		for(int i = 0; i < buffer.size(); i++) {
+			joined[schemaId] = buffer.get(i);
+			cross(pos + 1, group, context, collector);
+		}
+	}
+
+	private int schemaId(Schema schema) {
+		if(schema != lastSchema) {
+			lastSchemaId = tupleMRConfig.getSchemaIdByName(schema.getName());
+			lastSchema = schema;
+		}
+		return lastSchemaId;
+	}
+
+	private void init(TupleMRContext context) throws IOException, TupleMRException {
+		tupleMRConfig = context.getTupleMRConfig();
+		int numSchemas = tupleMRConfig.getNumIntermediateSchemas();
+		if(numSchemas < 2) {
+			throw new TupleMRException("JoinTupleReducer needs at least two intermediate schemas");
+		}
+		if(tupleMRConfig.getCommonCriteria().getElements().size() != tupleMRConfig.getGroupByFields().size()) {
+			throw new TupleMRException("JoinTupleReducer needs the schema order right after the group by fields "
+			    + tupleMRConfig.getGroupByFields() + " in the common OrderBy, so Tuples arrive schema after schema");
+		}
+		arrivalOrder = new int[numSchemas];
+		positionBySchemaId = new int[numSchemas];
+		for(int i = 0; i < numSchemas; i++) {
+			int schemaId = (tupleMRConfig.getSchemasOrder() == Order.DESC) ? numSchemas - 1 - i : i;
+			arrivalOrder[i] = schemaId;
+			positionBySchemaId[schemaId] = i;
+		}
+		buffers = new TupleGroupBuffer[numSchemas - 1];
+		for(int i = 0; i < buffers.length; i++) {
+			buffers[i] = new TupleGroupBuffer(context.getHadoopContext().getConfiguration());
+		}
+		joined = new ITuple[numSchemas];
+	}
+
+	@Override
+	public void cleanup(TupleMRContext context, Collector collector) throws IOException, InterruptedException,
+	    TupleMRException {
+		if(buffers != null) {
+			for(TupleGroupBuffer buffer : buffers) {
+				buffer.close();
+			}
+		}
+		if(capped > 0) {
+			context.getHadoopContext().getCounter(COUNTER_GROUP, COUNTER_CAPPED).increment(capped);
+		}
+	}
+}
@@ -0,0 +1,585 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.util.IndexedSortable;
+import org.apache.hadoop.util.Progress;
+import org.apache.hadoop.util.QuickSort;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datasalt.pangool.utils.JobContextFactory;
+import com.datasalt.pangool.utils.TaskAttemptContextFactory;
+import com.datasalt.pangool.utils.TaskContextFactory;
+import com.datasalt.pangool.utils.TaskIDFactory;
+
+/**
+ * Runs a Pangool {@link Job} inside the current JVM, without going through the Hadoop job submission machinery. It is
+ * meant for unit tests and for small datasets where the fixed cost of the local Hadoop runner dominates.
+ * <p>
+ * Map tasks run in parallel in a thread pool. Their output is serialized with the job's serialization, partitioned
+ * with the job's {@link Partitioner}, sorted in memory with the job's sort comparator and passed through the combiner
+ * if there is one. Reduce tasks then run in parallel too, each one merging the sorted runs of its partition and
+ * grouping them with the job's grouping comparator. As the mappers, combiners and reducers are the same ones that the
+ * job uses in a cluster, rollup, named outputs and any other Pangool feature behave the same way. Map-only jobs are
+ * supported too.
+ * <p>
+ * All the intermediate data is kept in memory, so this runner is not suitable for big inputs.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class LocalTupleMRRunner {
+
+	private static Logger log = LoggerFactory.getLogger(LocalTupleMRRunner.class);
+
+	private final int numThreads;
+	private Counters counters;
+
+	/**
+	 * Creates a runner that uses as many threads as available processors.
+	 */
+	public LocalTupleMRRunner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public LocalTupleMRRunner(int numThreads) {
+		if(numThreads <= 0) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + numThreads);
+		}
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * The counters of the last run.
+	 */
+	public Counters getCounters() {
+		return counters;
+	}
+
+	/**
+	 * Creates the Job from the given builder, runs it and cleans the instance files.
+	 */
+	public Counters run(TupleMRBuilder builder) throws IOException, TupleMRException, InterruptedException {
+		try {
+			return run(builder.createJob());
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+	}
+
+	/**
+	 * Runs the given Job, which must have been created by {@link TupleMRBuilder} or {@link MapOnlyJobBuilder}.
+	 * Returns the aggregated counters of all the tasks.
+	 */
+	public Counters run(Job job) throws IOException, InterruptedException {
+		Configuration conf = job.getConfiguration();
+		JobID jobId = new JobID("local" + Math.abs(new Random().nextInt()), 1);
+		JobContext jobContext;
+		InputFormat inputFormat;
+		OutputFormat outputFormat;
+		try {
+			jobContext = JobContextFactory.get(conf, jobId);
+			inputFormat = ReflectionUtils.newInstance(job.getInputFormatClass(), conf);
+			outputFormat = ReflectionUtils.newInstance(job.getOutputFormatClass(), conf);
+		} catch(Exception e) {
+			throw new IOException("Can't initialize job " + job.getJobName(), e);
+		}
+		counters = new Counters();
+
+		outputFormat.checkOutputSpecs(jobContext);
+		OutputCommitter jobCommitter = outputFormat.getOutputCommitter(newTaskContext(conf, jobId, true, 0));
+		jobCommitter.setupJob(jobContext);
+
+		List<InputSplit> splits = inputFormat.getSplits(jobContext);
+		int numReducers = job.getNumReduceTasks();
+		log.info("Running job " + job.getJobName() + " locally with " + splits.size() + " map tasks and "
+		    + numReducers + " reduce tasks in " + numThreads + " threads");
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<List<Run>> partitions = new ArrayList<List<Run>>();
+			for(int i = 0; i < numReducers; i++) {
+				partitions.add(new ArrayList<Run>());
+			}
+			List<Callable<Void>> mapTasks = new ArrayList<Callable<Void>>();
+			for(int i = 0; i < splits.size(); i++) {
+				mapTasks.add(new MapTask(job, jobId, i, splits.get(i), inputFormat, partitions));
+			}
+			execute(executor, mapTasks);
+
+			List<Callable<Void>> reduceTasks = new ArrayList<Callable<Void>>();
+			for(int i = 0; i < numReducers; i++) {
+				reduceTasks.add(new ReduceTask(job, jobId, i, partitions.get(i)));
+			}
+			execute(executor, reduceTasks);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		commitJob(jobCommitter, jobContext);
+		return counters;
+	}
+
+	private void execute(ExecutorService executor, List<Callable<Void>> tasks) throws IOException,
+	    InterruptedException {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for(Callable<Void> task : tasks) {
+			futures.add(executor.submit(task));
+		}
+		for(Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if(cause instanceof InterruptedException) {
+					throw (InterruptedException) cause;
+				} else if(cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+	}
+
+	private static void commitJob(OutputCommitter committer, JobContext jobContext) throws IOException {
+		try {
+			// commitJob() doesn't exist in old Hadoop versions
+			Method method = OutputCommitter.class.getMethod("commitJob", JobContext.class);
+			method.invoke(committer, jobContext);
+		} catch(NoSuchMethodException e) {
+			committer.cleanupJob(jobContext);
+		} catch(Exception e) {
+			throw new IOException("Error committing job", e);
+		}
+	}
+
+	private synchronized void addCounters(Counters taskCounters) {
+		counters.incrAllCounters(taskCounters);
+	}
+
+	/**
+	 * Aborts a failed task, without hiding the error that made it fail.
+	 */
+	private static void abortTask(OutputCommitter committer, TaskAttemptContext taskContext) {
+		try {
+			committer.abortTask(taskContext);
+		} catch(Throwable t) {
+			log.error("Error aborting task " + taskContext.getTaskAttemptID(), t);
+		}
+	}
+
+	private static Configuration newTaskConf(Configuration jobConf, TaskAttemptID attemptId) {
+		Configuration conf = new Configuration(jobConf);
+		conf.set("mapred.task.id", attemptId.toString());
+		conf.set("mapreduce.task.attempt.id", attemptId.toString());
+		conf.setInt("mapred.task.partition", attemptId.getTaskID().getId());
+		conf.setInt("mapreduce.task.partition", attemptId.getTaskID().getId());
+		return conf;
+	}
+
+	private static TaskAttemptContext newTaskContext(Configuration conf, JobID jobId, boolean isMap, int task)
+	    throws IOException {
+		try {
+			TaskAttemptID attemptId = new TaskAttemptID(TaskIDFactory.get(jobId, isMap, task), 0);
+			return TaskAttemptContextFactory.get(newTaskConf(conf, attemptId), attemptId);
+		} catch(Exception e) {
+			throw new IOException("Can't create context for task " + task + " of job " + jobId, e);
+		}
+	}
+
+	private static class LocalStatusReporter extends StatusReporter {
+
+		final Counters counters = new Counters();
+
+		@Override
+		public Counter getCounter(Enum<?> name) {
+			return counters.findCounter(name);
+		}
+
+		@Override
+		public Counter getCounter(String group, String name) {
+			return counters.findCounter(group, name);
+		}
+
+		@Override
+		public void progress() {
+		}
+
+		@Override
+		public void setStatus(String status) {
+		}
+
+		// Abstract in Hadoop 2.0
+		public float getProgress() {
+			return 0;
+		}
+	}
+
+	/**
+	 * A sequence of serialized key/value pairs of one partition of one map task, sorted after {@link #sort(RawComparator)}
+	 * has been called.
+	 */
+	static class Run {
+
+		final DataOutputBuffer data = new DataOutputBuffer();
+		// Triplets of key start, value start and value end
+		int[] offsets = new int[3 * 64];
+		int[] order;
+		int size = 0;
+
+		void add(byte[] bytes, int keyLength, int length) throws IOException {
+			if(3 * size == offsets.length) {
+				int[] newOffsets = new int[offsets.length * 2];
+				System.arraycopy(offsets, 0, newOffsets, 0, offsets.length);
+				offsets = newOffsets;
+			}
+			int start = data.getLength();
+			data.write(bytes, 0, length);
+			offsets[3 * size] = start;
+			offsets[3 * size + 1] = start + keyLength;
+			offsets[3 * size + 2] = start + length;
+			size++;
+		}
+
+		int compare(RawComparator comparator, int i, Run other, int j) {
+			int iRecord = 3 * order[i];
+			int jRecord = 3 * other.order[j];
+			return comparator.compare(data.getData(), offsets[iRecord], offsets[iRecord + 1] - offsets[iRecord],
+			    other.data.getData(), other.offsets[jRecord], other.offsets[jRecord + 1] - other.offsets[jRecord]);
+		}
+
+		void sort(final RawComparator comparator) {
+			order = new int[size];
+			for(int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			new QuickSort().sort(new IndexedSortable() {
+				@Override
+				public int compare(int i, int j) {
+					return Run.this.compare(comparator, i, Run.this, j);
+				}
+
+				@Override
+				public void swap(int i, int j) {
+					int tmp = order[i];
+					order[i] = order[j];
+					order[j] = tmp;
+				}
+			}, 0, size);
+		}
+
+		void setKey(int i, DataInputBuffer key) {
+			int record = 3 * order[i];
+			key.reset(data.getData(), offsets[record], offsets[record + 1] - offsets[record]);
+		}
+
+		void setValue(int i, DataInputBuffer value) {
+			int record = 3 * order[i];
+			value.reset(data.getData(), offsets[record + 1], offsets[record + 2] - offsets[record + 1]);
+		}
+	}
+
+	/**
+	 * Merges a set of sorted {@link Run}s.
+	 */
+	static class MergingIterator implements RawKeyValueIterator {
+
+		private class Cursor {
+			Run run;
+			int pos;
+		}
+
+		private final PriorityQueue<Cursor> queue;
+		private final DataInputBuffer key = new DataInputBuffer();
+		private final DataInputBuffer value = new DataInputBuffer();
+		private final Progress progress = new Progress();
+		private Cursor current;
+
+		MergingIterator(List<Run> runs, final RawComparator comparator) {
+			queue = new PriorityQueue<Cursor>(Math.max(1, runs.size()), new Comparator<Cursor>() {
+				@Override
+				public int compare(Cursor c1, Cursor c2) {
+					return c1.run.compare(comparator, c1.pos, c2.run, c2.pos);
+				}
+			});
+			for(Run run : runs) {
+				if(run.size > 0) {
+					Cursor cursor = new Cursor();
+					cursor.run = run;
+					queue.add(cursor);
+				}
+			}
+		}
+
+		@Override
+		public DataInputBuffer getKey() throws IOException {
+			return key;
+		}
+
+		@Override
+		public DataInputBuffer getValue() throws IOException {
+			return value;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			if(current != null && ++current.pos < current.run.size) {
+				queue.add(current);
+			}
+			current = queue.poll();
+			if(current == null) {
+				return false;
+			}
+			current.run.setKey(current.pos, key);
+			current.run.setValue(current.pos, value);
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+
+		@Override
+		public Progress getProgress() {
+			return progress;
+		}
+	}
+
+	/**
+	 * Serializes the written key/value pairs into {@link Run}s, one per partition.
+	 */
+	private static class RunWriter extends RecordWriter {
+
+		private final DataOutputBuffer buffer = new DataOutputBuffer();
+		private final Serializer keySerializer;
+		private final Serializer valueSerializer;
+		private final Partitioner partitioner;
+		private final Run[] runs;
+
+		RunWriter(Configuration conf, Class keyClass, Class valueClass, Partitioner partitioner, int numPartitions)
+		    throws IOException {
+			SerializationFactory factory = new SerializationFactory(conf);
+			keySerializer = factory.getSerializer(keyClass);
+			keySerializer.open(buffer);
+			valueSerializer = factory.getSerializer(valueClass);
+			valueSerializer.open(buffer);
+			this.partitioner = partitioner;
+			runs = new Run[numPartitions];
+			for(int i = 0; i < numPartitions; i++) {
+				runs[i] = new Run();
+			}
+		}
+
+		@Override
+		public void write(Object key, Object value) throws IOException, InterruptedException {
+			buffer.reset();
+			keySerializer.serialize(key);
+			int keyLength = buffer.getLength();
+			valueSerializer.serialize(value);
+			int partition = (partitioner == null) ? 0 : partitioner.getPartition(key, value, runs.length);
+			runs[partition].add(buffer.getData(), keyLength, buffer.getLength());
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+			keySerializer.close();
+			valueSerializer.close();
+		}
+	}
+
+	private class MapTask implements Callable<Void> {
+
+		private final Job job;
+		private final JobID jobId;
+		private final int task;
+		private final InputSplit split;
+		private final InputFormat inputFormat;
+		private final List<List<Run>> partitions;
+
+		MapTask(Job job, JobID jobId, int task, InputSplit split, InputFormat inputFormat, List<List<Run>> partitions) {
+			this.job = job;
+			this.jobId = jobId;
+			this.task = task;
+			this.split = split;
+			this.inputFormat = inputFormat;
+			this.partitions = partitions;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			TaskAttemptContext taskContext = newTaskContext(job.getConfiguration(), jobId, true, task);
+			Configuration conf = taskContext.getConfiguration();
+			TaskAttemptID attemptId = taskContext.getTaskAttemptID();
+			LocalStatusReporter reporter = new LocalStatusReporter();
+			int numReducers = partitions.size();
+
+			OutputFormat outputFormat = ReflectionUtils.newInstance(job.getOutputFormatClass(), conf);
+			OutputCommitter committer = outputFormat.getOutputCommitter(taskContext);
+			committer.setupTask(taskContext);
+			try {
+				RecordWriter writer;
+				RunWriter runWriter = null;
+				if(numReducers == 0) {
+					writer = outputFormat.getRecordWriter(taskContext);
+				} else {
+					Partitioner partitioner = ReflectionUtils.newInstance(job.getPartitionerClass(), conf);
+					runWriter = new RunWriter(conf, job.getMapOutputKeyClass(), job.getMapOutputValueClass(),
+					    partitioner, numReducers);
+					writer = runWriter;
+				}
+
+				RecordReader reader = inputFormat.createRecordReader(split, taskContext);
+				Mapper mapper = ReflectionUtils.newInstance(job.getMapperClass(), conf);
+				Mapper.Context mapContext = TaskContextFactory.getMapContext(mapper, conf, attemptId, reader, writer,
+				    committer, reporter, split);
+				reader.initialize(split, mapContext);
+				mapper.run(mapContext);
+				reader.close();
+				writer.close(mapContext);
+
+				if(runWriter != null) {
+					RawComparator sortComparator = job.getSortComparator();
+					Class<? extends Reducer> combinerClass = job.getCombinerClass();
+					for(int i = 0; i < numReducers; i++) {
+						Run run = runWriter.runs[i];
+						run.sort(sortComparator);
+						if(combinerClass != null && run.size > 0) {
+							run = combine(conf, attemptId, reporter, committer, combinerClass, sortComparator, run);
+						}
+						synchronized(partitions) {
+							partitions.get(i).add(run);
+						}
+					}
+				}
+				// Named outputs written by the mapper are committed too, whatever the number of reducers
+				if(committer.needsTaskCommit(taskContext)) {
+					committer.commitTask(taskContext);
+				}
+			} catch(Exception e) {
+				abortTask(committer, taskContext);
+				throw e;
+			}
+			addCounters(reporter.counters);
+			return null;
+		}
+
+		private Run combine(Configuration conf, TaskAttemptID attemptId, StatusReporter reporter,
+		    OutputCommitter committer, Class<? extends Reducer> combinerClass, RawComparator sortComparator, Run run)
+		    throws IOException, InterruptedException {
+			List<Run> runs = new ArrayList<Run>();
+			runs.add(run);
+			RunWriter combined = new RunWriter(conf, job.getMapOutputKeyClass(), job.getMapOutputValueClass(), null, 1);
+			Reducer combiner = ReflectionUtils.newInstance(combinerClass, conf);
+			Reducer.Context combinerContext = TaskContextFactory.getReduceContext(combiner, conf, attemptId,
+			    new MergingIterator(runs, sortComparator), reporter.getCounter("Pangool-Local", "Combine input keys"),
+			    reporter.getCounter("Pangool-Local", "Combine input records"), combined, committer, reporter,
+			    job.getGroupingComparator(), job.getMapOutputKeyClass(), job.getMapOutputValueClass());
+			combiner.run(combinerContext);
+			combined.close(combinerContext);
+			// The combiner is not forced to keep the order
+			combined.runs[0].sort(sortComparator);
+			return combined.runs[0];
+		}
+	}
+
+	private class ReduceTask implements Callable<Void> {
+
+		private final Job job;
+		private final JobID jobId;
+		private final int task;
+		private final List<Run> runs;
+
+		ReduceTask(Job job, JobID jobId, int task, List<Run> runs) {
+			this.job = job;
+			this.jobId = jobId;
+			this.task = task;
+			this.runs = runs;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			TaskAttemptContext taskContext = newTaskContext(job.getConfiguration(), jobId, false, task);
+			Configuration conf = taskContext.getConfiguration();
+			LocalStatusReporter reporter = new LocalStatusReporter();
+
+			OutputFormat outputFormat = ReflectionUtils.newInstance(job.getOutputFormatClass(), conf);
+			OutputCommitter committer = outputFormat.getOutputCommitter(taskContext);
+			committer.setupTask(taskContext);
+			try {
+				RecordWriter writer = outputFormat.getRecordWriter(taskContext);
+
+				Reducer reducer = ReflectionUtils.newInstance(job.getReducerClass(), conf);
+				Reducer.Context reduceContext = TaskContextFactory.getReduceContext(reducer, conf,
+				    taskContext.getTaskAttemptID(), new MergingIterator(runs, job.getSortComparator()),
+				    reporter.getCounter("Pangool-Local", "Reduce input keys"),
+				    reporter.getCounter("Pangool-Local", "Reduce input records"), writer, committer, reporter,
+				    job.getGroupingComparator(), job.getMapOutputKeyClass(), job.getMapOutputValueClass());
+				reducer.run(reduceContext);
+				writer.close(reduceContext);
+				// Release the intermediate data as soon as possible
+				runs.clear();
+
+				if(committer.needsTaskCommit(taskContext)) {
+					committer.commitTask(taskContext);
+				}
+			} catch(Exception e) {
+				abortTask(committer, taskContext);
+				throw e;
+			}
+			addCounters(reporter.counters);
+			return null;
+		}
+	}
+}
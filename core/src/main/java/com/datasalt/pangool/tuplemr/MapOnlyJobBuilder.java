@@ -39,6 +39,7 @@ import com.datasalt.pangool.tuplemr.mapred.MapOnlyMapper;
 import com.datasalt.pangool.tuplemr.mapred.lib.input.TupleInputFormat;
 import com.datasalt.pangool.tuplemr.mapred.lib.output.ProxyOutputFormat;
 import com.datasalt.pangool.tuplemr.mapred.lib.output.TupleOutputFormat;
+import com.datasalt.pangool.tuplemr.mapred.lib.output.TuplePartitionedOutputFormat;
 import com.datasalt.pangool.utils.InstancesDistributor;
 
 /**
@@ -140,6 +141,29 @@ public class MapOnlyJobBuilder {
     namedOutputs.add(output);
   }
 
+  /**
+   * Adds a named Tuple output that is partitioned in sub-folders by the values of the given fields.
+   *
+   * @see TuplePartitionedOutputFormat
+   */
+  public void addNamedTupleOutput(String namedOutput, Schema outputSchema, String... partitionFields)
+      throws TupleMRException {
+    addNamedTupleOutput(namedOutput, outputSchema, 0, partitionFields);
+  }
+
+  /**
+   * Adds a named Tuple output that is partitioned in sub-folders by the values of the given fields, having at most
+   * maxOpenPartitions partitions open at the same time in each task (0 means no limit).
+   *
+   * @see TuplePartitionedOutputFormat
+   */
+  public void addNamedTupleOutput(String namedOutput, Schema outputSchema, int maxOpenPartitions,
+      String... partitionFields) throws TupleMRException {
+    Output output = new Output(false, namedOutput, new TuplePartitionedOutputFormat(outputSchema,
+        maxOpenPartitions, partitionFields), ITuple.class, NullWritable.class, null);
+    namedOutputs.add(output);
+  }
+
   public MapOnlyJobBuilder setTupleOutput(Path outputPath, Schema schema) {
     this.outputPath = outputPath;
     this.outputFormat = new TupleOutputFormat(schema);
@@ -148,6 +172,27 @@ public class MapOnlyJobBuilder {
     return this;
   }
 
+  /**
+   * Sets a Tuple output that is partitioned in sub-folders by the values of the given fields.
+   *
+   * @see TuplePartitionedOutputFormat
+   */
+  public MapOnlyJobBuilder setTupleOutput(Path outputPath, Schema schema, String... partitionFields) {
+    return setTupleOutput(outputPath, schema, 0, partitionFields);
+  }
+
+  /**
+   * Sets a Tuple output that is partitioned in sub-folders by the values of the given fields, having at most
+   * maxOpenPartitions partitions open at the same time in each task (0 means no limit).
+   *
+   * @see TuplePartitionedOutputFormat
+   */
+  public MapOnlyJobBuilder setTupleOutput(Path outputPath, Schema schema, int maxOpenPartitions,
+      String... partitionFields) {
+    return setOutput(outputPath, new TuplePartitionedOutputFormat(schema, maxOpenPartitions, partitionFields),
+        ITuple.class, NullWritable.class);
+  }
+
   public MapOnlyJobBuilder setOutput(Path outputPath, OutputFormat outputFormat,
                                      Class<?> outputKeyClass, Class<?> outputValueClass) {
     this.outputFormat = outputFormat;
@@ -146,15 +146,23 @@ public class SerializationInfo {
      * IMPORTANT: Group schema must inherit the containsNullableFields() from the
      * common schema. Otherwise, code using the group schema for deserialize
      * (like comparators) would fail, as some cases the group schema could not
-     * have null fields, but the common schema could have them.
+     * have null fields, but the common schema could have them. For the same
+     * reason the nullable fields are the ones of the common schema, as they
+     * give the size of the serialized null bitmap.
      */
     this.groupSchema = new Schema("group", groupFields) {
       boolean containsNulls = commonSchema.containsNullableFields();
+      int[] nullableFieldsIdx = commonSchema.getNullableFieldsIdxArray();
 
       @Override
       public boolean containsNullableFields() {
         return containsNulls;
       }
+
+      @Override
+      public int[] getNullableFieldsIdxArray() {
+        return nullableFieldsIdx;
+      }
     };
   }
 
@@ -0,0 +1,138 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.datasalt.pangool.io.FieldClonator;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.TupleBatch;
+
+/**
+ * A {@link TupleReducer} that receives the Tuples of each group in column oriented {@link TupleBatch}es instead of one
+ * by one, so numeric aggregations can be written as loops over primitive arrays. For each group the calls are:
+ *
+ * <pre>
+ * startGroup(group)
+ * reduceBatch(group, batch) // once per batch of up to batchSize Tuples
+ * endGroup(group)
+ * </pre>
+ *
+ * All the Tuples of a batch have the same Schema. In jobs with several intermediate schemas a batch is passed as soon
+ * as a Tuple of another Schema comes, so the order of the Tuples within the group is kept. Batches are reused: their
+ * content is only valid during the call to {@link #reduceBatch(ITuple, TupleBatch, TupleMRContext, Collector)}.
+ * <p>
+ * It can also be used as combiner.
+ */
+@SuppressWarnings("serial")
+public abstract class TupleBatchReducer<OUTPUT_KEY, OUTPUT_VALUE> extends TupleReducer<OUTPUT_KEY, OUTPUT_VALUE> {
+
+	private final int batchSize;
+	private transient Map<String, TupleBatch> batches;
+
+	public TupleBatchReducer() {
+		this(TupleBatch.DEFAULT_CAPACITY);
+	}
+
+	public TupleBatchReducer(int batchSize) {
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Called before the first batch of each group.
+	 */
+	public void startGroup(ITuple group, TupleMRContext context, Collector collector) throws IOException,
+	    InterruptedException, TupleMRException {
+	}
+
+	/**
+	 * Called with each batch of Tuples of the group.
+	 */
+	public abstract void reduceBatch(ITuple group, TupleBatch batch, TupleMRContext context, Collector collector)
+	    throws IOException, InterruptedException, TupleMRException;
+
+	/**
+	 * Called after the last batch of each group.
+	 */
+	public void endGroup(ITuple group, TupleMRContext context, Collector collector) throws IOException,
+	    InterruptedException, TupleMRException {
+	}
+
+	/**
+	 * Override to provide the {@link FieldClonator}s needed for copying the OBJECT fields of the given Schema into the
+	 * batches. See {@link TupleBatch#add(ITuple)}.
+	 */
+	protected Map<String, FieldClonator> getFieldClonators(Schema schema) {
+		return null;
+	}
+
+	@Override
+	public final void reduce(ITuple group, Iterable<ITuple> tuples, TupleMRContext context, Collector collector)
+	    throws IOException, InterruptedException, TupleMRException {
+		startGroup(group, context, collector);
+		TupleBatch batch = null;
+		for(ITuple tuple : tuples) {
+			if(batch == null || batch.getSchema() != tuple.getSchema()) {
+				TupleBatch next = batch(tuple.getSchema());
+				if(next != batch) {
+					if(batch != null && batch.size() > 0) {
+						flush(group, batch, context, collector);
+					}
+					batch = next;
+				}
+			}
+			batch.add(tuple);
+			if(batch.isFull()) {
+				flush(group, batch, context, collector);
+			}
+		}
+		if(batch != null && batch.size() > 0) {
+			flush(group, batch, context, collector);
+		}
+		endGroup(group, context, collector);
+	}
+
+	private void flush(ITuple group, TupleBatch batch, TupleMRContext context, Collector collector)
+	    throws IOException, InterruptedException, TupleMRException {
+		try {
+			reduceBatch(group, batch, context, collector);
+		} finally {
+			batch.clear();
+		}
+	}
+
+	private TupleBatch batch(Schema schema) {
+		if(batches == null) {
+			batches = new HashMap<String, TupleBatch>();
+		}
+		TupleBatch batch = batches.get(schema.getName());
+		if(batch == null || !batch.getSchema().equals(schema)) {
+			batch = new TupleBatch(schema, batchSize, getFieldClonators(schema));
+			batches.put(schema.getName(), batch);
+		}
+		return batch;
+	}
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.serialization.HadoopSerialization;
+import com.datasalt.pangool.tuplemr.serialization.SimpleTupleDeserializer;
+import com.datasalt.pangool.tuplemr.serialization.SimpleTupleSerializer;
+
+/**
+ * Buffer for the Tuples of a group that need to be iterated more than once, or accessed by position, in a
+ * {@link TupleReducer}. The Tuples are kept serialized in memory up to a threshold, and past it they are spilled to a
+ * local temporary file, so big groups don't exhaust the heap as when buffering copies of the Tuples. Typical usage:
+ *
+ * <pre>
+ * public void setup(TupleMRContext context, Collector collector) {
+ * 	buffer = new TupleGroupBuffer(context.getHadoopContext().getConfiguration());
+ * }
+ *
+ * public void reduce(ITuple group, Iterable&lt;ITuple&gt; tuples, TupleMRContext context, Collector collector) {
+ * 	buffer.clear();
+ * 	buffer.addAll(tuples);
+ * 	for(ITuple tuple : buffer) { // first pass
+ * 	}
+ * 	for(ITuple tuple : buffer) { // second pass
+ * 	}
+ * }
+ *
+ * public void cleanup(TupleMRContext context, Collector collector) {
+ * 	buffer.close();
+ * }
+ * </pre>
+ *
+ * The Tuples returned by {@link #get(int)} and by the iterators are reused, one per Schema: they are only valid until
+ * the next Tuple of the same Schema is read. Use {@link #get(int, ITuple)} for keeping several at the same time.
+ * <p>
+ * The memory threshold is configured with {@link #CONF_MEMORY_BYTES} and the folder of the spill files with
+ * {@link #CONF_SPILL_DIR}, by default the temporary folder of the task.
+ */
+public class TupleGroupBuffer implements Iterable<ITuple>, Closeable {
+
+	private final static Logger log = LoggerFactory.getLogger(TupleGroupBuffer.class);
+
+	public final static String CONF_MEMORY_BYTES = "pangool.group.buffer.memory.bytes";
+	public final static String CONF_SPILL_DIR = "pangool.group.buffer.spill.dir";
+	public final static long DEFAULT_MEMORY_BYTES = 32 * 1024 * 1024;
+
+	// Once spilled, records are appended to the file in chunks of this size
+	private final static int FILE_CHUNK = 64 * 1024;
+
+	private final HadoopSerialization ser;
+	private final Configuration conf;
+	private final long memoryBytes;
+	private final File spillDir;
+
+	private final List<Schema> schemas = new ArrayList<Schema>();
+	private final List<SimpleTupleSerializer> serializers = new ArrayList<SimpleTupleSerializer>();
+	private final List<SimpleTupleDeserializer> deserializers = new ArrayList<SimpleTupleDeserializer>();
+	private final List<ITuple> cachedTuples = new ArrayList<ITuple>();
+
+	// Records not yet written to the spill file, if any
+	private final DataOutputBuffer memory = new DataOutputBuffer();
+	// Offset of each record. Offsets below fileBytes are in the spill file.
+	private long[] offsets = new long[1024];
+	private int size = 0;
+
+	private File spillFile;
+	private OutputStream fileOut;
+	private long fileBytes = 0;
+	private boolean fileDirty = false;
+	private RandomAccessFile fileIn;
+	private byte[] readBuffer = new byte[0];
+	private long readBufferStart = -1;
+	private int readBufferLength = 0;
+	private final DataInputBuffer in = new DataInputBuffer();
+
+	public TupleGroupBuffer(Configuration conf) throws IOException {
+		this(conf, conf.getLong(CONF_MEMORY_BYTES, DEFAULT_MEMORY_BYTES), new File(conf.get(CONF_SPILL_DIR,
+		    System.getProperty("java.io.tmpdir"))));
+	}
+
+	public TupleGroupBuffer(Configuration conf, long memoryBytes, File spillDir) throws IOException {
+		this.conf = conf;
+		this.ser = new HadoopSerialization(conf);
+		this.memoryBytes = memoryBytes;
+		this.spillDir = spillDir;
+	}
+
+	/**
+	 * Appends a Tuple. Its values are serialized, so the Tuple can be reused afterwards.
+	 */
+	public void add(ITuple tuple) throws IOException {
+		int schemaIdx = schemaIdx(tuple.getSchema());
+		if(size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		offsets[size++] = fileBytes + memory.getLength();
+		WritableUtils.writeVInt(memory, schemaIdx);
+		serializers.get(schemaIdx).serialize(tuple);
+
+		if(spillFile == null) {
+			if(memory.getLength() > memoryBytes) {
+				spill();
+			}
+		} else if(memory.getLength() >= FILE_CHUNK) {
+			flushMemory();
+		}
+	}
+
+	/**
+	 * Appends all the given Tuples, for example the ones of the group received by the reducer.
+	 */
+	public void addAll(Iterable<ITuple> tuples) throws IOException {
+		for(ITuple tuple : tuples) {
+			add(tuple);
+		}
+	}
+
+	/**
+	 * The number of Tuples in the buffer.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Whether the Tuples didn't fit in memory and have been written to a local file.
+	 */
+	public boolean isSpilled() {
+		return spillFile != null;
+	}
+
+	/**
+	 * The Tuple at the given position. The returned instance is reused, see the class documentation.
+	 */
+	public ITuple get(int pos) throws IOException {
+		return read(pos, null);
+	}
+
+	/**
+	 * Reads the Tuple at the given position into the given one, which must have the same Schema.
+	 */
+	public ITuple get(int pos, ITuple tuple) throws IOException {
+		if(tuple == null) {
+			throw new IllegalArgumentException("Tuple can't be null");
+		}
+		return read(pos, tuple);
+	}
+
+	/**
+	 * A new pass over the buffered Tuples. Any number of passes can be done.
+	 */
+	@Override
+	public Iterator<ITuple> iterator() {
+		return new Iterator<ITuple>() {
+			int pos = 0;
+
+			@Override
+			public boolean hasNext() {
+				return pos < size;
+			}
+
+			@Override
+			public ITuple next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				try {
+					return get(pos++);
+				} catch(IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Empties the buffer for the next group, deleting the spill file if any.
+	 */
+	public void clear() throws IOException {
+		size = 0;
+		memory.reset();
+		closeFile();
+	}
+
+	/**
+	 * Releases the buffer. Must be called, for example in the cleanup() of the reducer, so spill files are deleted.
+	 */
+	@Override
+	public void close() throws IOException {
+		clear();
+	}
+
+	private int schemaIdx(Schema schema) throws IOException {
+		for(int i = 0; i < schemas.size(); i++) {
+			if(schemas.get(i) == schema) {
+				return i;
+			}
+		}
+		for(int i = 0; i < schemas.size(); i++) {
+			if(schemas.get(i).equals(schema)) {
+				return i;
+			}
+		}
+		SimpleTupleSerializer serializer = new SimpleTupleSerializer(schema, ser, conf,
+		    SimpleTupleSerializer.FORMAT_VERSION_2);
+		serializer.open(memory);
+		SimpleTupleDeserializer deserializer = new SimpleTupleDeserializer(schema, schema, ser, conf,
+		    SimpleTupleSerializer.FORMAT_VERSION_2);
+		deserializer.open(in);
+		schemas.add(schema);
+		serializers.add(serializer);
+		deserializers.add(deserializer);
+		cachedTuples.add(null);
+		return schemas.size() - 1;
+	}
+
+	private ITuple read(int pos, ITuple tuple) throws IOException {
+		if(pos < 0 || pos >= size) {
+			throw new IndexOutOfBoundsException("Position " + pos + " in a buffer of " + size + " Tuples");
+		}
+		long start = offsets[pos];
+		long end = (pos + 1 < size) ? offsets[pos + 1] : fileBytes + memory.getLength();
+		int length = (int) (end - start);
+		if(start >= fileBytes) {
+			in.reset(memory.getData(), (int) (start - fileBytes), length);
+		} else {
+			readFromFile(start, length);
+			in.reset(readBuffer, (int) (start - readBufferStart), length);
+		}
+		int schemaIdx = WritableUtils.readVInt(in);
+		if(tuple != null) {
+			return deserializers.get(schemaIdx).deserialize(tuple);
+		}
+		tuple = deserializers.get(schemaIdx).deserialize(cachedTuples.get(schemaIdx));
+		cachedTuples.set(schemaIdx, tuple);
+		return tuple;
+	}
+
+	/**
+	 * Makes the given bytes of the spill file available in the read buffer.
+	 */
+	private void readFromFile(long start, int length) throws IOException {
+		if(start >= readBufferStart && start + length <= readBufferStart + readBufferLength) {
+			return;
+		}
+		if(fileDirty) {
+			fileOut.flush();
+			fileDirty = false;
+		}
+		if(fileIn == null) {
+			fileIn = new RandomAccessFile(spillFile, "r");
+		}
+		int toRead = (int) Math.min(Math.max(FILE_CHUNK, length), fileBytes - start);
+		if(readBuffer.length < toRead) {
+			readBuffer = new byte[toRead];
+		}
+		fileIn.seek(start);
+		fileIn.readFully(readBuffer, 0, toRead);
+		readBufferStart = start;
+		readBufferLength = toRead;
+	}
+
+	private void spill() throws IOException {
+		spillDir.mkdirs();
+		spillFile = File.createTempFile("pangool-group-", ".spill", spillDir);
+		fileOut = new BufferedOutputStream(new FileOutputStream(spillFile), FILE_CHUNK);
+		log.info("Group buffer exceeded " + memoryBytes + " bytes with " + size + " Tuples. Spilling to " + spillFile);
+		flushMemory();
+	}
+
+	private void flushMemory() throws IOException {
+		fileOut.write(memory.getData(), 0, memory.getLength());
+		fileBytes += memory.getLength();
+		fileDirty = true;
+		memory.reset();
+	}
+
+	private void closeFile() throws IOException {
+		fileBytes = 0;
+		fileDirty = false;
+		readBufferStart = -1;
+		readBufferLength = 0;
+		if(spillFile == null) {
+			return;
+		}
+		try {
+			fileOut.close();
+			if(fileIn != null) {
+				fileIn.close();
+			}
+		} finally {
+			fileOut = null;
+			fileIn = null;
+			if(!spillFile.delete()) {
+				log.warn("Could not delete group buffer spill file " + spillFile);
+			}
+			spillFile = null;
+		}
+	}
+}
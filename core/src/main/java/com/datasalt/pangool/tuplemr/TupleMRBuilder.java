@@ -51,7 +51,9 @@ import com.datasalt.pangool.tuplemr.mapred.lib.input.PangoolMultipleInputs;
 import com.datasalt.pangool.tuplemr.mapred.lib.input.TupleInputFormat;
 import com.datasalt.pangool.tuplemr.mapred.lib.output.ProxyOutputFormat;
 import com.datasalt.pangool.tuplemr.mapred.lib.output.TupleOutputFormat;
+import com.datasalt.pangool.tuplemr.mapred.lib.output.TuplePartitionedOutputFormat;
 import com.datasalt.pangool.tuplemr.serialization.TupleSerialization;
+import com.datasalt.pangool.tuplemr.serialization.TupleSerializationStats;
 import com.datasalt.pangool.utils.InstancesDistributor;
 
 /**
@@ -108,6 +110,8 @@ public class TupleMRBuilder extends TupleMRConfigBuilder {
 	private Class<?> outputKeyClass;
 	private Class<?> outputValueClass;
 	private String jobName;
+	private int profilingSamplingRate = 0;
+	private int shuffleStatsSamplingRate = 0;
 
 	private Path outputPath;
 
@@ -144,6 +148,30 @@ public class TupleMRBuilder extends TupleMRConfigBuilder {
 		this.jarByClass = jarByClass;
 	}
 
+	/**
+	 * Enables the profiling of the job phases, published as counters of the {@link TupleMRProfiler#COUNTER_GROUP}
+	 * group. Only one out of samplingRate calls is measured: values of 100 or more keep the overhead low. 0 disables
+	 * profiling, which is the default.
+	 */
+	public void setProfiling(int samplingRate) {
+		if(samplingRate < 0) {
+			throw new IllegalArgumentException("Sampling rate can't be negative: " + samplingRate);
+		}
+		this.profilingSamplingRate = samplingRate;
+	}
+
+	/**
+	 * Enables the statistics of the intermediate data volume per schema and field, published as counters of the
+	 * {@link TupleSerializationStats#COUNTER_GROUP} group. Records and bytes are exact, while field sizes are measured
+	 * on one out of fieldSamplingRate records. 0 disables them, which is the default.
+	 */
+	public void setShuffleStats(int fieldSamplingRate) {
+		if(fieldSamplingRate < 0) {
+			throw new IllegalArgumentException("Sampling rate can't be negative: " + fieldSamplingRate);
+		}
+		this.shuffleStatsSamplingRate = fieldSamplingRate;
+	}
+
 	/**
 	 * Adds an input file associated with a TupleFile.
 	 */
@@ -205,6 +233,29 @@ public class TupleMRBuilder extends TupleMRConfigBuilder {
 		namedOutputs.add(output);
 	}
 
+	/**
+	 * Adds a named Tuple output that is partitioned in sub-folders by the values of the given fields.
+	 * 
+	 * @see TuplePartitionedOutputFormat
+	 */
+	public void addNamedTupleOutput(String namedOutput, Schema outputSchema, String... partitionFields)
+	    throws TupleMRException {
+		addNamedTupleOutput(namedOutput, outputSchema, 0, partitionFields);
+	}
+
+	/**
+	 * Adds a named Tuple output that is partitioned in sub-folders by the values of the given fields, having at most
+	 * maxOpenPartitions partitions open at the same time in each task (0 means no limit).
+	 * 
+	 * @see TuplePartitionedOutputFormat
+	 */
+	public void addNamedTupleOutput(String namedOutput, Schema outputSchema, int maxOpenPartitions,
+	    String... partitionFields) throws TupleMRException {
+		Output output = new Output(false, namedOutput, new TuplePartitionedOutputFormat(outputSchema,
+		    maxOpenPartitions, partitionFields), ITuple.class, NullWritable.class, null);
+		namedOutputs.add(output);
+	}
+
 	/**
 	 * Defines an input as in {@link PangoolMultipleInputs}
 	 * 
@@ -240,6 +291,26 @@ public class TupleMRBuilder extends TupleMRConfigBuilder {
 		this.outputValueClass = NullWritable.class;
 	}
 
+	/**
+	 * Sets a Tuple output that is partitioned in sub-folders by the values of the given fields.
+	 * 
+	 * @see TuplePartitionedOutputFormat
+	 */
+	public void setTupleOutput(Path outputPath, Schema schema, String... partitionFields) {
+		setTupleOutput(outputPath, schema, 0, partitionFields);
+	}
+
+	/**
+	 * Sets a Tuple output that is partitioned in sub-folders by the values of the given fields, having at most
+	 * maxOpenPartitions partitions open at the same time in each task (0 means no limit).
+	 * 
+	 * @see TuplePartitionedOutputFormat
+	 */
+	public void setTupleOutput(Path outputPath, Schema schema, int maxOpenPartitions, String... partitionFields) {
+		setOutput(outputPath, new TuplePartitionedOutputFormat(schema, maxOpenPartitions, partitionFields),
+		    ITuple.class, NullWritable.class);
+	}
+
 	public void setTupleReducer(TupleReducer tupleReducer) {
 		this.tupleReducer = tupleReducer;
 	}
@@ -301,6 +372,12 @@ public class TupleMRBuilder extends TupleMRConfigBuilder {
 
 		// Enabling serialization
 		TupleSerialization.enableSerialization(job.getConfiguration());
+		if(profilingSamplingRate > 0) {
+			TupleMRProfiler.setSamplingRate(job.getConfiguration(), profilingSamplingRate);
+		}
+		if(shuffleStatsSamplingRate > 0) {
+			TupleSerializationStats.setSamplingRate(job.getConfiguration(), shuffleStatsSamplingRate);
+		}
 
 		job.setJarByClass((jarByClass != null) ? jarByClass : tupleReducer.getClass());
 		job.setMapOutputKeyClass(DatumWrapper.class);
@@ -317,7 +394,7 @@ public class TupleMRBuilder extends TupleMRConfigBuilder {
 		// work: {@link PangoolMultipleOutput}
 		String uniqueName = UUID.randomUUID().toString() + '.' + "out-format.dat";
 		try {
-			InstancesDistributor.distribute(outputFormat, uniqueName, conf);
+			InstancesDistributor.distribute(outputFormat, uniqueName, job.getConfiguration());
 			instanceFilesCreated.add(uniqueName);
 		} catch(URISyntaxException e1) {
 			throw new TupleMRException(e1);
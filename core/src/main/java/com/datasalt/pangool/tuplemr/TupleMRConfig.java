@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -74,6 +75,22 @@ public class TupleMRConfig {
 		FACTORY.setCodec(MAPPER);
 	}
 
+	private static final int MAX_PARSED_CONFIGS = 16;
+
+	/**
+	 * Per-JVM cache of parsed configurations, keyed by their serialized form. The cached instances don't have custom
+	 * comparators nor {@link SerializationInfo}, as those hold per-instance state. {@link #get(Configuration)} returns
+	 * copies of them.
+	 */
+	@SuppressWarnings("serial")
+	private static final Map<String, TupleMRConfig> parsedConfigs = new LinkedHashMap<String, TupleMRConfig>(
+	    MAX_PARSED_CONFIGS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TupleMRConfig> eldest) {
+			return size() > MAX_PARSED_CONFIGS;
+		}
+	};
+
 	private List<String> schemasNames = new ArrayList<String>();
 	private Map<String, Integer> schemaNameToId = new HashMap<String, Integer>();
 	private Map<String,Map<String,String>> schemaFieldAliases = new HashMap<String,Map<String,String>>();
@@ -320,7 +337,17 @@ public class TupleMRConfig {
 			return null;
 		}
 		try {
-			TupleMRConfig mrConf = TupleMRConfig.parse(serialized);
+			TupleMRConfig parsed;
+			synchronized(parsedConfigs) {
+				parsed = parsedConfigs.get(serialized);
+			}
+			if(parsed == null) {
+				parsed = TupleMRConfig.parse(serialized);
+				synchronized(parsedConfigs) {
+					parsedConfigs.put(serialized, parsed);
+				}
+			}
+			TupleMRConfig mrConf = parsed.copy();
 			deserializeComparators(conf, mrConf);
 			return mrConf;
 
@@ -465,6 +492,39 @@ public class TupleMRConfig {
 		}
 	}
 
+	/**
+	 * Returns a copy of this configuration that shares the immutable parts (schemas, field lists) and has its own
+	 * criteria, without custom comparators.
+	 */
+	TupleMRConfig copy() {
+		TupleMRConfig result = new TupleMRConfig();
+		result.schemas = schemas;
+		result.schemasNames = schemasNames;
+		result.schemaNameToId = schemaNameToId;
+		result.schemaFieldAliases = schemaFieldAliases;
+		result.groupByFields = groupByFields;
+		result.customPartitionFields = customPartitionFields;
+		result.rollupFrom = rollupFrom;
+		result.schemasOrder = schemasOrder;
+		result.commonCriteria = copyCriteria(commonCriteria);
+		result.specificCriterias = new ArrayList<Criteria>(specificCriterias.size());
+		for(Criteria criteria : specificCriterias) {
+			result.specificCriterias.add(copyCriteria(criteria));
+		}
+		return result;
+	}
+
+	private static Criteria copyCriteria(Criteria criteria) {
+		if(criteria == null || criteria.getElements() == null) {
+			return criteria;
+		}
+		List<SortElement> elements = new ArrayList<SortElement>(criteria.getElements().size());
+		for(SortElement element : criteria.getElements()) {
+			elements.add(new SortElement(element.getName(), element.getOrder(), element.getNullOrder()));
+		}
+		return new Criteria(elements);
+	}
+
 	static TupleMRConfig parse(JsonNode node) throws IOException {
 		try {
 			TupleMRConfig result = new TupleMRConfig();
@@ -0,0 +1,214 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+/**
+ * Optional, low-overhead instrumentation of the phases of a Tuple MapReduce job. It is enabled per job with
+ * {@link TupleMRBuilder#setProfiling(int)}. Each instrumented component (the {@link TupleMapper} and its collector,
+ * the reducers, the combiner, the serializers and the comparators) measures only one out of "sampling rate" calls,
+ * taking its wall time and, if the JVM supports it, the bytes allocated by the thread during the call.
+ * <p>
+ * The results are published as counters of the {@link #COUNTER_GROUP} group when tasks finish. For each
+ * {@link Phase} there is the number of calls, the number of sampled calls and the estimated total time and allocated
+ * bytes, extrapolated from the sampled calls. Phases are inclusive: time spent serializing in the mapper also counts
+ * as map time. Numbers are approximate: calls made by other threads while publishing may be missed, and the
+ * comparisons of the final map-side merge, which happen after the mapper finishes, are reported by the next task that
+ * runs in the same JVM, if any.
+ */
+public class TupleMRProfiler {
+
+	public final static String COUNTER_GROUP = "Pangool-Profile";
+	public final static String CONF_SAMPLING_RATE = "pangool.profile.sampling.rate";
+
+	public enum Phase {
+		MAP, COLLECT, COMBINE, REDUCE, SERIALIZE, DESERIALIZE, SORT_COMPARE, GROUP_COMPARE
+	}
+
+	private final static int CALLS = 0, SAMPLES = 1, NANOS = 2, BYTES = 3, SLOTS = 4;
+
+	// Shared by all the threads of the JVM, updated only on sampled calls
+	private final static AtomicLongArray totals = new AtomicLongArray(Phase.values().length * SLOTS);
+	// The live probes of the JVM, for flushing the calls made after their last sample
+	private final static Set<Probe> probes = Collections.synchronizedSet(Collections
+	    .newSetFromMap(new WeakHashMap<Probe, Boolean>()));
+
+	private final static ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	private final static Method allocatedBytesMethod = allocatedBytesMethod();
+
+	/**
+	 * Enables the profiling of the job, timing one out of samplingRate calls. 0 disables it.
+	 */
+	public static void setSamplingRate(Configuration conf, int samplingRate) {
+		if(samplingRate < 0) {
+			throw new IllegalArgumentException("Sampling rate can't be negative: " + samplingRate);
+		}
+		conf.setInt(CONF_SAMPLING_RATE, samplingRate);
+	}
+
+	public static int getSamplingRate(Configuration conf) {
+		return conf.getInt(CONF_SAMPLING_RATE, 0);
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf != null && getSamplingRate(conf) > 0;
+	}
+
+	/**
+	 * Returns a new {@link Probe} for the given phase, or null if profiling is not enabled. Probes are not thread safe:
+	 * each component must have its own one.
+	 */
+	public static Probe probe(Configuration conf, Phase phase) {
+		if(!isEnabled(conf)) {
+			return null;
+		}
+		Probe probe = new Probe(phase, getSamplingRate(conf));
+		probes.add(probe);
+		return probe;
+	}
+
+	/**
+	 * Adds the measures taken in this JVM since the last call to the counters of the given task, including the calls
+	 * not sampled yet.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void publish(TaskInputOutputContext context) {
+		synchronized(probes) {
+			for(Probe probe : probes) {
+				probe.flush();
+			}
+		}
+		for(Phase phase : Phase.values()) {
+			int base = phase.ordinal() * SLOTS;
+			long calls = totals.getAndSet(base + CALLS, 0);
+			long samples = totals.getAndSet(base + SAMPLES, 0);
+			long nanos = totals.getAndSet(base + NANOS, 0);
+			long bytes = totals.getAndSet(base + BYTES, 0);
+			if(calls == 0) {
+				continue;
+			}
+			context.getCounter(COUNTER_GROUP, phase + " calls").increment(calls);
+			context.getCounter(COUNTER_GROUP, phase + " sampled calls").increment(samples);
+			if(samples == 0) {
+				// Sampled calls were already published
+				continue;
+			}
+			context.getCounter(COUNTER_GROUP, phase + " estimated time (ms)").increment(
+			    (long) (nanos * ((double) calls / samples) / 1000000));
+			if(allocatedBytesMethod != null) {
+				context.getCounter(COUNTER_GROUP, phase + " estimated allocated (bytes)").increment(
+				    (long) (bytes * ((double) calls / samples)));
+			}
+		}
+	}
+
+	/**
+	 * Measures the calls of one component. Usage:
+	 * 
+	 * <pre>
+	 * long start = probe.start();
+	 * ...
+	 * probe.stop(start);
+	 * </pre>
+	 */
+	public static class Probe {
+
+		private final int base;
+		private final int samplingRate;
+		private int countdown = 1;
+		private long calls = 0;
+		private long startBytes;
+
+		Probe(Phase phase, int samplingRate) {
+			this.base = phase.ordinal() * SLOTS;
+			this.samplingRate = samplingRate;
+		}
+
+		/**
+		 * Returns the start time if this call is sampled, or -1 otherwise.
+		 */
+		public long start() {
+			calls++;
+			if(--countdown > 0) {
+				return -1;
+			}
+			countdown = samplingRate;
+			startBytes = allocatedBytes();
+			return System.nanoTime();
+		}
+
+		public void stop(long start) {
+			if(start < 0) {
+				return;
+			}
+			long nanos = System.nanoTime() - start;
+			long bytes = allocatedBytes() - startBytes;
+			totals.incrementAndGet(base + SAMPLES);
+			totals.addAndGet(base + NANOS, nanos);
+			totals.addAndGet(base + BYTES, bytes);
+			flush();
+		}
+
+		/**
+		 * Adds the calls counted since the last flush to the totals.
+		 */
+		void flush() {
+			long pending = calls;
+			calls = 0;
+			if(pending > 0) {
+				totals.addAndGet(base + CALLS, pending);
+			}
+		}
+	}
+
+	private static long allocatedBytes() {
+		if(allocatedBytesMethod == null) {
+			return 0;
+		}
+		try {
+			return (Long) allocatedBytesMethod.invoke(threadMXBean, Thread.currentThread().getId());
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Per-thread allocation is only available in HotSpot's com.sun.management.ThreadMXBean, so it is looked up by
+	 * reflection.
+	 */
+	private static Method allocatedBytesMethod() {
+		try {
+			Class<?> cl = Class.forName("com.sun.management.ThreadMXBean");
+			if(cl.isInstance(threadMXBean)
+			    && (Boolean) cl.getMethod("isThreadAllocatedMemoryEnabled").invoke(threadMXBean)) {
+				return cl.getMethod("getThreadAllocatedBytes", long.class);
+			}
+		} catch(Exception e) {
+			// Not supported
+		}
+		return null;
+	}
+}
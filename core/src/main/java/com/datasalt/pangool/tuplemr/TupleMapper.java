@@ -26,6 +26,8 @@ import org.apache.hadoop.mapreduce.Mapper;
 
 import com.datasalt.pangool.io.DatumWrapper;
 import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.TupleBatch;
+import com.datasalt.pangool.tuplemr.serialization.TupleSerializationStats;
 
 /**
  * TupleMapper is the Tuple-based Hadoop's {@link Mapper} version.
@@ -37,6 +39,7 @@ public abstract class TupleMapper<INPUT_KEY, INPUT_VALUE> extends
 
 	private Collector collector;
 	private TupleMRContext context;
+	private transient TupleMRProfiler.Probe probe;
 
 	/**
 	 * Called once at the start of the task. Override it to implement your custom
@@ -77,6 +80,8 @@ public abstract class TupleMapper<INPUT_KEY, INPUT_VALUE> extends
 			TupleMRConfig tupleMRConfig = TupleMRConfig.get(conf);
 			this.context = new TupleMRContext(context, tupleMRConfig);
 			this.collector = new Collector(context);
+			this.probe = TupleMRProfiler.probe(conf, TupleMRProfiler.Phase.MAP);
+			collector.probe = TupleMRProfiler.probe(conf, TupleMRProfiler.Phase.COLLECT);
 			setup(this.context, this.collector);
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
@@ -92,6 +97,12 @@ public abstract class TupleMapper<INPUT_KEY, INPUT_VALUE> extends
 		cleanup(this.context, collector);
 		collector.close();
 		super.cleanup(context);
+		if(TupleMRProfiler.isEnabled(context.getConfiguration())) {
+			TupleMRProfiler.publish(context);
+		}
+		if(TupleSerializationStats.isEnabled(context.getConfiguration())) {
+			TupleSerializationStats.publish(context);
+		}
 	}
 
 	/**
@@ -101,24 +112,36 @@ public abstract class TupleMapper<INPUT_KEY, INPUT_VALUE> extends
 	@Override
 	public final void map(INPUT_KEY key, INPUT_VALUE value, Context context)
 	    throws IOException, InterruptedException {
-		map(key, value, this.context, collector);
+		if(this.context.tuplePool != null) {
+			this.context.tuplePool.nextRecord();
+		}
+		if(probe != null) {
+			long start = probe.start();
+			map(key, value, this.context, collector);
+			probe.stop(start);
+		} else {
+			map(key, value, this.context, collector);
+		}
 	}
 
 	/**
-	 * Class for collecting data inside a {@link TupleMapper}.
+	 * Class for collecting data inside a {@link TupleMapper}. Tuples are serialized when written, so they can be reused
+	 * right after {@link #write(ITuple)} returns. See {@link TuplePool}.
 	 */
 	public static class Collector extends MultipleOutputsCollector {
 
 		private Mapper.Context context;
 
+		// One wrapper per thread, reused for every write
 		private ThreadLocal<DatumWrapper<ITuple>> cachedDatum = new ThreadLocal<DatumWrapper<ITuple>>() {
 			@Override
-			public DatumWrapper<ITuple> get() {
+			protected DatumWrapper<ITuple> initialValue() {
 				return new DatumWrapper<ITuple>();
 			}
 		};
 
 		private NullWritable nullWritable;
+		private TupleMRProfiler.Probe probe;
 
 		Collector(Mapper.Context context) {
 			super(context);
@@ -130,7 +153,23 @@ public abstract class TupleMapper<INPUT_KEY, INPUT_VALUE> extends
 		public void write(ITuple tuple) throws IOException, InterruptedException {
 			DatumWrapper<ITuple> outputDatum = cachedDatum.get();
 			outputDatum.datum(tuple);
-			context.write(outputDatum, nullWritable);
+			if(probe != null) {
+				long start = probe.start();
+				context.write(outputDatum, nullWritable);
+				probe.stop(start);
+			} else {
+				context.write(outputDatum, nullWritable);
+			}
+		}
+
+		/**
+		 * Emits every Tuple of the batch. Each one is serialized before going to the next, so the batch can be cleared
+		 * and filled again once this method returns.
+		 */
+		public void write(TupleBatch batch) throws IOException, InterruptedException {
+			for(int row = 0; row < batch.size(); row++) {
+				write(batch.getRow(row));
+			}
 		}
 	}
 
@@ -138,6 +177,7 @@ public abstract class TupleMapper<INPUT_KEY, INPUT_VALUE> extends
 
 		private MapContext<INPUT_KEY, INPUT_VALUE, DatumWrapper<ITuple>, NullWritable> context;
 		private TupleMRConfig tupleMRConfig;
+		TuplePool tuplePool;
 
 		StaticTupleMRContext(
 		    MapContext<INPUT_KEY, INPUT_VALUE, DatumWrapper<ITuple>, NullWritable> context,
@@ -156,6 +196,16 @@ public abstract class TupleMapper<INPUT_KEY, INPUT_VALUE> extends
 		public TupleMRConfig getTupleMRConfig() {
 			return tupleMRConfig;
 		}
+
+		/**
+		 * Reusable Tuples for the intermediate schemas, see {@link TuplePool} for the reuse contract.
+		 */
+		public TuplePool getTuplePool() {
+			if(tuplePool == null) {
+				tuplePool = new TuplePool(tupleMRConfig, TuplePool.isDebug(context.getConfiguration()));
+			}
+			return tuplePool;
+		}
 	}
 
 	public class TupleMRContext extends StaticTupleMRContext<INPUT_KEY, INPUT_VALUE> {
@@ -0,0 +1,118 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.datasalt.pangool.io.IPrimitiveTuple;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.PrimitiveTuple;
+
+/**
+ * Reusable Tuples for the intermediate schemas of a job, available in the {@link TupleMapper} through
+ * {@link TupleMapper.StaticTupleMRContext#getTuplePool()}. The reuse contract of the mapper output is:
+ * <ul>
+ * <li>{@link TupleMapper.Collector#write(ITuple)} serializes the Tuple before returning. The same instance can be
+ * filled and written again right away: there is no need to create a new Tuple per record.</li>
+ * <li>The Tuples of the pool belong to the record being mapped. They keep the values of the previous record, so
+ * nullable fields that are not always set should be set to null or the Tuple cleared. They must not be kept across
+ * calls to map(), for example in a list for emitting them later, as they would all be the same instance.</li>
+ * </ul>
+ * The pool holds one {@link PrimitiveTuple} per schema, so primitive fields can be set without boxing. In debug mode,
+ * enabled with {@link #setDebug(Configuration, boolean)}, each call to the pool returns a view that fails with an
+ * {@link IllegalStateException} if it is used after the record it was obtained for. It allocates per call and uses
+ * reflection, so it is only meant for tests.
+ */
+public class TuplePool {
+
+	public final static String CONF_DEBUG = "pangool.tuple.pool.debug";
+
+	private final TupleMRConfig tupleMRConfig;
+	private final IPrimitiveTuple[] tuples;
+	private final boolean debug;
+	private long record = 0;
+
+	TuplePool(TupleMRConfig tupleMRConfig, boolean debug) {
+		this.tupleMRConfig = tupleMRConfig;
+		this.tuples = new IPrimitiveTuple[tupleMRConfig.getNumIntermediateSchemas()];
+		this.debug = debug;
+	}
+
+	public static void setDebug(Configuration conf, boolean debug) {
+		conf.setBoolean(CONF_DEBUG, debug);
+	}
+
+	public static boolean isDebug(Configuration conf) {
+		return conf.getBoolean(CONF_DEBUG, false);
+	}
+
+	/**
+	 * The reusable Tuple for the intermediate schema with the given name.
+	 */
+	public IPrimitiveTuple get(String schemaName) {
+		Integer schemaId = tupleMRConfig.getSchemaIdByName(schemaName);
+		if(schemaId == null) {
+			throw new IllegalArgumentException("Schema '" + schemaName
+			    + "' is not an intermediate schema. Known schemas are: " + tupleMRConfig.getIntermediateSchemaNames());
+		}
+		return get(schemaId);
+	}
+
+	/**
+	 * The reusable Tuple for the intermediate schema with the given id, the order in which it was added to the job.
+	 */
+	public IPrimitiveTuple get(int schemaId) {
+		IPrimitiveTuple tuple = tuples[schemaId];
+		if(tuple == null) {
+			tuple = new PrimitiveTuple(tupleMRConfig.getIntermediateSchema(schemaId));
+			tuples[schemaId] = tuple;
+		}
+		return debug ? guard(tuple) : tuple;
+	}
+
+	/**
+	 * Called by the framework before mapping each record.
+	 */
+	void nextRecord() {
+		record++;
+	}
+
+	private IPrimitiveTuple guard(final IPrimitiveTuple tuple) {
+		final long obtainedAt = record;
+		return (IPrimitiveTuple) Proxy.newProxyInstance(IPrimitiveTuple.class.getClassLoader(),
+		    new Class[] { IPrimitiveTuple.class },
+		    new InvocationHandler() {
+			    @Override
+			    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				    if(obtainedAt != record) {
+					    throw new IllegalStateException("Tuple of schema '" + tuple.getSchema().getName()
+					        + "' used after the record it was obtained from the pool for. Pooled Tuples can't be retained "
+					        + "across calls to map()");
+				    }
+				    try {
+					    return method.invoke(tuple, args);
+				    } catch(InvocationTargetException e) {
+					    throw e.getCause();
+				    }
+			    }
+		    });
+	}
+}
@@ -104,10 +104,11 @@ public class TupleReducer<OUTPUT_KEY, OUTPUT_VALUE> implements Serializable {
 	 */
 	public class CombinerCollector extends Collector {
 
+		// One wrapper per thread, reused for every write
 		private ThreadLocal<DatumWrapper<ITuple>> 
 		cachedDatum = new ThreadLocal<DatumWrapper<ITuple>>() {
 			@Override
-			public DatumWrapper<ITuple> get() {
+			protected DatumWrapper<ITuple> initialValue() {
 				return new DatumWrapper<ITuple>();
 			}
 		};
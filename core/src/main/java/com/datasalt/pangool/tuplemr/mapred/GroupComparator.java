@@ -27,6 +27,7 @@ import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.tuplemr.Criteria;
 import com.datasalt.pangool.tuplemr.Criteria.SortElement;
 import com.datasalt.pangool.tuplemr.TupleMRConfigBuilder;
+import com.datasalt.pangool.tuplemr.TupleMRProfiler;
 /**
  * 
  * Tuple-based MapRed jobs binary group comparator. Used to group tuples 
@@ -55,11 +56,16 @@ public class GroupComparator extends SortComparator {
 
 	@Override
 	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+		long start = (probe == null) ? -1 : probe.start();
 		try{
 		Schema groupSchema = serInfo.getGroupSchema();
 		return compare(b1,s1,b2,s2,groupSchema,groupCriteria,offsets,nulls);
 		} catch(IOException e){
 			throw new RuntimeException(e);
+		} finally {
+			if(probe != null) {
+				probe.stop(start);
+			}
 		}
 	}
 		
@@ -74,6 +80,7 @@ public class GroupComparator extends SortComparator {
 		groupSortElements = groupSortElements.subList(0,numGroupByFields);
 		groupCriteria = new Criteria(groupSortElements);					
 		TupleMRConfigBuilder.initializeComparators(conf, tupleMRConf);	  
+		probe = TupleMRProfiler.probe(conf, TupleMRProfiler.Phase.GROUP_COMPARE);
 	}
 	
 }
@@ -0,0 +1,170 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr.mapred;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.avro.Schema;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.serializer.Serialization;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.io.serializer.WritableSerialization;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.datasalt.pangool.io.Schema.Field;
+import com.datasalt.pangool.io.Schema.Field.Type;
+import com.datasalt.pangool.serialization.ProtoStuffComparator;
+import com.datasalt.pangool.serialization.ThriftComparator;
+import com.datasalt.pangool.serialization.ThriftSerialization;
+import com.datasalt.pangool.tuplemr.serialization.AvroFieldSerialization;
+import com.datasalt.pangool.utils.AvroBinaryComparator;
+
+/**
+ * Resolves the comparator of the OBJECT fields that are sorted or grouped by without a custom comparator. The same
+ * comparator is used by {@link SortComparator} and {@link GroupComparator} for the serialized bytes and for the
+ * objects, and by {@link RollupReducer}, so both comparisons always agree. In order of preference:
+ * <ul>
+ * <li>The comparator set for the class of the field with {@link #setComparator(Configuration, Class, Class)}.</li>
+ * </ul>
+ * And only if the registry is enabled for the job with {@link #setEnabled(Configuration, boolean)}:
+ * <ul>
+ * <li>An {@link AvroBinaryComparator} for Avro fields, see {@link com.datasalt.pangool.io.Fields#createAvroField}.</li>
+ * <li>The {@link WritableComparator} of {@link WritableComparable} classes serialized as Writables.</li>
+ * <li>A {@link ThriftComparator} for classes serialized with {@link ThriftSerialization}.</li>
+ * <li>A {@link ProtoStuffComparator} for classes serialized with ProtoStuffSerialization.</li>
+ * </ul>
+ * The rest of the OBJECT fields are sorted by their serialized bytes, and compared as objects by serializing both
+ * sides with {@link SerializerComparator}. This slow path is counted, and reported by the reducers in the
+ * {@link #COUNTER_SLOW} counter.
+ * <p>
+ * The registry is disabled by default because fields with a comparator are sorted by their natural order instead of
+ * by their serialized bytes: enabling it changes the order of the OBJECT fields of existing jobs.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class ObjectComparatorRegistry {
+
+	public final static String CONF_ENABLED = "pangool.object.comparators.enabled";
+	public final static String CONF_COMPARATOR_PREFIX = "pangool.object.comparator.";
+
+	public final static String COUNTER_GROUP = "Pangool-Comparators";
+	public final static String COUNTER_SLOW = "OBJECT compares by serialization";
+
+	private final static String PROTOSTUFF_SERIALIZATION = "com.datasalt.pangool.serialization.ProtoStuffSerialization";
+
+	// Shared by all the threads of the JVM
+	private final static AtomicLong slowCompares = new AtomicLong();
+
+	/**
+	 * Sets the comparator for the OBJECT fields of the given class. The comparator must have a no-arguments
+	 * constructor, and must be able to compare both the objects and the bytes written by the serialization of the
+	 * field.
+	 */
+	public static void setComparator(Configuration conf, Class<?> objectClass,
+	    Class<? extends RawComparator> comparatorClass) {
+		conf.set(CONF_COMPARATOR_PREFIX + objectClass.getName(), comparatorClass.getName());
+	}
+
+	/**
+	 * Enables the comparators found for Avro, Writable, Thrift and Protostuff classes. Comparators set with
+	 * {@link #setComparator(Configuration, Class, Class)} are always used.
+	 */
+	public static void setEnabled(Configuration conf, boolean enabled) {
+		conf.setBoolean(CONF_ENABLED, enabled);
+	}
+
+	/**
+	 * False by default.
+	 */
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(CONF_ENABLED, false);
+	}
+
+	/**
+	 * Returns a configured comparator for the given field, or null if it isn't an OBJECT field or there is no
+	 * comparator for it.
+	 */
+	public static RawComparator<?> getComparator(Field field, Configuration conf) {
+		if(field.getType() != Type.OBJECT) {
+			return null;
+		}
+		RawComparator comparator = findComparator(field, conf);
+		if(comparator instanceof Configurable) {
+			((Configurable) comparator).setConf(conf);
+		}
+		return comparator;
+	}
+
+	private static RawComparator findComparator(Field field, Configuration conf) {
+		Class<?> clazz = field.getObjectClass();
+		String comparatorClass = conf.get(CONF_COMPARATOR_PREFIX + clazz.getName());
+		if(comparatorClass != null) {
+			try {
+				return (RawComparator) ReflectionUtils.newInstance(conf.getClassByName(comparatorClass), conf);
+			} catch(ClassNotFoundException e) {
+				throw new RuntimeException("Comparator class not found for OBJECT field '" + field.getName() + "'", e);
+			}
+		}
+		if(!isEnabled(conf)) {
+			return null;
+		}
+		if(field.getObjectSerialization() != null) {
+			if(field.getObjectSerialization() == AvroFieldSerialization.class && field.getProp("avro.schema") != null) {
+				return new AvroBinaryComparator(new Schema.Parser().parse(field.getProp("avro.schema")));
+			}
+			// Unknown binary format
+			return null;
+		}
+		Serialization serialization = new SerializationFactory(conf).getSerialization(clazz);
+		if(serialization instanceof WritableSerialization) {
+			return WritableComparable.class.isAssignableFrom(clazz) ? WritableComparator.get(clazz) : null;
+		} else if(serialization instanceof ThriftSerialization) {
+			return new ThriftComparator(clazz);
+		} else if(serialization != null && serialization.getClass().getName().equals(PROTOSTUFF_SERIALIZATION)) {
+			// Compared by name, as Protostuff is an optional dependency
+			return new ProtoStuffComparator();
+		}
+		return null;
+	}
+
+	/**
+	 * Counts a comparison of two objects done by serializing them.
+	 */
+	static void countSlowCompare() {
+		slowCompares.incrementAndGet();
+	}
+
+	/**
+	 * The number of comparisons done by serializing both objects in this JVM that haven't been published yet.
+	 */
+	public static long getSlowCompares() {
+		return slowCompares.get();
+	}
+
+	/**
+	 * Adds the slow comparisons done in this JVM since the last call to the counters of the given task.
+	 */
+	public static void publish(TaskInputOutputContext context) {
+		long count = slowCompares.getAndSet(0);
+		if(count > 0) {
+			context.getCounter(COUNTER_GROUP, COUNTER_SLOW).increment(count);
+		}
+	}
+}
@@ -21,22 +21,27 @@ import java.util.Iterator;
 import java.util.List;
 
 import com.datasalt.pangool.utils.InstancesDistributor;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.hadoop.mapreduce.ReduceContext;
 import org.apache.hadoop.mapreduce.Reducer;
 
 import com.datasalt.pangool.io.DatumWrapper;
 import com.datasalt.pangool.io.ITuple;
 import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Schema.Field.Type;
 import com.datasalt.pangool.io.ViewTuple;
 import com.datasalt.pangool.tuplemr.Criteria.SortElement;
 import com.datasalt.pangool.tuplemr.SerializationInfo;
 import com.datasalt.pangool.tuplemr.TupleMRConfig;
 import com.datasalt.pangool.tuplemr.TupleMRConfigBuilder;
 import com.datasalt.pangool.tuplemr.TupleMRException;
+import com.datasalt.pangool.tuplemr.TupleMRProfiler;
 import com.datasalt.pangool.tuplemr.TupleReducer;
 import com.datasalt.pangool.tuplemr.TupleReducer.TupleMRContext;
+import com.datasalt.pangool.tuplemr.mapred.lib.output.PangoolMultipleOutputs;
 import com.datasalt.pangool.tuplemr.TupleRollupReducer;
 
 /**
@@ -59,6 +64,10 @@ public class RollupReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 	private boolean isMultipleSources;
 	private Schema groupSchema;
 	private RawComparator<?>[] customComparators;
+	private SerializerComparator serializerComparator;
+	@SuppressWarnings("rawtypes")
+	private Serializer[] groupSerializers;
+	private TupleMRProfiler.Probe probe;
 
 	@Override
 	public void setup(Context context) throws IOException, InterruptedException {
@@ -80,6 +89,7 @@ public class RollupReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 			this.tupleIterator = new TupleIterator<OUTPUT_KEY, OUTPUT_VALUE>(context);
 			initHandlerContextAndCollector(context);
 			initComparators();
+			this.probe = TupleMRProfiler.probe(context.getConfiguration(), TupleMRProfiler.Phase.REDUCE);
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
 		}
@@ -87,18 +97,24 @@ public class RollupReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 
 	/**
 	 * Initialize the custom comparators. Creates a quick access array for the
-	 * custom comparators.
+	 * custom comparators, or the ones of the {@link ObjectComparatorRegistry}
+	 * for OBJECT fields without custom comparator.
 	 */
 	private void initComparators() {
-		TupleMRConfigBuilder.initializeComparators(context.getHadoopContext()
-		    .getConfiguration(), tupleMRConfig);
+		Configuration conf = context.getHadoopContext().getConfiguration();
+		TupleMRConfigBuilder.initializeComparators(conf, tupleMRConfig);
 		customComparators = new RawComparator<?>[maxDepth + 1];
-		for(int i = minDepth; i <= maxDepth; i++) {
+		for(int i = 0; i <= maxDepth; i++) {
 			SortElement element = tupleMRConfig.getCommonCriteria().getElements().get(i);
 			if(element.getCustomComparator() != null) {
 				customComparators[i] = element.getCustomComparator();
+			} else {
+				customComparators[i] = ObjectComparatorRegistry.getComparator(groupSchema.getField(i), conf);
 			}
 		}
+		serializerComparator = new SerializerComparator();
+		serializerComparator.setConf(conf);
+		groupSerializers = serInfo.getGroupSchemaSerializers();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -120,6 +136,10 @@ public class RollupReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 			handler.cleanup(this.context, collector);
 			collector.close();
 			super.cleanup(context);
+			ObjectComparatorRegistry.publish(context);
+			if(probe != null) {
+				TupleMRProfiler.publish(context);
+			}
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
 		}
@@ -146,6 +166,8 @@ public class RollupReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 			cleanup(context);
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
+		} finally {
+			PangoolMultipleOutputs.releaseTaskContext(context);
 		}
 	}
 
@@ -188,7 +210,13 @@ public class RollupReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 				groupTuple.setContained(currentTuple);
 			}
 
-			handler.reduce(groupTuple, tupleIterator, this.context, collector);
+			if(probe != null) {
+				long start = probe.start();
+				handler.reduce(groupTuple, tupleIterator, this.context, collector);
+				probe.stop(start);
+			} else {
+				handler.reduce(groupTuple, tupleIterator, this.context, collector);
+			}
 
 			// This loop consumes the remaining elements that reduce didn't consume
 			// The goal of this is to correctly set the last element in the next
@@ -225,12 +253,24 @@ public class RollupReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 			@SuppressWarnings("unchecked")
 			RawComparator<Object> customComparator = (RawComparator<Object>) customComparators[i];
 
-			if(customComparator != null) {
+			if(obj1 == null || obj2 == null) {
+				if(obj1 != obj2) {
+					return i;
+				}
+			} else if(customComparator != null) {
 				//TODO we assume here that customComparator must implement compare by objects.
 				//Even if it's annoying, we should serialize and compare in binary.
 				if(customComparator.compare(obj1, obj2) != 0) {
 					return i;
 				}
+			} else if(groupSchema.getField(i).getType() == Type.OBJECT) {
+				// Same bytes as the binary comparison
+				@SuppressWarnings("rawtypes")
+				Serializer serializer = (groupSerializers == null) ? null : groupSerializers[i];
+				ObjectComparatorRegistry.countSlowCompare();
+				if(serializerComparator.compare(obj1, serializer, obj2, serializer) != 0) {
+					return i;
+				}
 			} else {
 				if (SortComparator.compareObjects(obj1,obj2) != 0){
 					return i;
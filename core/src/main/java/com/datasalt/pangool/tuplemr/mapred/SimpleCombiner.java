@@ -29,8 +29,10 @@ import com.datasalt.pangool.io.ViewTuple;
 import com.datasalt.pangool.tuplemr.SerializationInfo;
 import com.datasalt.pangool.tuplemr.TupleMRConfig;
 import com.datasalt.pangool.tuplemr.TupleMRException;
+import com.datasalt.pangool.tuplemr.TupleMRProfiler;
 import com.datasalt.pangool.tuplemr.TupleReducer;
 import com.datasalt.pangool.tuplemr.TupleReducer.TupleMRContext;
+import com.datasalt.pangool.tuplemr.serialization.TupleSerializationStats;
 
 public class SimpleCombiner extends
     Reducer<DatumWrapper<ITuple>, NullWritable, DatumWrapper<ITuple>, NullWritable> {
@@ -47,6 +49,7 @@ public class SimpleCombiner extends
 	private TupleReducer<ITuple, NullWritable> handler;
 	private TupleReducer<ITuple, NullWritable>.CombinerCollector collector;
 	private boolean isMultipleSources;
+	private TupleMRProfiler.Probe probe;
 
 	@SuppressWarnings("unchecked")
 	public void setup(Context context) throws IOException, InterruptedException {
@@ -72,18 +75,32 @@ public class SimpleCombiner extends
 			ReduceContext castedContext = context;
 			this.context = new TupleMRContext(castedContext, tupleMRConfig);
 			collector = handler.new CombinerCollector(castedContext);
+			this.probe = TupleMRProfiler.probe(context.getConfiguration(), TupleMRProfiler.Phase.COMBINE);
 			handler.setup(this.context, collector);
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	@Override
+	public void run(Context context) throws IOException, InterruptedException {
+		TupleSerializationStats.setCombining(true);
+		try {
+			super.run(context);
+		} finally {
+			TupleSerializationStats.setCombining(false);
+		}
+	}
+
 	@Override
 	public void cleanup(Context context) throws IOException, InterruptedException {
 		try {
 
 			handler.cleanup(this.context, collector);
 			super.cleanup(context);
+			if(probe != null) {
+				TupleMRProfiler.publish(context);
+			}
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
 		}
@@ -109,8 +126,13 @@ public class SimpleCombiner extends
 			} else {
 				groupTuple.setContained(firstTupleGroup);
 			}
-			handler.reduce(groupTuple, tupleIterator, this.context, collector);
-
+			if(probe != null) {
+				long start = probe.start();
+				handler.reduce(groupTuple, tupleIterator, this.context, collector);
+				probe.stop(start);
+			} else {
+				handler.reduce(groupTuple, tupleIterator, this.context, collector);
+			}
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
 		}
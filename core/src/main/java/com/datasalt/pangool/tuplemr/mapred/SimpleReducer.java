@@ -31,8 +31,10 @@ import com.datasalt.pangool.tuplemr.SerializationInfo;
 import com.datasalt.pangool.tuplemr.TupleMRBuilder;
 import com.datasalt.pangool.tuplemr.TupleMRConfig;
 import com.datasalt.pangool.tuplemr.TupleMRException;
+import com.datasalt.pangool.tuplemr.TupleMRProfiler;
 import com.datasalt.pangool.tuplemr.TupleReducer;
 import com.datasalt.pangool.tuplemr.TupleReducer.TupleMRContext;
+import com.datasalt.pangool.tuplemr.mapred.lib.output.PangoolMultipleOutputs;
 
 /**
  * This is a proxy {@link Reducer} implementation that delegates its
@@ -55,6 +57,16 @@ public class SimpleReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 	private ViewTuple groupTuple; // Tuple view over the group
 	private TupleMRContext context;
 	private TupleReducer<OUTPUT_KEY, OUTPUT_VALUE> handler;
+	private TupleMRProfiler.Probe probe;
+
+	@Override
+	public void run(Context context) throws IOException, InterruptedException {
+		try {
+			super.run(context);
+		} finally {
+			PangoolMultipleOutputs.releaseTaskContext(context);
+		}
+	}
 
 	@SuppressWarnings("unchecked")
 	public void setup(Context context) throws IOException, InterruptedException {
@@ -85,6 +97,7 @@ public class SimpleReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 			this.context = new TupleMRContext(
 			    (ReduceContext<DatumWrapper<ITuple>, NullWritable, Object, Object>) context,
 			    tupleMRConfig);
+			this.probe = TupleMRProfiler.probe(context.getConfiguration(), TupleMRProfiler.Phase.REDUCE);
 			handler.setup(this.context, collector);
 
 		} catch(TupleMRException e) {
@@ -98,6 +111,10 @@ public class SimpleReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 			handler.cleanup(this.context, collector);
 			collector.close();
 			super.cleanup(context);
+			ObjectComparatorRegistry.publish(context);
+			if(probe != null) {
+				TupleMRProfiler.publish(context);
+			}
 
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
@@ -124,7 +141,13 @@ public class SimpleReducer<OUTPUT_KEY, OUTPUT_VALUE> extends
 			} else {
 				groupTuple.setContained(firstTupleGroup);
 			}
-			handler.reduce(groupTuple, tupleIterator, this.context, collector);
+			if(probe != null) {
+				long start = probe.start();
+				handler.reduce(groupTuple, tupleIterator, this.context, collector);
+				probe.stop(start);
+			} else {
+				handler.reduce(groupTuple, tupleIterator, this.context, collector);
+			}
 		} catch(TupleMRException e) {
 			throw new RuntimeException(e);
 		}
@@ -16,8 +16,10 @@
 package com.datasalt.pangool.tuplemr.mapred;
 
 import com.datasalt.pangool.PangoolRuntimeException;
-import com.datasalt.pangool.io.BitField;
+import com.datasalt.pangool.io.IPrimitiveTuple;
+import com.datasalt.pangool.io.NullBitmap;
 import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.PrimitiveTupleAdapter;
 import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.io.Schema.Field;
 import com.datasalt.pangool.io.Schema.Field.Type;
@@ -28,6 +30,7 @@ import com.datasalt.pangool.tuplemr.Criteria.SortElement;
 import com.datasalt.pangool.tuplemr.SerializationInfo;
 import com.datasalt.pangool.tuplemr.TupleMRConfig;
 import com.datasalt.pangool.tuplemr.TupleMRConfigBuilder;
+import com.datasalt.pangool.tuplemr.TupleMRProfiler;
 import com.datasalt.pangool.tuplemr.serialization.TupleSerialization;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
@@ -63,13 +66,17 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
   }
 
   private static final class Nulls {
-    protected BitField nulls1 = new BitField();
-    protected BitField nulls2 = new BitField();
+    protected NullBitmap nulls1 = new NullBitmap();
+    protected NullBitmap nulls2 = new NullBitmap();
   }
 
   protected Offsets offsets = new Offsets();
   protected Nulls nulls = new Nulls();
+  // For Tuples that don't implement IPrimitiveTuple
+  private final PrimitiveTupleAdapter adapter1 = new PrimitiveTupleAdapter();
+  private final PrimitiveTupleAdapter adapter2 = new PrimitiveTupleAdapter();
   protected boolean isMultipleSources;
+  protected TupleMRProfiler.Probe probe;
 
 
   public TupleMRConfig getConfig() {
@@ -113,17 +120,21 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
 
   }
 
-  public int compare(Schema schema, Criteria c, ITuple w1, int[] index1, ITuple w2,
+  public int compare(Schema schema, Criteria c, ITuple tuple1, int[] index1, ITuple tuple2,
                      int[] index2, Serializer[] serializers) {
+    IPrimitiveTuple w1 = adapter1.adapt(tuple1);
+    IPrimitiveTuple w2 = adapter2.adapt(tuple2);
     for (int i = 0; i < c.getElements().size(); i++) {
       Field field = schema.getField(i);
       SortElement e = c.getElements().get(i);
-      Object o1 = w1.get(index1[i]);
-      Object o2 = w2.get(index2[i]);
+      int pos1 = index1[i];
+      int pos2 = index2[i];
 
       // Handling with null values
-      if (o1 == null || o2 == null) {
-        int cmp = nullCompare(o1, o2, e);
+      boolean null1 = w1.isNull(pos1);
+      boolean null2 = w2.isNull(pos2);
+      if (null1 || null2) {
+        int cmp = nullCompare(null1 ? null : w1.get(pos1), null2 ? null : w2.get(pos2), e);
         if (cmp != 0) {
           return cmp;
         } else {
@@ -132,8 +143,14 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
       }
 
       // At this point we know that both values are not null.
-      Serializer serializer = (serializers == null) ? null : serializers[i];
-      int comparison = compareObjects(o1, o2, e.getCustomComparator(), field.getType(), serializer);
+      int comparison;
+      if (e.getCustomComparator() == null && isPrimitive(field.getType())) {
+        comparison = comparePrimitives(field.getType(), w1, pos1, w2, pos2);
+      } else {
+        Serializer serializer = (serializers == null) ? null : serializers[i];
+        comparison = compareObjects(w1.get(pos1), w2.get(pos2), e.getCustomComparator(), field.getType(),
+            serializer);
+      }
       if (comparison != 0) {
         return (e.getOrder() == Order.ASC ? comparison : -comparison);
       }
@@ -141,10 +158,42 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
     return 0;
   }
 
+  private static boolean isPrimitive(Type type) {
+    return type == Type.INT || type == Type.LONG || type == Type.FLOAT || type == Type.DOUBLE
+        || type == Type.BOOLEAN;
+  }
+
+  /**
+   * Compares two non null primitive fields without boxing them, as their compareTo() method would do.
+   */
+  private static int comparePrimitives(Type type, IPrimitiveTuple w1, int pos1, IPrimitiveTuple w2, int pos2) {
+    switch (type) {
+      case INT: {
+        int a = w1.getIntValue(pos1);
+        int b = w2.getIntValue(pos2);
+        return (a < b) ? -1 : ((a == b) ? 0 : 1);
+      }
+      case LONG: {
+        long a = w1.getLongValue(pos1);
+        long b = w2.getLongValue(pos2);
+        return (a < b) ? -1 : ((a == b) ? 0 : 1);
+      }
+      case FLOAT:
+        return Float.compare(w1.getFloatValue(pos1), w2.getFloatValue(pos2));
+      case DOUBLE:
+        return Double.compare(w1.getDoubleValue(pos1), w2.getDoubleValue(pos2));
+      default: {
+        boolean a = w1.getBooleanValue(pos1);
+        boolean b = w2.getBooleanValue(pos2);
+        return (a == b) ? 0 : (a ? 1 : -1);
+      }
+    }
+  }
+
   /**
    * Compares two objects. Uses the given custom comparator if present. If the
    * type is {@link Type#OBJECT} and no raw comparator is present, then a serializer
-   * comparator is used.
+   * comparator is used. That is the slow path counted by {@link ObjectComparatorRegistry}.
    */
   @SuppressWarnings({"unchecked"})
   public int compareObjects(Object elem1, Object elem2, RawComparator comparator,
@@ -155,6 +204,7 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
     }
 
     if (type == Type.OBJECT) {
+      ObjectComparatorRegistry.countSlowCompare();
       return serializerComparator.compare(elem1, serializer, elem2, serializer);
     } else {
       return compareObjects(elem1, elem2);
@@ -230,11 +280,16 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
 
   @Override
   public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    long start = (probe == null) ? -1 : probe.start();
     try {
       return (isMultipleSources) ? compareMultipleSources(b1, s1, l1, b2, s2, l2)
           : compareOneSource(b1, s1, l1, b2, s2, l2);
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      if (probe != null) {
+        probe.stop(start);
+      }
     }
   }
 
@@ -285,6 +340,9 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
 
     // Reading nulls bit field, if present
     if (schema.containsNullableFields()) {
+      int numNullable = schema.getNullableFieldsIdxArray().length;
+      n.nulls1.setSize(numNullable);
+      n.nulls2.setSize(numNullable);
       o.offset1 += n.nulls1.deser(b1, s1);
       o.offset2 += n.nulls2.deser(b2, s2);
     }
@@ -299,15 +357,16 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
       // Control for nulls, if field is nullable.
       if (field.isNullable()) {
         Criteria.NullOrder nullOrder = sortElement.getNullOrder();
-        if (n.nulls1.isSet(schema.getNullablePositionFromIndex(depth))) {
-          if (n.nulls2.isSet(schema.getNullablePositionFromIndex(depth))) {
+        int nullBit = schema.getNullablePositionFromIndex(depth);
+        if (n.nulls1.isSet(nullBit)) {
+          if (n.nulls2.isSet(nullBit)) {
             // Both are null, so both are equal. No space is used. Continue.
             continue;
           } else {
             // First is null
             return (nullOrder == Criteria.NullOrder.NULL_SMALLEST && sort == Order.ASC) ? -1 : 1;
           }
-        } else if (n.nulls2.isSet(schema.getNullablePositionFromIndex(depth))) {
+        } else if (n.nulls2.isSet(nullBit)) {
           // Second is null
           return (nullOrder == Criteria.NullOrder.NULL_SMALLEST && sort == Order.ASC) ? 1 : -1;
         }
@@ -423,13 +482,39 @@ public class SortComparator implements RawComparator<ITuple>, Configurable {
         this.conf = conf;
         setTupleMRConf(TupleMRConfig.get(conf));
         TupleMRConfigBuilder.initializeComparators(conf, this.tupleMRConf);
+        setObjectComparators(conf);
         serializerComparator.setConf(conf);
+        probe = TupleMRProfiler.probe(conf, TupleMRProfiler.Phase.SORT_COMPARE);
       }
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Sets the comparators of the {@link ObjectComparatorRegistry} to the OBJECT
+   * fields without custom comparator, so the binary and the object comparisons
+   * use them.
+   */
+  private void setObjectComparators(Configuration conf) {
+    setObjectComparators(conf, serInfo.getCommonSchema(), tupleMRConf.getCommonCriteria());
+    for (int schemaId = 0; schemaId < tupleMRConf.getSpecificOrderBys().size(); schemaId++) {
+      Criteria criteria = tupleMRConf.getSpecificOrderBys().get(schemaId);
+      if (criteria != null) {
+        setObjectComparators(conf, serInfo.getSpecificSchema(schemaId), criteria);
+      }
+    }
+  }
+
+  private static void setObjectComparators(Configuration conf, Schema schema, Criteria criteria) {
+    for (int i = 0; i < criteria.getElements().size(); i++) {
+      SortElement element = criteria.getElements().get(i);
+      if (element.getCustomComparator() == null) {
+        element.setCustomComparator(ObjectComparatorRegistry.getComparator(schema.getField(i), conf));
+      }
+    }
+  }
+
   private void setTupleMRConf(TupleMRConfig config) {
     if (this.tupleMRConf != null) {
       throw new RuntimeException("TupleMR config is already set");
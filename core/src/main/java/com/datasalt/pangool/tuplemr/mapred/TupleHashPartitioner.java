@@ -24,7 +24,10 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Partitioner;
 
 import com.datasalt.pangool.io.DatumWrapper;
+import com.datasalt.pangool.io.IPrimitiveTuple;
 import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.PrimitiveTupleAdapter;
+import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.io.Utf8;
 import com.datasalt.pangool.tuplemr.SerializationInfo;
 import com.datasalt.pangool.tuplemr.TupleMRConfig;
@@ -38,6 +41,7 @@ public class TupleHashPartitioner extends Partitioner<DatumWrapper<ITuple>, Null
 
 	private Configuration conf;
 	private final Utf8 HELPER_UTF8 = new Utf8(); // to perform hashCode of strings
+	private final PrimitiveTupleAdapter adapter = new PrimitiveTupleAdapter();
 
 	@Override
 	public int getPartition(DatumWrapper<ITuple> key, NullWritable value, int numPartitions) {
@@ -84,35 +88,61 @@ public class TupleHashPartitioner extends Partitioner<DatumWrapper<ITuple>, Null
 	 * Calculates a combinated hashCode using the specified number of fields.
 	 * 
 	 */
-	public int partialHashCode(ITuple tuple, int[] fields) {
+	public int partialHashCode(ITuple fromTuple, int[] fields) {
+		IPrimitiveTuple tuple = adapter.adapt(fromTuple);
+		Schema schema = tuple.getSchema();
 		int result = 0;
 		for(int field : fields) {
-			Object o = tuple.get(field);
-			if(o == null) { // nulls don't account for hashcode
+			if(tuple.isNull(field)) { // nulls don't account for hashcode
 				continue;
 			}
+			// Primitive fields are hashed without boxing, giving the same hashCode() as their boxed values
 			int hashCode;
-			if(o instanceof String) { // since String.hashCode() != Utf8.hashCode()
-				HELPER_UTF8.set((String) o);
-				hashCode = HELPER_UTF8.hashCode();
-			} else if(o instanceof Text) {
-				HELPER_UTF8.set((Text) o);
-				hashCode = HELPER_UTF8.hashCode();
-			} else if(o instanceof byte[]){
-				hashCode = hashBytes((byte[])o,0,((byte[]) o).length);
-			} else if(o instanceof ByteBuffer){
-				ByteBuffer buffer = (ByteBuffer)o;
-				int offset =  buffer.arrayOffset() + buffer.position();
-        int length = buffer.limit() - buffer.position();
-				hashCode = hashBytes(buffer.array(),offset,length);
-			} else {
-				hashCode = o.hashCode();
+			switch(schema.getField(field).getType()) {
+			case INT:
+				hashCode = tuple.getIntValue(field);
+				break;
+			case LONG:
+				long l = tuple.getLongValue(field);
+				hashCode = (int) (l ^ (l >>> 32));
+				break;
+			case FLOAT:
+				hashCode = Float.floatToIntBits(tuple.getFloatValue(field));
+				break;
+			case DOUBLE:
+				long d = Double.doubleToLongBits(tuple.getDoubleValue(field));
+				hashCode = (int) (d ^ (d >>> 32));
+				break;
+			case BOOLEAN:
+				hashCode = tuple.getBooleanValue(field) ? 1231 : 1237;
+				break;
+			default:
+				hashCode = objectHashCode(tuple.get(field));
 			}
 			result = result * 31 + hashCode;
 		}
 		return result;
 	}
-	
+
+	private int objectHashCode(Object o) {
+		if(o instanceof String) { // since String.hashCode() != Utf8.hashCode()
+			HELPER_UTF8.set((String) o);
+			return HELPER_UTF8.hashCode();
+		} else if(o instanceof Text) {
+			HELPER_UTF8.set((Text) o);
+			return HELPER_UTF8.hashCode();
+		} else if(o instanceof byte[]) {
+			return hashBytes((byte[]) o, 0, ((byte[]) o).length);
+		} else if(o instanceof ByteBuffer) {
+			ByteBuffer buffer = (ByteBuffer) o;
+			int offset = buffer.arrayOffset() + buffer.position();
+			int length = buffer.limit() - buffer.position();
+			return hashBytes(buffer.array(), offset, length);
+		} else {
+			return o.hashCode();
+		}
+	}
+
 	public static int hashBytes(byte[] array,int offset,int length){
 		int result=0;
 		for (int i=offset; i < offset+length ; i++){
@@ -10,13 +10,15 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.serializer.WritableSerialization;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,7 +32,8 @@ import com.datasalt.pangool.io.Tuple;
 
 /**
  * A wrapper around a SequenceFile that contains Cascading's Tuples that implements a Pangool-friendly InputFormat.
- * The Schema is lazily discovered with the first seen Cascading Tuple. The type correspondence is:
+ * The Schema can be declared, or lazily discovered with the first seen Cascading Tuple. In the latter case the type
+ * correspondence is:
  * <ul>
  *   <li>Integer - INT</li>
  *   <li>Long - LONG</li>
@@ -40,13 +43,18 @@ import com.datasalt.pangool.io.Tuple;
  *   <li>Short - INT</li>
  *   <li>Boolean - BOOLEAN</li>
  * </ul>
- * Any other type is unrecognized and an IOException is thrown.
+ * Any other type is unrecognized and an IOException is thrown. A declared Schema may use wider numeric types than the
+ * ones in the file, for example LONG for Integer values.
  * <p>
- * Column names must be provided to the InputFormat, this is of course because Cascading doesn't save them anywhere.
- * The schemaName is used to instantiate a Pangool Schema.
+ * When the Schema is discovered, column names must be provided to the InputFormat, this is of course because
+ * Cascading doesn't save them anywhere. The schemaName is used to instantiate a Pangool Schema.
  * <p>
- * Note that for this to work Cascading serialization must have been enabled in Hadoop Configuration.
- * You can do this by calling static method {@link #setSerializations(Configuration)}.
+ * How each value is set into the Pangool Tuple is decided once, with the first Cascading Tuple. Values that already
+ * have the class of their field are set as they are, without copying or boxing them again, and the Pangool Tuple is
+ * reused between records.
+ * <p>
+ * Cascading serialization is enabled by the record reader in its own copy of the Hadoop Configuration, so calling
+ * {@link #setSerializations(Configuration)} is not needed anymore.
  */
 @SuppressWarnings("serial")
 public class CascadingTupleInputFormat extends FileInputFormat<ITuple, NullWritable> implements Serializable {
@@ -55,12 +63,20 @@ public class CascadingTupleInputFormat extends FileInputFormat<ITuple, NullWrita
 	
 	private String schemaName;
 	private String[] fieldNames;
+	private Schema schema;
 
 	public CascadingTupleInputFormat(String schemaName, String... fieldNames) {
 		this.schemaName = schemaName;
 		this.fieldNames = fieldNames;
 	}
 
+	/**
+	 * Reads the Cascading Tuples with the given Schema, which must have as many fields as them.
+	 */
+	public CascadingTupleInputFormat(Schema schema) {
+		this.schema = schema;
+	}
+
 	/**
 	 * Like in Cascading's TupleSerialization.setSerializations() but accepting a Hadoop's Configuration rather than JobConf.
 	 */
@@ -85,59 +101,136 @@ public class CascadingTupleInputFormat extends FileInputFormat<ITuple, NullWrita
 		// make writable last
 		conf.set(HADOOP_IO_SERIALIZATIONS, Util.join(list, ","));
 	}
-	
+
+	/**
+	 * How a value of the Cascading Tuple is set into the Pangool Tuple.
+	 */
+	static enum Conversion {
+		AS_IS, TO_INT, TO_LONG, TO_FLOAT, TO_DOUBLE, TO_STRING
+	}
+
+	/**
+	 * The field for a value of the given class, when the Schema is discovered.
+	 */
+	static Field toField(String name, Class<?> cl) throws IOException {
+		if(cl == Integer.class || cl == Short.class) {
+			return Field.create(name, Field.Type.INT, true);
+		} else if(cl == Long.class) {
+			return Field.create(name, Field.Type.LONG, true);
+		} else if(cl == Float.class) {
+			return Field.create(name, Field.Type.FLOAT, true);
+		} else if(cl == Double.class) {
+			return Field.create(name, Field.Type.DOUBLE, true);
+		} else if(cl == String.class) {
+			return Field.create(name, Field.Type.STRING, true);
+		} else if(cl == Boolean.class) {
+			return Field.create(name, Field.Type.BOOLEAN, true);
+		}
+		throw new IOException("Can't handle type [" + cl + "] - only primitive Java types allowed.");
+	}
+
+	/**
+	 * The conversion for values of the given class, null if unknown, into the given field.
+	 */
+	static Conversion toConversion(Field field, Class<?> cl) {
+		switch(field.getType()) {
+		case INT:
+			return (cl == Integer.class) ? Conversion.AS_IS : Conversion.TO_INT;
+		case LONG:
+			return (cl == Long.class) ? Conversion.AS_IS : Conversion.TO_LONG;
+		case FLOAT:
+			return (cl == Float.class) ? Conversion.AS_IS : Conversion.TO_FLOAT;
+		case DOUBLE:
+			return (cl == Double.class) ? Conversion.AS_IS : Conversion.TO_DOUBLE;
+		case STRING:
+			return (cl == String.class) ? Conversion.AS_IS : Conversion.TO_STRING;
+		default:
+			return Conversion.AS_IS;
+		}
+	}
+
 	@Override
 	public RecordReader<ITuple, NullWritable> createRecordReader(InputSplit split, TaskAttemptContext ctx)
 	    throws IOException, InterruptedException {
 
 		return new RecordReader<ITuple, NullWritable>() {
 
-			RecordReader<cascading.tuple.Tuple, cascading.tuple.Tuple> delegatingRecordReader;
-			ITuple tuple;
+			SequenceFile.Reader reader;
+			long start, end;
+			boolean more = true;
+			Object cKey;
+			cascading.tuple.Tuple cTuple;
+			Tuple tuple;
+			Conversion[] conversions;
 
 			@Override
 			public void close() throws IOException {
+				if(reader != null) {
+					reader.close();
+				}
 			}
 
-			@Override
-			public ITuple getCurrentKey() throws IOException, InterruptedException {
-				cascading.tuple.Tuple cTuple = delegatingRecordReader.getCurrentValue();
-				
-				if(tuple == null) {
-					int i = 0;
+			/**
+			 * Computes the Schema, if not declared, and the conversion of each position from the first Cascading Tuple.
+			 */
+			private void plan() throws IOException {
+				Schema tupleSchema = schema;
+				if(tupleSchema == null) {
 					List<Field> fields = new ArrayList<Field>();
-					
-					for(Class<?> cl : cTuple.getTypes()) {
-						if(cl.equals(Integer.class)) {
-							fields.add(Field.create(fieldNames[i], Field.Type.INT, true));
-						} else if(cl.equals(Long.class)) {
-							fields.add(Field.create(fieldNames[i], Field.Type.LONG, true));
-						} else if(cl.equals(Float.class)) {
-							fields.add(Field.create(fieldNames[i], Field.Type.FLOAT, true));
-						} else if(cl.equals(Double.class)) {
-							fields.add(Field.create(fieldNames[i], Field.Type.DOUBLE, true));
-						} else if(cl.equals(String.class)) {
-							fields.add(Field.create(fieldNames[i], Field.Type.STRING, true));
-						} else if(cl.equals(Boolean.class)) {
-							fields.add(Field.create(fieldNames[i], Field.Type.BOOLEAN, true));
-						} else if(cl.equals(Short.class)) {
-							fields.add(Field.create(fieldNames[i], Field.Type.INT, true));
-						} else {
-							throw new IOException("Can't handle type [" + cl + "] - only primitive Java types allowed.");
+					for(int i = 0; i < cTuple.size(); i++) {
+						Object value = cTuple.getObject(i);
+						if(value == null) {
+							throw new IOException("Can't discover the type of field [" + fieldNames[i]
+							    + "] from a null value, declare the Schema instead.");
 						}
-						i++;
+						fields.add(toField(fieldNames[i], value.getClass()));
 					}
-					Schema schema = new Schema(schemaName, fields);
-					log.info("Lazily instantiated a Pangool Schema from Cascading Tuple: [" + schema + "]");
-					tuple = new Tuple(schema);
+					tupleSchema = new Schema(schemaName, fields);
+					log.info("Lazily instantiated a Pangool Schema from Cascading Tuple: [" + tupleSchema + "]");
+				} else if(tupleSchema.getFields().size() != cTuple.size()) {
+					throw new IOException("Schema " + tupleSchema + " doesn't match Cascading Tuple size " + cTuple.size());
+				}
+				conversions = new Conversion[cTuple.size()];
+				for(int i = 0; i < conversions.length; i++) {
+					Object value = cTuple.getObject(i);
+					conversions[i] = toConversion(tupleSchema.getField(i), (value == null) ? null : value.getClass());
+				}
+				tuple = new Tuple(tupleSchema);
+			}
+
+			@Override
+			public ITuple getCurrentKey() throws IOException, InterruptedException {
+				if(tuple == null) {
+					plan();
 				}
-				
-				// Just perform a normal Object copying - without checking Schema everytime.
-				// This is more efficient but it will raise errors later.
-				for(int i = 0; i < tuple.getSchema().getFields().size(); i++) {
-					tuple.set(i, cTuple.getObject(i));
+				for(int i = 0; i < conversions.length; i++) {
+					Object value = cTuple.getObject(i);
+					if(value == null) {
+						tuple.set(i, null);
+						continue;
+					}
+					switch(conversions[i]) {
+					case TO_INT:
+						tuple.setInt(i, ((Number) value).intValue());
+						break;
+					case TO_LONG:
+						tuple.setLong(i, ((Number) value).longValue());
+						break;
+					case TO_FLOAT:
+						tuple.setFloat(i, ((Number) value).floatValue());
+						break;
+					case TO_DOUBLE:
+						tuple.setDouble(i, ((Number) value).doubleValue());
+						break;
+					case TO_STRING:
+						tuple.set(i, value.toString());
+						break;
+					default:
+						// Just perform a normal Object copying - without checking Schema everytime.
+						// This is more efficient but it will raise errors later.
+						tuple.set(i, value);
+					}
 				}
-				
 				return tuple;
 			}
 
@@ -148,21 +241,43 @@ public class CascadingTupleInputFormat extends FileInputFormat<ITuple, NullWrita
 
 			@Override
 			public float getProgress() throws IOException, InterruptedException {
-				return delegatingRecordReader.getProgress();
+				if(end == start) {
+					return 0.0f;
+				}
+				return Math.min(1.0f, (reader.getPosition() - start) / (float) (end - start));
 			}
 
 			@Override
 			public void initialize(InputSplit iS, TaskAttemptContext ctx) throws IOException,
 			    InterruptedException {
-				delegatingRecordReader = new SequenceFileInputFormat<cascading.tuple.Tuple, cascading.tuple.Tuple>()
-				    .createRecordReader(iS, ctx);
-				delegatingRecordReader.initialize(iS, ctx);
+				FileSplit fileSplit = (FileSplit) iS;
+				Configuration conf = new Configuration(ctx.getConfiguration());
+				setSerializations(conf);
+				Path path = fileSplit.getPath();
+				reader = new SequenceFile.Reader(path.getFileSystem(conf), path, conf);
+				end = fileSplit.getStart() + fileSplit.getLength();
+				if(fileSplit.getStart() > reader.getPosition()) {
+					reader.sync(fileSplit.getStart());
+				}
+				start = reader.getPosition();
+				more = start < end;
 			}
 
 			@Override
 			public boolean nextKeyValue() throws IOException, InterruptedException {
-				return delegatingRecordReader.nextKeyValue();
+				if(!more) {
+					return false;
+				}
+				long pos = reader.getPosition();
+				// Both the key and the value are reused
+				cKey = reader.next(cKey);
+				if(cKey == null || (pos >= end && reader.syncSeen())) {
+					more = false;
+					return false;
+				}
+				cTuple = (cascading.tuple.Tuple) reader.getCurrentValue(cTuple);
+				return true;
 			}
 		};
 	}
-}
\ No newline at end of file
+}
@@ -18,6 +18,7 @@ package com.datasalt.pangool.tuplemr.mapred.lib.input;
 import java.io.IOException;
 
 import com.datasalt.pangool.utils.InstancesDistributor;
+import com.datasalt.pangool.tuplemr.mapred.lib.output.PangoolMultipleOutputs;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
@@ -47,6 +48,10 @@ public class DelegatingMapper extends Mapper {
           Mapper.class, inputSplit.getInputProcessorFile(), true);
 			log.info("[profile] Finished. Calling run() on delegate.");
 		}
-		delegate.run(context);
+		try {
+			delegate.run(context);
+		} finally {
+			PangoolMultipleOutputs.releaseTaskContext(context);
+		}
 	}
 }
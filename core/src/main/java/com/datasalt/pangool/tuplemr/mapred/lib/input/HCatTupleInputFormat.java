@@ -29,15 +29,18 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hcatalog.common.HCatConstants;
+import org.apache.hcatalog.common.HCatUtil;
 import org.apache.hcatalog.data.HCatRecord;
 import org.apache.hcatalog.data.schema.HCatFieldSchema;
 import org.apache.hcatalog.data.schema.HCatSchema;
 import org.apache.hcatalog.mapreduce.HCatInputFormat;
 
+import com.datasalt.pangool.io.IPrimitiveTuple;
 import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.PrimitiveTuple;
 import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.io.Schema.Field;
-import com.datasalt.pangool.io.Tuple;
 
 /**
  * A bridge between HCatalog and Pangool that makes any HCatInputFormat compatible with Pangool. It delegates to
@@ -54,6 +57,15 @@ import com.datasalt.pangool.io.Tuple;
  *   <li>BOOLEAN: BOOLEAN</li>
  *   <li>TINYINT: INT</li>
  * </ul>
+ * Optionally, a partition filter and a projection can be given. The filter, like
+ * <code>"dt >= \"20121001\""</code>, is passed to HCatalog so only the matching partitions are read. The projection is
+ * a Pangool {@link Schema} with a subset of the columns of the table, in any order, which is passed to HCatalog as
+ * output schema: the other columns are not returned, nor read by storage formats that support column pruning. The
+ * returned Tuples have the projection Schema. HCatalog columns can always be null, so reading a null value for a
+ * field that is not nullable in the projection fails.
+ * <p>
+ * The returned Tuple is a {@link PrimitiveTuple} reused for every record, so primitive values are not boxed again.
+ * <p>
  * See: http://incubator.apache.org/hcatalog/docs/r0.4.0/inputoutput.html
  */
 @SuppressWarnings("serial")
@@ -61,50 +73,92 @@ public class HCatTupleInputFormat extends InputFormat<ITuple, NullWritable> impl
 
 	private HCatSchema schema;
 	private Schema pangoolSchema;
+	// HCatalog type of each field of the Pangool schema
+	private HCatFieldSchema.Type[] types;
 
 	public HCatTupleInputFormat(String dbName, String tableName, Configuration conf) throws IOException {
-		HCatInputFormat.setInput(conf, dbName, tableName);
+		this(dbName, tableName, null, null, conf);
+	}
+
+	/**
+	 * @param partitionFilter
+	 *          HCatalog filter over the partition columns of the table, or null for reading all the partitions.
+	 * @param projection
+	 *          The columns to read, with the Pangool types of the mapping above, or null for reading all of them.
+	 */
+	public HCatTupleInputFormat(String dbName, String tableName, String partitionFilter, Schema projection,
+	    Configuration conf) throws IOException {
+		HCatInputFormat input = HCatInputFormat.setInput(conf, dbName, tableName);
+		if(partitionFilter != null) {
+			input.setFilter(partitionFilter);
+		}
 		schema = HCatInputFormat.getTableSchema(conf);
 		List<Field> pangoolSchemaFields = new ArrayList<Field>();
 		for(HCatFieldSchema fieldSchema : schema.getFields()) {
-			switch(fieldSchema.getType()) {
-			case BIGINT:
-				pangoolSchemaFields.add(Field.create(fieldSchema.getName(), Schema.Field.Type.LONG, true));
-				break;
-			case BOOLEAN:
-				pangoolSchemaFields.add(Field.create(fieldSchema.getName(), Schema.Field.Type.BOOLEAN, true));
-				break;
-			case DOUBLE:
-				pangoolSchemaFields.add(Field.create(fieldSchema.getName(), Schema.Field.Type.DOUBLE, true));
-				break;
-			case FLOAT:
-				pangoolSchemaFields.add(Field.create(fieldSchema.getName(), Schema.Field.Type.FLOAT, true));
-				break;
-			case INT:
-				pangoolSchemaFields.add(Field.create(fieldSchema.getName(), Schema.Field.Type.INT, true));
-				break;
-			case SMALLINT:
-				pangoolSchemaFields.add(Field.create(fieldSchema.getName(), Schema.Field.Type.INT, true));
-				break;
-			case STRING:
-				pangoolSchemaFields.add(Field.create(fieldSchema.getName(), Schema.Field.Type.STRING, true));
-				break;
-			case TINYINT:
-				pangoolSchemaFields.add(Field.create(fieldSchema.getName(), Schema.Field.Type.INT, true));
-				break;
-			default:
-				throw new IllegalArgumentException("Field type not supported (" + fieldSchema.getType()
-				    + ") only primitive types can be bridged between HCatalog and Pangool.");
-			}
+			pangoolSchemaFields.add(Field.create(fieldSchema.getName(), toPangoolType(fieldSchema), true));
 		}
 		// Instantiate a Pangool schema with the same name than the HCatalog table name
 		this.pangoolSchema = new Schema(tableName, pangoolSchemaFields);
+
+		HCatSchema outputSchema = schema;
+		if(projection != null) {
+			List<HCatFieldSchema> projectedFields = new ArrayList<HCatFieldSchema>();
+			for(Field field : projection.getFields()) {
+				if(schema.getPosition(field.getName()) == null) {
+					throw new IllegalArgumentException("Field '" + field.getName() + "' of the projection not in table "
+					    + dbName + "." + tableName + ": " + schema.getFieldNames());
+				}
+				HCatFieldSchema fieldSchema = schema.get(field.getName());
+				if(toPangoolType(fieldSchema) != field.getType()) {
+					throw new IllegalArgumentException("Field '" + field.getName() + "' is " + fieldSchema.getType()
+					    + " in HCatalog, so it must be " + toPangoolType(fieldSchema) + " in the projection, not "
+					    + field.getType());
+				}
+				projectedFields.add(fieldSchema);
+			}
+			outputSchema = new HCatSchema(projectedFields);
+			// Same as HCatInputFormat.setOutputSchema(), which needs a Job
+			conf.set(HCatConstants.HCAT_KEY_OUTPUT_SCHEMA, HCatUtil.serialize(outputSchema));
+			this.pangoolSchema = projection;
+		}
+		types = new HCatFieldSchema.Type[outputSchema.size()];
+		for(int i = 0; i < types.length; i++) {
+			types[i] = outputSchema.get(i).getType();
+		}
+	}
+
+	private static Schema.Field.Type toPangoolType(HCatFieldSchema fieldSchema) {
+		switch(fieldSchema.getType()) {
+		case BIGINT:
+			return Schema.Field.Type.LONG;
+		case BOOLEAN:
+			return Schema.Field.Type.BOOLEAN;
+		case DOUBLE:
+			return Schema.Field.Type.DOUBLE;
+		case FLOAT:
+			return Schema.Field.Type.FLOAT;
+		case INT:
+		case SMALLINT:
+		case TINYINT:
+			return Schema.Field.Type.INT;
+		case STRING:
+			return Schema.Field.Type.STRING;
+		default:
+			throw new IllegalArgumentException("Field type not supported (" + fieldSchema.getType()
+			    + ") only primitive types can be bridged between HCatalog and Pangool.");
+		}
 	}
 
+	/**
+	 * The schema of the whole table.
+	 */
 	public HCatSchema getSchema() {
 		return schema;
 	}
 
+	/**
+	 * The schema of the returned Tuples: the projection, if any.
+	 */
 	public Schema getPangoolSchema() {
 		return pangoolSchema;
 	}
@@ -121,7 +175,8 @@ public class HCatTupleInputFormat extends InputFormat<ITuple, NullWritable> impl
 
 		return new RecordReader<ITuple, NullWritable>() {
 
-			ITuple tuple = new Tuple(pangoolSchema);
+			RecordConverter converter = new RecordConverter(pangoolSchema, types);
+			PrimitiveTuple tuple = new PrimitiveTuple(pangoolSchema);
 
 			@Override
 			public void close() throws IOException {
@@ -130,11 +185,7 @@ public class HCatTupleInputFormat extends InputFormat<ITuple, NullWritable> impl
 
 			@Override
 			public ITuple getCurrentKey() throws IOException, InterruptedException {
-				HCatRecord record = hCatRecordReader.getCurrentValue();
-				// Perform conversion between HCatRecord and Tuple
-				for(int pos = 0; pos < schema.size(); pos++) {
-					tuple.set(pos, record.get(pos));
-				}
+				converter.convert(hCatRecordReader.getCurrentValue(), tuple);
 				return tuple;
 			}
 
@@ -161,6 +212,56 @@ public class HCatTupleInputFormat extends InputFormat<ITuple, NullWritable> impl
 		};
 	}
 
+	/**
+	 * Copies the values of an {@link HCatRecord} to a Tuple with the Pangool schema of the mapping above.
+	 */
+	static class RecordConverter {
+
+		private final Schema schema;
+		private final HCatFieldSchema.Type[] types;
+
+		RecordConverter(Schema schema, HCatFieldSchema.Type[] types) {
+			this.schema = schema;
+			this.types = types;
+		}
+
+		void convert(HCatRecord record, IPrimitiveTuple tuple) {
+			for(int pos = 0; pos < types.length; pos++) {
+				Object value = record.get(pos);
+				if(value == null) {
+					if(!schema.getField(pos).isNullable()) {
+						throw new IllegalArgumentException("Null value for field '" + schema.getField(pos).getName()
+						    + "', which is not nullable in the projection. HCatalog columns can be null: "
+						    + "declare it nullable");
+					}
+					tuple.set(pos, null);
+					continue;
+				}
+				switch(types[pos]) {
+				case BIGINT:
+					tuple.setLong(pos, (Long) value);
+					break;
+				case INT:
+				case SMALLINT:
+				case TINYINT:
+					tuple.setInt(pos, ((Number) value).intValue());
+					break;
+				case DOUBLE:
+					tuple.setDouble(pos, (Double) value);
+					break;
+				case FLOAT:
+					tuple.setFloat(pos, (Float) value);
+					break;
+				case BOOLEAN:
+					tuple.setBoolean(pos, (Boolean) value);
+					break;
+				default:
+					tuple.set(pos, value);
+				}
+			}
+		}
+	}
+
 	@Override
 	public List<InputSplit> getSplits(JobContext jobcontext) throws IOException, InterruptedException {
 		HCatInputFormat iF = new HCatInputFormat();
@@ -17,12 +17,15 @@ package com.datasalt.pangool.tuplemr.mapred.lib.output;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +33,9 @@ import java.util.StringTokenizer;
 import java.util.UUID;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.JobID;
@@ -37,8 +43,12 @@ import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
 import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.datasalt.pangool.tuplemr.mapred.lib.output.ProxyOutputFormat.ProxyOutputCommitter;
 import com.datasalt.pangool.utils.InstancesDistributor;
@@ -48,6 +58,11 @@ import com.datasalt.pangool.utils.TaskAttemptContextFactory;
 /**
  * This class is inspired by the MultipleOutputs class of Hadoop. The difference is that it allows an arbitrary
  * OutputFormat to be written in sub-folders of the output path.
+ * <p>
+ * The number of simultaneously open RecordWriters can be bounded with {@link #setMaxOpenWriters(Job, int)}. When the
+ * limit is reached the least recently used writer is closed and the files it wrote are renamed with an increasing
+ * suffix (e.g. part-r-00000_1, part-r-00000_2...), so that they are not overwritten if the same output is written
+ * again afterwards and a new writer is opened. Every output is committed once, in {@link #close()}.
  **/
 @SuppressWarnings("rawtypes")
 public class PangoolMultipleOutputs<KEYOUT, VALUEOUT> {
@@ -63,6 +78,7 @@ public class PangoolMultipleOutputs<KEYOUT, VALUEOUT> {
 	private static final String CONF = ".conf";
 
 	private static final String COUNTERS_ENABLED = "pangool.multipleoutputs.counters";
+	private static final String MAX_OPEN_WRITERS = "pangool.multipleoutputs.max.open.writers";
 
 	/**
 	 * Counters group used by the counters of MultipleOutputs.
@@ -299,6 +315,73 @@ public class PangoolMultipleOutputs<KEYOUT, VALUEOUT> {
 		return job.getConfiguration().getBoolean(COUNTERS_ENABLED, false);
 	}
 
+	/**
+	 * Sets the maximum number of RecordWriters that can be open at the same time in a task. When this number is
+	 * exceeded the least recently used writer is closed, and reopened if needed later on, writing to a new file. The
+	 * output is committed in {@link #close()}. Only outputs whose {@link OutputCommitter} is a
+	 * {@link FileOutputCommitter} are evicted. By default (0) there is no limit.
+	 * 
+	 * @param job
+	 *          job to configure
+	 * @param maxOpenWriters
+	 *          maximum number of open writers, or 0 for no limit.
+	 */
+	public static void setMaxOpenWriters(Job job, int maxOpenWriters) {
+		if(maxOpenWriters < 0) {
+			throw new IllegalArgumentException("Max open writers can't be negative: " + maxOpenWriters);
+		}
+		job.getConfiguration().setInt(MAX_OPEN_WRITERS, maxOpenWriters);
+	}
+
+	/**
+	 * Returns the maximum number of simultaneously open RecordWriters, or 0 if there is no limit.
+	 * 
+	 * @param job
+	 *          the job
+	 */
+	public static int getMaxOpenWriters(JobContext job) {
+		return job.getConfiguration().getInt(MAX_OPEN_WRITERS, 0);
+	}
+
+	// Contexts of the tasks with open instances, for the writers of named outputs to reach their counters. Removed by
+	// close(), and only weakly referenced so that tasks that fail before closing don't keep them in reused JVMs.
+	private static final Map<TaskAttemptID, WeakReference<TaskInputOutputContext<?, ?, ?, ?>>> taskContexts =
+	    Collections.synchronizedMap(new HashMap<TaskAttemptID, WeakReference<TaskInputOutputContext<?, ?, ?, ?>>>());
+
+	private static void registerTaskContext(TaskInputOutputContext<?, ?, ?, ?> context) {
+		synchronized(taskContexts) {
+			Iterator<WeakReference<TaskInputOutputContext<?, ?, ?, ?>>> it = taskContexts.values().iterator();
+			while(it.hasNext()) {
+				if(it.next().get() == null) {
+					it.remove();
+				}
+			}
+			taskContexts.put(context.getTaskAttemptID(),
+			    new WeakReference<TaskInputOutputContext<?, ?, ?, ?>>(context));
+		}
+	}
+
+	/**
+	 * Forgets the context of the given task. Called by close() and, in a finally block, by the Pangool mappers and
+	 * reducers, so failed tasks don't leave their context behind in reused JVMs.
+	 */
+	public static void releaseTaskContext(TaskAttemptContext context) {
+		taskContexts.remove(context.getTaskAttemptID());
+	}
+
+	/**
+	 * Returns a context that can increment counters for the given one: itself if it is a TaskInputOutputContext or,
+	 * for the TaskAttemptContext given to the RecordWriter of a named output, the context of its task. Null if there
+	 * is none.
+	 */
+	public static TaskInputOutputContext<?, ?, ?, ?> getTaskInputOutputContext(TaskAttemptContext context) {
+		if(context instanceof TaskInputOutputContext) {
+			return (TaskInputOutputContext<?, ?, ?, ?>) context;
+		}
+		WeakReference<TaskInputOutputContext<?, ?, ?, ?>> ref = taskContexts.get(context.getTaskAttemptID());
+		return (ref == null) ? null : ref.get();
+	}
+
 	/**
 	 * Wraps RecordWriter to increment counters.
 	 */
@@ -330,13 +413,24 @@ public class PangoolMultipleOutputs<KEYOUT, VALUEOUT> {
 	private TaskInputOutputContext<?, ?, KEYOUT, VALUEOUT> context;
 	private Set<String> namedOutputs;
 	private Map<String, OutputContext> outputContexts;
+	// Number of times the writer of each output has been evicted
+	private Map<String, Integer> evictedOutputs;
+	// Evicted outputs not opened again, waiting to be committed in close()
+	private Map<String, OutputContext> closedOutputs;
+	// Outputs whose specs have already been checked, so they are not checked again when reopened
+	private Set<String> checkedOutputs;
 	private boolean countersEnabled;
+	private int maxOpenWriters;
+
+	private static Logger log = LoggerFactory.getLogger(PangoolMultipleOutputs.class);
 
 	private static class OutputContext {
 		RecordWriter recordWriter;
 		TaskAttemptContext taskAttemptContext;
 		JobContext jobContext;
 		OutputCommitter outputCommitter;
+		// Files of the work path already renamed because of previous evictions
+		Set<String> renamedFiles;
 	}
 
 	/**
@@ -349,8 +443,14 @@ public class PangoolMultipleOutputs<KEYOUT, VALUEOUT> {
 		this.context = context;
 		namedOutputs = Collections.unmodifiableSet(new HashSet<String>(PangoolMultipleOutputs
 		    .getNamedOutputsList(context)));
-		outputContexts = new HashMap<String, OutputContext>();
+		// access-ordered so that iteration starts with the least recently used writer
+		outputContexts = new LinkedHashMap<String, OutputContext>(16, 0.75f, true);
+		evictedOutputs = new HashMap<String, Integer>();
+		closedOutputs = new HashMap<String, OutputContext>();
+		checkedOutputs = new HashSet<String>();
 		countersEnabled = getCountersEnabled(context);
+		maxOpenWriters = getMaxOpenWriters(context);
+		registerTaskContext(context);
 	}
 
 	/**
@@ -472,8 +572,13 @@ public class PangoolMultipleOutputs<KEYOUT, VALUEOUT> {
 			}
 
 			context.jobContext = jobContext;
-			// The contract of the OutputFormat is to check the output specs
-			outputFormat.checkOutputSpecs(jobContext);
+			// The contract of the OutputFormat is to check the output specs. Only the first time: when reopened after an
+			// eviction the output folder already exists.
+			if(checkedOutputs.add(baseFileName)) {
+				outputFormat.checkOutputSpecs(jobContext);
+			}
+			OutputContext closed = closedOutputs.remove(baseFileName);
+			context.renamedFiles = (closed == null) ? new HashSet<String>() : closed.renamedFiles;
 			// We get the output committer so we can call it later
 			context.outputCommitter = outputFormat.getOutputCommitter(taskContext);
 			// Save the RecordWriter to cache it
@@ -487,10 +592,81 @@ public class PangoolMultipleOutputs<KEYOUT, VALUEOUT> {
 			}
 
 			outputContexts.put(baseFileName, context);
+			if(maxOpenWriters > 0 && outputContexts.size() > maxOpenWriters) {
+				evictLeastRecentlyUsed(baseFileName);
+			}
 		}
 		return context.recordWriter;
 	}
 
+	/**
+	 * Closes the least recently used writer that can be safely reopened later, other than the one for the given output.
+	 * It is committed with the rest in {@link #close()}.
+	 */
+	private void evictLeastRecentlyUsed(String currentOutput) throws IOException, InterruptedException {
+		Iterator<Map.Entry<String, OutputContext>> it = outputContexts.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<String, OutputContext> entry = it.next();
+			if(entry.getKey().equals(currentOutput)
+			    || !(entry.getValue().outputCommitter instanceof FileOutputCommitter)) {
+				continue;
+			}
+			it.remove();
+			OutputContext outputContext = entry.getValue();
+			outputContext.recordWriter.close(outputContext.taskAttemptContext);
+			Integer times = evictedOutputs.get(entry.getKey());
+			times = (times == null) ? 1 : times + 1;
+			evictedOutputs.put(entry.getKey(), times);
+			renameEvictedFiles(outputContext, times);
+			closedOutputs.put(entry.getKey(), outputContext);
+			log.info("Evicted RecordWriter for output [" + entry.getKey() + "]. Max open writers: "
+			    + maxOpenWriters);
+			return;
+		}
+	}
+
+	/**
+	 * Renames the files written by an evicted writer by appending a suffix to their name, so that they are not
+	 * overwritten by the files of the next writer opened for the same output. Sub-folders, like the "field=value" ones
+	 * of {@link TuplePartitionedOutputFormat}, keep their name: only the files inside them are renamed.
+	 */
+	private void renameEvictedFiles(OutputContext outputContext, int times) throws IOException {
+		Path workPath = ((FileOutputCommitter) outputContext.outputCommitter).getWorkPath();
+		FileSystem fs = workPath.getFileSystem(outputContext.taskAttemptContext.getConfiguration());
+		if(!fs.exists(workPath)) {
+			return;
+		}
+		renameEvictedFiles(fs, workPath, "", outputContext.renamedFiles, times);
+	}
+
+	/**
+	 * Renames the files under the given folder, recursively. Renamed files are tracked by their path relative to the
+	 * work path.
+	 */
+	private static void renameEvictedFiles(FileSystem fs, Path folder, String relativeFolder, Set<String> renamedFiles,
+	    int times) throws IOException {
+		for(FileStatus status : fs.listStatus(folder)) {
+			String name = status.getPath().getName();
+			if(name.startsWith("_") || name.startsWith(".")) {
+				continue;
+			}
+			if(status.isDir()) {
+				renameEvictedFiles(fs, status.getPath(), relativeFolder + name + "/", renamedFiles, times);
+				continue;
+			}
+			if(renamedFiles.contains(relativeFolder + name)) {
+				continue;
+			}
+			int extension = name.indexOf('.');
+			String newName = (extension == -1) ? name + "_" + times : name.substring(0, extension) + "_" + times
+			    + name.substring(extension);
+			if(!fs.rename(status.getPath(), new Path(folder, newName))) {
+				throw new IOException("Can't rename " + status.getPath() + " to " + newName);
+			}
+			renamedFiles.add(relativeFolder + newName);
+		}
+	}
+
 	/**
 	 * Closes all the opened outputs.
 	 * 
@@ -499,30 +675,43 @@ public class PangoolMultipleOutputs<KEYOUT, VALUEOUT> {
 	 * 
 	 */
 	public void close() throws IOException, InterruptedException {
-		for(OutputContext outputContext : this.outputContexts.values()) {
-			outputContext.recordWriter.close(outputContext.taskAttemptContext);
-			outputContext.outputCommitter.commitTask(outputContext.taskAttemptContext);
-			// This is a trick for Hadoop 2.0 where there is extra business logic in commitJob()
-			JobContext jContext;
-			try {
-				jContext = JobContextFactory.get(outputContext.taskAttemptContext.getConfiguration(),
-				    new JobID());
-			} catch(Exception e) {
-				throw new IOException(e);
+		try {
+			for(OutputContext outputContext : outputContexts.values()) {
+				outputContext.recordWriter.close(outputContext.taskAttemptContext);
+				commitOutput(outputContext);
 			}
-			try {
-				Class cl = Class.forName(OutputCommitter.class.getName());
-				Method method = cl.getMethod("commitJob", Class.forName(JobContext.class.getName()));
-				if(method != null) {
-					method.invoke(outputContext.outputCommitter, jContext);
-				}
-			} catch(Exception e) {
-				// Hadoop 2.0 : do nothing
-				// we need to call commitJob as a trick, but the trick itself may throw an IOException.
-				// it doesn't mean that something went wrong.
-				// If there was something really wrong it would have failed before.
+			for(OutputContext outputContext : closedOutputs.values()) {
+				commitOutput(outputContext);
+			}
+			outputContexts.clear();
+			closedOutputs.clear();
+		} finally {
+			releaseTaskContext(context);
+		}
+	}
+
+	private void commitOutput(OutputContext outputContext) throws IOException {
+		outputContext.outputCommitter.commitTask(outputContext.taskAttemptContext);
+		// This is a trick for Hadoop 2.0 where there is extra business logic in commitJob()
+		JobContext jContext;
+		try {
+			jContext = JobContextFactory.get(outputContext.taskAttemptContext.getConfiguration(),
+			    new JobID());
+		} catch(Exception e) {
+			throw new IOException(e);
+		}
+		try {
+			Class cl = Class.forName(OutputCommitter.class.getName());
+			Method method = cl.getMethod("commitJob", Class.forName(JobContext.class.getName()));
+			if(method != null) {
+				method.invoke(outputContext.outputCommitter, jContext);
 			}
-			outputContext.outputCommitter.cleanupJob(outputContext.jobContext);
+		} catch(Exception e) {
+			// Hadoop 2.0 : do nothing
+			// we need to call commitJob as a trick, but the trick itself may throw an IOException.
+			// it doesn't mean that something went wrong.
+			// If there was something really wrong it would have failed before.
 		}
+		outputContext.outputCommitter.cleanupJob(outputContext.jobContext);
 	}
 }
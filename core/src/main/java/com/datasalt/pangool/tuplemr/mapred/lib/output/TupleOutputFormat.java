@@ -40,7 +40,7 @@ import com.datasalt.pangool.io.TupleFile;
 @SuppressWarnings("serial")
 public class TupleOutputFormat extends FileOutputFormat<ITuple, NullWritable> implements Serializable {
 
-	private Schema outputSchema = null;
+	protected Schema outputSchema = null;
 
 	/**
 	 * Empty constructor means the output Schema will be picked from the first Tuple that is emitted. 
@@ -63,7 +63,7 @@ public class TupleOutputFormat extends FileOutputFormat<ITuple, NullWritable> im
 		this.outputSchema = Schema.parse(outputSchema);
 	}
 
-	private CompressionCodec getCodec(TaskAttemptContext context) {
+	protected CompressionCodec getCodec(TaskAttemptContext context) {
 		if(getCompressOutput(context)) {
 			// find the right codec
 			Class<?> codecClass = SequenceFileOutputFormat.getOutputCompressorClass(context,
@@ -73,14 +73,18 @@ public class TupleOutputFormat extends FileOutputFormat<ITuple, NullWritable> im
 		return null;
 	}
 
+	protected SequenceFile.CompressionType getCompressionType(TaskAttemptContext context) {
+		return getCompressOutput(context) ? SequenceFileOutputFormat.getOutputCompressionType(context)
+		    : SequenceFile.CompressionType.NONE;
+	}
+
 	public RecordWriter<ITuple, NullWritable> getRecordWriter(final TaskAttemptContext context)
 	    throws IOException, InterruptedException {
 
 		final Configuration conf = context.getConfiguration();
 
 		final CompressionCodec codec = getCodec(context);
-		final SequenceFile.CompressionType compressionType = getCompressOutput(context) ? SequenceFileOutputFormat
-		    .getOutputCompressionType(context) : SequenceFile.CompressionType.NONE;
+		final SequenceFile.CompressionType compressionType = getCompressionType(context);
 		// get the path of the temporary output file
 		final Path file = getDefaultWorkFile(context, "");
 		final FileSystem fs = file.getFileSystem(conf);
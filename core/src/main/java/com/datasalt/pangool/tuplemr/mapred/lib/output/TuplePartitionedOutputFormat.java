@@ -0,0 +1,267 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr.mapred.lib.output;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Schema.Field;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.io.TupleFile;
+import com.datasalt.pangool.io.Utf8;
+
+/**
+ * A {@link TupleOutputFormat} that buckets the output {@link ITuple}s in sub-folders by the value of one or more
+ * fields, following the "field=value" convention. For example, partitioning by "country" and "date" produces files
+ * like "country=ES/date=2012-01-01/part-r-00000". Null values go to the {@link #NULL_PARTITION} partition.
+ * <p>
+ * The relative path of each partition is built only once per distinct value. The number of partitions that can be
+ * open at the same time in a task can be bounded. When the limit is reached, Tuples for partitions that are not open
+ * are spilled to a temporary Tuple file in the task work folder. The spill is replayed when the writer is closed,
+ * opening at most the configured number of partitions on each pass.
+ * <p>
+ * Only INT, LONG, FLOAT, DOUBLE, BOOLEAN, STRING and ENUM fields can be used for partitioning.
+ */
+@SuppressWarnings("serial")
+public class TuplePartitionedOutputFormat extends TupleOutputFormat {
+
+	public static final String NULL_PARTITION = "__null__";
+
+	private String[] partitionFields;
+	private int maxOpenPartitions;
+
+	/**
+	 * Partitions the output by the given fields with no limit in the number of open partitions.
+	 */
+	public TuplePartitionedOutputFormat(Schema outputSchema, String... partitionFields) {
+		this(outputSchema, 0, partitionFields);
+	}
+
+	/**
+	 * Partitions the output by the given fields, having at most maxOpenPartitions partitions open at the same time (0
+	 * means no limit).
+	 */
+	public TuplePartitionedOutputFormat(Schema outputSchema, int maxOpenPartitions, String... partitionFields) {
+		super(outputSchema);
+		if(outputSchema == null) {
+			throw new IllegalArgumentException("Output schema is mandatory for partitioned output");
+		}
+		if(partitionFields == null || partitionFields.length == 0) {
+			throw new IllegalArgumentException("At least one partition field must be provided");
+		}
+		if(maxOpenPartitions < 0) {
+			throw new IllegalArgumentException("Max open partitions can't be negative: " + maxOpenPartitions);
+		}
+		for(String fieldName : partitionFields) {
+			Field field = outputSchema.getField(fieldName);
+			if(field == null) {
+				throw new IllegalArgumentException("Partition field '" + fieldName + "' not present in schema "
+				    + outputSchema);
+			}
+			switch(field.getType()) {
+			case INT:
+			case LONG:
+			case FLOAT:
+			case DOUBLE:
+			case BOOLEAN:
+			case STRING:
+			case ENUM:
+				break;
+			default:
+				throw new IllegalArgumentException("Can't partition by field '" + fieldName + "' of type "
+				    + field.getType());
+			}
+		}
+		this.partitionFields = partitionFields;
+		this.maxOpenPartitions = maxOpenPartitions;
+	}
+
+	public String[] getPartitionFields() {
+		return partitionFields;
+	}
+
+	public int getMaxOpenPartitions() {
+		return maxOpenPartitions;
+	}
+
+	/**
+	 * Escapes the characters that can't be part of a path name. Leading '.' and '_' are escaped too as they would make
+	 * the folder hidden for input formats.
+	 */
+	static String escapePathName(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if(c < ' ' || c == '/' || c == '\\' || c == '=' || c == '%' || c == ':' || c == '#' || c == '?'
+			    || c == '*' || c == '[' || c == ']' || c == '{' || c == '}' || c == '"' || c == '\''
+			    || (i == 0 && (c == '.' || c == '_'))) {
+				sb.append('%').append(String.format("%02X", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A node in the tree of distinct partition values. Leaf nodes are the partitions, holding the writer if it is open.
+	 */
+	private static class Partition {
+
+		String path;
+		Map<Object, Partition> children;
+		TupleFile.Writer writer;
+
+		Partition(String path) {
+			this.path = path;
+		}
+	}
+
+	@Override
+	public RecordWriter<ITuple, NullWritable> getRecordWriter(final TaskAttemptContext context)
+	    throws IOException, InterruptedException {
+		return new PartitionedRecordWriter(context);
+	}
+
+	private class PartitionedRecordWriter extends RecordWriter<ITuple, NullWritable> {
+
+		private final TaskAttemptContext context;
+		private final Configuration conf;
+		private final FileSystem fs;
+		private final Path workPath;
+		private final String fileName;
+		private final CompressionCodec codec;
+		private final SequenceFile.CompressionType compressionType;
+
+		private final int[] partitionFieldsPos;
+		private final Partition root = new Partition(null);
+		private final List<Partition> openPartitions = new ArrayList<Partition>();
+		// Reused for looking up String values without allocating a key
+		private final Utf8 lookupText = new Utf8();
+
+		private TupleFile.Writer spillWriter;
+		private Path spillPath;
+		private int spills = 0;
+
+		PartitionedRecordWriter(TaskAttemptContext context) throws IOException {
+			this.context = context;
+			this.conf = context.getConfiguration();
+			Path file = getDefaultWorkFile(context, "");
+			this.workPath = file.getParent();
+			this.fileName = file.getName();
+			this.fs = file.getFileSystem(conf);
+			this.codec = getCodec(context);
+			this.compressionType = getCompressionType(context);
+			partitionFieldsPos = new int[partitionFields.length];
+			for(int i = 0; i < partitionFields.length; i++) {
+				partitionFieldsPos[i] = outputSchema.getFieldPos(partitionFields[i]);
+			}
+		}
+
+		@Override
+		public void write(ITuple tuple, NullWritable value) throws IOException {
+			Partition partition = getPartition(tuple);
+			if(partition.writer == null) {
+				if(maxOpenPartitions > 0 && openPartitions.size() >= maxOpenPartitions) {
+					spill(tuple);
+					return;
+				}
+				partition.writer = new TupleFile.Writer(fs, conf, new Path(new Path(workPath, partition.path),
+				    fileName), outputSchema, compressionType, codec, context);
+				openPartitions.add(partition);
+			}
+			partition.writer.append(tuple);
+		}
+
+		private Partition getPartition(ITuple tuple) {
+			Partition partition = root;
+			for(int i = 0; i < partitionFieldsPos.length; i++) {
+				Object value = tuple.get(partitionFieldsPos[i]);
+				Object key = value;
+				if(value instanceof String) {
+					lookupText.set((String) value);
+					key = lookupText;
+				}
+				if(partition.children == null) {
+					partition.children = new HashMap<Object, Partition>();
+				}
+				Partition child = partition.children.get(key);
+				if(child == null) {
+					String segment = partitionFields[i] + "="
+					    + (value == null ? NULL_PARTITION : escapePathName(value.toString()));
+					child = new Partition(partition.path == null ? segment : partition.path + "/" + segment);
+					// Text instances are usually reused by the caller so we keep a copy
+					partition.children.put((key instanceof Text) ? new Utf8((Text) key) : key, child);
+				}
+				partition = child;
+			}
+			return partition;
+		}
+
+		private void spill(ITuple tuple) throws IOException {
+			if(spillWriter == null) {
+				spillPath = new Path(workPath, "_partitions-spill-" + (spills++));
+				spillWriter = new TupleFile.Writer(fs, conf, spillPath, outputSchema);
+			}
+			spillWriter.append(tuple);
+		}
+
+		private void closeOpenPartitions() throws IOException {
+			for(Partition partition : openPartitions) {
+				partition.writer.close();
+				partition.writer = null;
+			}
+			openPartitions.clear();
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) throws IOException {
+			closeOpenPartitions();
+			// Replay the spilled Tuples. Partitions found in a spill were never opened before, as once a partition is
+			// opened it stays open until the end of the pass. Each pass may spill again the Tuples of the partitions that
+			// didn't fit.
+			while(spillWriter != null) {
+				spillWriter.close();
+				spillWriter = null;
+				Path replayPath = spillPath;
+				TupleFile.Reader reader = new TupleFile.Reader(fs, conf, replayPath);
+				ITuple tuple = new Tuple(outputSchema);
+				while(reader.next(tuple)) {
+					write(tuple, NullWritable.get());
+				}
+				reader.close();
+				fs.delete(replayPath, false);
+				closeOpenPartitions();
+				context.progress();
+			}
+		}
+	}
+}
@@ -29,7 +29,10 @@ import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.util.ReflectionUtils;
 
 import com.datasalt.pangool.io.BitField;
+import com.datasalt.pangool.io.IPrimitiveTuple;
 import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.NullBitmap;
+import com.datasalt.pangool.io.PrimitiveTupleAdapter;
 import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.io.Schema.Field;
 import com.datasalt.pangool.io.Tuple;
@@ -50,8 +53,12 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 	private DataInputStream input;
 	private final HadoopSerialization ser;
 	private final Buffer tmpInputBuffer = new Buffer();
+	private final int formatVersion;
 	private final BitField nullsRelative = new BitField();
+	private final NullBitmap nullBitmap = new NullBitmap();
 	private final FlagsField nullsAbsolute = new FlagsField();
+	// For Tuples that don't implement IPrimitiveTuple
+	private final PrimitiveTupleAdapter adapter = new PrimitiveTupleAdapter();
 	private final Configuration conf;
 
 	private Deserializer[] deserializers;
@@ -68,9 +75,10 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 	 * Read schemas are then passed dynamically in {@link #readFields(ITuple, Schema, Deserializer[])}. Note that this is
 	 * not the most intuitive way of using this class, but it is made for efficiency.
 	 */
-	SimpleTupleDeserializer(HadoopSerialization ser, Configuration conf) {
+	SimpleTupleDeserializer(HadoopSerialization ser, Configuration conf, int formatVersion) {
 		this.ser = ser;
 		this.conf = conf;
+		this.formatVersion = SimpleTupleSerializer.checkFormatVersion(formatVersion);
 	}
 
 	/**
@@ -86,7 +94,16 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 	 */
 	public SimpleTupleDeserializer(Schema readSchema, Schema targetSchema, HadoopSerialization ser,
 	    Configuration conf) {
-		this(ser, conf);
+		this(readSchema, targetSchema, ser, conf, SimpleTupleSerializer.FORMAT_VERSION_1);
+	}
+
+	/**
+	 * Like {@link #SimpleTupleDeserializer(Schema, Schema, HadoopSerialization, Configuration)}, for Tuples serialized
+	 * with the given format version. See {@link SimpleTupleSerializer#FORMAT_VERSION_2}.
+	 */
+	public SimpleTupleDeserializer(Schema readSchema, Schema targetSchema, HadoopSerialization ser,
+	    Configuration conf, int formatVersion) {
+		this(ser, conf, formatVersion);
 		this.readSchema = readSchema;
 		this.targetSchema = targetSchema;
 		// calculate a lookup table for backwards compatibility
@@ -147,6 +164,14 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 		return backwardsCompatibiltyLookupVector == null ? i : backwardsCompatibiltyLookupVector[i];
 	}
 
+	private void setNull(ITuple tuple, int index) {
+		int field = backwardsCompatibleIndex(index);
+		if(field != UNUSED) {
+			tuple.set(field, null);
+		}
+		nullsAbsolute.flags[index] = true;
+	}
+
 	// Private tuple that will be used to skip certain fields for backwards-compatibility
 	private ITuple cachedReadTuple = null;
 
@@ -166,7 +191,8 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 	 * Read fields using an ad-hoc Schema passed by parameter. This method is package-visibility since this is not the
 	 * standard way of using this Deserializer. This method is used by {@link TupleDeserializer}.
 	 */
-	void readFields(ITuple tuple, Schema schema, Deserializer[] customDeserializers) throws IOException {
+	void readFields(ITuple toTuple, Schema schema, Deserializer[] customDeserializers) throws IOException {
+		IPrimitiveTuple tuple = adapter.adapt(toTuple);
 		// Set default values / clean values if there are "new fields"
 		for(Field field: newFields) {
 			tuple.set(field.getName(), field.getDefaultValue());
@@ -174,17 +200,21 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 		
 		// If there are fields with nulls, read the bit field and set the values that are null
 		if(schema.containsNullableFields()) {
-			List<Integer> nullableFields = schema.getNullableFieldsIdx();
+			int[] nullableFields = schema.getNullableFieldsIdxArray();
 			nullsAbsolute.ensureSize(schema.getFields().size());
 			nullsAbsolute.clear(nullableFields);
-			nullsRelative.deser(input);
-			for(int i = 0; i < nullableFields.size(); i++) {
-				if(nullsRelative.isSet(i)) {
-					int field = backwardsCompatibleIndex(nullableFields.get(i));
-					if(field != UNUSED) {
-						tuple.set(field, null);
+			if(formatVersion == SimpleTupleSerializer.FORMAT_VERSION_2) {
+				nullBitmap.setSize(nullableFields.length);
+				nullBitmap.deser(input);
+				for(int i = nullBitmap.nextSetBit(0); i >= 0; i = nullBitmap.nextSetBit(i + 1)) {
+					setNull(tuple, nullableFields[i]);
+				}
+			} else {
+				nullsRelative.deser(input);
+				for(int i = 0; i < nullableFields.length; i++) {
+					if(nullsRelative.isSet(i)) {
+						setNull(tuple, nullableFields[i]);
 					}
-					nullsAbsolute.flags[nullableFields.get(i)] = true;
 				}
 			}
 		}
@@ -213,25 +243,25 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 			case INT:
 				int iVal = WritableUtils.readVInt(input);
 				if(idx != UNUSED) {
-					tuple.set(idx, iVal);
+					tuple.setInt(idx, iVal);
 				} // If the primitive field is not used we just don't set it
 				break;
 			case LONG:
 				long lVal = WritableUtils.readVLong(input);
 				if(idx != UNUSED) {
-					tuple.set(idx, lVal);
+					tuple.setLong(idx, lVal);
 				} // If the primitive field is not used we just don't set it
 				break;
 			case DOUBLE:
 				double dVal = input.readDouble();
 				if(idx != UNUSED) {
-					tuple.set(idx, dVal);
+					tuple.setDouble(idx, dVal);
 				} // If the primitive field is not used we just don't set it
 				break;
 			case FLOAT:
 				float fVal = input.readFloat();
 				if(idx != UNUSED) {
-					tuple.set(idx, fVal);
+					tuple.setFloat(idx, fVal);
 				} // If the primitive field is not used we just don't set it
 				break;
 			case STRING:
@@ -245,7 +275,7 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 			case BOOLEAN:
 				byte b = input.readByte();
 				if(idx != UNUSED) {
-					tuple.set(idx, (b != 0));
+					tuple.setBoolean(idx, b != 0);
 				} // If the primitive field is not used we just don't set it
 				break;
 			case ENUM:
@@ -355,8 +385,8 @@ public class SimpleTupleDeserializer implements Deserializer<ITuple> {
 			}
 		}
 
-		public void clear(List<Integer> flags) {
-			for(Integer flag : flags) {
+		public void clear(int[] flags) {
+			for(int flag : flags) {
 				this.flags[flag] = false;
 			}
 		}
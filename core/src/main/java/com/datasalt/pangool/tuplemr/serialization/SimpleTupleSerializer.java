@@ -20,7 +20,6 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.DataOutputBuffer;
@@ -29,7 +28,10 @@ import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.io.serializer.Serializer;
 
 import com.datasalt.pangool.io.BitField;
+import com.datasalt.pangool.io.IPrimitiveTuple;
 import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.NullBitmap;
+import com.datasalt.pangool.io.PrimitiveTupleAdapter;
 import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.io.Schema.Field;
 import com.datasalt.pangool.io.Schema.Field.Type;
@@ -44,11 +46,30 @@ import com.datasalt.pangool.tuplemr.SerializationInfo;
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class SimpleTupleSerializer implements Serializer<ITuple> {
 
+  /**
+   * The null information of each Tuple is a variable length {@link BitField}. This is the format of
+   * {@link com.datasalt.pangool.io.TupleFile}s written by Pangool 0.70 and earlier, and the default one so
+   * nested Tuple fields can still be read.
+   */
+  public static final int FORMAT_VERSION_1 = 1;
+  /**
+   * The null information of each Tuple is a {@link NullBitmap} with as many bits as nullable fields has the
+   * Schema. Used by the intermediate serialization of Tuple MapReduce jobs, and by TupleFiles when enabled with
+   * {@link com.datasalt.pangool.io.TupleFile#setFormatVersion(Configuration, int)}.
+   */
+  public static final int FORMAT_VERSION_2 = 2;
+
   private DataOutputStream out;
   private final HadoopSerialization ser;
+  // For Tuples that don't implement IPrimitiveTuple
+  private final PrimitiveTupleAdapter adapter = new PrimitiveTupleAdapter();
   private final Utf8 HELPER_TEXT = new Utf8();
+  private final int formatVersion;
   private final BitField nulls = new BitField();
+  private final NullBitmap nullBitmap = new NullBitmap();
   private final DataOutputBuffer tmpOutputBuffer = new DataOutputBuffer();
+  // Only when opened with openCounting()
+  private ByteCountingOutputStream counter;
 
   private Serializer[] customSerializers;
   // Optional in some cases
@@ -56,17 +77,38 @@ public class SimpleTupleSerializer implements Serializer<ITuple> {
 
   // A SimpleTupleSerializer that doesn't serialize a specified Schema
   public SimpleTupleSerializer(HadoopSerialization ser) {
+    this(ser, FORMAT_VERSION_1);
+  }
+
+  public SimpleTupleSerializer(HadoopSerialization ser, int formatVersion) {
     this.ser = ser;
+    this.formatVersion = checkFormatVersion(formatVersion);
   }
 
   // A SimpelTupleSerializer that serializes a certain Schema. Needed
   // when using custom stateful serialization.
   public SimpleTupleSerializer(Schema schemaToSerialize, HadoopSerialization ser, Configuration conf) {
-    this(ser);
+    this(schemaToSerialize, ser, conf, FORMAT_VERSION_1);
+  }
+
+  public SimpleTupleSerializer(Schema schemaToSerialize, HadoopSerialization ser, Configuration conf,
+      int formatVersion) {
+    this(ser, formatVersion);
     this.schema = schemaToSerialize;
     this.customSerializers = SerializationInfo.getSerializers(schemaToSerialize, conf);
   }
 
+  static int checkFormatVersion(int formatVersion) {
+    if (formatVersion != FORMAT_VERSION_1 && formatVersion != FORMAT_VERSION_2) {
+      throw new IllegalArgumentException("Unknown Tuple serialization format version: " + formatVersion);
+    }
+    return formatVersion;
+  }
+
+  public int getFormatVersion() {
+    return formatVersion;
+  }
+
   @Override
   public void close() throws IOException {
     out.close();
@@ -74,6 +116,7 @@ public class SimpleTupleSerializer implements Serializer<ITuple> {
 
   @Override
   public void open(OutputStream outputStream) {
+    counter = null;
     if (outputStream instanceof DataOutputStream) {
       out = (DataOutputStream) outputStream;
     } else {
@@ -91,6 +134,21 @@ public class SimpleTupleSerializer implements Serializer<ITuple> {
     return out;
   }
 
+  /**
+   * Like {@link #open(OutputStream)}, but counting the written bytes. See {@link #getBytesWritten()}.
+   */
+  void openCounting(OutputStream outputStream) {
+    counter = new ByteCountingOutputStream(outputStream);
+    out = new DataOutputStream(counter);
+  }
+
+  /**
+   * The number of bytes written since the serializer was opened with {@link #openCounting(OutputStream)}.
+   */
+  long getBytesWritten() {
+    return counter.getCount();
+  }
+
   /**
    * @return A value in the tuple represented by the idx. If a translationTable is given,
    *         then idx is translated before being applied to obtain the value from the tuple.
@@ -105,46 +163,76 @@ public class SimpleTupleSerializer implements Serializer<ITuple> {
 
   void write(Schema destinationSchema, ITuple tuple, int[] translationTable, Serializer[] customSerializers)
       throws IOException {
+    write(destinationSchema, tuple, translationTable, customSerializers, null, 0);
+  }
+
+  /**
+   * If fieldBytes is not null, the serialized size of the field i is added to fieldBytes[offset + i]. Only valid
+   * when opened with {@link #openCounting(OutputStream)}.
+   */
+  void write(Schema destinationSchema, ITuple fromTuple, int[] translationTable, Serializer[] customSerializers,
+      long[] fieldBytes, int offset) throws IOException {
+    IPrimitiveTuple tuple = adapter.adapt(fromTuple);
     // If can be null values, we compose a bit set with the null information and write it the first.
     if (destinationSchema.containsNullableFields()) {
-      List<Integer> nullableFields = destinationSchema.getNullableFieldsIdx();
-      nulls.clear();
-      for (int i = 0; i < nullableFields.size(); i++) {
-        int nField = nullableFields.get(i);
-        if (valueAt(nField, tuple, translationTable) == null) {
-          nulls.set(i);
+      int[] nullableFields = destinationSchema.getNullableFieldsIdxArray();
+      if (formatVersion == FORMAT_VERSION_2) {
+        nullBitmap.setSize(nullableFields.length);
+        for (int i = 0; i < nullableFields.length; i++) {
+          int nField = nullableFields[i];
+          if (tuple.isNull((translationTable == null) ? nField : translationTable[nField])) {
+            nullBitmap.set(i);
+          }
         }
+        nullBitmap.ser(out);
+      } else {
+        nulls.clear();
+        for (int i = 0; i < nullableFields.length; i++) {
+          int nField = nullableFields[i];
+          if (tuple.isNull((translationTable == null) ? nField : translationTable[nField])) {
+            nulls.set(i);
+          }
+        }
+        nulls.ser(out);
       }
-      nulls.ser(out);
     }
 
+    long mark = (fieldBytes == null) ? 0 : counter.getCount();
     for (int i = 0; i < destinationSchema.getFields().size(); i++) {
+      if (fieldBytes != null && i > 0) {
+        long now = counter.getCount();
+        fieldBytes[offset + i - 1] += now - mark;
+        mark = now;
+      }
       Field field = destinationSchema.getField(i);
       Type fieldType = field.getType();
-      Object element = valueAt(i, tuple, translationTable);
-      if (element == null) {
+      int pos = (translationTable == null) ? i : translationTable[i];
+      if (tuple.isNull(pos)) {
         if (field.isNullable()) {
           // Nullable null fields don't need serialization.
           continue;
         } else {
-          raiseUnexpectedNullException(field, element);
+          raiseUnexpectedNullException(field, null);
         }
       }
+      // Primitive values are read with the non-boxing accessors
+      Object element = null;
       try {
         switch (fieldType) {
           case INT:
-            WritableUtils.writeVInt(out, (Integer) element);
+            WritableUtils.writeVInt(out, tuple.getIntValue(pos));
             break;
           case LONG:
-            WritableUtils.writeVLong(out, (Long) element);
+            WritableUtils.writeVLong(out, tuple.getLongValue(pos));
             break;
           case DOUBLE:
-            out.writeDouble((Double) element);
+            out.writeDouble(tuple.getDoubleValue(pos));
             break;
           case FLOAT:
-            out.writeFloat((Float) element);
+            out.writeFloat(tuple.getFloatValue(pos));
             break;
           case STRING:
+            element = tuple.get(pos);
             if (element instanceof Text) {
               ((Text) element).write(out);
             } else if (element instanceof String) {
@@ -155,26 +243,33 @@ public class SimpleTupleSerializer implements Serializer<ITuple> {
             }
             break;
           case BOOLEAN:
-            out.write((Boolean) element ? 1 : 0);
+            out.write(tuple.getBooleanValue(pos) ? 1 : 0);
             break;
           case ENUM:
+            element = tuple.get(pos);
             writeEnum((Enum<?>) element, field, out);
             break;
           case OBJECT:
+            element = tuple.get(pos);
             writeCustomObject(element, out, customSerializers[i]);
             break;
           case BYTES:
+            element = tuple.get(pos);
             writeBytes(element, out);
             break;
           default:
             throw new IOException("Not supported type:" + fieldType);
         }
       } catch (ClassCastException e) {
-        raisedClassCastException(e, field, element);
+        raisedClassCastException(e, field, tuple.get(pos));
       } catch (CustomObjectSerializationException e) {
         raisedCustomObjectException(e, field, element, customSerializers[i]);
       }
     } // End for
+    int numFields = destinationSchema.getFields().size();
+    if (fieldBytes != null && numFields > 0) {
+      fieldBytes[offset + numFields - 1] += counter.getCount() - mark;
+    }
   }
 
   private void writeCustomObject(Object element, DataOutput output, Serializer customSer) throws CustomObjectSerializationException {
@@ -25,19 +25,23 @@ import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.io.serializer.Deserializer;
 
 import com.datasalt.pangool.io.DatumWrapper;
+import com.datasalt.pangool.io.IPrimitiveTuple;
 import com.datasalt.pangool.io.ITuple;
 import com.datasalt.pangool.io.Schema;
-import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.io.Schema.Field.Type;
+import com.datasalt.pangool.io.PrimitiveTuple;
+import com.datasalt.pangool.io.PrimitiveTupleAdapter;
 import com.datasalt.pangool.serialization.HadoopSerialization;
 import com.datasalt.pangool.tuplemr.SerializationInfo;
 import com.datasalt.pangool.tuplemr.TupleMRConfig;
+import com.datasalt.pangool.tuplemr.TupleMRProfiler;
 
 public class TupleDeserializer implements Deserializer<DatumWrapper<ITuple>> {
 
 	private static class CachedTuples {
-		private ITuple commonTuple;
-		private List<ITuple> specificTuples = new ArrayList<ITuple>();
-		private List<ITuple> resultTuples = new ArrayList<ITuple>();
+		private IPrimitiveTuple commonTuple;
+		private List<IPrimitiveTuple> specificTuples = new ArrayList<IPrimitiveTuple>();
+		private List<IPrimitiveTuple> resultTuples = new ArrayList<IPrimitiveTuple>();
 	}
 
 	private final TupleMRConfig tupleMRConf;
@@ -47,9 +51,12 @@ public class TupleDeserializer implements Deserializer<DatumWrapper<ITuple>> {
 	private DatumWrapper<CachedTuples> cachedTuples = new DatumWrapper<CachedTuples>();
 
 	private SimpleTupleDeserializer simpleTupleDeSer;
+	private TupleMRProfiler.Probe probe;
+	// For reused Tuples that don't implement IPrimitiveTuple
+	private final PrimitiveTupleAdapter adapter = new PrimitiveTupleAdapter();
 
 	public TupleDeserializer(HadoopSerialization ser, TupleMRConfig tupleMRConfig, Configuration conf) {
-		simpleTupleDeSer = new SimpleTupleDeserializer(ser, conf);
+		simpleTupleDeSer = new SimpleTupleDeserializer(ser, conf, SimpleTupleSerializer.FORMAT_VERSION_2);
 		this.tupleMRConf = tupleMRConfig;
 		this.serInfo = tupleMRConf.getSerializationInfo();
 		this.isRollup = tupleMRConf.getRollupFrom() != null && !tupleMRConf.getRollupFrom().isEmpty();
@@ -57,20 +64,22 @@ public class TupleDeserializer implements Deserializer<DatumWrapper<ITuple>> {
 		this.cachedTuples.datum(createCachedTuples(tupleMRConf));
 		this.cachedTuples.swapInstances(); // do rollup
 		this.cachedTuples.datum(createCachedTuples(tupleMRConf));
+		this.probe = TupleMRProfiler.probe(conf, TupleMRProfiler.Phase.DESERIALIZE);
 	}
 
 	private static CachedTuples createCachedTuples(TupleMRConfig config) {
 		SerializationInfo serInfo = config.getSerializationInfo();
 		boolean multipleSources = config.getNumIntermediateSchemas() >= 2;
 		CachedTuples r = new CachedTuples();
-		r.commonTuple = new Tuple(serInfo.getCommonSchema());
+		// Primitive fields are deserialized and moved to the result without boxing
+		r.commonTuple = new PrimitiveTuple(serInfo.getCommonSchema());
 		for(Schema sourceSchema : config.getIntermediateSchemas()) {
-			r.resultTuples.add(new Tuple(sourceSchema));
+			r.resultTuples.add(new PrimitiveTuple(sourceSchema));
 		}
 
 		if(multipleSources) {
 			for(Schema specificSchema : serInfo.getSpecificSchemas()) {
-				r.specificTuples.add(new Tuple(specificSchema));
+				r.specificTuples.add(new PrimitiveTuple(specificSchema));
 			}
 		}
 		return r;
@@ -91,50 +100,86 @@ public class TupleDeserializer implements Deserializer<DatumWrapper<ITuple>> {
 			this.cachedTuples.swapInstances();
 		}
 
+		long start = (probe == null) ? -1 : probe.start();
 		ITuple tuple = (multipleSources) ? deserializeMultipleSources() : deserializeOneSource(t.datum());
 		t.datum(tuple);
+		if(probe != null) {
+			probe.stop(start);
+		}
 
 		return t;
 	}
 
 	private ITuple deserializeMultipleSources() throws IOException {
 		CachedTuples tuples = cachedTuples.datum();
-		ITuple commonTuple = tuples.commonTuple;
+		IPrimitiveTuple commonTuple = tuples.commonTuple;
 
 		simpleTupleDeSer.readFields(commonTuple, commonTuple.getSchema(), serInfo.getCommonSchemaDeserializers());
 		int schemaId = WritableUtils.readVInt(simpleTupleDeSer.getInput());
-		ITuple specificTuple = tuples.specificTuples.get(schemaId);
+		IPrimitiveTuple specificTuple = tuples.specificTuples.get(schemaId);
 		simpleTupleDeSer.readFields(specificTuple, specificTuple.getSchema(), serInfo.getSpecificSchemaDeserializers().get(schemaId));
-		ITuple result = tuples.resultTuples.get(schemaId);
+		IPrimitiveTuple result = tuples.resultTuples.get(schemaId);
 		mixIntermediateIntoResult(commonTuple, specificTuple, result, schemaId);
 		return result;
 	}
 
-	private void mixIntermediateIntoResult(ITuple commonTuple, ITuple specificTuple, ITuple result, int schemaId) {
+	private void mixIntermediateIntoResult(IPrimitiveTuple commonTuple, IPrimitiveTuple specificTuple,
+	    IPrimitiveTuple result, int schemaId) {
 		int[] commonTranslation = serInfo.getCommonSchemaIndexTranslation(schemaId);
 		for(int i = 0; i < commonTranslation.length; i++) {
 			int destPos = commonTranslation[i];
-			result.set(destPos, commonTuple.get(i));
+			copyField(commonTuple, i, result, destPos);
 		}
 
 		int[] specificTranslation = serInfo.getSpecificSchemaIndexTranslation(schemaId);
 		for(int i = 0; i < specificTranslation.length; i++) {
 			int destPos = specificTranslation[i];
-			result.set(destPos, specificTuple.get(i));
+			copyField(specificTuple, i, result, destPos);
+		}
+	}
+
+	/**
+	 * Copies one field using the non-boxing accessors for primitive types.
+	 */
+	private static void copyField(IPrimitiveTuple from, int fromPos, IPrimitiveTuple to, int toPos) {
+		if(from.isNull(fromPos)) {
+			to.set(toPos, null);
+			return;
+		}
+		Type type = from.getSchema().getField(fromPos).getType();
+		switch(type) {
+		case INT:
+			to.setInt(toPos, from.getIntValue(fromPos));
+			break;
+		case LONG:
+			to.setLong(toPos, from.getLongValue(fromPos));
+			break;
+		case FLOAT:
+			to.setFloat(toPos, from.getFloatValue(fromPos));
+			break;
+		case DOUBLE:
+			to.setDouble(toPos, from.getDoubleValue(fromPos));
+			break;
+		case BOOLEAN:
+			to.setBoolean(toPos, from.getBooleanValue(fromPos));
+			break;
+		default:
+			to.set(toPos, from.get(fromPos));
 		}
 	}
 
 	private ITuple deserializeOneSource(ITuple reuse) throws IOException {
 		CachedTuples tuples = cachedTuples.datum();
-		ITuple commonTuple = tuples.commonTuple;
+		IPrimitiveTuple commonTuple = tuples.commonTuple;
 		simpleTupleDeSer.readFields(commonTuple, commonTuple.getSchema(), serInfo.getCommonSchemaDeserializers());
 		if(reuse == null) {
 			reuse = tuples.resultTuples.get(0);
 		}
+		IPrimitiveTuple result = adapter.adapt(reuse);
 		int[] commonTranslation = serInfo.getCommonSchemaIndexTranslation(0); // just one common schema
 		for(int i = 0; i < commonTranslation.length; i++) {
 			int destPos = commonTranslation[i];
-			reuse.set(destPos, commonTuple.get(i));
+			copyField(commonTuple, i, result, destPos);
 		}
 		return reuse;
 	}
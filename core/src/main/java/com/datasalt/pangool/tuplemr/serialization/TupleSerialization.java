@@ -124,7 +124,7 @@ public class TupleSerialization implements Serialization<DatumWrapper<ITuple>>,
 	@Override
 	public Serializer<DatumWrapper<ITuple>> getSerializer(Class<DatumWrapper<ITuple>> c) {
 		boolean inputSchemaValidation = (conf == null ) ? true : getSchemaValidation(conf);
-		return new TupleSerializer(this.ser, this.tupleMRConfig,inputSchemaValidation);
+		return new TupleSerializer(this.ser, this.tupleMRConfig,inputSchemaValidation, conf);
 	}
 
 	@Override
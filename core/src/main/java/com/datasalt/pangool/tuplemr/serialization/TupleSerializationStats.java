@@ -0,0 +1,324 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr.serialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.JobID;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import com.datasalt.pangool.io.Schema.Field;
+import com.datasalt.pangool.tuplemr.SerializationInfo;
+import com.datasalt.pangool.tuplemr.TupleMRBuilder;
+import com.datasalt.pangool.tuplemr.TupleMRConfig;
+import com.datasalt.pangool.tuplemr.TupleMapper;
+
+/**
+ * Optional statistics about the volume of the intermediate data, that is, the Tuples emitted by the
+ * {@link TupleMapper}s. It is enabled per job with {@link TupleMRBuilder#setShuffleStats(int)}. When enabled, the
+ * {@link TupleSerializer} counts the records and the serialized bytes of each intermediate schema, and measures the
+ * serialized size of each field for one out of "sampling rate" records.
+ * <p>
+ * The results are published as counters of the {@link #COUNTER_GROUP} group when the mappers finish:
+ * "[schema] records", "[schema] bytes", "[schema] sampled records" and "[schema].[field] sampled bytes". The bytes not
+ * attributed to any field are the null bits and, with several intermediate schemas, the schema id. Use
+ * {@link #report(Counters)} or run this class with a job id for a readable breakdown. Tuples written by the combiner
+ * are not counted. Note that every field adds one counter: jobs with wide schemas may need to raise the maximum number
+ * of counters allowed by the cluster.
+ */
+public class TupleSerializationStats {
+
+	public final static String COUNTER_GROUP = "Pangool-Shuffle-Stats";
+	public final static String CONF_SAMPLING_RATE = "pangool.shuffle.stats.sampling.rate";
+
+	private final static String RECORDS = " records", BYTES = " bytes", SAMPLED_RECORDS = " sampled records",
+	    SAMPLED_BYTES = " sampled bytes";
+
+	// Combiner output goes through the same serialization, but it is not part of what the mappers emit
+	private final static ThreadLocal<Boolean> combining = new ThreadLocal<Boolean>();
+
+	// Recorders of the serializers alive in this JVM. Held weakly so that they go away with their serializers.
+	private final static Set<Recorder> recorders = Collections.synchronizedSet(Collections
+	    .newSetFromMap(new WeakHashMap<Recorder, Boolean>()));
+
+	/**
+	 * Enables the statistics of the job, measuring the size of each field for one out of samplingRate records. 0
+	 * disables them.
+	 */
+	public static void setSamplingRate(Configuration conf, int samplingRate) {
+		if(samplingRate < 0) {
+			throw new IllegalArgumentException("Sampling rate can't be negative: " + samplingRate);
+		}
+		conf.setInt(CONF_SAMPLING_RATE, samplingRate);
+	}
+
+	public static int getSamplingRate(Configuration conf) {
+		return conf.getInt(CONF_SAMPLING_RATE, 0);
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf != null && getSamplingRate(conf) > 0;
+	}
+
+	/**
+	 * Marks the current thread as running a combiner, whose output is not counted.
+	 */
+	public static void setCombining(boolean value) {
+		if(value) {
+			combining.set(Boolean.TRUE);
+		} else {
+			combining.remove();
+		}
+	}
+
+	static boolean isCombining() {
+		return combining.get() != null;
+	}
+
+	/**
+	 * Returns a new {@link Recorder} for a {@link TupleSerializer} of the given job, or null if the statistics are not
+	 * enabled.
+	 */
+	static Recorder recorder(Configuration conf, TupleMRConfig tupleMRConfig) {
+		if(!isEnabled(conf)) {
+			return null;
+		}
+		Recorder recorder = new Recorder(tupleMRConfig, getSamplingRate(conf));
+		recorders.add(recorder);
+		return recorder;
+	}
+
+	/**
+	 * Adds the statistics recorded by the current thread since the last call to the counters of the given task.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void publish(TaskInputOutputContext context) {
+		List<Recorder> own = new ArrayList<Recorder>();
+		synchronized(recorders) {
+			for(Recorder recorder : recorders) {
+				if(recorder.owner == Thread.currentThread()) {
+					own.add(recorder);
+				}
+			}
+		}
+		for(Recorder recorder : own) {
+			recorder.publish(context);
+		}
+	}
+
+	/**
+	 * Accumulates the statistics of one {@link TupleSerializer}. Not thread safe: it is only updated and published by
+	 * the thread that emits the Tuples.
+	 */
+	static class Recorder {
+
+		private final String[] schemaNames;
+		private final String[][] fieldNames;
+		private final int samplingRate;
+		private final long[] records, bytes, sampledRecords;
+		private final long[][] fieldBytes;
+		private int countdown = 1;
+		private Thread owner;
+
+		Recorder(TupleMRConfig tupleMRConfig, int samplingRate) {
+			this.samplingRate = samplingRate;
+			int numSchemas = tupleMRConfig.getNumIntermediateSchemas();
+			SerializationInfo serInfo = tupleMRConfig.getSerializationInfo();
+			schemaNames = new String[numSchemas];
+			fieldNames = new String[numSchemas][];
+			fieldBytes = new long[numSchemas][];
+			records = new long[numSchemas];
+			bytes = new long[numSchemas];
+			sampledRecords = new long[numSchemas];
+			for(int i = 0; i < numSchemas; i++) {
+				schemaNames[i] = tupleMRConfig.getIntermediateSchema(i).getName();
+				// Same layout as the serialized record: common fields first, then the specific ones
+				List<String> names = new ArrayList<String>();
+				for(Field field : serInfo.getCommonSchema().getFields()) {
+					names.add(field.getName());
+				}
+				if(numSchemas >= 2) {
+					for(Field field : serInfo.getSpecificSchema(i).getFields()) {
+						names.add(field.getName());
+					}
+				}
+				fieldNames[i] = names.toArray(new String[0]);
+				fieldBytes[i] = new long[fieldNames[i].length];
+			}
+		}
+
+		/**
+		 * Returns true if the size of each field of the next record must be measured.
+		 */
+		boolean sample() {
+			if(--countdown > 0) {
+				return false;
+			}
+			countdown = samplingRate;
+			return true;
+		}
+
+		long[] fieldBytes(int schemaId) {
+			return fieldBytes[schemaId];
+		}
+
+		void record(int schemaId, long recordBytes, boolean sampled) {
+			owner = Thread.currentThread();
+			records[schemaId]++;
+			bytes[schemaId] += recordBytes;
+			if(sampled) {
+				sampledRecords[schemaId]++;
+			}
+		}
+
+		@SuppressWarnings("rawtypes")
+		void publish(TaskInputOutputContext context) {
+			for(int i = 0; i < schemaNames.length; i++) {
+				if(records[i] == 0) {
+					continue;
+				}
+				context.getCounter(COUNTER_GROUP, schemaNames[i] + RECORDS).increment(records[i]);
+				context.getCounter(COUNTER_GROUP, schemaNames[i] + BYTES).increment(bytes[i]);
+				context.getCounter(COUNTER_GROUP, schemaNames[i] + SAMPLED_RECORDS).increment(sampledRecords[i]);
+				for(int j = 0; j < fieldNames[i].length; j++) {
+					context.getCounter(COUNTER_GROUP, schemaNames[i] + "." + fieldNames[i][j] + SAMPLED_BYTES).increment(
+					    fieldBytes[i][j]);
+					fieldBytes[i][j] = 0;
+				}
+				records[i] = 0;
+				bytes[i] = 0;
+				sampledRecords[i] = 0;
+			}
+		}
+	}
+
+	private static class SchemaStats {
+
+		long records, bytes, sampledRecords;
+		Map<String, Long> fieldBytes = new LinkedHashMap<String, Long>();
+	}
+
+	/**
+	 * A readable breakdown of the intermediate data of a finished job, per schema and per field.
+	 */
+	public static String report(Counters counters) {
+		return report(counters.getGroup(COUNTER_GROUP));
+	}
+
+	/**
+	 * A readable breakdown of the counters of the {@link #COUNTER_GROUP} group.
+	 */
+	public static String report(Iterable<? extends Counter> group) {
+		Map<String, SchemaStats> stats = new LinkedHashMap<String, SchemaStats>();
+		Map<String, Long> fieldCounters = new HashMap<String, Long>();
+		for(Counter counter : group) {
+			String name = counter.getName();
+			if(name.endsWith(SAMPLED_BYTES)) {
+				fieldCounters.put(name.substring(0, name.length() - SAMPLED_BYTES.length()), counter.getValue());
+			} else if(name.endsWith(SAMPLED_RECORDS)) {
+				schemaStats(stats, name, SAMPLED_RECORDS).sampledRecords = counter.getValue();
+			} else if(name.endsWith(RECORDS)) {
+				schemaStats(stats, name, RECORDS).records = counter.getValue();
+			} else if(name.endsWith(BYTES)) {
+				schemaStats(stats, name, BYTES).bytes = counter.getValue();
+			}
+		}
+		for(Map.Entry<String, Long> entry : fieldCounters.entrySet()) {
+			int dot = entry.getKey().lastIndexOf('.');
+			SchemaStats schemaStats = stats.get(entry.getKey().substring(0, dot));
+			if(schemaStats != null) {
+				schemaStats.fieldBytes.put(entry.getKey().substring(dot + 1), entry.getValue());
+			}
+		}
+
+		long totalBytes = 0;
+		for(SchemaStats schemaStats : stats.values()) {
+			totalBytes += schemaStats.bytes;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Intermediate data: %d bytes%n", totalBytes));
+		for(Map.Entry<String, SchemaStats> entry : stats.entrySet()) {
+			SchemaStats schemaStats = entry.getValue();
+			sb.append(String.format("%nSchema %s: %d records, %d bytes (%s of total, %.1f bytes/record)%n",
+			    entry.getKey(), schemaStats.records, schemaStats.bytes, percent(schemaStats.bytes, totalBytes),
+			    (double) schemaStats.bytes / Math.max(1, schemaStats.records)));
+			if(schemaStats.sampledRecords == 0) {
+				continue;
+			}
+			// Field sizes are extrapolated from the sampled records
+			double scale = (double) schemaStats.records / schemaStats.sampledRecords;
+			long attributed = 0;
+			sb.append(String.format("  %-30s %14s %18s %8s%n", "field", "bytes/record", "estimated bytes", "share"));
+			for(Map.Entry<String, Long> field : schemaStats.fieldBytes.entrySet()) {
+				long estimated = (long) (field.getValue() * scale);
+				attributed += estimated;
+				sb.append(String.format("  %-30s %14.1f %18d %8s%n", field.getKey(), (double) field.getValue()
+				    / schemaStats.sampledRecords, estimated, percent(estimated, schemaStats.bytes)));
+			}
+			long overhead = Math.max(0, schemaStats.bytes - attributed);
+			sb.append(String.format("  %-30s %14.1f %18d %8s%n", "(nulls, schema id)", (double) overhead
+			    / Math.max(1, schemaStats.records), overhead, percent(overhead, schemaStats.bytes)));
+		}
+		return sb.toString();
+	}
+
+	private static SchemaStats schemaStats(Map<String, SchemaStats> stats, String counterName, String suffix) {
+		String schema = counterName.substring(0, counterName.length() - suffix.length());
+		SchemaStats schemaStats = stats.get(schema);
+		if(schemaStats == null) {
+			schemaStats = new SchemaStats();
+			stats.put(schema, schemaStats);
+		}
+		return schemaStats;
+	}
+
+	private static String percent(long value, long total) {
+		return String.format("%.1f%%", total == 0 ? 0d : 100d * value / total);
+	}
+
+	/**
+	 * Prints the report of the job with the given id, which must be known by the cluster of the default
+	 * Configuration.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1) {
+			System.err.println("Usage: " + TupleSerializationStats.class.getName() + " <job id>");
+			System.exit(-1);
+		}
+		JobClient client = new JobClient(new JobConf(new Configuration()));
+		RunningJob job = client.getJob(JobID.forName(args[0]));
+		if(job == null) {
+			System.err.println("Job not found: " + args[0]);
+			System.exit(-1);
+		}
+		System.out.print(report(job.getCounters().getGroup(COUNTER_GROUP)));
+		client.close();
+	}
+}
@@ -18,6 +18,7 @@ package com.datasalt.pangool.tuplemr.serialization;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.io.serializer.Serializer;
 
@@ -27,6 +28,7 @@ import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.serialization.HadoopSerialization;
 import com.datasalt.pangool.tuplemr.SerializationInfo;
 import com.datasalt.pangool.tuplemr.TupleMRConfig;
+import com.datasalt.pangool.tuplemr.TupleMRProfiler;
 
 public class TupleSerializer implements Serializer<DatumWrapper<ITuple>> {
 
@@ -35,6 +37,8 @@ public class TupleSerializer implements Serializer<DatumWrapper<ITuple>> {
 	private final SerializationInfo serInfo;
 	private final Schema commonSchema;
 	private boolean inputSchemaValidation;
+	private TupleMRProfiler.Probe probe;
+	private TupleSerializationStats.Recorder stats;
 	
 	// Makes use of an "agnostic" simple Tuple serializer for serializing Tuples
 	// Enable code reusing
@@ -42,7 +46,7 @@ public class TupleSerializer implements Serializer<DatumWrapper<ITuple>> {
 
 	public TupleSerializer(HadoopSerialization ser, TupleMRConfig tupleMRConfig,
 			boolean inputSchemaValidation) {
-		tupleSerializer = new SimpleTupleSerializer(ser);
+		tupleSerializer = new SimpleTupleSerializer(ser, SimpleTupleSerializer.FORMAT_VERSION_2);
 		this.tupleMRConfig = tupleMRConfig;
 		this.serInfo = tupleMRConfig.getSerializationInfo();
 		this.commonSchema = this.serInfo.getCommonSchema();
@@ -50,20 +54,48 @@ public class TupleSerializer implements Serializer<DatumWrapper<ITuple>> {
 		this.inputSchemaValidation = inputSchemaValidation;
 	}
 
+	/**
+	 * Measures the serialization time if profiling is enabled in the given Configuration. See {@link TupleMRProfiler}.
+	 * Also records the volume of the serialized data if enabled. See {@link TupleSerializationStats}.
+	 */
+	public TupleSerializer(HadoopSerialization ser, TupleMRConfig tupleMRConfig,
+			boolean inputSchemaValidation, Configuration conf) {
+		this(ser, tupleMRConfig, inputSchemaValidation);
+		this.probe = TupleMRProfiler.probe(conf, TupleMRProfiler.Phase.SERIALIZE);
+		this.stats = TupleSerializationStats.recorder(conf, tupleMRConfig);
+	}
+
 	public void open(OutputStream out) {
-		tupleSerializer.open(out);
+		if (stats != null) {
+			tupleSerializer.openCounting(out);
+		} else {
+			tupleSerializer.open(out);
+		}
 	}
 
 	public void serialize(DatumWrapper<ITuple> wrapper) throws IOException {
 		ITuple tuple = wrapper.datum();
-		if (isMultipleSources) {
-			multipleSourcesSerialization(tuple);
+		long start = (probe == null) ? -1 : probe.start();
+		if (stats != null && !TupleSerializationStats.isCombining()) {
+			long startBytes = tupleSerializer.getBytesWritten();
+			boolean sampled = stats.sample();
+			int schemaId = isMultipleSources ? multipleSourcesSerialization(tuple, sampled) : oneSourceSerialization(
+					tuple, sampled);
+			stats.record(schemaId, tupleSerializer.getBytesWritten() - startBytes, sampled);
+		} else if (isMultipleSources) {
+			multipleSourcesSerialization(tuple, false);
 		} else {
-			oneSourceSerialization(tuple);
+			oneSourceSerialization(tuple, false);
+		}
+		if (probe != null) {
+			probe.stop(start);
 		}
 	}
 
-	private void oneSourceSerialization(ITuple tuple) throws IOException {
+	/**
+	 * If sampled, the size of each field is added to the statistics. Returns the id of the schema.
+	 */
+	private int oneSourceSerialization(ITuple tuple, boolean sampled) throws IOException {
 		if (inputSchemaValidation){
 			Schema expectedSchema = tupleMRConfig.getIntermediateSchema(0);
 			if (!tuple.getSchema().equals(expectedSchema)){
@@ -75,10 +107,12 @@ public class TupleSerializer implements Serializer<DatumWrapper<ITuple>> {
 		
 		int[] commonTranslation = serInfo.getCommonSchemaIndexTranslation(0);
 		// Tuple schema is not checked here
-		tupleSerializer.write(commonSchema, tuple, commonTranslation, serInfo.getCommonSchemaSerializers());
+		tupleSerializer.write(commonSchema, tuple, commonTranslation, serInfo.getCommonSchemaSerializers(),
+				sampled ? stats.fieldBytes(0) : null, 0);
+		return 0;
 	}
 
-	private void multipleSourcesSerialization(ITuple tuple) throws IOException {
+	private int multipleSourcesSerialization(ITuple tuple, boolean sampled) throws IOException {
 		String schemaName = tuple.getSchema().getName();
 		Integer schemaId = tupleMRConfig.getSchemaIdByName(schemaName);
 		if (schemaId == null){
@@ -93,15 +127,19 @@ public class TupleSerializer implements Serializer<DatumWrapper<ITuple>> {
 			}
 		}
 		int[] commonTranslation = serInfo.getCommonSchemaIndexTranslation(schemaId);
+		long[] fieldBytes = sampled ? stats.fieldBytes(schemaId) : null;
 		// Serialize common
-		tupleSerializer.write(commonSchema, tuple, commonTranslation, serInfo.getCommonSchemaSerializers());
+		tupleSerializer.write(commonSchema, tuple, commonTranslation, serInfo.getCommonSchemaSerializers(),
+				fieldBytes, 0);
 		// Serialize schema id
 		WritableUtils.writeVInt(tupleSerializer.getOut(), schemaId);
 		// Serialize rest of the fields
 		Schema specificSchema = serInfo.getSpecificSchema(schemaId);
 		int[] specificTranslation = serInfo
 				.getSpecificSchemaIndexTranslation(schemaId);
-		tupleSerializer.write(specificSchema, tuple, specificTranslation, serInfo.getSpecificSchemaSerializers().get(schemaId));
+		tupleSerializer.write(specificSchema, tuple, specificTranslation, serInfo.getSpecificSchemaSerializers().get(schemaId),
+				fieldBytes, commonSchema.getFields().size());
+		return schemaId;
 	}
 
 	public void close() throws IOException {
@@ -3,41 +3,55 @@ package com.datasalt.pangool.utils;
 import java.io.Serializable;
 
 import org.apache.avro.Schema;
-import org.apache.avro.io.BinaryData;
-import org.apache.commons.lang.NotImplementedException;
+import org.apache.avro.reflect.ReflectData;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.RawComparator;
 
+/**
+ * Compares Avro data of the given {@link Schema}, as BinaryData.compare() would do. The binary comparison uses an
+ * {@link AvroComparePlan} compiled from the Schema.
+ */
 @SuppressWarnings({ "serial", "rawtypes" })
 public class AvroBinaryComparator implements RawComparator, Serializable,Configurable{
 	
 	private transient Schema schema;
+	private transient AvroComparePlan plan;
 	private String schemaStr;
 	
 	
 	public AvroBinaryComparator(Schema schema){
 		this.schema = schema;
 		this.schemaStr = schema.toString();
+		this.plan = AvroComparePlan.compile(schema);
 	}
 
 	@SuppressWarnings("deprecation")
   public void setConf(Configuration notUsed){
 		schema = Schema.parse(schemaStr);
+		plan = AvroComparePlan.compile(schema);
 	}
 	
 	public Configuration getConf(){
 		return null;
 	}
 	
+	/**
+	 * Compares generic, specific or reflect Avro objects, in the same order as the binary comparison.
+	 */
 	@Override
   public int compare(Object object1, Object object2) {
-	  throw new NotImplementedException();
+		if(object1 == null) {
+			return (object2 == null) ? 0 : -1;
+		} else if(object2 == null) {
+			return 1;
+		}
+		return ReflectData.get().compare(object1, object2, schema);
   }
 
 	@Override
   public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-		return BinaryData.compare(b1, s1, l1, b2, s2, l2, schema);
+		return plan.compare(b1, s1, l1, b2, s2, l2);
   }
 
 }
@@ -0,0 +1,511 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Compares Avro binary data in the same order as Avro's BinaryData.compare(), but without interpreting the
+ * {@link Schema} on each comparison. The Schema is compiled once into a flat list of steps: nested records are
+ * inlined, with the sort order of their enclosing fields applied, fields with order "ignore" become skip steps that
+ * jump over fixed size data at once, and the fields after the last sorting field of the top level record are not
+ * read at all. Only unions and arrays keep a sub-plan.
+ * <p>
+ * Values are decoded straight from the byte arrays. Plans are immutable once compiled and can be shared between
+ * threads.
+ */
+public class AvroComparePlan {
+
+	private final static int BOOLEAN = 1, INT = 2, LONG = 3, FLOAT = 4, DOUBLE = 5, BYTES = 6, FIXED = 7, UNION = 8,
+	    ARRAY = 9, MAP = 10, SKIP = 11;
+
+	private final int[] kinds;
+	// 1, or -1 for descending order
+	private final int[] signs;
+	// Size of FIXED steps, and of fixed size SKIP steps. -1 otherwise.
+	private final int[] sizes;
+	// The branches of UNION steps, the elements of ARRAY steps
+	private final AvroComparePlan[][] children;
+	// The data skipped by variable size SKIP steps
+	private final Skipper[] skippers;
+
+	/**
+	 * Compiles the given Schema.
+	 */
+	public static AvroComparePlan compile(Schema schema) {
+		Builder builder = new Builder();
+		builder.add(schema, 1);
+		// Nothing is read after the top level plan, so trailing skips are useless
+		builder.trimSkips();
+		return builder.build();
+	}
+
+	private AvroComparePlan(int[] kinds, int[] signs, int[] sizes, AvroComparePlan[][] children, Skipper[] skippers) {
+		this.kinds = kinds;
+		this.signs = signs;
+		this.sizes = sizes;
+		this.children = children;
+		this.skippers = skippers;
+	}
+
+	/**
+	 * The number of steps of the plan, not counting the ones of its sub-plans.
+	 */
+	public int size() {
+		return kinds.length;
+	}
+
+	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+		// Local cursor so that the same plan can be used concurrently
+		int[] pos = new int[] { s1, s2 };
+		return compare(this, b1, b2, pos);
+	}
+
+	/**
+	 * Runs the given plan from the current positions in pos, which are shared with the sub-plans.
+	 */
+	private static int compare(AvroComparePlan plan, byte[] b1, byte[] b2, int[] pos) {
+		int[] steps = plan.kinds;
+		for(int step = 0; step < steps.length; step++) {
+			int c;
+			switch(steps[step]) {
+			case BOOLEAN: {
+				boolean v1 = b1[pos[0]++] != 0;
+				boolean v2 = b2[pos[1]++] != 0;
+				c = (v1 == v2) ? 0 : (v1 ? 1 : -1);
+				break;
+			}
+			case INT: {
+				int v1 = readInt(b1, pos, 0);
+				int v2 = readInt(b2, pos, 1);
+				c = (v1 == v2) ? 0 : ((v1 > v2) ? 1 : -1);
+				break;
+			}
+			case LONG: {
+				long v1 = readLong(b1, pos, 0);
+				long v2 = readLong(b2, pos, 1);
+				c = (v1 == v2) ? 0 : ((v1 > v2) ? 1 : -1);
+				break;
+			}
+			case FLOAT: {
+				float v1 = Float.intBitsToFloat(readFixedInt(b1, pos[0]));
+				float v2 = Float.intBitsToFloat(readFixedInt(b2, pos[1]));
+				pos[0] += 4;
+				pos[1] += 4;
+				c = (v1 == v2) ? 0 : ((v1 > v2) ? 1 : -1);
+				break;
+			}
+			case DOUBLE: {
+				double v1 = Double.longBitsToDouble(readFixedLong(b1, pos[0]));
+				double v2 = Double.longBitsToDouble(readFixedLong(b2, pos[1]));
+				pos[0] += 8;
+				pos[1] += 8;
+				c = (v1 == v2) ? 0 : ((v1 > v2) ? 1 : -1);
+				break;
+			}
+			case BYTES: {
+				int length1 = readInt(b1, pos, 0);
+				int length2 = readInt(b2, pos, 1);
+				c = WritableComparator.compareBytes(b1, pos[0], length1, b2, pos[1], length2);
+				pos[0] += length1;
+				pos[1] += length2;
+				break;
+			}
+			case FIXED: {
+				int size = plan.sizes[step];
+				c = WritableComparator.compareBytes(b1, pos[0], size, b2, pos[1], size);
+				pos[0] += size;
+				pos[1] += size;
+				break;
+			}
+			case UNION: {
+				int branch1 = readInt(b1, pos, 0);
+				int branch2 = readInt(b2, pos, 1);
+				c = (branch1 == branch2) ? compare(plan.children[step][branch1], b1, b2, pos) : branch1 - branch2;
+				break;
+			}
+			case ARRAY:
+				c = compareArrays(plan.children[step][0], b1, b2, pos);
+				break;
+			case MAP:
+				throw new AvroRuntimeException("Can't compare maps!");
+			default: {
+				int size = plan.sizes[step];
+				if(size >= 0) {
+					pos[0] += size;
+					pos[1] += size;
+				} else {
+					pos[0] = plan.skippers[step].skip(b1, pos[0]);
+					pos[1] = plan.skippers[step].skip(b2, pos[1]);
+				}
+				continue;
+			}
+			}
+			if(c != 0) {
+				return (plan.signs[step] > 0) ? c : -c;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Element by element and then by length, block by block as BinaryData does.
+	 */
+	private static int compareArrays(AvroComparePlan element, byte[] b1, byte[] b2, int[] pos) {
+		long i = 0; // position in the array
+		long r1 = 0, r2 = 0; // remaining in the current block
+		long length1 = 0, length2 = 0; // total array length
+		while(true) {
+			if(r1 == 0) {
+				r1 = readLong(b1, pos, 0);
+				if(r1 < 0) {
+					r1 = -r1;
+					readLong(b1, pos, 0); // block size in bytes
+				}
+				length1 += r1;
+			}
+			if(r2 == 0) {
+				r2 = readLong(b2, pos, 1);
+				if(r2 < 0) {
+					r2 = -r2;
+					readLong(b2, pos, 1);
+				}
+				length2 += r2;
+			}
+			if(r1 == 0 || r2 == 0) {
+				return (length1 == length2) ? 0 : ((length1 > length2) ? 1 : -1);
+			}
+			long l = Math.min(length1, length2);
+			while(i < l) {
+				int c = compare(element, b1, b2, pos);
+				if(c != 0) {
+					return c;
+				}
+				i++;
+				r1--;
+				r2--;
+			}
+		}
+	}
+
+	/**
+	 * Reads a zig-zag variable length int from b at pos[side], advancing it.
+	 */
+	private static int readInt(byte[] b, int[] pos, int side) {
+		int p = pos[side];
+		int n = 0;
+		int shift = 0;
+		int v;
+		do {
+			v = b[p++];
+			n |= (v & 0x7F) << shift;
+			shift += 7;
+		} while((v & 0x80) != 0);
+		pos[side] = p;
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	private static long readLong(byte[] b, int[] pos, int side) {
+		int p = pos[side];
+		long n = 0;
+		int shift = 0;
+		int v;
+		do {
+			v = b[p++];
+			n |= (long) (v & 0x7F) << shift;
+			shift += 7;
+		} while((v & 0x80) != 0);
+		pos[side] = p;
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	private static int readFixedInt(byte[] b, int pos) {
+		return (b[pos] & 0xFF) | ((b[pos + 1] & 0xFF) << 8) | ((b[pos + 2] & 0xFF) << 16) | ((b[pos + 3] & 0xFF) << 24);
+	}
+
+	private static long readFixedLong(byte[] b, int pos) {
+		return (readFixedInt(b, pos) & 0xFFFFFFFFL) | ((long) readFixedInt(b, pos + 4) << 32);
+	}
+
+	/**
+	 * Size in bytes of the data of the given Schema if it is always the same, or -1.
+	 */
+	static int fixedSize(Schema schema) {
+		switch(schema.getType()) {
+		case NULL:
+			return 0;
+		case BOOLEAN:
+			return 1;
+		case FLOAT:
+			return 4;
+		case DOUBLE:
+			return 8;
+		case FIXED:
+			return schema.getFixedSize();
+		case RECORD: {
+			int size = 0;
+			for(Field field : schema.getFields()) {
+				int fieldSize = fixedSize(field.schema());
+				if(fieldSize < 0) {
+					return -1;
+				}
+				size += fieldSize;
+			}
+			return size;
+		}
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Jumps over the data of a Schema of variable size.
+	 */
+	static class Skipper {
+
+		private final Schema.Type type;
+		private final int fixedSize;
+		private final Skipper[] children;
+
+		Skipper(Schema schema) {
+			this.type = schema.getType();
+			this.fixedSize = fixedSize(schema);
+			switch(type) {
+			case RECORD: {
+				List<Field> fields = schema.getFields();
+				children = new Skipper[fields.size()];
+				for(int i = 0; i < children.length; i++) {
+					children[i] = new Skipper(fields.get(i).schema());
+				}
+				break;
+			}
+			case UNION: {
+				List<Schema> types = schema.getTypes();
+				children = new Skipper[types.size()];
+				for(int i = 0; i < children.length; i++) {
+					children[i] = new Skipper(types.get(i));
+				}
+				break;
+			}
+			case ARRAY:
+				children = new Skipper[] { new Skipper(schema.getElementType()) };
+				break;
+			case MAP:
+				children = new Skipper[] { new Skipper(Schema.create(Schema.Type.STRING)),
+				    new Skipper(schema.getValueType()) };
+				break;
+			default:
+				children = null;
+			}
+		}
+
+		/**
+		 * Returns the position after the data that starts at the given one.
+		 */
+		int skip(byte[] b, int pos) {
+			if(fixedSize >= 0) {
+				return pos + fixedSize;
+			}
+			switch(type) {
+			case INT:
+			case LONG:
+			case ENUM:
+				return varEnd(b, pos);
+			case STRING:
+			case BYTES:
+				return varEnd(b, pos) + (int) readVar(b, pos);
+			case RECORD:
+				for(Skipper child : children) {
+					pos = child.skip(b, pos);
+				}
+				return pos;
+			case UNION:
+				return children[(int) readVar(b, pos)].skip(b, varEnd(b, pos));
+			case ARRAY:
+			case MAP:
+				while(true) {
+					long count = readVar(b, pos);
+					pos = varEnd(b, pos);
+					if(count == 0) {
+						return pos;
+					}
+					if(count < 0) {
+						// The block size in bytes follows, the whole block can be skipped at once
+						long bytes = readVar(b, pos);
+						pos = varEnd(b, pos) + (int) bytes;
+						continue;
+					}
+					for(long i = 0; i < count; i++) {
+						for(Skipper child : children) {
+							pos = child.skip(b, pos);
+						}
+					}
+				}
+			default:
+				throw new AvroRuntimeException("Can't skip type " + type);
+			}
+		}
+
+		/**
+		 * The position after the variable length int or long that starts at the given one.
+		 */
+		private static int varEnd(byte[] b, int pos) {
+			while((b[pos++] & 0x80) != 0) {
+			}
+			return pos;
+		}
+
+		private static long readVar(byte[] b, int pos) {
+			long n = 0;
+			int shift = 0;
+			int v;
+			do {
+				v = b[pos++];
+				n |= (long) (v & 0x7F) << shift;
+				shift += 7;
+			} while((v & 0x80) != 0);
+			return (n >>> 1) ^ -(n & 1);
+		}
+	}
+
+	/**
+	 * Builds the flat list of steps of a plan.
+	 */
+	static class Builder {
+
+		private final List<Integer> kinds = new ArrayList<Integer>();
+		private final List<Integer> signs = new ArrayList<Integer>();
+		private final List<Integer> sizes = new ArrayList<Integer>();
+		private final List<AvroComparePlan[]> children = new ArrayList<AvroComparePlan[]>();
+		private final List<Skipper> skippers = new ArrayList<Skipper>();
+
+		private void addStep(int kind, int sign, int size, AvroComparePlan[] stepChildren, Skipper skipper) {
+			kinds.add(kind);
+			signs.add(sign);
+			sizes.add(size);
+			children.add(stepChildren);
+			skippers.add(skipper);
+		}
+
+		void add(Schema schema, int sign) {
+			switch(schema.getType()) {
+			case RECORD:
+				for(Field field : schema.getFields()) {
+					if(field.order() == Field.Order.IGNORE) {
+						addSkip(field.schema());
+					} else {
+						add(field.schema(), (field.order() == Field.Order.DESCENDING) ? -sign : sign);
+					}
+				}
+				break;
+			case NULL:
+				// Nothing to compare or to read
+				break;
+			case BOOLEAN:
+				addStep(BOOLEAN, sign, -1, null, null);
+				break;
+			case INT:
+			case ENUM:
+				addStep(INT, sign, -1, null, null);
+				break;
+			case LONG:
+				addStep(LONG, sign, -1, null, null);
+				break;
+			case FLOAT:
+				addStep(FLOAT, sign, -1, null, null);
+				break;
+			case DOUBLE:
+				addStep(DOUBLE, sign, -1, null, null);
+				break;
+			case STRING:
+			case BYTES:
+				addStep(BYTES, sign, -1, null, null);
+				break;
+			case FIXED:
+				addStep(FIXED, sign, schema.getFixedSize(), null, null);
+				break;
+			case UNION: {
+				List<Schema> types = schema.getTypes();
+				AvroComparePlan[] branches = new AvroComparePlan[types.size()];
+				for(int i = 0; i < branches.length; i++) {
+					Builder branch = new Builder();
+					branch.add(types.get(i), 1);
+					branches[i] = branch.build();
+				}
+				addStep(UNION, sign, -1, branches, null);
+				break;
+			}
+			case ARRAY: {
+				Builder element = new Builder();
+				element.add(schema.getElementType(), 1);
+				addStep(ARRAY, sign, -1, new AvroComparePlan[] { element.build() }, null);
+				break;
+			}
+			case MAP:
+				addStep(MAP, sign, -1, null, null);
+				break;
+			default:
+				throw new AvroRuntimeException("Unexpected schema type " + schema.getType());
+			}
+		}
+
+		/**
+		 * Adds a step that skips the data of the given Schema, merged with the previous one if both are of fixed size.
+		 */
+		void addSkip(Schema schema) {
+			int size = fixedSize(schema);
+			if(size == 0) {
+				return;
+			}
+			int last = kinds.size() - 1;
+			if(size > 0 && last >= 0 && kinds.get(last) == SKIP && sizes.get(last) >= 0) {
+				sizes.set(last, sizes.get(last) + size);
+				return;
+			}
+			addStep(SKIP, 1, size, null, (size < 0) ? new Skipper(schema) : null);
+		}
+
+		void trimSkips() {
+			for(int last = kinds.size() - 1; last >= 0 && kinds.get(last) == SKIP; last--) {
+				kinds.remove(last);
+				signs.remove(last);
+				sizes.remove(last);
+				children.remove(last);
+				skippers.remove(last);
+			}
+		}
+
+		AvroComparePlan build() {
+			int n = kinds.size();
+			int[] k = new int[n];
+			int[] sg = new int[n];
+			int[] sz = new int[n];
+			for(int i = 0; i < n; i++) {
+				k[i] = kinds.get(i);
+				sg[i] = signs.get(i);
+				sz[i] = sizes.get(i);
+			}
+			return new AvroComparePlan(k, sg, sz, children.toArray(new AvroComparePlan[n][]),
+			    skippers.toArray(new Skipper[n]));
+		}
+	}
+}
@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 
 import org.apache.hadoop.fs.FileStatus;
@@ -31,6 +32,8 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 
 /**
@@ -164,4 +167,23 @@ public class HadoopUtils {
 	public static void incCounter(TaskInputOutputContext ctx, String groupName, Enum counter) {
 		ctx.getCounter(groupName, counter.toString()).increment(1);
 	}
+
+	/**
+	 * Returns the given counter of the task, or null if it is not reachable from the context. Any
+	 * TaskInputOutputContext has counters, but a plain TaskAttemptContext, like the one given to
+	 * RecordWriter.close(), only has them in Hadoop 2, so it is looked up by reflection.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static Counter getCounter(TaskAttemptContext ctx, String groupName, String counterName) {
+		if(ctx instanceof TaskInputOutputContext) {
+			return ((TaskInputOutputContext) ctx).getCounter(groupName, counterName);
+		}
+		try {
+			Method method = ctx.getClass().getMethod("getCounter", String.class, String.class);
+			return (Counter) method.invoke(ctx, groupName, counterName);
+		} catch(Exception e) {
+			// Hadoop 1.0
+			return null;
+		}
+	}
 }
\ No newline at end of file
@@ -15,19 +15,28 @@
  */
 package com.datasalt.pangool.utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.util.StringUtils;
 
 /**
  * This class contains useful methods for serializing/deserializing instances
@@ -39,6 +48,10 @@ import org.apache.hadoop.fs.Path;
  * {@link InstancesDistributor#distribute(Object, String, Configuration)} and
  * {@link InstancesDistributor#loadInstance(Configuration, Class, String, boolean)}
  * for this purpose.
+ * <p>
+ * Small instances (see {@link #INLINE_MAX_BYTES_CONF}) are embedded in the Configuration itself so that tasks don't
+ * need to open any file for loading them. The serialized bytes of the rest of instances are cached per JVM, keyed by
+ * their content hash, so that reused JVMs or several loads of the same instance in a task only read the file once.
  * 
  */
 public class InstancesDistributor {
@@ -49,6 +62,25 @@ public class InstancesDistributor {
   // http://stackoverflow.com/questions/23903113/mapreduce-error-usergroupinformation-priviledgedactionexception
   public final static String DEFAULT_LOCAL_TMP_FOLDER_CONF_VALUE = "/tmp";
 
+  /**
+   * Instances whose serialized size is not bigger than this value are embedded in the Configuration instead of being
+   * written to a file. 0 disables it.
+   */
+  public final static String INLINE_MAX_BYTES_CONF = InstancesDistributor.class.getName() + ".inline.max.bytes";
+  public final static int DEFAULT_INLINE_MAX_BYTES = 16 * 1024;
+  /**
+   * Maximum number of serialized bytes kept in the per-JVM cache.
+   */
+  public final static String CACHE_MAX_BYTES_CONF = InstancesDistributor.class.getName() + ".cache.max.bytes";
+  public final static long DEFAULT_CACHE_MAX_BYTES = 32 * 1024 * 1024;
+
+  private final static String INLINE_PREFIX = InstancesDistributor.class.getName() + ".inline.";
+  private final static String HASH_PREFIX = InstancesDistributor.class.getName() + ".hash.";
+
+  // Serialized instances by content hash, least recently used first
+  private final static Map<String, byte[]> cache = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+  private static long cachedBytes = 0;
+
   // Since Hadoop 2.4:
   // http://stackoverflow.com/questions/23903113/mapreduce-error-usergroupinformation-priviledgedactionexception
   protected static String getInstancesFolder(FileSystem fS, Configuration conf) throws IOException {
@@ -78,6 +110,22 @@ public class InstancesDistributor {
   public static void distribute(Object obj, String fileName, Configuration conf) throws FileNotFoundException,
       IOException, URISyntaxException {
 
+    ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+    ObjectOutput out = new ObjectOutputStream(bytesOut);
+    out.writeObject(obj);
+    out.close();
+    byte[] bytes = bytesOut.toByteArray();
+    conf.set(HASH_PREFIX + fileName, MD5Hash.digest(bytes).toString());
+
+    if (bytes.length <= conf.getInt(INLINE_MAX_BYTES_CONF, DEFAULT_INLINE_MAX_BYTES)) {
+      conf.set(INLINE_PREFIX + fileName, StringUtils.byteToHexString(bytes));
+      return;
+    }
+    if (conf.get(INLINE_PREFIX + fileName) != null) {
+      // the same file name was inlined before
+      conf.set(INLINE_PREFIX + fileName, "");
+    }
+
     FileSystem fS = FileSystem.get(conf);
     // set the temporary folder for Pangool instances to the temporary of the
     // user that is running the Job
@@ -89,9 +137,8 @@ public class InstancesDistributor {
       fS.delete(toHdfs, false);
     }
 
-    ObjectOutput out = new ObjectOutputStream(fS.create(toHdfs));
-    out.writeObject(obj);
-    out.close();
+    InputStream in = new ByteArrayInputStream(bytes);
+    IOUtils.copyBytes(in, fS.create(toHdfs), bytes.length, true);
 
     DistributedCache.addCacheFile(toHdfs.toUri(), conf);
   }
@@ -117,13 +164,8 @@ public class InstancesDistributor {
   public static <T> T loadInstance(Configuration conf, Class<T> objClass, String fileName, boolean callSetConf)
       throws IOException {
 
-    Path path = InstancesDistributor.locateFileInCache(conf, fileName);
     T obj;
-    ObjectInput in;
-    if (path == null) {
-      throw new IOException("Path is null");
-    }
-    in = new ObjectInputStream(FileSystem.get(conf).open(path));
+    ObjectInput in = new ObjectInputStream(new ByteArrayInputStream(loadBytes(conf, fileName)));
 
     try {
       obj = objClass.cast(in.readObject());
@@ -137,6 +179,50 @@ public class InstancesDistributor {
     return obj;
   }
 
+  /**
+   * Returns the serialized instance, either from the Configuration, from the per-JVM cache or from its file.
+   */
+  private static byte[] loadBytes(Configuration conf, String fileName) throws IOException {
+    String inline = conf.get(INLINE_PREFIX + fileName);
+    if (inline != null && !inline.isEmpty()) {
+      return StringUtils.hexStringToByte(inline);
+    }
+    String hash = conf.get(HASH_PREFIX + fileName);
+    if (hash != null) {
+      synchronized (cache) {
+        byte[] bytes = cache.get(hash);
+        if (bytes != null) {
+          return bytes;
+        }
+      }
+    }
+
+    Path path = InstancesDistributor.locateFileInCache(conf, fileName);
+    if (path == null) {
+      throw new IOException("Path is null");
+    }
+    FileSystem fS = FileSystem.get(conf);
+    ByteArrayOutputStream out = new ByteArrayOutputStream((int) fS.getFileStatus(path).getLen());
+    IOUtils.copyBytes(fS.open(path), out, conf, true);
+    byte[] bytes = out.toByteArray();
+
+    if (hash != null) {
+      long maxBytes = conf.getLong(CACHE_MAX_BYTES_CONF, DEFAULT_CACHE_MAX_BYTES);
+      synchronized (cache) {
+        if (bytes.length <= maxBytes && !cache.containsKey(hash)) {
+          cache.put(hash, bytes);
+          cachedBytes += bytes.length;
+          Iterator<byte[]> it = cache.values().iterator();
+          while (cachedBytes > maxBytes) {
+            cachedBytes -= it.next().length;
+            it.remove();
+          }
+        }
+      }
+    }
+    return bytes;
+  }
+
   /**
    * Locates a file in the temporal folder
    * 
@@ -0,0 +1,118 @@
+package com.datasalt.pangool.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.ReduceContext;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+
+/**
+ * A trick that uses reflection to be compatible with both Hadoop 1.0 and Hadoop 2.0 when creating {@link Mapper.Context}
+ * and {@link Reducer.Context} instances outside of a real Hadoop task. In Hadoop 1.0 contexts are inner classes of the
+ * Mapper and the Reducer. In Hadoop 2.0 they are abstract and one must instantiate MapContextImpl or ReduceContextImpl
+ * and wrap them with WrappedMapper or WrappedReducer.
+ * <p>
+ * The constructor arguments are matched by type, as their number changed between Hadoop versions (i.e. the number of
+ * input counters of the reduce context).
+ */
+public class TaskContextFactory {
+
+	@SuppressWarnings("rawtypes")
+	public static Mapper.Context getMapContext(Mapper mapper, Configuration conf, TaskAttemptID taskAttemptID,
+	    RecordReader reader, RecordWriter writer, OutputCommitter committer, StatusReporter reporter,
+	    InputSplit split) throws IOException, InterruptedException {
+		try {
+			Class cl = Class.forName(MapContext.class.getName());
+			Object[] args = new Object[] { conf, taskAttemptID, reader, writer, committer, reporter, split };
+			if(cl.isInterface()) {
+				// Hadoop 0.23 > , use MapContextImpl and WrappedMapper
+				Object mapContext = newInstance(Class.forName("org.apache.hadoop.mapreduce.task.MapContextImpl"), null,
+				    args);
+				Class wrapper = Class.forName("org.apache.hadoop.mapreduce.lib.map.WrappedMapper");
+				return (Mapper.Context) wrapper.getMethod("getMapContext", cl).invoke(wrapper.newInstance(), mapContext);
+			} else {
+				// Hadoop 1.0
+				return (Mapper.Context) newInstance(Class.forName(Mapper.Context.class.getName()), mapper, args);
+			}
+		} catch(InvocationTargetException e) {
+			throw unwrap(e);
+		} catch(Exception e) {
+			throw new IOException("Can't create Mapper context", e);
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	public static Reducer.Context getReduceContext(Reducer reducer, Configuration conf, TaskAttemptID taskAttemptID,
+	    RawKeyValueIterator input, Counter inputKeyCounter, Counter inputValueCounter, RecordWriter writer,
+	    OutputCommitter committer, StatusReporter reporter, RawComparator comparator, Class keyClass,
+	    Class valueClass) throws IOException, InterruptedException {
+		try {
+			Class cl = Class.forName(ReduceContext.class.getName());
+			Object[] args = new Object[] { conf, taskAttemptID, input, inputKeyCounter, inputValueCounter, writer,
+			    committer, reporter, comparator, keyClass, valueClass };
+			if(cl.isInterface()) {
+				// Hadoop 0.23 > , use ReduceContextImpl and WrappedReducer
+				Object reduceContext = newInstance(
+				    Class.forName("org.apache.hadoop.mapreduce.task.ReduceContextImpl"), null, args);
+				Class wrapper = Class.forName("org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer");
+				return (Reducer.Context) wrapper.getMethod("getReducerContext", cl).invoke(wrapper.newInstance(),
+				    reduceContext);
+			} else {
+				// Hadoop 1.0
+				return (Reducer.Context) newInstance(Class.forName(Reducer.Context.class.getName()), reducer, args);
+			}
+		} catch(InvocationTargetException e) {
+			throw unwrap(e);
+		} catch(Exception e) {
+			throw new IOException("Can't create Reducer context", e);
+		}
+	}
+
+	/**
+	 * Calls the only public constructor of the given class, assigning each argument to the first unused parameter
+	 * whose type accepts it. The outer instance, if any, is assigned first. Arguments that don't fit are dropped.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static Object newInstance(Class cl, Object outer, Object[] args) throws InstantiationException,
+	    IllegalAccessException, InvocationTargetException {
+		Constructor constructor = cl.getConstructors()[0];
+		Class[] types = constructor.getParameterTypes();
+		Object[] params = new Object[types.length];
+		int pos = 0;
+		if(outer != null) {
+			params[pos++] = outer;
+		}
+		for(Object arg : args) {
+			if(pos < types.length && (arg == null || types[pos].isInstance(arg))) {
+				params[pos++] = arg;
+			}
+		}
+		if(pos != types.length) {
+			throw new IllegalArgumentException("Unexpected constructor " + constructor);
+		}
+		return constructor.newInstance(params);
+	}
+
+	private static IOException unwrap(InvocationTargetException e) throws InterruptedException {
+		Throwable cause = e.getCause();
+		if(cause instanceof IOException) {
+			return (IOException) cause;
+		} else if(cause instanceof InterruptedException) {
+			throw (InterruptedException) cause;
+		}
+		return new IOException(cause);
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.utils;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskID;
+
+/**
+ * A trick that uses reflection to be compatible with both Hadoop 1.0 and Hadoop 2.0. In Hadoop 2.0 the TaskID
+ * constructor that receives a boolean for telling map tasks from reduce ones is deprecated in favour of the one that
+ * receives a TaskType, which doesn't exist in Hadoop 1.0.
+ */
+public class TaskIDFactory {
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static TaskID get(JobID jobId, boolean isMap, int id) throws IllegalArgumentException,
+	    InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+		Class taskType;
+		try {
+			taskType = Class.forName("org.apache.hadoop.mapreduce.TaskType");
+		} catch(ClassNotFoundException e) {
+			// Hadoop 1.0
+			return TaskID.class.getConstructor(JobID.class, boolean.class, int.class).newInstance(jobId, isMap, id);
+		}
+		Object type = Enum.valueOf(taskType, isMap ? "MAP" : "REDUCE");
+		return TaskID.class.getConstructor(JobID.class, taskType, int.class).newInstance(jobId, type, id);
+	}
+}
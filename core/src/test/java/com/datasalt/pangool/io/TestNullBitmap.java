@@ -0,0 +1,108 @@
+package com.datasalt.pangool.io;
+
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link com.datasalt.pangool.io.NullBitmap}
+ */
+public class TestNullBitmap {
+
+  @Test
+  public void testSetAndNextSetBit() throws Exception {
+    int SIZE = 200;
+    Random r = new Random(0);
+    NullBitmap bm = new NullBitmap(SIZE);
+    HashSet<Integer> bits = new HashSet<Integer>();
+    for (int i = 0; i < 100; i++) {
+      int bit = r.nextInt(SIZE);
+      bm.set(bit);
+      bits.add(bit);
+    }
+    int found = 0;
+    for (int i = 0; i < SIZE; i++) {
+      assertEquals(bits.contains(i), bm.isSet(i));
+    }
+    for (int i = bm.nextSetBit(0); i >= 0; i = bm.nextSetBit(i + 1)) {
+      assertTrue(bits.contains(i));
+      found++;
+    }
+    assertEquals(bits.size(), found);
+
+    bm.unset(63);
+    bm.set(64);
+    assertFalse(bm.isSet(63));
+    assertTrue(bm.isSet(64));
+  }
+
+  @Test
+  public void testSerialization() throws IOException {
+    for (int size : new int[] { 1, 7, 8, 9, 63, 64, 65, 130 }) {
+      NullBitmap bm = new NullBitmap(size);
+      serDeCheck(bm);
+      bm.set(0);
+      bm.set(size - 1);
+      serDeCheck(bm);
+      for (int i = 0; i < size; i += 3) {
+        bm.set(i);
+      }
+      serDeCheck(bm);
+    }
+  }
+
+  @Test
+  public void testSetSizeClears() {
+    NullBitmap bm = new NullBitmap(100);
+    bm.set(99);
+    bm.setSize(10);
+    assertEquals(-1, bm.nextSetBit(0));
+    bm.setSize(100);
+    assertFalse(bm.isSet(99));
+  }
+
+  static void serDeCheck(NullBitmap bm) throws IOException {
+    DataOutputBuffer dob = new DataOutputBuffer();
+    bm.ser(dob);
+    assertEquals(NullBitmap.serializedSize(bm.getSize()), dob.getLength());
+
+    // Checking DataInput deser, over a bitmap with previous garbage
+    DataInputBuffer dib = new DataInputBuffer();
+    dib.reset(dob.getData(), dob.getLength());
+    NullBitmap newbm = new NullBitmap(bm.getSize());
+    for (int i = 0; i < bm.getSize(); i++) {
+      newbm.set(i);
+    }
+    assertEquals(dob.getLength(), newbm.deser(dib));
+    assertEquals(bm.toString(), newbm.toString());
+
+    // Checking byte array deserialization
+    newbm = new NullBitmap(bm.getSize());
+    assertEquals(dob.getLength(), newbm.deser(dob.getData(), 0));
+    assertEquals(bm.toString(), newbm.toString());
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.Test;
+
+import com.datasalt.pangool.BaseTest;
+import com.datasalt.pangool.tuplemr.mapred.TupleHashPartitioner;
+
+public class TestPrimitiveTuple extends BaseTest {
+
+	final static Schema SCHEMA = new Schema("schema",
+	    Fields.parse("i:int, l:long?, f:float, d:double, b:boolean, s:string?"));
+
+	@Test
+	public void testAccessors() {
+		PrimitiveTuple tuple = new PrimitiveTuple(SCHEMA);
+		assertTrue(tuple.isNull(0));
+		assertNull(tuple.get("i"));
+
+		tuple.setInt(0, 3);
+		tuple.setLong(1, Long.MAX_VALUE);
+		tuple.setFloat(2, 1.5f);
+		tuple.setDouble(3, -2.25d);
+		tuple.setBoolean(4, true);
+		tuple.set(5, "hola");
+
+		assertEquals(3, tuple.getIntValue(0));
+		assertEquals(Long.MAX_VALUE, tuple.getLongValue(1));
+		assertEquals(1.5f, tuple.getFloatValue(2), 0f);
+		assertEquals(-2.25d, tuple.getDoubleValue(3), 0d);
+		assertTrue(tuple.getBooleanValue(4));
+
+		// Boxed access
+		assertEquals(3, tuple.get("i"));
+		assertEquals(Long.MAX_VALUE, tuple.get(1));
+		assertEquals(1.5f, tuple.getFloat("f"), 0f);
+		assertEquals(-2.25d, tuple.getDouble(3), 0d);
+		assertEquals(Boolean.TRUE, tuple.getBoolean("b"));
+		assertEquals("hola", tuple.getString(5));
+
+		tuple.set("i", 7);
+		assertEquals(7, tuple.getIntValue(0));
+		tuple.set("l", null);
+		assertTrue(tuple.isNull(1));
+		assertFalse(tuple.isNull(0));
+
+		tuple.clear();
+		for(int i = 0; i < SCHEMA.getFields().size(); i++) {
+			assertTrue(tuple.isNull(i));
+		}
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullValue() {
+		new PrimitiveTuple(SCHEMA).getLongValue(1);
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void testWrongType() {
+		new PrimitiveTuple(SCHEMA).set("i", 3l);
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void testWrongAccessor() {
+		PrimitiveTuple tuple = new PrimitiveTuple(SCHEMA);
+		tuple.setInt(0, 1);
+		tuple.getLongValue(0);
+	}
+
+	@Test
+	public void testEquals() {
+		PrimitiveTuple p1 = new PrimitiveTuple(SCHEMA);
+		PrimitiveTuple p2 = new PrimitiveTuple(SCHEMA);
+		Tuple t = new Tuple(SCHEMA);
+		for(ITuple tuple : new ITuple[] { p1, p2, t }) {
+			tuple.set("i", 1);
+			tuple.set("f", 2f);
+			tuple.set("d", 3d);
+			tuple.set("b", false);
+			tuple.set("s", new Utf8("foo"));
+		}
+		assertEquals(p1, p2);
+		assertEquals(p1, t);
+		assertEquals(t, p1);
+		assertEquals(t.toString(), p1.toString());
+
+		p2.setLong(1, 5l);
+		assertFalse(p1.equals(p2));
+		assertFalse(t.equals(p2));
+	}
+
+	/**
+	 * An ITuple that doesn't implement IPrimitiveTuple, as user implementations may do.
+	 */
+	private static ITuple plainTuple(final ITuple delegate) {
+		return (ITuple) Proxy.newProxyInstance(ITuple.class.getClassLoader(), new Class[] { ITuple.class },
+		    new InvocationHandler() {
+			    @Override
+			    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				    return method.invoke(delegate, args);
+			    }
+		    });
+	}
+
+	@Test
+	public void testAdapterFallback() {
+		PrimitiveTupleAdapter adapter = new PrimitiveTupleAdapter();
+		PrimitiveTuple primitive = new PrimitiveTuple(SCHEMA);
+		assertSame(primitive, adapter.adapt(primitive));
+
+		Tuple tuple = new Tuple(SCHEMA);
+		IPrimitiveTuple adapted = adapter.adapt(plainTuple(tuple));
+		assertSame(adapter, adapted);
+		assertTrue(adapted.isNull(1));
+		adapted.setInt(0, 3);
+		adapted.setLong(1, 7l);
+		adapted.setBoolean(4, true);
+		assertEquals(3, tuple.get(0));
+		assertEquals(7l, adapted.getLongValue(1));
+		assertTrue(adapted.getBooleanValue(4));
+
+		primitive.setInt(0, 3);
+		primitive.setLong(1, 7l);
+		primitive.setBoolean(4, true);
+		int[] fields = new int[] { 0, 1, 4, 5 };
+		TupleHashPartitioner partitioner = new TupleHashPartitioner();
+		assertEquals(partitioner.partialHashCode(primitive, fields),
+		    partitioner.partialHashCode(plainTuple(tuple), fields));
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestTupleBatch {
+
+	private final Schema schema = new Schema("schema", Fields.parse("id:int,amount:double?,name:string"));
+
+	@Test
+	public void testAddAndColumns() {
+		TupleBatch batch = new TupleBatch(schema, 4, null);
+		Tuple tuple = new Tuple(schema);
+		Utf8 name = new Utf8();
+		for(int i = 0; i < 4; i++) {
+			tuple.set("id", i);
+			tuple.set("amount", (i % 2 == 0) ? (double) i : null);
+			// The same mutable instance for every Tuple: the batch must copy it
+			name.set("name" + i);
+			tuple.set("name", name);
+			batch.add(tuple);
+		}
+		assertTrue(batch.isFull());
+		assertEquals(4, batch.size());
+
+		int[] ids = batch.getIntColumn("id");
+		double[] amounts = batch.getDoubleColumn(1);
+		double sum = 0;
+		for(int i = 0; i < batch.size(); i++) {
+			assertEquals(i, ids[i]);
+			if(!batch.isNull(i, 1)) {
+				sum += amounts[i];
+			}
+		}
+		assertEquals(2.0, sum, 0d);
+		assertTrue(batch.isNull(1, 1));
+		assertNull(batch.get(1, 1));
+		assertEquals("name0", batch.getObjectColumn("name")[0].toString());
+		assertEquals("name3", batch.getObjectColumn("name")[3].toString());
+
+		IPrimitiveTuple row = batch.getRow(2);
+		assertEquals(2, row.getIntValue(0));
+		assertEquals(2.0, row.getDoubleValue(1), 0d);
+		assertEquals("name2", row.getString(2));
+		assertTrue(batch.getRow(3).isNull(1));
+
+		batch.clear();
+		assertEquals(0, batch.size());
+		assertFalse(batch.isNull(1, 1));
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void testWrongColumnType() {
+		new TupleBatch(schema).getLongColumn("id");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFull() {
+		TupleBatch batch = new TupleBatch(schema, 1, null);
+		Tuple tuple = new Tuple(schema);
+		tuple.set("id", 1);
+		tuple.set("name", "a");
+		batch.add(tuple);
+		batch.add(tuple);
+	}
+
+	@Test
+	public void testFilledByColumns() {
+		TupleBatch batch = new TupleBatch(schema, 10, null);
+		int[] ids = batch.getIntColumn("id");
+		Object[] names = batch.getObjectColumn("name");
+		for(int i = 0; i < 3; i++) {
+			ids[i] = i * 10;
+			names[i] = "n" + i;
+		}
+		batch.getNullsColumn(1)[0] = true;
+		batch.setSize(3);
+		Tuple tuple = new Tuple(schema);
+		batch.get(1, tuple);
+		assertEquals(10, tuple.get("id"));
+		assertEquals("n1", tuple.get("name"));
+		assertTrue(batch.getRow(0).isNull(1));
+	}
+}
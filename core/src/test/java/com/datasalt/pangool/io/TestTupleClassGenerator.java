@@ -0,0 +1,117 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import com.datasalt.pangool.BaseTest;
+import com.datasalt.pangool.io.Schema.Field;
+
+public class TestTupleClassGenerator extends BaseTest {
+
+	public final static String OUTPUT = TestTupleClassGenerator.class.getName() + "-output";
+
+	final static Schema SCHEMA = new Schema("user",
+	    Fields.parse("userId:long, name:string?, score:double?, active:boolean, schema:int, data:bytes"));
+
+	@Test
+	public void testNames() {
+		assertEquals("POS_USER_ID", TupleClassGenerator.posConstant(Field.create("userId", Field.Type.INT)));
+		assertEquals("POS_URL", TupleClassGenerator.posConstant(Field.create("URL", Field.Type.INT)));
+		assertEquals("UserId", TupleClassGenerator.methodSuffix(Field.create("userId", Field.Type.INT)));
+		// Would collide with getSchema()
+		assertEquals("SchemaField", TupleClassGenerator.methodSuffix(Field.create("schema", Field.Type.INT)));
+	}
+
+	@Test
+	public void testNameCollisions() {
+		assertCollision("user_id:long, userId:long", "user_id", "userId");
+		assertCollision("name:string, Name:int", "name", "Name");
+		// getNameText() is also generated for the STRING field
+		assertCollision("name:string, nameText:string", "name", "nameText");
+	}
+
+	private static void assertCollision(String fields, String field1, String field2) {
+		try {
+			TupleClassGenerator.generate(new Schema("collision", Fields.parse(fields)), null, "CollisionTuple");
+			fail("Fields " + field1 + " and " + field2 + " collide");
+		} catch(IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("'" + field1 + "'"));
+			assertTrue(e.getMessage(), e.getMessage().contains("'" + field2 + "'"));
+		}
+	}
+
+	@Test
+	public void testGenerate() throws Exception {
+		String source = TupleClassGenerator.generate(SCHEMA, "com.datasalt.pangool.generated", "UserTuple");
+		assertTrue(source, source.contains("public long getUserId()"));
+		assertTrue(source, source.contains("public void setScore(double value)"));
+		assertTrue(source, source.contains("public boolean isScoreNull()"));
+		assertTrue(source, source.contains("public boolean isActive()"));
+		assertTrue(source, source.contains("public int getSchemaField()"));
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if(compiler == null) {
+			// Running on a JRE
+			return;
+		}
+		trash(OUTPUT);
+		File file = TupleClassGenerator.generate(SCHEMA, "com.datasalt.pangool.generated.UserTuple", new File(OUTPUT));
+		assertEquals(0, compiler.run(null, null, null, "-classpath", System.getProperty("java.class.path"),
+		    file.getPath()));
+
+		URLClassLoader loader = new URLClassLoader(new URL[] { new File(OUTPUT).toURI().toURL() }, getClass()
+		    .getClassLoader());
+		IPrimitiveTuple tuple = (IPrimitiveTuple) loader.loadClass("com.datasalt.pangool.generated.UserTuple")
+		    .newInstance();
+		assertEquals(SCHEMA, tuple.getSchema());
+		tuple.getClass().getMethod("setUserId", long.class).invoke(tuple, 10l);
+		tuple.getClass().getMethod("setName", String.class).invoke(tuple, "foo");
+		tuple.getClass().getMethod("setActive", boolean.class).invoke(tuple, true);
+		tuple.getClass().getMethod("setSchemaField", int.class).invoke(tuple, 3);
+		tuple.getClass().getMethod("setData", byte[].class).invoke(tuple, new byte[] { 1, 2 });
+		assertEquals(10l, tuple.getLongValue(0));
+		assertEquals("foo", tuple.getString("name"));
+		assertTrue(tuple.isNull(2));
+
+		// Written and read back as any other Tuple
+		Path path = new Path(OUTPUT, "tuples");
+		TupleFile.Writer writer = new TupleFile.Writer(fS, getConf(), path, SCHEMA);
+		writer.append(tuple);
+		writer.close();
+		TupleFile.Reader reader = new TupleFile.Reader(fS, getConf(), path);
+		ITuple read = (ITuple) tuple.getClass().newInstance();
+		assertTrue(reader.next(read));
+		reader.close();
+		assertEquals(10l, read.getClass().getMethod("getUserId").invoke(read));
+		assertEquals("foo", read.getClass().getMethod("getName").invoke(read));
+		assertEquals(3, read.getClass().getMethod("getSchemaField").invoke(read));
+		trash(OUTPUT);
+	}
+}
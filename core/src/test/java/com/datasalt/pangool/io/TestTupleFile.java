@@ -7,6 +7,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.junit.Test;
@@ -14,6 +15,7 @@ import org.junit.Test;
 import com.datasalt.pangool.BaseTest;
 import com.datasalt.pangool.io.Schema.Field;
 import com.datasalt.pangool.io.Schema.Field.Type;
+import com.datasalt.pangool.tuplemr.serialization.SimpleTupleSerializer;
 
 public class TestTupleFile extends BaseTest {
 
@@ -47,6 +49,42 @@ public class TestTupleFile extends BaseTest {
 		fs.delete(new Path(OUT), true);
 	}
 	
+	@Test
+	public void testFormatVersion() throws IOException {
+		Schema schema = new Schema("schema", Fields.parse("a:int?, b:string?, c:long"));
+		Tuple tuple = new Tuple(schema);
+		FileSystem fs = FileSystem.get(getConf());
+		int[] versions = new int[] { SimpleTupleSerializer.FORMAT_VERSION_1, SimpleTupleSerializer.FORMAT_VERSION_2 };
+		for(int version : versions) {
+			Configuration conf = new Configuration(getConf());
+			if(version != SimpleTupleSerializer.FORMAT_VERSION_1) {
+				TupleFile.setFormatVersion(conf, version);
+			}
+			TupleFile.Writer writer = new TupleFile.Writer(fs, conf, new Path(OUT), schema);
+			for(int i = 0; i < 10; i++) {
+				tuple.set("a", (i % 2 == 0) ? null : i);
+				tuple.set("b", (i % 3 == 0) ? null : "str" + i);
+				tuple.set("c", (long) i);
+				writer.append(tuple);
+			}
+			writer.close();
+
+			TupleFile.Reader reader = new TupleFile.Reader(fs, getConf(), new Path(OUT));
+			assertEquals(version, reader.getFormatVersion());
+			Tuple inTuple = new Tuple(reader.getSchema());
+			int count = 0;
+			while(reader.next(inTuple)) {
+				assertEquals((count % 2 == 0) ? null : count, inTuple.get("a"));
+				assertEquals((count % 3 == 0) ? null : "str" + count, inTuple.getString("b"));
+				assertEquals((long) count, inTuple.get("c"));
+				count++;
+			}
+			assertEquals(10, count);
+			reader.close();
+		}
+		fs.delete(new Path(OUT), true);
+	}
+
 	@Test
 	public void testBackwardsCompatibleReadWithDefaultValues() throws IOException {
 		List<Field> fields = new ArrayList<Field>();
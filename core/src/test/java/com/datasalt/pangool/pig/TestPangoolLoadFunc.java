@@ -0,0 +1,177 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.pig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.pig.LoadPushDown.RequiredField;
+import org.apache.pig.LoadPushDown.RequiredFieldList;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datasalt.pangool.BaseTest;
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Schema.Field;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.io.TupleFile;
+import com.datasalt.pangool.utils.TaskAttemptContextFactory;
+
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class TestPangoolLoadFunc extends BaseTest {
+
+	public final static String INPUT = TestPangoolLoadFunc.class.getName() + "-input";
+
+	public static enum Color {
+		RED, GREEN
+	}
+
+	private int loads = 0;
+
+	@Before
+	public void write() throws IOException {
+		trash(INPUT);
+		List<Field> fields = Fields.parse("id:int, name:string?, data:bytes?, score:double");
+		fields.add(Field.createEnum("color", Color.class, true));
+		Schema schema = new Schema("schema", fields);
+
+		TupleFile.Writer writer = new TupleFile.Writer(FileSystem.get(getConf()), getConf(), new Path(INPUT,
+		    "part-00000"), schema);
+		Tuple tuple = new Tuple(schema);
+		tuple.set("id", 1);
+		tuple.set("name", "foo");
+		tuple.set("data", new byte[] { 1, 2, 3 });
+		tuple.set("score", 0.5);
+		tuple.set("color", Color.RED);
+		writer.append(tuple);
+		tuple.set("id", 2);
+		tuple.set("name", null);
+		tuple.set("data", null);
+		tuple.set("score", 1.5);
+		tuple.set("color", null);
+		writer.append(tuple);
+		writer.close();
+	}
+
+	@After
+	public void clean() throws IOException {
+		trash(INPUT);
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+		List<org.apache.pig.data.Tuple> tuples = load();
+		assertEquals(2, tuples.size());
+		org.apache.pig.data.Tuple first = tuples.get(0);
+		assertEquals(5, first.size());
+		assertEquals(1, first.get(0));
+		assertEquals("foo", first.get(1));
+		assertEquals(new DataByteArray(new byte[] { 1, 2, 3 }), first.get(2));
+		assertEquals(0.5, first.get(3));
+		assertEquals("RED", first.get(4));
+		org.apache.pig.data.Tuple second = tuples.get(1);
+		assertEquals(2, second.get(0));
+		assertNull(second.get(1));
+		assertNull(second.get(2));
+		assertEquals(1.5, second.get(3));
+		assertNull(second.get(4));
+	}
+
+	@Test
+	public void testProjection() throws Exception {
+		// No getSchema() before: the Schema is resolved from the location
+		List<org.apache.pig.data.Tuple> tuples = load(1, 3);
+		assertEquals(2, tuples.size());
+		assertEquals(2, tuples.get(0).size());
+		assertEquals("foo", tuples.get(0).get(0));
+		assertEquals(0.5, tuples.get(0).get(1));
+		assertNull(tuples.get(1).get(0));
+		assertEquals(1.5, tuples.get(1).get(1));
+
+		tuples = load(4, 2);
+		assertEquals(2, tuples.get(0).size());
+		assertEquals("RED", tuples.get(0).get(0));
+		assertEquals(new DataByteArray(new byte[] { 1, 2, 3 }), tuples.get(0).get(1));
+		assertNull(tuples.get(1).get(0));
+		assertNull(tuples.get(1).get(1));
+	}
+
+	@Test
+	public void testLocationNotInDefaultFileSystem() throws Exception {
+		Configuration conf = new Configuration(getConf());
+		// Any access to the default file system fails
+		conf.set("fs.default.name", "nonexistent:///");
+		conf.set("fs.defaultFS", "nonexistent:///");
+		PangoolLoadFunc loadFunc = new PangoolLoadFunc();
+		loadFunc.setUDFContextSignature("load" + (loads++));
+		String location = new File(INPUT).getAbsoluteFile().toURI().toString();
+		assertEquals(5, loadFunc.getSchema(location, new Job(conf)).getFields().length);
+	}
+
+	/**
+	 * Loads the input as Pig does, pushing the given projection if any.
+	 */
+	private List<org.apache.pig.data.Tuple> load(int... projection) throws Exception {
+		PangoolLoadFunc loadFunc = new PangoolLoadFunc();
+		// A new signature per load, so nothing is cached from a previous one
+		loadFunc.setUDFContextSignature("load" + (loads++));
+		Job job = new Job(getConf());
+		loadFunc.setLocation(INPUT, job);
+		if(projection.length > 0) {
+			RequiredFieldList requiredFields = new RequiredFieldList();
+			for(int index : projection) {
+				requiredFields.add(new RequiredField(null, index, null, DataType.UNKNOWN));
+			}
+			assertTrue(loadFunc.pushProjection(requiredFields).getRequiredFieldResponse());
+		}
+
+		List<org.apache.pig.data.Tuple> tuples = new ArrayList<org.apache.pig.data.Tuple>();
+		InputFormat format = loadFunc.getInputFormat();
+		for(InputSplit split : (List<InputSplit>) format.getSplits(job)) {
+			TaskAttemptContext attemptContext = TaskAttemptContextFactory.get(job.getConfiguration(), new TaskAttemptID(
+			    new TaskID(), 1));
+			RecordReader reader = format.createRecordReader(split, attemptContext);
+			reader.initialize(split, attemptContext);
+			loadFunc.prepareToRead(reader, null);
+			org.apache.pig.data.Tuple tuple;
+			while((tuple = loadFunc.getNext()) != null) {
+				tuples.add(tuple);
+			}
+			reader.close();
+		}
+		return tuples;
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.protostuff.test;
+
+import java.io.IOException;
+
+import com.dyuproject.protostuff.Input;
+import com.dyuproject.protostuff.Output;
+import com.dyuproject.protostuff.Schema;
+
+/**
+ * A Protostuff message that is its own {@link Schema}, as ProtoStuffSerialization expects, equivalent to:
+ *
+ * <pre>
+ * message Item {
+ *   optional int32 id = 1;
+ *   optional string name = 2;
+ * }
+ * </pre>
+ */
+public class Item implements Schema<Item> {
+
+	private int id;
+	private String name;
+
+	public Item() {
+	}
+
+	public Item(int id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String getFieldName(int number) {
+		switch(number) {
+		case 1:
+			return "id";
+		case 2:
+			return "name";
+		default:
+			return null;
+		}
+	}
+
+	@Override
+	public int getFieldNumber(String name) {
+		if("id".equals(name)) {
+			return 1;
+		} else if("name".equals(name)) {
+			return 2;
+		}
+		return 0;
+	}
+
+	@Override
+	public boolean isInitialized(Item message) {
+		return true;
+	}
+
+	@Override
+	public Item newMessage() {
+		return new Item();
+	}
+
+	@Override
+	public String messageName() {
+		return Item.class.getSimpleName();
+	}
+
+	@Override
+	public String messageFullName() {
+		return Item.class.getName();
+	}
+
+	@Override
+	public Class<? super Item> typeClass() {
+		return Item.class;
+	}
+
+	@Override
+	public void mergeFrom(Input input, Item message) throws IOException {
+		for(int number = input.readFieldNumber(this); number != 0; number = input.readFieldNumber(this)) {
+			switch(number) {
+			case 1:
+				message.id = input.readInt32();
+				break;
+			case 2:
+				message.name = input.readString();
+				break;
+			default:
+				input.handleUnknownField(number, this);
+			}
+		}
+	}
+
+	@Override
+	public void writeTo(Output output, Item message) throws IOException {
+		if(message.id != 0) {
+			output.writeInt32(1, message.id, false);
+		}
+		if(message.name != null) {
+			output.writeString(2, message.name, false);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof Item)) {
+			return false;
+		}
+		Item other = (Item) o;
+		return id == other.id && (name == null ? other.name == null : name.equals(other.name));
+	}
+
+	@Override
+	public int hashCode() {
+		return id * 31 + (name == null ? 0 : name.hashCode());
+	}
+
+	@Override
+	public String toString() {
+		return "Item(" + id + ", " + name + ")";
+	}
+}
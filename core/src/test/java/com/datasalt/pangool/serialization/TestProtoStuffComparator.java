@@ -0,0 +1,83 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.serialization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.datasalt.pangool.protostuff.test.Item;
+import com.datasalt.pangool.utils.test.AbstractBaseTest;
+
+public class TestProtoStuffComparator extends AbstractBaseTest {
+
+	@Test
+	public void testSameOrderAsRaw() throws IOException {
+		HadoopSerialization ser = new HadoopSerialization(getConf());
+		ProtoStuffComparator<Item> comparator = new ProtoStuffComparator<Item>();
+
+		// Bigger than the per thread buffer, so that it grows while comparing
+		StringBuilder longName = new StringBuilder();
+		for(int i = 0; i < ProtoStuffSerialization.BUFFER_SIZE * 2; i++) {
+			longName.append((char) ('a' + i % 26));
+		}
+		Item[] values = new Item[] { new Item(1, "a"), new Item(1, "b"), new Item(2, "a"), new Item(300, "a"),
+		    new Item(0, null), new Item(1, longName.toString()), new Item(1, "a") };
+		byte[][] serialized = new byte[values.length][];
+		DataOutputBuffer out = new DataOutputBuffer();
+		for(int i = 0; i < values.length; i++) {
+			out.reset();
+			ser.ser(values[i], out);
+			serialized[i] = new byte[out.getLength() + 2];
+			// Not starting at the beginning of the array
+			System.arraycopy(out.getData(), 0, serialized[i], 2, out.getLength());
+		}
+
+		for(int i = 0; i < values.length; i++) {
+			for(int j = 0; j < values.length; j++) {
+				byte[] b1 = serialized[i];
+				byte[] b2 = serialized[j];
+				int expected = Integer.signum(comparator.compare(b1, 2, b1.length - 2, b2, 2, b2.length - 2));
+				assertEquals(expected, Integer.signum(comparator.compare(values[i], values[j])));
+				// Equal objects, and only them, are grouped together
+				assertEquals(values[i].equals(values[j]), expected == 0);
+			}
+		}
+		assertEquals(-1, comparator.compare(null, values[0]));
+		assertEquals(1, comparator.compare(values[0], null));
+		assertEquals(0, comparator.compare((Item) null, null));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		HadoopSerialization ser = new HadoopSerialization(getConf());
+		DataOutputBuffer out = new DataOutputBuffer();
+		DataInputBuffer in = new DataInputBuffer();
+		for(int i = 0; i < 10; i++) {
+			Item item = new Item(i, "item" + i);
+			out.reset();
+			ser.ser(item, out);
+			in.reset(out.getData(), out.getLength());
+			// A new instance each time: Protostuff merges into reused ones
+			Item read = ser.deser(Item.class, in);
+			assertEquals(item, read);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.serialization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.datasalt.pangool.thrift.test.A;
+import com.datasalt.pangool.utils.test.AbstractBaseTest;
+
+public class TestThriftComparator extends AbstractBaseTest {
+
+	@Test
+	public void testSameOrderAsCompareTo() throws IOException {
+		HadoopSerialization ser = new HadoopSerialization(getConf());
+		ThriftComparator<A> comparator = new ThriftComparator<A>(A.class);
+		comparator.setConf(getConf());
+
+		A[] values = new A[] { new A("1", "http://a"), new A("1", "http://b"), new A("2", "http://a"),
+		    new A("10", "http://a"), new A("", ""), new A("1", "http://a") };
+		byte[][] serialized = new byte[values.length][];
+		DataOutputBuffer out = new DataOutputBuffer();
+		for(int i = 0; i < values.length; i++) {
+			out.reset();
+			ser.ser(values[i], out);
+			serialized[i] = new byte[out.getLength() + 2];
+			// Not starting at the beginning of the array
+			System.arraycopy(out.getData(), 0, serialized[i], 2, out.getLength());
+		}
+
+		for(int i = 0; i < values.length; i++) {
+			for(int j = 0; j < values.length; j++) {
+				int expected = Integer.signum(values[i].compareTo(values[j]));
+				assertEquals(expected, Integer.signum(comparator.compare(values[i], values[j])));
+				assertEquals(expected, Integer.signum(comparator.compare(serialized[i], 2, serialized[i].length - 2,
+				    serialized[j], 2, serialized[j].length - 2)));
+			}
+		}
+		assertEquals(-1, comparator.compare(null, values[0]));
+		assertEquals(0, comparator.compare((A) null, null));
+	}
+
+	@Test
+	public void testReusedSerializers() throws IOException {
+		HadoopSerialization ser = new HadoopSerialization(getConf());
+		DataOutputBuffer out = new DataOutputBuffer();
+		DataInputBuffer in = new DataInputBuffer();
+		A read = new A();
+		for(int i = 0; i < 10; i++) {
+			A a = new A("id" + i, "http://" + i);
+			out.reset();
+			ser.ser(a, out);
+			in.reset(out.getData(), out.getLength());
+			read = ser.deser(read, in);
+			assertEquals(a, read);
+		}
+	}
+}
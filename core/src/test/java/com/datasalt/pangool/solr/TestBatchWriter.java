@@ -0,0 +1,151 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+public class TestBatchWriter {
+
+	/**
+	 * Doesn't write anything: reports the configured latency, optionally waiting for a latch before.
+	 */
+	static class StubBatchWriter extends BatchWriter {
+
+		volatile long latency = 0;
+		volatile CountDownLatch latch = null;
+
+		StubBatchWriter(int batchSize, int maxQueuedDocuments) {
+			super(null, batchSize, null, 1, 10, maxQueuedDocuments);
+		}
+
+		@Override
+		protected UpdateResponse add(List<SolrInputDocument> documents) {
+			if(latch != null) {
+				try {
+					latch.await();
+				} catch(InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			UpdateResponse response = new UpdateResponse();
+			response.setElapsedTime(latency);
+			return response;
+		}
+	}
+
+	private static List<SolrInputDocument> documents(int n) {
+		List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+		for(int i = 0; i < n; i++) {
+			documents.add(new SolrInputDocument());
+		}
+		return documents;
+	}
+
+	@Test
+	public void testAdaptiveBatchSize() {
+		StubBatchWriter writer = new StubBatchWriter(10, 0);
+		writer.setAdaptiveBatchSize(5, 40, 100);
+
+		// Well under the target latency: grows up to the maximum
+		writer.latency = 10;
+		for(int i = 0; i < 20; i++) {
+			writer.runUpdate(documents(writer.getBatchSize()));
+		}
+		assertEquals(40, writer.getBatchSize());
+
+		// Partial batches don't change it
+		writer.latency = 500;
+		writer.runUpdate(documents(3));
+		assertEquals(40, writer.getBatchSize());
+
+		// Over the target latency: shrinks down to the minimum
+		for(int i = 0; i < 20; i++) {
+			writer.runUpdate(documents(writer.getBatchSize()));
+		}
+		assertEquals(5, writer.getBatchSize());
+
+		// Between half the target and the target: stable
+		writer.latency = 75;
+		writer.runUpdate(documents(writer.getBatchSize()));
+		assertEquals(5, writer.getBatchSize());
+
+		assertEquals(42, writer.batchesWritten.get());
+		assertEquals(20, writer.latencyHistogram[0].get());
+		assertEquals(1, writer.latencyHistogram[1].get());
+		assertEquals(21, writer.latencyHistogram[2].get());
+		writer.batchPool.shutdown();
+	}
+
+	@Test
+	public void testFixedBatchSize() {
+		StubBatchWriter writer = new StubBatchWriter(10, 0);
+		writer.latency = 5000;
+		writer.runUpdate(documents(10));
+		assertEquals(10, writer.getBatchSize());
+		writer.batchPool.shutdown();
+	}
+
+	@Test
+	public void testBlocksAtMaxQueuedDocuments() throws Exception {
+		final StubBatchWriter writer = new StubBatchWriter(10, 10);
+		writer.latch = new CountDownLatch(1);
+
+		// Takes all the permits, and is blocked in Solr
+		writer.queueBatch(documents(10));
+
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		Thread caller = new Thread() {
+			@Override
+			public void run() {
+				try {
+					writer.queueBatch(documents(5));
+				} catch(Exception e) {
+					failure.set(e);
+				}
+			}
+		};
+		caller.start();
+		caller.join(500);
+		assertTrue("The caller must block until there is room", caller.isAlive());
+		assertEquals(10, writer.maxQueuedDocumentsSeen.get());
+
+		writer.latch.countDown();
+		caller.join();
+		assertFalse(caller.isAlive());
+		assertNull(failure.get());
+		writer.batchPool.shutdown();
+		assertTrue(writer.batchPool.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(1, writer.backpressureWaits.get());
+		assertEquals(0, writer.inlineBatches.get());
+		assertEquals(2, writer.batchesWritten.get());
+		assertEquals(15, writer.documentsWritten.get());
+		assertEquals(10, writer.maxQueuedDocumentsSeen.get());
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.junit.Test;
+
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.io.Utf8;
+
+public class TestDefaultTupleDocumentConverter {
+
+	Schema schema = new Schema("schema", Fields.parse("id:string, count:int, score:double?"));
+
+	@Test
+	public void testConvertAndReuse() throws IOException {
+		DefaultTupleDocumentConverter converter = new DefaultTupleDocumentConverter();
+		Tuple tuple = new Tuple(schema);
+		tuple.set("id", new Utf8("doc1"));
+		tuple.set("count", 3);
+		tuple.set("score", 0.5);
+
+		SolrInputDocument document = converter.convert(tuple, null);
+		assertEquals("doc1", document.getFieldValue("id"));
+		assertEquals(3, document.getFieldValue("count"));
+		assertEquals(0.5, document.getFieldValue("score"));
+		SolrInputField countField = document.getField("count");
+		SolrInputField scoreField = document.getField("score");
+
+		tuple.set("id", new Utf8("doc2"));
+		tuple.set("count", 4);
+		tuple.set("score", null);
+		SolrInputDocument reused = converter.convert(tuple, null, document);
+		assertSame(document, reused);
+		// Fields are reused too
+		assertSame(countField, reused.getField("count"));
+		assertEquals("doc2", reused.getFieldValue("id"));
+		assertEquals(String.class, reused.getFieldValue("id").getClass());
+		assertEquals(4, reused.getFieldValue("count"));
+		// Null values keep the field, without value
+		assertSame(scoreField, reused.getField("score"));
+		assertNull(reused.getFieldValue("score"));
+		assertEquals(0, reused.getField("score").getValueCount());
+		assertEquals(3, reused.size());
+	}
+
+	@Test
+	public void testReuseFromOtherSchema() throws IOException {
+		DefaultTupleDocumentConverter converter = new DefaultTupleDocumentConverter();
+		Schema other = new Schema("other", Fields.parse("key:string, size:int, weight:double"));
+		Tuple otherTuple = new Tuple(other);
+		otherTuple.set("key", "k1");
+		otherTuple.set("size", 10);
+		otherTuple.set("weight", 1.5);
+		SolrInputDocument document = converter.convert(otherTuple, null);
+
+		// Same number of fields, but different ones
+		Tuple tuple = new Tuple(schema);
+		tuple.set("id", "doc1");
+		tuple.set("count", 3);
+		tuple.set("score", null);
+		SolrInputDocument reused = converter.convert(tuple, null, document);
+		assertEquals(3, reused.size());
+		assertNull(reused.getField("key"));
+		assertNull(reused.getField("size"));
+		assertNull(reused.getField("weight"));
+		assertEquals("doc1", reused.getFieldValue("id"));
+		assertEquals(3, reused.getFieldValue("count"));
+		assertNull(reused.getFieldValue("score"));
+
+		// And back, the converter having already compiled the other Schema before
+		SolrInputDocument back = converter.convert(otherTuple, null, reused);
+		assertEquals(3, back.size());
+		assertNull(back.getField("id"));
+		assertEquals("k1", back.getFieldValue("key"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsupportedType() throws IOException {
+		Schema schema = new Schema("schema", Fields.parse("id:string, data:bytes"));
+		new DefaultTupleDocumentConverter().convert(new Tuple(schema), null);
+	}
+}
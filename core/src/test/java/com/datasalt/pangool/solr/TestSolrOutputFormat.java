@@ -16,12 +16,21 @@
 package com.datasalt.pangool.solr;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.util.HashSet;
 import java.util.Set;
-
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.Path;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.store.FSDirectory;
 import org.junit.Test;
@@ -44,6 +53,8 @@ public class TestSolrOutputFormat extends AbstractHadoopTestLibrary {
 		assertTrue(new File(OUTPUT + "/part-00000/data/index").exists());
 		assertTrue(new File(OUTPUT + "/FR/part-00000/data/index").exists());
 		assertTrue(new File(OUTPUT + "/ES/part-00000/data/index").exists());
+		// The shards of the main output have been merged and removed
+		assertFalse(new File(OUTPUT + "/part-00000/shards").exists());
 
 		// Validate data inside index
 		IndexReader r = IndexReader.open(FSDirectory.open(new File(OUTPUT + "/part-00000/data/index")));
@@ -85,4 +96,42 @@ public class TestSolrOutputFormat extends AbstractHadoopTestLibrary {
 
 		trash(OUTPUT);
 	}
+
+	@Test
+	public void testZipWithManifest() throws Exception {
+		String dir = "test-" + TestSolrOutputFormat.class.getName();
+		trash(dir);
+		File index = new File(dir + "/data/index");
+		index.mkdirs();
+		new File(dir + "/conf").mkdirs();
+		FileUtils.writeStringToFile(new File(index, "_0.cfs"), "segment data");
+		FileUtils.writeStringToFile(new File(dir + "/conf/schema.xml"), "<schema/>");
+
+		File zip = new File(dir + ".zip");
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+		StringBuilder manifest = new StringBuilder();
+		Path root = new Path(new File(dir).getAbsolutePath());
+		SolrRecordWriter.zipDirectory(getConf(), zos, "part-00000", root.toString(), root, manifest);
+		SolrRecordWriter.writeManifest(zos, "part-00000", manifest);
+		zos.close();
+
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			ZipEntry segment = zipFile.getEntry("part-00000/data/index/_0.cfs");
+			assertEquals(ZipEntry.STORED, segment.getMethod());
+			assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("part-00000/conf/schema.xml").getMethod());
+
+			CRC32 crc = new CRC32();
+			crc.update("segment data".getBytes());
+			String manifestContent = IOUtils.toString(zipFile.getInputStream(zipFile.getEntry("part-00000/"
+			    + SolrRecordWriter.MANIFEST_NAME)));
+			assertTrue(manifestContent.contains(String.format("%08x %d %s", crc.getValue(), 12,
+			    "part-00000/data/index/_0.cfs")));
+			assertTrue(manifestContent.contains("part-00000/conf/schema.xml"));
+		} finally {
+			zipFile.close();
+			zip.delete();
+			trash(dir);
+		}
+	}
 }
@@ -86,9 +86,9 @@ public class TupleSolrOutputFormatExample implements Serializable {
 		job.addNamedOutput("ES", new TupleSolrOutputFormat(new File("src/test/resources/solr-es"), conf),
 		    ITuple.class, NullWritable.class);
 		job.setTupleReducer(new IdentityTupleReducer());
-		// Add multi-output: English index
-		job.setOutput(new Path(output), new TupleSolrOutputFormat(new File("src/test/resources/solr-en"),
-		    conf), ITuple.class, NullWritable.class);
+		// Add multi-output: English index, written to two local shards that are merged at the end
+		job.setOutput(new Path(output), new TupleSolrOutputFormat(new File("src/test/resources/solr-en"), conf,
+		    new DefaultTupleDocumentConverter(), false, 20, 2, 100, 2), ITuple.class, NullWritable.class);
 		Job hadoopJob = job.createJob();
 		try {
 			hadoopJob.waitForCompletion(true);
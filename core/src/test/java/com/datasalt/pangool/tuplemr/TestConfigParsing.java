@@ -177,5 +177,30 @@ public class TestConfigParsing {
     Assert.assertEquals(conf, deserConf2);
   }
 
+  @Test
+  public void testParsedConfigCache() throws TupleMRException, IOException {
+    TupleMRConfigBuilder b = new TupleMRConfigBuilder();
+    b.addIntermediateSchema(schema3);
+    b.setGroupByFields("int_field");
+    b.setOrderBy(new OrderBy().add("int_field", Order.ASC).add("thrift_field", Order.ASC,
+        Criteria.NullOrder.NULL_SMALLEST, new DummyComparator()));
 
+    TupleMRConfig conf = b.buildConf();
+    Configuration hconf = new Configuration();
+    Set<String> instanceFiles = TupleMRConfig.set(conf, hconf);
+
+    TupleMRConfig deserConf = TupleMRConfig.get(hconf);
+    TupleMRConfig deserConf2 = TupleMRConfig.get(hconf);
+    Assert.assertEquals(conf, deserConf);
+    Assert.assertEquals(conf, deserConf2);
+    // Each call must return its own instances of stateful objects
+    Assert.assertNotSame(deserConf, deserConf2);
+    Assert.assertNotSame(deserConf.getSerializationInfo(), deserConf2.getSerializationInfo());
+    Assert.assertNotSame(deserConf.getCommonCriteria().getElements().get(1).getCustomComparator(),
+        deserConf2.getCommonCriteria().getElements().get(1).getCustomComparator());
+
+    for(String instanceFile: instanceFiles) {
+    	InstancesDistributor.removeFromCache(hconf, instanceFile);
+    }
+  }
 }
@@ -0,0 +1,176 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.junit.Test;
+
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.tuplemr.Criteria.Order;
+import com.datasalt.pangool.tuplemr.JoinTupleReducer.JoinType;
+import com.datasalt.pangool.tuplemr.mapred.lib.input.HadoopInputFormat;
+import com.datasalt.pangool.tuplemr.mapred.lib.output.HadoopOutputFormat;
+import com.datasalt.pangool.utils.CommonUtils;
+import com.datasalt.pangool.utils.HadoopUtils;
+import com.datasalt.pangool.utils.test.AbstractHadoopTestLibrary;
+
+public class TestJoinTupleReducer extends AbstractHadoopTestLibrary {
+
+	@SuppressWarnings("serial")
+	public static class Input extends TupleMapper<LongWritable, Text> {
+
+		private Tuple user, country;
+
+		public void setup(TupleMRContext context, Collector collector) throws IOException, InterruptedException {
+			user = new Tuple(context.getTupleMRConfig().getIntermediateSchema("user"));
+			country = new Tuple(context.getTupleMRConfig().getIntermediateSchema("country"));
+		}
+
+		private void user(String name, String country, Collector collector) throws IOException, InterruptedException {
+			user.set("name", name);
+			user.set("my_country", country);
+			collector.write(user);
+		}
+
+		private void country(String name, String code, Collector collector) throws IOException,
+		    InterruptedException {
+			country.set("country", code);
+			country.set("countryName", name);
+			collector.write(country);
+		}
+
+		@Override
+		public void map(LongWritable key, Text value, TupleMRContext context, Collector collector)
+		    throws IOException, InterruptedException {
+			user("Pere", "ES", collector);
+			user("Iván", "ES", collector);
+			user("Eric", "FR", collector);
+			user("Luca", "IT", collector);
+			country("Spain", "ES", collector);
+			country("France", "FR", collector);
+			country("Germany", "DE", collector);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class Join extends JoinTupleReducer<Object, Object> {
+
+		private final String[] expected;
+		private transient List<String> joined;
+
+		public Join(JoinType joinType, int maxTuplesPerKey, String... expected) {
+			super(joinType, maxTuplesPerKey);
+			this.expected = expected;
+		}
+
+		@Override
+		public void join(ITuple group, ITuple[] tuples, TupleMRContext context, Collector collector)
+		    throws IOException, InterruptedException, TupleMRException {
+			if(joined == null) {
+				joined = new ArrayList<String>();
+			}
+			// Schema 0 is "country", schema 1 is "user"
+			String country = tuples[0] == null ? "null" : tuples[0].get("countryName").toString();
+			String user = tuples[1] == null ? "null" : tuples[1].get("name").toString();
+			joined.add(group.get("country") + ":" + country + ":" + user);
+		}
+
+		@Override
+		public void cleanup(TupleMRContext context, Collector collector) throws IOException, InterruptedException,
+		    TupleMRException {
+			super.cleanup(context, collector);
+			if(joined == null) {
+				joined = new ArrayList<String>();
+			}
+			List<String> expectedList = new ArrayList<String>(Arrays.asList(expected));
+			Collections.sort(expectedList);
+			Collections.sort(joined);
+			Assert.assertEquals(expectedList, joined);
+		}
+	}
+
+	@Test
+	public void testInner() throws Exception {
+		run(new Join(JoinType.INNER, Integer.MAX_VALUE, "ES:Spain:Pere", "ES:Spain:Iván", "FR:France:Eric"));
+	}
+
+	@Test
+	public void testLeft() throws Exception {
+		run(new Join(JoinType.LEFT, Integer.MAX_VALUE, "ES:Spain:Pere", "ES:Spain:Iván", "FR:France:Eric",
+		    "IT:null:Luca"));
+	}
+
+	@Test
+	public void testFullOuter() throws Exception {
+		run(new Join(JoinType.FULL_OUTER, Integer.MAX_VALUE, "ES:Spain:Pere", "ES:Spain:Iván", "FR:France:Eric",
+		    "IT:null:Luca", "DE:Germany:null"));
+	}
+
+	@Test
+	public void testMaxTuplesPerKey() throws Exception {
+		// Users are sorted by name within each country
+		run(new Join(JoinType.INNER, 1, "ES:Spain:Iván", "FR:France:Eric"));
+	}
+
+	private void run(Join reducer) throws TupleMRException, IOException, InterruptedException,
+	    ClassNotFoundException {
+		CommonUtils.writeTXT("foo", new File("test-input"));
+		HadoopUtils.deleteIfExists(FileSystem.get(getConf()), new Path("test-output"));
+
+		TupleMRBuilder builder = new TupleMRBuilder(getConf());
+		builder.addIntermediateSchema(new Schema("country", Fields.parse("country:string, countryName:string")));
+		builder.addIntermediateSchema(new Schema("user", Fields.parse("name:string, my_country:string")));
+
+		builder.setFieldAliases("user", new Aliases().add("country", "my_country"));
+		builder.setGroupByFields("country");
+		builder.setOrderBy(new OrderBy().add("country", Order.ASC).addSchemaOrder(Order.ASC));
+		builder.setSpecificOrderBy("user", new OrderBy().add("name", Order.ASC));
+
+		builder.addInput(new Path("test-input"), new HadoopInputFormat(TextInputFormat.class), new Input());
+		builder.setTupleReducer(reducer);
+		builder.setOutput(new Path("test-output"), new HadoopOutputFormat(TextOutputFormat.class),
+		    NullWritable.class, NullWritable.class);
+
+		Job job = builder.createJob();
+		try {
+			assertRun(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		HadoopUtils.deleteIfExists(FileSystem.get(getConf()), new Path("test-output"));
+		HadoopUtils.deleteIfExists(FileSystem.get(getConf()), new Path("test-input"));
+	}
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.tuplemr.Criteria.Order;
+import com.datasalt.pangool.tuplemr.mapred.TestCombiner;
+import com.datasalt.pangool.tuplemr.mapred.lib.input.HadoopInputFormat;
+import com.datasalt.pangool.utils.CommonUtils;
+import com.datasalt.pangool.utils.test.AbstractHadoopTestLibrary;
+
+public class TestLocalTupleMRRunner extends AbstractHadoopTestLibrary {
+
+	public final static String INPUT = TestLocalTupleMRRunner.class.getName() + "-input";
+	public final static String OUTPUT = TestLocalTupleMRRunner.class.getName() + "-output";
+
+	@Test
+	public void test() throws TupleMRException, IOException, InterruptedException {
+		withInput(INPUT, writable("hola don pepito hola don jose"));
+
+		TupleMRBuilder builder = new TestCombiner().getBuilder(getConf(), INPUT, OUTPUT);
+		Job job = builder.createJob();
+		job.setNumReduceTasks(1);
+		try {
+			Counters counters = new LocalTupleMRRunner(2).run(job);
+			// The combiner must have reduced the 6 words to 4 distinct ones
+			Assert.assertEquals(4, counters.findCounter("Pangool-Local", "Reduce input records").getValue());
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		withOutput(OUTPUT + "/part-r-00000", writable("don"), writable(2));
+		withOutput(OUTPUT + "/part-r-00000", writable("hola"), writable(2));
+		withOutput(OUTPUT + "/part-r-00000", writable("jose"), writable(1));
+		withOutput(OUTPUT + "/part-r-00000", writable("pepito"), writable(1));
+
+		trash(INPUT, OUTPUT);
+	}
+
+	final static Schema PEOPLE_SCHEMA = new Schema("people", Fields.parse("country:string, name:string"));
+	final static Schema COUNT_SCHEMA = new Schema("count", Fields.parse("country:string, name:string, count:int"));
+
+	/**
+	 * Writes the input in several files, so that the job has several map tasks.
+	 */
+	private void writeInput() throws IOException {
+		new File(INPUT).mkdirs();
+		CommonUtils.writeTXT("ES pere\nES juan", new File(INPUT, "0.txt"));
+		CommonUtils.writeTXT("US john\nES pere", new File(INPUT, "1.txt"));
+		CommonUtils.writeTXT("US mary\nFR jean", new File(INPUT, "2.txt"));
+	}
+
+	@SuppressWarnings("serial")
+	public static class PeopleMapper extends TupleMapper<LongWritable, Text> {
+
+		private transient Tuple tuple;
+
+		@Override
+		public void map(LongWritable key, Text value, TupleMRContext context, Collector collector)
+		    throws IOException, InterruptedException {
+			if(tuple == null) {
+				tuple = new Tuple(PEOPLE_SCHEMA);
+			}
+			String[] tokens = value.toString().split(" ");
+			tuple.set("country", tokens[0]);
+			tuple.set("name", tokens[1]);
+			collector.write("mapped", tuple, NullWritable.get());
+			collector.write(tuple);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class CountReducer extends TupleReducer<ITuple, NullWritable> {
+
+		private transient Tuple count;
+
+		@Override
+		public void reduce(ITuple group, Iterable<ITuple> tuples, TupleMRContext context, Collector collector)
+		    throws IOException, InterruptedException, TupleMRException {
+			if(count == null) {
+				count = new Tuple(COUNT_SCHEMA);
+			}
+			int n = 0;
+			for(ITuple tuple : tuples) {
+				n++;
+			}
+			count.set("country", group.get("country"));
+			count.set("name", group.get("name"));
+			count.set("count", n);
+			collector.write("counts", count, NullWritable.get());
+			collector.write(count, NullWritable.get());
+		}
+	}
+
+	/**
+	 * Reads all the Tuples of the files of the given folder whose name starts with the given prefix.
+	 */
+	private Map<String, Integer> readCounts(String folder, String prefix, final String keyField,
+	    final String countField) throws IOException, InterruptedException {
+		final Map<String, Integer> counts = new HashMap<String, Integer>();
+		for(FileStatus status : fS.listStatus(new Path(folder))) {
+			if(!status.getPath().getName().startsWith(prefix)) {
+				continue;
+			}
+			readTuples(status.getPath(), getConf(), new TupleVisitor() {
+				@Override
+				public void onTuple(ITuple tuple) {
+					String key = tuple.get(keyField).toString();
+					Integer count = counts.get(key);
+					int add = (countField == null) ? 1 : (Integer) tuple.get(countField);
+					counts.put(key, (count == null) ? add : count + add);
+				}
+			});
+		}
+		return counts;
+	}
+
+	private int countFiles(String folder, String prefix) throws IOException {
+		int files = 0;
+		for(FileStatus status : fS.listStatus(new Path(folder))) {
+			if(status.getPath().getName().startsWith(prefix)) {
+				files++;
+			}
+		}
+		return files;
+	}
+
+	@Test
+	public void testNamedOutputs() throws TupleMRException, IOException, InterruptedException {
+		trash(INPUT, OUTPUT);
+		writeInput();
+
+		TupleMRBuilder builder = new TupleMRBuilder(getConf());
+		builder.addIntermediateSchema(PEOPLE_SCHEMA);
+		builder.setGroupByFields("country", "name");
+		builder.addInput(new Path(INPUT), new HadoopInputFormat(TextInputFormat.class), new PeopleMapper());
+		builder.setTupleReducer(new CountReducer());
+		builder.setTupleOutput(new Path(OUTPUT), COUNT_SCHEMA);
+		builder.addNamedTupleOutput("mapped", PEOPLE_SCHEMA);
+		builder.addNamedTupleOutput("counts", COUNT_SCHEMA);
+		Job job = builder.createJob();
+		job.setNumReduceTasks(2);
+		try {
+			new LocalTupleMRRunner(2).run(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		// One file per map task, with all the input
+		Assert.assertEquals(3, countFiles(OUTPUT + "/mapped", "part-m-"));
+		Map<String, Integer> mapped = readCounts(OUTPUT + "/mapped", "part-m-", "name", null);
+		Assert.assertEquals(5, mapped.size());
+		Assert.assertEquals(2, (int) mapped.get("pere"));
+
+		for(String folder : new String[] { OUTPUT, OUTPUT + "/counts" }) {
+			Map<String, Integer> counts = readCounts(folder, "part-r-", "name", "count");
+			Assert.assertEquals(5, counts.size());
+			Assert.assertEquals(2, (int) counts.get("pere"));
+			Assert.assertEquals(1, (int) counts.get("juan"));
+			Assert.assertEquals(1, (int) counts.get("jean"));
+		}
+
+		trash(INPUT, OUTPUT);
+	}
+
+	@SuppressWarnings("serial")
+	public static class CountryRollupReducer extends TupleRollupReducer<ITuple, NullWritable> {
+
+		private transient Tuple count;
+		private transient int n;
+
+		@Override
+		public void onOpenGroup(int depth, String field, ITuple firstElement, TupleMRContext context,
+		    Collector collector) throws IOException, InterruptedException, TupleMRException {
+			if(depth == 0) {
+				n = 0;
+			}
+		}
+
+		@Override
+		public void reduce(ITuple group, Iterable<ITuple> tuples, TupleMRContext context, Collector collector)
+		    throws IOException, InterruptedException, TupleMRException {
+			for(ITuple tuple : tuples) {
+				n++;
+			}
+		}
+
+		@Override
+		public void onCloseGroup(int depth, String field, ITuple lastElement, TupleMRContext context,
+		    Collector collector) throws IOException, InterruptedException, TupleMRException {
+			if(depth == 0) {
+				if(count == null) {
+					count = new Tuple(COUNT_SCHEMA);
+				}
+				count.set("country", lastElement.get("country"));
+				count.set("name", "");
+				count.set("count", n);
+				collector.write(count, NullWritable.get());
+			}
+		}
+	}
+
+	@Test
+	public void testRollup() throws TupleMRException, IOException, InterruptedException {
+		trash(INPUT, OUTPUT);
+		writeInput();
+
+		TupleMRBuilder builder = new TupleMRBuilder(getConf());
+		builder.addIntermediateSchema(PEOPLE_SCHEMA);
+		builder.setGroupByFields("country", "name");
+		builder.setOrderBy(new OrderBy().add("country", Order.ASC).add("name", Order.ASC));
+		builder.setRollupFrom("country");
+		builder.addInput(new Path(INPUT), new HadoopInputFormat(TextInputFormat.class), new PeopleMapper());
+		builder.setTupleReducer(new CountryRollupReducer());
+		builder.setTupleOutput(new Path(OUTPUT), COUNT_SCHEMA);
+		builder.addNamedTupleOutput("mapped", PEOPLE_SCHEMA);
+		Job job = builder.createJob();
+		job.setNumReduceTasks(2);
+		try {
+			new LocalTupleMRRunner(2).run(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		// Each country is closed once, in the reducer of its partition
+		Map<String, Integer> counts = readCounts(OUTPUT, "part-r-", "country", "count");
+		Assert.assertEquals(3, counts.size());
+		Assert.assertEquals(3, (int) counts.get("ES"));
+		Assert.assertEquals(2, (int) counts.get("US"));
+		Assert.assertEquals(1, (int) counts.get("FR"));
+
+		trash(INPUT, OUTPUT);
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.io.TupleBatch;
+
+public class TestTupleBatchReducer {
+
+	@SuppressWarnings("serial")
+	static class SumReducer extends TupleBatchReducer<Object, Object> {
+
+		List<String> calls = new ArrayList<String>();
+		long sum;
+
+		SumReducer(int batchSize) {
+			super(batchSize);
+		}
+
+		@Override
+		public void startGroup(ITuple group, TupleMRContext context, Collector collector) {
+			sum = 0;
+			calls.add("start");
+		}
+
+		@Override
+		public void reduceBatch(ITuple group, TupleBatch batch, TupleMRContext context, Collector collector)
+		    throws IOException, InterruptedException, TupleMRException {
+			long[] values = batch.getLongColumn("value");
+			for(int i = 0; i < batch.size(); i++) {
+				sum += values[i];
+			}
+			calls.add(batch.getSchema().getName() + ":" + batch.size());
+		}
+
+		@Override
+		public void endGroup(ITuple group, TupleMRContext context, Collector collector) {
+			calls.add("end:" + sum);
+		}
+	}
+
+	private static ITuple tuple(Schema schema, long value) {
+		ITuple tuple = new Tuple(schema);
+		tuple.set("key", 1);
+		tuple.set("value", value);
+		return tuple;
+	}
+
+	@Test
+	public void testBatches() throws Exception {
+		Schema schema1 = new Schema("schema1", Fields.parse("key:int,value:long"));
+		Schema schema2 = new Schema("schema2", Fields.parse("key:int,value:long,extra:string"));
+		List<ITuple> tuples = new ArrayList<ITuple>();
+		for(int i = 1; i <= 5; i++) {
+			tuples.add(tuple(schema1, i));
+		}
+		ITuple tuple2 = tuple(schema2, 100);
+		tuple2.set("extra", "x");
+		tuples.add(tuple2);
+		tuples.add(tuple(schema1, 1000));
+
+		SumReducer reducer = new SumReducer(2);
+		reducer.reduce(tuples.get(0), tuples, null, null);
+		Assert.assertEquals("[start, schema1:2, schema1:2, schema1:1, schema2:1, schema1:1, end:1115]",
+		    reducer.calls.toString());
+	}
+}
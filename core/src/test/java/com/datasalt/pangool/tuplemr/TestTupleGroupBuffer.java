@@ -0,0 +1,112 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datasalt.pangool.BaseTest;
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Tuple;
+
+public class TestTupleGroupBuffer extends BaseTest {
+
+	private final static String SPILL_DIR = "test-" + TestTupleGroupBuffer.class.getName();
+
+	private final Schema schema1 = new Schema("schema1", Fields.parse("id:int,name:string?"));
+	private final Schema schema2 = new Schema("schema2", Fields.parse("id:int,value:double"));
+
+	private void fill(TupleGroupBuffer buffer, int n) throws IOException {
+		// The same Tuples are reused for every add()
+		ITuple tuple1 = new Tuple(schema1);
+		ITuple tuple2 = new Tuple(schema2);
+		for(int i = 0; i < n; i++) {
+			if(i % 3 == 0) {
+				tuple2.set("id", i);
+				tuple2.set("value", i / 2d);
+				buffer.add(tuple2);
+			} else {
+				tuple1.set("id", i);
+				tuple1.set("name", (i % 2 == 0) ? null : "name" + i);
+				buffer.add(tuple1);
+			}
+		}
+	}
+
+	private void check(TupleGroupBuffer buffer, int n) throws IOException {
+		Assert.assertEquals(n, buffer.size());
+		for(int pass = 0; pass < 2; pass++) {
+			int i = 0;
+			for(ITuple tuple : buffer) {
+				Assert.assertEquals(i, tuple.get("id"));
+				Assert.assertEquals((i % 3 == 0) ? "schema2" : "schema1", tuple.getSchema().getName());
+				i++;
+			}
+			Assert.assertEquals(n, i);
+		}
+		// Random access, backwards
+		for(int i = n - 1; i >= 0; i -= 7) {
+			ITuple tuple = buffer.get(i);
+			Assert.assertEquals(i, tuple.get("id"));
+			if(i % 3 == 0) {
+				Assert.assertEquals(i / 2d, tuple.get("value"));
+			} else if(i % 2 == 0) {
+				Assert.assertNull(tuple.get("name"));
+			} else {
+				Assert.assertEquals("name" + i, tuple.get("name").toString());
+			}
+		}
+	}
+
+	@Test
+	public void testInMemory() throws IOException {
+		TupleGroupBuffer buffer = new TupleGroupBuffer(getConf(), 1024 * 1024, new File(SPILL_DIR));
+		fill(buffer, 1000);
+		Assert.assertFalse(buffer.isSpilled());
+		check(buffer, 1000);
+		buffer.close();
+	}
+
+	@Test
+	public void testSpill() throws IOException {
+		trash(SPILL_DIR);
+		TupleGroupBuffer buffer = new TupleGroupBuffer(getConf(), 1000, new File(SPILL_DIR));
+		fill(buffer, 50000);
+		Assert.assertTrue(buffer.isSpilled());
+		Assert.assertEquals(1, new File(SPILL_DIR).list().length);
+		check(buffer, 50000);
+
+		// Next group reuses the buffer
+		buffer.clear();
+		Assert.assertEquals(0, new File(SPILL_DIR).list().length);
+		fill(buffer, 10);
+		Assert.assertFalse(buffer.isSpilled());
+		check(buffer, 10);
+
+		ITuple copy = new Tuple(schema1);
+		buffer.get(1, copy);
+		Assert.assertNotSame(copy, buffer.get(1));
+		Assert.assertEquals(buffer.get(1), copy);
+
+		buffer.close();
+		trash(SPILL_DIR);
+	}
+}
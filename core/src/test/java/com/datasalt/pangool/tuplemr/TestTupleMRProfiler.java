@@ -0,0 +1,98 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datasalt.pangool.tuplemr.TupleMRProfiler.Phase;
+import com.datasalt.pangool.tuplemr.mapred.TestCombiner;
+import com.datasalt.pangool.utils.test.AbstractHadoopTestLibrary;
+
+public class TestTupleMRProfiler extends AbstractHadoopTestLibrary {
+
+	public final static String INPUT = TestTupleMRProfiler.class.getName() + "-input";
+	public final static String OUTPUT = TestTupleMRProfiler.class.getName() + "-output";
+
+	@Test
+	public void test() throws TupleMRException, IOException, InterruptedException, ClassNotFoundException {
+		withInput(INPUT, writable("hola don pepito hola don jose"));
+
+		TupleMRBuilder builder = new TestCombiner().getBuilder(getConf(), INPUT, OUTPUT);
+		// Sample every call
+		builder.setProfiling(1);
+		Job job = builder.createJob();
+		job.setNumReduceTasks(1);
+		try {
+			assertRun(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		Counters counters = job.getCounters();
+		Assert.assertEquals(1, value(counters, Phase.MAP));
+		Assert.assertEquals(6, value(counters, Phase.COLLECT));
+		Assert.assertEquals(4, value(counters, Phase.REDUCE));
+		Assert.assertTrue(value(counters, Phase.SERIALIZE) > 0);
+		Assert.assertTrue(value(counters, Phase.DESERIALIZE) > 0);
+		Assert.assertTrue(value(counters, Phase.GROUP_COMPARE) > 0);
+
+		trash(INPUT, OUTPUT);
+	}
+
+	@Test
+	public void testCallsAfterLastSample() throws TupleMRException, IOException, InterruptedException,
+	    ClassNotFoundException {
+		withInput(INPUT, writable("hola don pepito hola don jose"));
+
+		TupleMRBuilder builder = new TestCombiner().getBuilder(getConf(), INPUT, OUTPUT);
+		// Only the first call of each component is sampled: the rest are counted when published
+		builder.setProfiling(10);
+		Job job = builder.createJob();
+		job.setNumReduceTasks(1);
+		try {
+			assertRun(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		Counters counters = job.getCounters();
+		Assert.assertEquals(1, value(counters, Phase.MAP));
+		Assert.assertEquals(6, value(counters, Phase.COLLECT));
+		Assert.assertEquals(4, value(counters, Phase.REDUCE));
+		Assert.assertEquals(1,
+		    counters.findCounter(TupleMRProfiler.COUNTER_GROUP, Phase.REDUCE + " sampled calls").getValue());
+
+		trash(INPUT, OUTPUT);
+	}
+
+	@Test
+	public void testDisabled() throws TupleMRException, IOException {
+		TupleMRBuilder builder = new TestCombiner().getBuilder(getConf(), INPUT, OUTPUT);
+		Job job = builder.createJob();
+		builder.cleanUpInstanceFiles();
+		Assert.assertFalse(TupleMRProfiler.isEnabled(job.getConfiguration()));
+		Assert.assertNull(TupleMRProfiler.probe(job.getConfiguration(), Phase.MAP));
+	}
+
+	private long value(Counters counters, Phase phase) {
+		return counters.findCounter(TupleMRProfiler.COUNTER_GROUP, phase + " calls").getValue();
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datasalt.pangool.BaseTest;
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.IPrimitiveTuple;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+
+public class TestTuplePool extends BaseTest {
+
+	private TupleMRConfig config() throws TupleMRException {
+		TupleMRConfigBuilder b = new TupleMRConfigBuilder();
+		b.addIntermediateSchema(new Schema("schema1", Fields.parse("a:int,b:string")));
+		b.addIntermediateSchema(new Schema("schema2", Fields.parse("a:int,c:long")));
+		b.setGroupByFields("a");
+		return b.buildConf();
+	}
+
+	@Test
+	public void testReuse() throws TupleMRException {
+		TuplePool pool = new TuplePool(config(), false);
+		ITuple tuple = pool.get("schema1");
+		Assert.assertEquals("schema1", tuple.getSchema().getName());
+		Assert.assertSame(tuple, pool.get(0));
+		pool.nextRecord();
+		Assert.assertSame(tuple, pool.get("schema1"));
+		Assert.assertEquals("schema2", pool.get(1).getSchema().getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownSchema() throws TupleMRException {
+		new TuplePool(config(), false).get("foo");
+	}
+
+	@Test
+	public void testDebug() throws TupleMRException {
+		TuplePool pool = new TuplePool(config(), true);
+		IPrimitiveTuple tuple = pool.get("schema2");
+		tuple.setLong(1, 10l);
+		Assert.assertEquals(10l, tuple.getLongValue(1));
+		pool.nextRecord();
+		// A new view over the same Tuple works
+		Assert.assertEquals(10l, pool.get("schema2").getLongValue(1));
+		try {
+			tuple.setLong(1, 20l);
+			Assert.fail("Retained Tuple must fail");
+		} catch(IllegalStateException e) {
+			// expected
+		}
+	}
+}
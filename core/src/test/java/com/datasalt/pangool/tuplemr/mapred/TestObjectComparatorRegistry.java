@@ -0,0 +1,149 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr.mapred;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+
+import com.datasalt.pangool.io.DatumWrapper;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Schema.Field;
+import com.datasalt.pangool.io.Schema.Field.Type;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.serialization.HadoopSerialization;
+import com.datasalt.pangool.serialization.ThriftComparator;
+import com.datasalt.pangool.thrift.test.A;
+import com.datasalt.pangool.tuplemr.Criteria.Order;
+import com.datasalt.pangool.tuplemr.OrderBy;
+import com.datasalt.pangool.tuplemr.TupleMRConfig;
+import com.datasalt.pangool.tuplemr.TupleMRConfigBuilder;
+import com.datasalt.pangool.tuplemr.TupleMRException;
+import com.datasalt.pangool.utils.test.AbstractBaseTest;
+
+public class TestObjectComparatorRegistry extends AbstractBaseTest {
+
+	public static class ReverseTextComparator extends Text.Comparator {
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return -super.compare(b1, s1, l1, b2, s2, l2);
+		}
+
+		@Override
+		public int compare(Object a, Object b) {
+			return -super.compare(a, b);
+		}
+	}
+
+	@Test
+	public void testComparatorResolution() {
+		Configuration conf = createConf();
+		// Disabled by default, but comparators set per class are used
+		assertNull(ObjectComparatorRegistry.getComparator(Field.createObject("f", A.class), conf));
+		ObjectComparatorRegistry.setComparator(conf, Text.class, ReverseTextComparator.class);
+		assertTrue(ObjectComparatorRegistry.getComparator(Field.createObject("f", Text.class), conf)
+		    instanceof ReverseTextComparator);
+
+		conf = createConf();
+		ObjectComparatorRegistry.setEnabled(conf, true);
+		assertTrue(ObjectComparatorRegistry.getComparator(Field.createObject("f", Text.class), conf)
+		    instanceof WritableComparator);
+		assertTrue(ObjectComparatorRegistry.getComparator(Field.createObject("f", A.class), conf)
+		    instanceof ThriftComparator);
+		// Not comparable
+		assertNull(ObjectComparatorRegistry.getComparator(Field.createObject("f", MapWritable.class), conf));
+		assertNull(ObjectComparatorRegistry.getComparator(Field.create("f", Type.STRING), conf));
+
+		ObjectComparatorRegistry.setComparator(conf, Text.class, ReverseTextComparator.class);
+		assertTrue(ObjectComparatorRegistry.getComparator(Field.createObject("f", Text.class), conf)
+		    instanceof ReverseTextComparator);
+
+		ObjectComparatorRegistry.setEnabled(conf, false);
+		assertNull(ObjectComparatorRegistry.getComparator(Field.createObject("f", A.class), conf));
+		assertTrue(ObjectComparatorRegistry.getComparator(Field.createObject("f", Text.class), conf)
+		    instanceof ReverseTextComparator);
+	}
+
+	@Test
+	public void testBinaryAndObjectOrderAgree() throws TupleMRException, IOException {
+		Configuration conf = createConf();
+		ObjectComparatorRegistry.setComparator(conf, Text.class, ReverseTextComparator.class);
+		SortComparator comparator = sortComparator(conf, Field.createObject("text", Text.class));
+		ITuple t1 = tuple(comparator, new Text("a"));
+		ITuple t2 = tuple(comparator, new Text("b"));
+		HadoopSerialization ser = new HadoopSerialization(conf);
+		DataOutputBuffer buffer1 = new DataOutputBuffer();
+		ser.ser(new DatumWrapper<ITuple>(t1), buffer1);
+		DataOutputBuffer buffer2 = new DataOutputBuffer();
+		ser.ser(new DatumWrapper<ITuple>(t2), buffer2);
+
+		long slow = ObjectComparatorRegistry.getSlowCompares();
+		// Reversed by the registered comparator, in both comparisons
+		assertTrue(comparator.compare(t1, t2) > 0);
+		assertTrue(comparator.compare(buffer1.getData(), 0, buffer1.getLength(), buffer2.getData(), 0,
+		    buffer2.getLength()) > 0);
+		assertEquals(slow, ObjectComparatorRegistry.getSlowCompares());
+	}
+
+	@Test
+	public void testSlowPathIsCounted() throws TupleMRException {
+		Configuration conf = createConf();
+		SortComparator comparator = sortComparator(conf, Field.createObject("map", MapWritable.class));
+		MapWritable m1 = new MapWritable();
+		m1.put(new IntWritable(1), new IntWritable(1));
+		MapWritable m2 = new MapWritable();
+		m2.put(new IntWritable(1), new IntWritable(2));
+
+		long slow = ObjectComparatorRegistry.getSlowCompares();
+		assertTrue(comparator.compare(tuple(comparator, m1), tuple(comparator, m2)) != 0);
+		assertEquals(slow + 1, ObjectComparatorRegistry.getSlowCompares());
+	}
+
+	private static SortComparator sortComparator(Configuration conf, Field field) throws TupleMRException {
+		List<Field> fields = new ArrayList<Field>();
+		fields.add(Field.create("id", Type.INT));
+		fields.add(field);
+		TupleMRConfigBuilder builder = new TupleMRConfigBuilder();
+		builder.addIntermediateSchema(new Schema("schema", fields));
+		builder.setGroupByFields("id");
+		builder.setOrderBy(new OrderBy().add("id", Order.ASC).add(field.getName(), Order.ASC));
+		TupleMRConfig.set(builder.buildConf(), conf);
+		SortComparator comparator = new SortComparator();
+		comparator.setConf(conf);
+		return comparator;
+	}
+
+	private static ITuple tuple(SortComparator comparator, Object value) {
+		ITuple tuple = new Tuple(comparator.getConfig().getIntermediateSchema(0));
+		tuple.set("id", 1);
+		tuple.set(1, value);
+		return tuple;
+	}
+}
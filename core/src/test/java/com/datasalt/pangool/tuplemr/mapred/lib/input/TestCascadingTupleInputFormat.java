@@ -12,15 +12,24 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.junit.Test;
 
+import com.datasalt.pangool.io.Fields;
 import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
 import com.datasalt.pangool.tuplemr.MapOnlyJobBuilder;
 import com.datasalt.pangool.tuplemr.mapred.MapOnlyMapper;
 import com.datasalt.pangool.tuplemr.mapred.lib.output.HadoopOutputFormat;
 import com.datasalt.pangool.utils.HadoopUtils;
+import com.datasalt.pangool.utils.TaskAttemptContextFactory;
 import com.datasalt.pangool.utils.test.AbstractHadoopTestLibrary;
 import com.google.common.io.Files;
 
@@ -64,4 +73,40 @@ public class TestCascadingTupleInputFormat extends AbstractHadoopTestLibrary imp
 		
 		HadoopUtils.deleteIfExists(FileSystem.get(getConf()), new Path(OUTPUT));
 	}
+
+	@Test
+	public void testDeclaredSchema() throws Exception {
+		// No setSerializations(): the record reader enables Cascading serialization by itself
+		Schema schema = new Schema("logs", Fields.parse("day:int, month:int, year:int, count:long, metric:string, "
+		    + "value:string"));
+		CascadingTupleInputFormat format = new CascadingTupleInputFormat(schema);
+		Job job = new Job(getConf());
+		FileInputFormat.setInputPaths(job, new Path("src/test/resources/cascading-binary"));
+
+		int count = 0;
+		long total = 0;
+		for(InputSplit split : format.getSplits(job)) {
+			TaskAttemptContext attemptContext = TaskAttemptContextFactory.get(getConf(), new TaskAttemptID(new TaskID(),
+			    1));
+			RecordReader<ITuple, NullWritable> reader = format.createRecordReader(split, attemptContext);
+			reader.initialize(split, attemptContext);
+			ITuple previous = null;
+			while(reader.nextKeyValue()) {
+				ITuple tuple = reader.getCurrentKey();
+				if(previous != null) {
+					assertSame(previous, tuple);
+				}
+				previous = tuple;
+				assertEquals(schema, tuple.getSchema());
+				assertEquals(2012, tuple.getInteger("year").intValue());
+				// Integer in the file, widened to long
+				assertTrue(tuple.get("count") instanceof Long);
+				total += tuple.getLong("count");
+				count++;
+			}
+			reader.close();
+		}
+		assertEquals(3, count);
+		assertEquals(97 + 717 + 186, total);
+	}
 }
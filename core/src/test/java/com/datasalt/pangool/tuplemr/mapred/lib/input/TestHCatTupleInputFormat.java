@@ -0,0 +1,89 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr.mapred.lib.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.hcatalog.data.DefaultHCatRecord;
+import org.apache.hcatalog.data.schema.HCatFieldSchema;
+import org.junit.Test;
+
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.PrimitiveTuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.tuplemr.mapred.lib.input.HCatTupleInputFormat.RecordConverter;
+
+public class TestHCatTupleInputFormat {
+
+	private final static HCatFieldSchema.Type[] TYPES = new HCatFieldSchema.Type[] { HCatFieldSchema.Type.BIGINT,
+	    HCatFieldSchema.Type.INT, HCatFieldSchema.Type.SMALLINT, HCatFieldSchema.Type.TINYINT,
+	    HCatFieldSchema.Type.DOUBLE, HCatFieldSchema.Type.FLOAT, HCatFieldSchema.Type.BOOLEAN,
+	    HCatFieldSchema.Type.STRING };
+
+	private static DefaultHCatRecord record(Object... values) {
+		return new DefaultHCatRecord(new ArrayList<Object>(Arrays.asList(values)));
+	}
+
+	@Test
+	public void testConvert() {
+		Schema schema = new Schema("schema", Fields.parse("l:long?, i:int?, s:int?, t:int?, d:double?, f:float?, "
+		    + "b:boolean?, str:string?"));
+		RecordConverter converter = new RecordConverter(schema, TYPES);
+		PrimitiveTuple tuple = new PrimitiveTuple(schema);
+
+		converter.convert(record(10l, 20, (short) 30, (byte) 40, 1.5d, 2.5f, true, "foo"), tuple);
+		assertEquals(10l, tuple.getLongValue(0));
+		assertEquals(20, tuple.getIntValue(1));
+		assertEquals(30, tuple.getIntValue(2));
+		assertEquals(40, tuple.getIntValue(3));
+		assertEquals(1.5d, tuple.getDoubleValue(4), 0d);
+		assertEquals(2.5f, tuple.getFloatValue(5), 0f);
+		assertTrue(tuple.getBooleanValue(6));
+		assertEquals("foo", tuple.get(7));
+
+		// The same Tuple is reused, nulls included
+		converter.convert(record(null, 21, null, (byte) 41, null, 3.5f, null, null), tuple);
+		assertTrue(tuple.isNull(0));
+		assertEquals(21, tuple.getIntValue(1));
+		assertTrue(tuple.isNull(2));
+		assertEquals(41, tuple.getIntValue(3));
+		assertTrue(tuple.isNull(4));
+		assertEquals(3.5f, tuple.getFloatValue(5), 0f);
+		assertTrue(tuple.isNull(6));
+		assertEquals(null, tuple.get(7));
+		assertFalse(tuple.isNull(1));
+	}
+
+	@Test
+	public void testNullInNotNullableField() {
+		Schema schema = new Schema("schema", Fields.parse("l:long?, i:int"));
+		RecordConverter converter = new RecordConverter(schema, Arrays.copyOf(TYPES, 2));
+		PrimitiveTuple tuple = new PrimitiveTuple(schema);
+		converter.convert(record(null, 1), tuple);
+		try {
+			converter.convert(record(1l, null), tuple);
+			fail("Null values in not nullable fields must fail");
+		} catch(IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("'i'"));
+		}
+	}
+}
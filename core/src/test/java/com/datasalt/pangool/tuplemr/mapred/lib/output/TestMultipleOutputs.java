@@ -17,9 +17,11 @@ package com.datasalt.pangool.tuplemr.mapred.lib.output;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
@@ -177,4 +179,144 @@ public class TestMultipleOutputs extends AbstractHadoopTestLibrary {
 		trash(INPUT, OUTPUT);
 		cleanUp();
 	}
+
+	@SuppressWarnings("serial")
+	public static class LineMapper extends TupleMapper<LongWritable, Text> {
+
+		private Tuple tuple;
+
+		public void setup(TupleMRContext context, Collector collector) throws IOException,
+		    InterruptedException {
+			tuple = new Tuple(context.getTupleMRConfig().getIntermediateSchema(0));
+		}
+
+		@Override
+		public void map(LongWritable key, Text value, TupleMRContext context, Collector collector)
+		    throws IOException, InterruptedException {
+			tuple.set(0, value.toString());
+			collector.write(tuple);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class AlternatingOutputsHandler extends TupleReducer<ITuple, NullWritable> {
+
+		int count = 0;
+
+		@Override
+		public void reduce(ITuple group, Iterable<ITuple> tuples, TupleMRContext pangoolContext,
+		    Collector collector) throws IOException, InterruptedException, TupleMRException {
+			for(ITuple tuple : tuples) {
+				collector.getNamedOutput("out" + (count++ % 2)).write(tuple, NullWritable.get());
+			}
+		}
+	}
+
+	@Test
+	public void testMaxOpenWriters() throws TupleMRException, IOException, InterruptedException,
+	    ClassNotFoundException {
+
+		initHadoop();
+		trash(INPUT, OUTPUT);
+
+		CommonUtils.writeTXT("a\nb\nc\nd\ne\nf", new File(INPUT));
+
+		TupleMRBuilder builder = new TupleMRBuilder(getConf());
+		Schema schema = new Schema("schema", Fields.parse("line:string"));
+		builder.addIntermediateSchema(schema);
+		builder.setGroupByFields("line");
+		builder.addInput(new Path(INPUT), new HadoopInputFormat(TextInputFormat.class), new LineMapper());
+		builder.setTupleReducer(new AlternatingOutputsHandler());
+		builder.setTupleOutput(new Path(OUTPUT), schema);
+		builder.setDefaultNamedOutput(schema);
+
+		Job job = builder.createJob();
+		// Each write goes to a different output than the previous one, so writers are continuously evicted
+		PangoolMultipleOutputs.setMaxOpenWriters(job, 1);
+		try {
+			assertRun(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		for(String output : new String[] { "out0", "out1" }) {
+			final AtomicInteger tuples = new AtomicInteger(0);
+			int files = 0;
+			for(FileStatus status : fS.listStatus(new Path(OUTPUT + "/" + output))) {
+				if(!status.getPath().getName().startsWith("part-r-00000")) {
+					continue;
+				}
+				files++;
+				readTuples(status.getPath(), getConf(), new TupleVisitor() {
+					@Override
+					public void onTuple(ITuple tuple) {
+						tuples.incrementAndGet();
+					}
+				});
+			}
+			Assert.assertEquals(3, files);
+			Assert.assertEquals(3, tuples.get());
+		}
+
+		trash(INPUT, OUTPUT);
+	}
+
+	@Test
+	public void testMaxOpenWritersPartitioned() throws TupleMRException, IOException, InterruptedException,
+	    ClassNotFoundException {
+
+		initHadoop();
+		trash(INPUT, OUTPUT);
+
+		CommonUtils.writeTXT("a\nb\nc\nd\ne\nf", new File(INPUT));
+
+		TupleMRBuilder builder = new TupleMRBuilder(getConf());
+		Schema schema = new Schema("schema", Fields.parse("line:string"));
+		builder.addIntermediateSchema(schema);
+		builder.setGroupByFields("line");
+		builder.addInput(new Path(INPUT), new HadoopInputFormat(TextInputFormat.class), new LineMapper());
+		builder.setTupleReducer(new AlternatingOutputsHandler());
+		builder.setTupleOutput(new Path(OUTPUT), schema);
+		builder.addNamedTupleOutput("out0", schema, "line");
+		builder.addNamedTupleOutput("out1", schema, "line");
+
+		Job job = builder.createJob();
+		PangoolMultipleOutputs.setMaxOpenWriters(job, 1);
+		try {
+			assertRun(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		// Evicting a writer renames its files but not the partition folders
+		String[][] partitions = new String[][] { { "a", "c", "e" }, { "b", "d", "f" } };
+		for(int i = 0; i < 2; i++) {
+			for(String line : partitions[i]) {
+				Path partition = new Path(OUTPUT + "/out" + i + "/line=" + line);
+				Assert.assertTrue(partition + " doesn't exist", fS.exists(partition));
+				final AtomicInteger tuples = new AtomicInteger(0);
+				for(FileStatus status : fS.listStatus(partition)) {
+					if(!status.getPath().getName().startsWith("part-r-00000")) {
+						continue;
+					}
+					readTuples(status.getPath(), getConf(), new TupleVisitor() {
+						@Override
+						public void onTuple(ITuple tuple) {
+							tuples.incrementAndGet();
+						}
+					});
+				}
+				Assert.assertEquals(1, tuples.get());
+			}
+			int folders = 0;
+			for(FileStatus status : fS.listStatus(new Path(OUTPUT + "/out" + i))) {
+				if(status.isDir() && !status.getPath().getName().startsWith("_")) {
+					folders++;
+				}
+			}
+			Assert.assertEquals(3, folders);
+		}
+
+		trash(INPUT, OUTPUT);
+	}
 }
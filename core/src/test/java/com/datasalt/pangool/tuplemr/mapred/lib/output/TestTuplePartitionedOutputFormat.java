@@ -0,0 +1,124 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr.mapred.lib.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Test;
+
+import com.datasalt.pangool.io.Fields;
+import com.datasalt.pangool.io.ITuple;
+import com.datasalt.pangool.io.Schema;
+import com.datasalt.pangool.io.Tuple;
+import com.datasalt.pangool.tuplemr.MapOnlyJobBuilder;
+import com.datasalt.pangool.tuplemr.TupleMRException;
+import com.datasalt.pangool.tuplemr.mapred.MapOnlyMapper;
+import com.datasalt.pangool.tuplemr.mapred.lib.input.HadoopInputFormat;
+import com.datasalt.pangool.utils.CommonUtils;
+import com.datasalt.pangool.utils.test.AbstractHadoopTestLibrary;
+
+public class TestTuplePartitionedOutputFormat extends AbstractHadoopTestLibrary {
+
+	public final static String INPUT = TestTuplePartitionedOutputFormat.class.getName() + "-input";
+	public final static String OUTPUT = TestTuplePartitionedOutputFormat.class.getName() + "-output";
+
+	final static Schema SCHEMA = new Schema("schema", Fields.parse("country:string?, year:int, value:int"));
+
+	@SuppressWarnings("serial")
+	public static class MyMapper extends MapOnlyMapper<LongWritable, Text, ITuple, NullWritable> {
+
+		Tuple tuple = new Tuple(SCHEMA);
+
+		@Override
+		protected void map(LongWritable key, Text value, Context context) throws IOException,
+		    InterruptedException {
+			String[] fields = value.toString().split("\t");
+			tuple.set("country", fields[0].equals("-") ? null : new Text(fields[0]));
+			tuple.set("year", Integer.parseInt(fields[1]));
+			tuple.set("value", Integer.parseInt(fields[2]));
+			context.write(tuple, NullWritable.get());
+		}
+	}
+
+	@Test
+	public void testEscapePathName() {
+		Assert.assertEquals("ES", TuplePartitionedOutputFormat.escapePathName("ES"));
+		Assert.assertEquals("a%2Fb%3Dc", TuplePartitionedOutputFormat.escapePathName("a/b=c"));
+		Assert.assertEquals("%2Ehidden", TuplePartitionedOutputFormat.escapePathName(".hidden"));
+		Assert.assertEquals("%5Fhidden_not", TuplePartitionedOutputFormat.escapePathName("_hidden_not"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownField() {
+		new TuplePartitionedOutputFormat(SCHEMA, "foo");
+	}
+
+	@Test
+	public void test() throws TupleMRException, IOException, InterruptedException, ClassNotFoundException,
+	    URISyntaxException {
+		testPartitionedOutput(0);
+		// Only one partition open: the rest of them must go through the spill
+		testPartitionedOutput(1);
+	}
+
+	private void testPartitionedOutput(int maxOpenPartitions) throws TupleMRException, IOException,
+	    InterruptedException, ClassNotFoundException, URISyntaxException {
+
+		trash(INPUT, OUTPUT);
+		CommonUtils.writeTXT("ES\t2012\t1\nFR\t2012\t2\nES\t2013\t3\nES\t2012\t4\n-\t2012\t5\nFR\t2012\t6",
+		    new File(INPUT));
+
+		MapOnlyJobBuilder builder = new MapOnlyJobBuilder(getConf());
+		builder.addInput(new Path(INPUT), new HadoopInputFormat(TextInputFormat.class), new MyMapper());
+		builder.setTupleOutput(new Path(OUTPUT), SCHEMA, maxOpenPartitions, "country", "year");
+		Job job = builder.createJob();
+		try {
+			assertRun(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		Assert.assertEquals(11, sumValues(OUTPUT + "/country=ES/year=2012"));
+		Assert.assertEquals(3, sumValues(OUTPUT + "/country=ES/year=2013"));
+		Assert.assertEquals(8, sumValues(OUTPUT + "/country=FR/year=2012"));
+		Assert.assertEquals(5, sumValues(OUTPUT + "/country=" + TuplePartitionedOutputFormat.NULL_PARTITION
+		    + "/year=2012"));
+
+		trash(INPUT, OUTPUT);
+	}
+
+	private int sumValues(String partition) throws IOException, InterruptedException {
+		final AtomicInteger sum = new AtomicInteger(0);
+		readTuples(new Path(firstMapOutput(partition)), getConf(), new TupleVisitor() {
+			@Override
+			public void onTuple(ITuple tuple) {
+				sum.addAndGet((Integer) tuple.get("value"));
+			}
+		});
+		return sum.get();
+	}
+}
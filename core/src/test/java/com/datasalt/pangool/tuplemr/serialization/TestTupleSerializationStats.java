@@ -0,0 +1,77 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.tuplemr.serialization;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datasalt.pangool.tuplemr.TupleMRBuilder;
+import com.datasalt.pangool.tuplemr.TupleMRException;
+import com.datasalt.pangool.tuplemr.mapred.TestCombiner;
+import com.datasalt.pangool.utils.test.AbstractHadoopTestLibrary;
+
+public class TestTupleSerializationStats extends AbstractHadoopTestLibrary {
+
+	public final static String INPUT = TestTupleSerializationStats.class.getName() + "-input";
+	public final static String OUTPUT = TestTupleSerializationStats.class.getName() + "-output";
+
+	@Test
+	public void test() throws TupleMRException, IOException, InterruptedException, ClassNotFoundException {
+		withInput(INPUT, writable("hola don pepito hola don jose"));
+
+		TupleMRBuilder builder = new TestCombiner().getBuilder(getConf(), INPUT, OUTPUT);
+		// Measure the fields of every record
+		builder.setShuffleStats(1);
+		Job job = builder.createJob();
+		job.setNumReduceTasks(1);
+		try {
+			assertRun(job);
+		} finally {
+			builder.cleanUpInstanceFiles();
+		}
+
+		// The combiner output is not counted
+		Counters counters = job.getCounters();
+		Assert.assertEquals(6, value(counters, "schema records"));
+		Assert.assertEquals(6, value(counters, "schema sampled records"));
+		// Strings are a vint length plus the bytes, small ints a single byte
+		Assert.assertEquals(5 + 4 + 7 + 5 + 4 + 5, value(counters, "schema.word sampled bytes"));
+		Assert.assertEquals(6, value(counters, "schema.count sampled bytes"));
+		Assert.assertEquals(36, value(counters, "schema bytes"));
+
+		String report = TupleSerializationStats.report(counters);
+		Assert.assertTrue(report, report.contains("Schema schema: 6 records, 36 bytes"));
+		Assert.assertTrue(report, report.contains("word"));
+
+		trash(INPUT, OUTPUT);
+	}
+
+	@Test
+	public void testDisabled() throws TupleMRException, IOException {
+		TupleMRBuilder builder = new TestCombiner().getBuilder(getConf(), INPUT, OUTPUT);
+		Job job = builder.createJob();
+		builder.cleanUpInstanceFiles();
+		Assert.assertFalse(TupleSerializationStats.isEnabled(job.getConfiguration()));
+	}
+
+	private long value(Counters counters, String name) {
+		return counters.findCounter(TupleSerializationStats.COUNTER_GROUP, name).getValue();
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryData;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+
+public class TestAvroComparePlan {
+
+	public final static String SCHEMA = "{\"type\":\"record\",\"name\":\"Event\",\"fields\":["
+	    + "{\"name\":\"kind\",\"type\":{\"type\":\"enum\",\"name\":\"Kind\",\"symbols\":[\"A\",\"B\",\"C\"]}},"
+	    + "{\"name\":\"payload\",\"type\":{\"type\":\"record\",\"name\":\"Payload\",\"fields\":["
+	    + "{\"name\":\"id\",\"type\":\"long\",\"order\":\"descending\"},"
+	    + "{\"name\":\"raw\",\"type\":\"bytes\",\"order\":\"ignore\"},"
+	    + "{\"name\":\"score\",\"type\":\"double\"}]},\"order\":\"descending\"},"
+	    + "{\"name\":\"tags\",\"type\":{\"type\":\"array\",\"items\":\"string\"}},"
+	    + "{\"name\":\"attributes\",\"type\":{\"type\":\"map\",\"values\":\"int\"},\"order\":\"ignore\"},"
+	    + "{\"name\":\"weight\",\"type\":\"float\",\"order\":\"ignore\"},"
+	    + "{\"name\":\"name\",\"type\":[\"null\",\"string\"]},"
+	    + "{\"name\":\"flag\",\"type\":\"boolean\",\"order\":\"descending\"},"
+	    + "{\"name\":\"count\",\"type\":\"int\"},"
+	    + "{\"name\":\"comment\",\"type\":\"string\",\"order\":\"ignore\"}]}";
+
+	@Test
+	public void testSameOrderAsBinaryData() throws IOException {
+		Schema schema = new Schema.Parser().parse(SCHEMA);
+		AvroComparePlan plan = AvroComparePlan.compile(schema);
+		// The trailing ignored field is not part of the plan
+		assertEquals(10, plan.size());
+
+		Random random = new Random(1);
+		byte[][] serialized = new byte[200][];
+		for(int i = 0; i < serialized.length; i++) {
+			serialized[i] = serialize(schema, randomRecord(schema, random), 3);
+		}
+		for(int i = 0; i < serialized.length; i++) {
+			for(int j = 0; j < serialized.length; j++) {
+				byte[] b1 = serialized[i];
+				byte[] b2 = serialized[j];
+				int expected = Integer.signum(BinaryData.compare(b1, 3, b1.length - 3, b2, 3, b2.length - 3, schema));
+				assertEquals(expected, Integer.signum(plan.compare(b1, 3, b1.length - 3, b2, 3, b2.length - 3)));
+			}
+		}
+	}
+
+	@Test
+	public void testPrimitiveSchema() throws IOException {
+		Schema schema = Schema.create(Schema.Type.STRING);
+		AvroComparePlan plan = AvroComparePlan.compile(schema);
+		byte[] b1 = serialize(schema, "abc", 0);
+		byte[] b2 = serialize(schema, "abd", 0);
+		assertEquals(-1, Integer.signum(plan.compare(b1, 0, b1.length, b2, 0, b2.length)));
+		assertEquals(0, plan.compare(b1, 0, b1.length, b1, 0, b1.length));
+	}
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+		final Schema schema = new Schema.Parser().parse(SCHEMA);
+		final AvroComparePlan plan = AvroComparePlan.compile(schema);
+		Random random = new Random(2);
+		final byte[][] serialized = new byte[50][];
+		for(int i = 0; i < serialized.length; i++) {
+			serialized[i] = serialize(schema, randomRecord(schema, random), 0);
+		}
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		Thread[] threads = new Thread[4];
+		for(int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for(int round = 0; round < 20; round++) {
+						for(byte[] b1 : serialized) {
+							for(byte[] b2 : serialized) {
+								int expected = Integer.signum(BinaryData.compare(b1, 0, b1.length, b2, 0, b2.length,
+								    schema));
+								int actual = Integer.signum(plan.compare(b1, 0, b1.length, b2, 0, b2.length));
+								if(expected != actual) {
+									failure.compareAndSet(null, "Expected " + expected + " but was " + actual);
+								}
+							}
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+	}
+
+	private static Record randomRecord(Schema schema, Random random) {
+		Record payload = new Record(schema.getField("payload").schema());
+		payload.put("id", (long) random.nextInt(3) - 1);
+		payload.put("raw", ByteBuffer.wrap(new byte[random.nextInt(4)]));
+		payload.put("score", random.nextInt(3) / 2d);
+
+		List<String> tags = new ArrayList<String>();
+		for(int i = random.nextInt(3); i > 0; i--) {
+			tags.add("t" + random.nextInt(2));
+		}
+		Map<String, Integer> attributes = new HashMap<String, Integer>();
+		for(int i = random.nextInt(3); i > 0; i--) {
+			attributes.put("a" + i, random.nextInt());
+		}
+
+		Record record = new Record(schema);
+		// Enums are written by symbol name
+		record.put("kind", String.valueOf("ABC".charAt(random.nextInt(3))));
+		record.put("payload", payload);
+		record.put("tags", tags);
+		record.put("attributes", attributes);
+		record.put("weight", random.nextFloat());
+		record.put("name", random.nextBoolean() ? null : "n" + random.nextInt(2));
+		record.put("flag", random.nextBoolean());
+		record.put("count", random.nextInt(3) - 1);
+		record.put("comment", "c" + random.nextInt(1000));
+		return record;
+	}
+
+	/**
+	 * Serializes the given datum after the given number of padding bytes.
+	 */
+	private static byte[] serialize(Schema schema, Object datum, int padding) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[padding]);
+		BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+		new GenericDatumWriter<Object>(schema).write(datum, encoder);
+		encoder.flush();
+		return out.toByteArray();
+	}
+}
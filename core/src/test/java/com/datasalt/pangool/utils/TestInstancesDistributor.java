@@ -0,0 +1,63 @@
+/**
+ * Copyright [2012] [Datasalt Systems S.L.]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datasalt.pangool.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+public class TestInstancesDistributor {
+
+	@Test
+	public void testInlined() throws IOException, URISyntaxException {
+		Configuration conf = new Configuration();
+		ArrayList<String> instance = new ArrayList<String>();
+		instance.add("foo");
+		InstancesDistributor.distribute(instance, "inlined-instance.dat", conf);
+
+		// No file must have been written
+		FileSystem fS = FileSystem.get(conf);
+		assertTrue(!fS.exists(new Path(InstancesDistributor.getInstancesFolder(fS, conf), "inlined-instance.dat")));
+		assertEquals(instance, InstancesDistributor.loadInstance(conf, ArrayList.class, "inlined-instance.dat", false));
+	}
+
+	@Test
+	public void testFileAndCache() throws IOException, URISyntaxException {
+		Configuration conf = new Configuration();
+		conf.setInt(InstancesDistributor.INLINE_MAX_BYTES_CONF, 0);
+		ArrayList<String> instance = new ArrayList<String>();
+		instance.add("bar");
+		InstancesDistributor.distribute(instance, "file-instance.dat", conf);
+
+		FileSystem fS = FileSystem.get(conf);
+		Path path = new Path(InstancesDistributor.getInstancesFolder(fS, conf), "file-instance.dat");
+		assertTrue(fS.exists(path));
+		assertEquals(instance, InstancesDistributor.loadInstance(conf, ArrayList.class, "file-instance.dat", false));
+
+		// Once loaded, the instance is served from the per-JVM cache
+		InstancesDistributor.removeFromCache(conf, "file-instance.dat");
+		assertTrue(!fS.exists(path));
+		assertEquals(instance, InstancesDistributor.loadInstance(conf, ArrayList.class, "file-instance.dat", false));
+	}
+}